@@ -5,21 +5,33 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 
 import me.osm.gazetter.addresses.AddrLevelsSorting;
+import me.osm.gazetter.bench.AddrFormatterBenchmark;
+import me.osm.gazetter.bench.OSMGenerator;
+import me.osm.gazetter.bench.PipelineBenchmark;
 import me.osm.gazetter.join.JoinExecutor;
+import me.osm.gazetter.metrics.RunReport;
+import me.osm.gazetter.osc.OscApplier;
 import me.osm.gazetter.out.Diff;
 import me.osm.gazetter.sortupdate.SortUpdate;
+import me.osm.gazetter.split.AreaFilter;
+import me.osm.gazetter.split.BinarySplit;
 import me.osm.gazetter.split.Split;
+import me.osm.gazetter.striper.SliceCheckpoint;
 import me.osm.gazetter.striper.Slicer;
+import me.osm.gazetter.striper.readers.BinaryElements;
+import me.osm.gazetter.utils.FileUtils;
 import net.sourceforge.argparse4j.ArgumentParsers;
 import net.sourceforge.argparse4j.impl.Arguments;
 import net.sourceforge.argparse4j.impl.action.StoreTrueArgumentAction;
 import net.sourceforge.argparse4j.inf.ArgumentParser;
 import net.sourceforge.argparse4j.inf.ArgumentParserException;
+import net.sourceforge.argparse4j.inf.MutuallyExclusiveGroup;
 import net.sourceforge.argparse4j.inf.Namespace;
 import net.sourceforge.argparse4j.inf.Subparser;
 import net.sourceforge.argparse4j.inf.Subparsers;
@@ -72,14 +84,22 @@ public class Main {
 
 	private static final String COMMAND = "command";
 	
+	private static final String RUN_REPORT_OPT = "--run-report";
+	private static final String RUN_REPORT_VAL = "run_report";
+	
 	private static Logger log;
 	
 	private static Subparser split;
 	private static Subparser slice;
+	private static Subparser splitSlice;
 	private static Subparser join;
 	private static Subparser update;
+	private static Subparser applyOsc;
 	private static Subparser man;
 	private static Subparser diff;
+	private static Subparser benchFormatter;
+	private static Subparser generateOsm;
+	private static Subparser benchPipeline;
 
 	/**
 	 * Command line command description
@@ -123,6 +143,13 @@ public class Main {
 			public String help() {return "Parse features from osm data and write it into stripes 0.1 degree wide.";}
 	    }, 
 	    
+	    SPLIT_SLICE {
+	    	@Override
+	    	public String longName() {return name().toLowerCase().replace('_', '-');}
+	    	@Override
+	    	public String help() {return "Split and slice in one run. Osm data is parsed once and stored in binary form instead of xml files.";}
+	    }, 
+	    
 	    JOIN {
 	    	@Override
 			public String longName() {return name().toLowerCase();}
@@ -130,6 +157,13 @@ public class Main {
 			public String help() {return "Join features. Made spatial joins for address points inside polygons and so on.";}
 	    }, 
 	    
+	    APPLY_OSC {
+	    	@Override
+	    	public String longName() {return name().toLowerCase().replace('_', '-');}
+	    	@Override
+	    	public String help() {return "Apply osm change files to stripes. Only affected features are sliced again.";}
+	    },
+	    
 	    SYNCHRONIZE {
 	    	@Override
 			public String longName() {return name().toLowerCase();}
@@ -156,10 +190,38 @@ public class Main {
 	    	public String longName() {return name().toLowerCase().replace('_', '-');}
 	    	@Override
 	    	public String help() {return "Match features with flap objects.";}
+	    },
+	    
+	    BENCH_FORMATTER {
+	    	@Override
+	    	public String longName() {return name().toLowerCase().replace('_', '-');}
+	    	@Override
+	    	public String help() {return "Compare addresses formatting speed of groovy addresses parser and default one.";}
+	    },
+	    
+	    GENERATE_OSM {
+	    	@Override
+	    	public String longName() {return name().toLowerCase().replace('_', '-');}
+	    	@Override
+	    	public String help() {return "Generate synthetic osm file with boundaries, places, streets, addresses and POIs.";}
+	    },
+	    
+	    BENCH_PIPELINE {
+	    	@Override
+	    	public String longName() {return name().toLowerCase().replace('_', '-');}
+	    	@Override
+	    	public String help() {return "Run split, slice and join over synthetic or given osm file and report time, heap and io of every phase as json.";}
 	    };
 
 	};
 
+	/**
+	 * Commands which write json run report
+	 * */
+	private static final EnumSet<Command> REPORTED_COMMANDS = EnumSet.of(
+			Command.SPLIT, Command.SLICE, Command.SPLIT_SLICE, Command.JOIN, 
+			Command.SYNCHRONIZE, Command.DIFF);
+
 	/**
 	 * Parse arguments and run tasks accordingly.
 	 * */
@@ -185,6 +247,10 @@ public class Main {
 				return;
 			}
 			
+			Command command = namespace.get(COMMAND);
+			RunReport runReport = REPORTED_COMMANDS.contains(command) 
+					? new RunReport(command.longName(), Arrays.asList(args)) : null;
+			
 			String thrds = namespace.get("threads");
 			Integer threads = thrds == null ? null : Integer.valueOf(thrds); 
 			
@@ -213,30 +279,35 @@ public class Main {
 				String in = namespace.getString("osm_file");
 				String compression = namespace.getString("compression");
 				boolean append = namespace.getBoolean("append");
-				Split splitter = new Split(destFolder, in, compression, append);
+				
+				AreaFilter filter = null;
+				if(namespace.getList("bbox") != null) {
+					filter = AreaFilter.bbox(namespace.getList("bbox"));
+				}
+				else if(namespace.getString("poly") != null) {
+					filter = AreaFilter.poly(new File(namespace.getString("poly")));
+				}
+				
+				Split splitter = new Split(destFolder, in, compression, append, filter);
 				splitter.run();
 			}
 
 			if(namespace.get(COMMAND).equals(Command.SLICE)) {
-				List<String> types = new ArrayList<String>();
-				if(namespace.get(FEATURE_TYPES_VAL) instanceof String) {
-					types.add((String)namespace.get(FEATURE_TYPES_VAL));
-				}
-				else if (namespace.get(FEATURE_TYPES_VAL) instanceof Collection) {
-					types.addAll((Collection<String>)namespace.get(FEATURE_TYPES_VAL));
-				}
+				slice(namespace, false);
+			}
+
+			if(namespace.get(COMMAND).equals(Command.SPLIT_SLICE)) {
+				File destFolder = new File(namespace.getString(DATA_DIR_VAL));
+				new BinarySplit(destFolder, namespace.getString("osm_file"), 
+						namespace.getString("compression")).run();
 				
-				new Slicer(namespace.getString(DATA_DIR_VAL)).run(
-						namespace.getString(POI_CATALOG_VAL), 
-						types,
-						list(namespace.getList(EXCCLUDE_POI_BRANCH_VAL)),
-						list(namespace.getList(NAMED_POI_BRANCH_VAL)),
-						list(namespace.getList("drop")),
-						namespace.getString(BOUNDARIES_FALLBACK_VAL),
-						list(namespace.getList(BOUNDARIES_FALLBACK_TYPES_VAL)),
-						namespace.getBoolean("x10")
-				);
+				slice(namespace, true);
 				
+				if(!namespace.getBoolean("keep_split")) {
+					for(String f : Arrays.asList(BinaryElements.NODES, BinaryElements.WAYS, BinaryElements.RELATIONS)) {
+						FileUtils.withGz(new File(destFolder, f)).delete();
+					}
+				}
 			}
 
 			if(namespace.get(COMMAND).equals(Command.JOIN)) {
@@ -244,18 +315,41 @@ public class Main {
 				List<String> handlers = list(namespace.getList("handlers"));
 				Options.get().setJoinHandlers(handlers);
 				
+				Integer outQueue = namespace.getInt("out_queue");
+				if(outQueue != null && outQueue > 0) {
+					Options.get().setAsyncOutput(outQueue, namespace.getBoolean("strict_out_order"));
+				}
+				
+				Integer handlersQueue = namespace.getInt("handlers_queue");
+				if(handlersQueue != null && handlersQueue > 0) {
+					Options.get().setParallelHandlers(handlersQueue);
+				}
+				
 				if(Options.get().getJoinOutHandlers().isEmpty()) {
 					System.out.println("No join handlers was initialized.");
 					System.out.println("Predefined handlers are: " + StringUtils.join(Options.getPredefinedOutHandlers(), ", "));
 					System.exit(1);
 				}
 				
-				new JoinExecutor(new HashSet(list(namespace.getList("check_boundaries"))))
+				new JoinExecutor(new HashSet(list(namespace.getList("check_boundaries"))), 
+						namespace.getBoolean("incremental"))
 					.run(namespace.getString(DATA_DIR_VAL), 
 							namespace.getString(JOIN_COMMON_VAL));
 				
 			}
 
+			if(namespace.get(COMMAND).equals(Command.APPLY_OSC)) {
+				new OscApplier(namespace.getString(DATA_DIR_VAL),
+						list(namespace.getList("osc_files")),
+						namespace.getString(POI_CATALOG_VAL), 
+						list(namespace.getList(EXCCLUDE_POI_BRANCH_VAL)),
+						list(namespace.getList(NAMED_POI_BRANCH_VAL)),
+						namespace.getString(BOUNDARIES_FALLBACK_VAL),
+						list(namespace.getList(BOUNDARIES_FALLBACK_TYPES_VAL)),
+						namespace.getBoolean("x10")
+				).run();
+			}
+
 			if(namespace.get(COMMAND).equals(Command.SYNCHRONIZE)) {
 				new SortUpdate(namespace.getString(DATA_DIR_VAL)).run();
 			}
@@ -265,10 +359,35 @@ public class Main {
 						namespace.getString("out_file")).run();
 			}
 			
+			if(namespace.get(COMMAND).equals(Command.BENCH_FORMATTER)) {
+				new AddrFormatterBenchmark(namespace.getString(ADDR_FORMATTER_VAL), 
+						namespace.getString("join_out"),
+						AddrLevelsSorting.valueOf(namespace.getString(ADDR_ORDER_VAL)),
+						namespace.getInt("limit"), namespace.getInt("rounds")).run();
+			}
+			
+			if(namespace.get(COMMAND).equals(Command.GENERATE_OSM)) {
+				getGenerator(namespace).write(new File(namespace.getString("out_file")));
+			}
+			
+			if(namespace.get(COMMAND).equals(Command.BENCH_PIPELINE)) {
+				String osmFile = namespace.getString("osm_file");
+				new PipelineBenchmark(namespace.getString(DATA_DIR_VAL), osmFile, 
+						osmFile == null ? getGenerator(namespace) : null,
+						list(namespace.getList("handlers")),
+						namespace.getString("report")).run();
+			}
+			
 			if(namespace.get(COMMAND).equals(Command.MATCH_FLAP)) {
 				
 			} 
 			
+			if(runReport != null) {
+				String reportFile = namespace.getString(RUN_REPORT_VAL);
+				runReport.write(reportFile == null 
+						? runReport.defaultFile(namespace.getString(DATA_DIR_VAL)) : new File(reportFile));
+			}
+			
 		} 
 		catch (ArgumentParserException e) {
 			parser.handleError(e);
@@ -281,6 +400,45 @@ public class Main {
 		
 	}
 
+	private static OSMGenerator getGenerator(Namespace namespace) {
+		return new OSMGenerator(namespace.getLong("seed"), 
+				namespace.getInt("regions"), namespace.getInt("districts"), 
+				namespace.getInt("streets"), namespace.getInt("buildings"), 
+				namespace.getInt("addr_nodes"), namespace.getInt("interpolations"), 
+				namespace.getInt("pois"));
+	}
+
+	/**
+	 * Slice with arguments added by {@link #addSliceArguments(Subparser)}
+	 * 
+	 * @param binary read binary files written by split-slice
+	 * */
+	@SuppressWarnings("unchecked")
+	private static void slice(Namespace namespace, boolean binary) {
+		List<String> types = new ArrayList<String>();
+		if(namespace.get(FEATURE_TYPES_VAL) instanceof String) {
+			types.add((String)namespace.get(FEATURE_TYPES_VAL));
+		}
+		else if (namespace.get(FEATURE_TYPES_VAL) instanceof Collection) {
+			types.addAll((Collection<String>)namespace.get(FEATURE_TYPES_VAL));
+		}
+		
+		Slicer slicer = new Slicer(namespace.getString(DATA_DIR_VAL));
+		slicer.setCheckpoints(namespace.getBoolean("checkpoints"), namespace.getBoolean("resume"));
+		slicer.setHilbertSort(namespace.getBoolean("hilbert_sort"));
+		slicer.run(
+				namespace.getString(POI_CATALOG_VAL), 
+				types,
+				list(namespace.getList(EXCCLUDE_POI_BRANCH_VAL)),
+				list(namespace.getList(NAMED_POI_BRANCH_VAL)),
+				list(namespace.getList("drop")),
+				namespace.getString(BOUNDARIES_FALLBACK_VAL),
+				list(namespace.getList(BOUNDARIES_FALLBACK_TYPES_VAL)),
+				namespace.getBoolean("x10"),
+				binary
+		);
+	}
+
 	/**
 	 * Print version of gazetteer to stdout
 	 *
@@ -318,9 +476,15 @@ public class Main {
 		System.out.print("\n\n\nSLICE\n\n");
 		slice.printHelp();
 		
+		System.out.print("\n\n\nSPLIT-SLICE\n\n");
+		splitSlice.printHelp();
+		
 		System.out.print("\n\n\nJOIN\n\n");
 		join.printHelp();
 
+		System.out.print("\n\n\nAPPLY-OSC\n\n");
+		applyOsc.printHelp();
+
 		System.out.print("\n\n\nUPDATE\n\n");
 		update.printHelp();
 
@@ -386,6 +550,10 @@ public class Main {
         	.help("Use this folder as data storage.")
         	.setDefault("data");
         
+        parser.addArgument(RUN_REPORT_OPT).required(false)
+        	.help("Write json run report with timings and metrics into this file. "
+        			+ "By default it's written into reports folder of data dir.");
+        
         parser.addArgument(LOG_OPT).required(false).setDefault("WARN");
         parser.addArgument(LOG_FILE_OPT).required(false);
         parser.addArgument(LOG_PREFIX_OPT).required(false);
@@ -421,6 +589,14 @@ public class Main {
         	
         	split.addArgument("--append").required(false).setDefault(Boolean.FALSE)
 				.nargs("?").setConst(Boolean.TRUE);
+        	
+        	MutuallyExclusiveGroup area = split.addMutuallyExclusiveGroup();
+        	
+        	area.addArgument("--bbox").nargs(4).type(Double.class)
+        		.help("Keep only data inside bbox: minlon minlat maxlon maxlat. Osm file will be read twice, so STDIN is not supported.");
+        	
+        	area.addArgument("--poly")
+        		.help("Keep only data inside polygon from osmosis *.poly file. Osm file will be read twice, so STDIN is not supported.");
         }
         
 		//slice
@@ -430,33 +606,30 @@ public class Main {
         			.setDefault(COMMAND, command)
 					.help(command.help());
 			
-			slice.addArgument(POI_CATALOG_OPT).setDefault("jar")
-				.help("Path to osm-doc catalog xml file. By default internal osm-doc.xml will be used.");
-			
-			slice.addArgument(EXCCLUDE_POI_BRANCH_OPT).nargs("*")
-				.help("Exclude branch of osm-doc features hierarchy. "
-					+ "Eg: osm-ru:transport where osm-ru is a name of the hierarchy, "
-					+ "and transport is a name of the branch");
-
-			slice.addArgument(NAMED_POI_BRANCH_OPT).nargs("*")
-				.help("Kepp POIS from this banch only if they have name tag");
-			
-			slice.addArgument(FEATURE_TYPES_VAL).help("Parse and slice axact feature(s) type.")
-				.choices(Slicer.sliceTypes).nargs("*").setDefault("all").setConst("all");
+			addSliceArguments(slice);
+		}
 
-			slice.addArgument("--drop").nargs("*")
-				.help("List of objects osm ids which will be dropped ex r60189.");
+		//split-slice
+		{
+			Command command = Command.SPLIT_SLICE;
+			splitSlice = subparsers.addParser(command.longName())
+					.setDefault(COMMAND, command)
+					.help(command.help());
 			
-			slice.addArgument(BOUNDARIES_FALLBACK_PARAM).nargs("?")
-				.help("Path to boundaries fallback file.");
+			splitSlice.addArgument("osm_file").required(true)
+				.help("Path to osm file. *.osm *.osm.bz2 *.osm.gz supported. Use - to read from STDIN");
 			
-			slice.addArgument(BOUNDARIES_FALLBACK_TYPES_PARAM).nargs("*")
-				.help("List of boundaries to keep in boundaries fallback file. Eg. boundary:2");
+			splitSlice.addArgument("compression").required(false).nargs("?").choices("none", "gzip", "bz2")
+				.setConst("none").setDefault("bz2")
+				.help("Use with \"osm_file -\" allow to read compressed stream from STDIN. "
+						+ "Set it explicitly before feature types.");
 			
-			slice.addArgument("--x10").setConst(Boolean.TRUE)
-				.setDefault(Boolean.FALSE).action(new StoreTrueArgumentAction())
-				.help("Slice ten times thinner stripes");
+			addSliceArguments(splitSlice);
 			
+			splitSlice.addArgument("--keep-split").setDefault(Boolean.FALSE)
+				.action(Arguments.storeTrue())
+				.help("Don't delete binary nodes, ways and relations files after slice. "
+						+ "They are needed to build apply-osc index.");
 		}
 
 		//join
@@ -494,6 +667,55 @@ public class Main {
 			
 			join.addArgument("--handlers").nargs("*");
 			
+			join.addArgument("--incremental").setDefault(Boolean.FALSE)
+				.action(Arguments.storeTrue())
+				.help("Join only stripes changed since previous incremental join. \n"
+						+ "Handlers outputs for other stripes will be reused.");
+			
+			join.addArgument("--out-queue").type(Integer.class).setDefault(0)
+				.help("Write handlers output in separate threads, \n"
+						+ "with queue of given size for every handler. \n"
+						+ "0 means write out directly from join threads.");
+			
+			join.addArgument("--strict-out-order").setDefault(Boolean.FALSE)
+				.action(Arguments.storeTrue())
+				.help("With --out-queue, keep output lines of every stripe together.");
+			
+			join.addArgument("--handlers-queue").type(Integer.class).setDefault(0)
+				.help("Run every handler in its own thread, \n"
+						+ "with queue of given size (in features) for every handler. \n"
+						+ "0 means call handlers one by one from join threads.");
+			
+		}
+
+		//apply-osc
+		{
+			Command command = Command.APPLY_OSC;
+			applyOsc = subparsers.addParser(command.longName())
+					.setDefault(COMMAND, command)
+					.help(command.help());
+			
+			applyOsc.addArgument("osc_files").nargs("+")
+				.help("Osm change files *.osc *.osc.gz, applied in given order.");
+			
+			applyOsc.addArgument(POI_CATALOG_OPT).setDefault("jar")
+				.help("Path to osm-doc catalog xml file. Use the same options as for slice.");
+			
+			applyOsc.addArgument(EXCCLUDE_POI_BRANCH_OPT).nargs("*")
+				.help("Exclude branch of osm-doc features hierarchy.");
+
+			applyOsc.addArgument(NAMED_POI_BRANCH_OPT).nargs("*")
+				.help("Kepp POIS from this banch only if they have name tag");
+			
+			applyOsc.addArgument(BOUNDARIES_FALLBACK_PARAM).nargs("?")
+				.help("Path to boundaries fallback file.");
+			
+			applyOsc.addArgument(BOUNDARIES_FALLBACK_TYPES_PARAM).nargs("*")
+				.help("List of boundaries to keep in boundaries fallback file. Eg. boundary:2");
+			
+			applyOsc.addArgument("--x10").setConst(Boolean.TRUE)
+				.setDefault(Boolean.FALSE).action(new StoreTrueArgumentAction())
+				.help("Stripes were sliced ten times thinner");
 		}
 
 		//update
@@ -516,7 +738,134 @@ public class Main {
 			diff.addArgument("--new").required(true);
 		}
 		
+		//bench-formatter
+		{
+			Command command = Command.BENCH_FORMATTER;
+			benchFormatter = subparsers.addParser(command.longName())
+					.setDefault(COMMAND, command)
+					.help(command.help());
+			
+			benchFormatter.addArgument("join_out")
+				.help("Join output in gazetteer json format, with address objects (fill_addresses=obj).");
+			
+			benchFormatter.addArgument(ADDR_FORMATTER_OPT)
+				.help("Path to *.groovy file with full addresses texts formatter.");
+
+			benchFormatter.addArgument(ADDR_ORDER_OPT).choices("HN_STREET_CITY", "STREET_HN_CITY", "CITY_STREET_HN").setDefault("HN_STREET_CITY")
+				.help("How to sort addr levels in full addr text");
+			
+			benchFormatter.addArgument("--limit").type(Integer.class).setDefault(100000)
+				.help("Max number of address rows.");
+			
+			benchFormatter.addArgument("--rounds").type(Integer.class).setDefault(5);
+		}
+		
+		//generate-osm
+		{
+			Command command = Command.GENERATE_OSM;
+			generateOsm = subparsers.addParser(command.longName())
+					.setDefault(COMMAND, command)
+					.help(command.help());
+			
+			generateOsm.addArgument("out_file")
+				.help("Path to osm file to write, *.osm or *.osm.gz");
+			
+			addGeneratorArguments(generateOsm);
+		}
+		
+		//bench-pipeline
+		{
+			Command command = Command.BENCH_PIPELINE;
+			benchPipeline = subparsers.addParser(command.longName())
+					.setDefault(COMMAND, command)
+					.help(command.help());
+			
+			benchPipeline.addArgument("--osm-file")
+				.help("Use existing osm file instead of synthetic one.");
+			
+			benchPipeline.addArgument("--handlers").nargs("*")
+				.help("Join handlers, as for join. By default gazetteer json is written into data dir.");
+			
+			benchPipeline.addArgument("--report").setDefault("-")
+				.help("Write json report into file. By default report is printed to stdout.");
+			
+			addGeneratorArguments(benchPipeline);
+		}
+		
 		return parser;
 	}
 
+	/**
+	 * Arguments of slice, shared by slice and split-slice
+	 * */
+	private static void addSliceArguments(Subparser subparser) {
+		subparser.addArgument(POI_CATALOG_OPT).setDefault("jar")
+			.help("Path to osm-doc catalog xml file. By default internal osm-doc.xml will be used.");
+		
+		subparser.addArgument(EXCCLUDE_POI_BRANCH_OPT).nargs("*")
+			.help("Exclude branch of osm-doc features hierarchy. "
+				+ "Eg: osm-ru:transport where osm-ru is a name of the hierarchy, "
+				+ "and transport is a name of the branch");
+
+		subparser.addArgument(NAMED_POI_BRANCH_OPT).nargs("*")
+			.help("Kepp POIS from this banch only if they have name tag");
+		
+		subparser.addArgument(FEATURE_TYPES_VAL).help("Parse and slice axact feature(s) type.")
+			.choices(Slicer.sliceTypes).nargs("*").setDefault("all").setConst("all");
+
+		subparser.addArgument("--drop").nargs("*")
+			.help("List of objects osm ids which will be dropped ex r60189.");
+		
+		subparser.addArgument(BOUNDARIES_FALLBACK_PARAM).nargs("?")
+			.help("Path to boundaries fallback file.");
+		
+		subparser.addArgument(BOUNDARIES_FALLBACK_TYPES_PARAM).nargs("*")
+			.help("List of boundaries to keep in boundaries fallback file. Eg. boundary:2");
+		
+		subparser.addArgument("--x10").setConst(Boolean.TRUE)
+			.setDefault(Boolean.FALSE).action(new StoreTrueArgumentAction())
+			.help("Slice ten times thinner stripes");
+		
+		subparser.addArgument("--checkpoints").setDefault(Boolean.FALSE)
+			.action(Arguments.storeTrue())
+			.help("Save builders state after each run over the data into " 
+					+ SliceCheckpoint.FOLDER + " subfolder of data dir.");
+		
+		subparser.addArgument("--resume").setDefault(Boolean.FALSE)
+			.action(Arguments.storeTrue())
+			.help("Resume failed slice from the last checkpoint. "
+					+ "Use it with the same slice arguments as for the failed run.");
+		
+		subparser.addArgument("--hilbert-sort").setDefault(Boolean.FALSE)
+			.action(Arguments.storeTrue())
+			.help("Sort features in stripes along Hilbert curve, "
+					+ "so spatially close features are written close to each other.");
+	}
+
+	private static void addGeneratorArguments(Subparser subparser) {
+		subparser.addArgument("--seed").type(Long.class).setDefault(1L)
+			.help("Random seed, the same seed and counts give the same osm file.");
+		
+		subparser.addArgument("--regions").type(Integer.class).setDefault(4)
+			.help("Number of regions (admin_level=4), one degree each.");
+		
+		subparser.addArgument("--districts").type(Integer.class).setDefault(4)
+			.help("Number of districts (admin_level=6) along one side of region. Every district has a town.");
+		
+		subparser.addArgument("--streets").type(Integer.class).setDefault(12)
+			.help("Number of streets along one side of town streets grid.");
+		
+		subparser.addArgument("--buildings").type(Integer.class).setDefault(6)
+			.help("Addressed buildings per block.");
+		
+		subparser.addArgument("--addr-nodes").type(Integer.class).setDefault(2)
+			.help("Address nodes per block.");
+		
+		subparser.addArgument("--interpolations").type(Integer.class).setDefault(1)
+			.help("Interpolation lines per block.");
+		
+		subparser.addArgument("--pois").type(Integer.class).setDefault(2)
+			.help("POIs per block.");
+	}
+
 }
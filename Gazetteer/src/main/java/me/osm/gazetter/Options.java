@@ -6,6 +6,7 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -25,9 +26,12 @@ import me.osm.gazetter.addresses.sorters.CityStreetHNComparator;
 import me.osm.gazetter.addresses.sorters.HNStreetCityComparator;
 import me.osm.gazetter.addresses.sorters.StreetHNCityComparator;
 import me.osm.gazetter.join.out_handlers.GazetteerOutWriter;
+import me.osm.gazetter.join.out_handlers.HandlersFanOut;
 import me.osm.gazetter.join.out_handlers.JoinOutHandler;
 import me.osm.gazetter.join.out_handlers.PrintJoinOutHandler;
+import me.osm.gazetter.join.out_handlers.SingleWriterJOHBase;
 import me.osm.gazetter.out.CSVOutWriter;
+import me.osm.gazetter.utils.GroovyScripts;
 
 import org.apache.commons.lang3.StringUtils;
 
@@ -57,41 +61,89 @@ public class Options {
 	private static volatile Options instance;
 	private final AddrLevelsSorting sorting;
 	private final AddressesParser addressesParser;
+	
+	/**
+	 * Parsers created from user provided groovy script, 
+	 * one instance per thread.
+	 * */
+	private final ThreadLocal<AddressesParser> threadAddressesParsers;
 	private final NamesMatcher namesMatcher;
 	private boolean findLangsLevel;
+
+	/**
+	 * Path to addresses parser groovy script or null
+	 * */
+	private final String addrFormatter;
+	private final Set<String> skippInFullText;
 	private int nThreads = Runtime.getRuntime().availableProcessors();
 	private boolean compress = true;
 	private List<JoinOutHandler> joinHandlers = new ArrayList<>();
+	private List<String> joinHandlersDefinition = new ArrayList<>();
+	private HandlersFanOut handlersFanOut;
 
 	private Options() {
 		sorting = AddrLevelsSorting.HN_STREET_CITY;
 		addressesParser = new AddressesParserImpl();
+		threadAddressesParsers = null;
 		namesMatcher = new NamesMatcherImpl();
 		this.findLangsLevel = false;
+		this.addrFormatter = null;
+		this.skippInFullText = Collections.emptySet();
 	}
 
 	private Options(AddrLevelsSorting sorting, AddressesParser addressesParser, 
-			NamesMatcher namesMatcher, boolean findLangs) {
+			ThreadLocal<AddressesParser> threadAddressesParsers,
+			NamesMatcher namesMatcher, boolean findLangs, 
+			String addrFormatter, Set<String> skippInFullText) {
 		
 		this.sorting = sorting;
 		this.addressesParser = addressesParser;
+		this.threadAddressesParsers = threadAddressesParsers;
 		this.namesMatcher = namesMatcher;
 		this.findLangsLevel = findLangs;
+		this.addrFormatter = addrFormatter;
+		this.skippInFullText = skippInFullText == null 
+				? Collections.<String>emptySet() : skippInFullText;
 	}
 
 	public static void initialize(AddrLevelsSorting sorting, String groovyFormatter, 
-			Set<String> skippInFullText, boolean findLangs) {
+			final Set<String> skippInFullText, final boolean findLangs) {
 		
 		if(instance != null) {
 			throw new SecondaryOptionsInitializationException();
 		}
 		
-		AddressesParser adrParser = getAddrParser(groovyFormatter, sorting, skippInFullText, findLangs);
+		AddressesParser adrParser = null;
+		ThreadLocal<AddressesParser> threadParsers = null;
 		
-		instance = new Options(sorting, adrParser, new NamesMatcherImpl(), findLangs);
+		if(!StringUtils.isEmpty(groovyFormatter)) {
+			final Class<?> clazz = GroovyScripts.parseClassStatic(new File(groovyFormatter));
+			final AddrLevelsSorting s = sorting;
+			
+			adrParser = getAddrParser(clazz, sorting, skippInFullText, findLangs);
+			
+			threadParsers = new ThreadLocal<AddressesParser>() {
+				@Override
+				protected AddressesParser initialValue() {
+					return getAddrParser(clazz, s, skippInFullText, findLangs);
+				}
+			};
+			threadParsers.set(adrParser);
+		}
+		else {
+			adrParser = getAddrParser(null, sorting, skippInFullText, findLangs);
+		}
+		
+		instance = new Options(sorting, adrParser, threadParsers, new NamesMatcherImpl(), findLangs,
+				StringUtils.isEmpty(groovyFormatter) ? null : groovyFormatter, skippInFullText);
 	}
 
-	private static AddressesParser getAddrParser(String groovyFormatter, AddrLevelsSorting sorting, 
+	/**
+	 * Creates addresses parser
+	 * 
+	 * @param groovyFormatter class compiled from user provided script or null
+	 * */
+	public static AddressesParser getAddrParser(Class<?> groovyFormatter, AddrLevelsSorting sorting, 
 			Set<String> skippInFullText, boolean findLangs) {
 		
 		AddressesParser adrParser = null;
@@ -109,33 +161,25 @@ public class Options {
 				addrLevelComparator = new StreetHNCityComparator();
 			}
 
-			if(!StringUtils.isEmpty(groovyFormatter)) {
-				GroovyClassLoader gcl = new GroovyClassLoader(Options.class.getClassLoader());
-				try
-				{
-					Class<?> clazz = gcl.parseClass(new File(groovyFormatter));
-					Object aScript = clazz.newInstance();
+			if(groovyFormatter != null) {
+				Object aScript = groovyFormatter.newInstance();
+				
+				if(aScript instanceof AddressesParserFactory) {
 					
-					if(aScript instanceof AddressesParserFactory) {
-						
-						AddressesParserFactory factory = (AddressesParserFactory) aScript;
-						
-						adrParser = factory.newAddressesParser(
-								new AddressesSchemesParserImpl(),
-								addrLevelComparator, 
-								new NamesMatcherImpl(),
-								Arrays.asList("place:hamlet", "place:village", "place:town", "place:city", "boundary:8"), 
-								new AddrTextFormatterImpl(), 
-								sorting, 
-								skippInFullText,
-								findLangs);
-					}
-					else if(aScript instanceof AddressesParser) {
-						adrParser = (AddressesParser) aScript;
-					}
+					AddressesParserFactory factory = (AddressesParserFactory) aScript;
+					
+					adrParser = factory.newAddressesParser(
+							new AddressesSchemesParserImpl(),
+							addrLevelComparator, 
+							new NamesMatcherImpl(),
+							Arrays.asList("place:hamlet", "place:village", "place:town", "place:city", "boundary:8"), 
+							new AddrTextFormatterImpl(), 
+							sorting, 
+							skippInFullText,
+							findLangs);
 				}
-				finally {
-					gcl.close();
+				else if(aScript instanceof AddressesParser) {
+					adrParser = (AddressesParser) aScript;
 				}
 			}
 			else {
@@ -174,7 +218,16 @@ public class Options {
 		return sorting;
 	}
 
+	/**
+	 * Returns addresses parser for current thread.
+	 * <p>
+	 * Parsers from groovy scripts aren't shared between threads,
+	 * so don't keep it in objects created in other threads.
+	 * */
 	public AddressesParser getAddressesParser() {
+		if(threadAddressesParsers != null) {
+			return threadAddressesParsers.get();
+		}
 		return addressesParser;
 	}
 
@@ -186,6 +239,17 @@ public class Options {
 		return findLangsLevel;
 	}
 
+	/**
+	 * @return path to addresses parser groovy script or null
+	 * */
+	public String getAddrFormatter() {
+		return addrFormatter;
+	}
+
+	public Set<String> getSkippInFullText() {
+		return skippInFullText;
+	}
+
 	public int getNumberOfThreads () {
 		return this.nThreads;
 	}
@@ -203,6 +267,10 @@ public class Options {
 	}
 
 	public void setJoinHandlers(List<String> handlers) {
+		if(handlers != null) {
+			joinHandlersDefinition = new ArrayList<>(handlers);
+		}
+		
 		try {
 			if (handlers != null && !handlers.isEmpty()) {
 				
@@ -252,9 +320,54 @@ public class Options {
 			joinHandlers.add(predefinedJoinOutHandlers.get(
 					GazetteerOutWriter.NAME).newInstance(new ArrayList<String>()));
 		}
+		
+		handlersFanOut = new HandlersFanOut(joinHandlers);
 	}
 	
 	public Collection<JoinOutHandler> getJoinOutHandlers() {
 		return joinHandlers;
 	}
+	
+	/**
+	 * Join handlers, features should be passed to them through this fan out.
+	 * */
+	public HandlersFanOut getHandlersFanOut() {
+		if(handlersFanOut == null) {
+			handlersFanOut = new HandlersFanOut(joinHandlers);
+		}
+		return handlersFanOut;
+	}
+	
+	/**
+	 * Run every join handler in its own thread.
+	 * 
+	 * @param queueSize size of features queue for every handler
+	 * */
+	public void setParallelHandlers(int queueSize) {
+		getHandlersFanOut().setParallel(queueSize);
+	}
+
+	/**
+	 * Write join handlers output in separate threads.
+	 * 
+	 * Supported only for handlers based on SingleWriterJOHBase,
+	 * others will be called from join threads as usual.
+	 * 
+	 * @param queueSize size of lines queue for every handler
+	 * @param strictOrder keep lines of one stripe together
+	 * */
+	public void setAsyncOutput(int queueSize, boolean strictOrder) {
+		for(JoinOutHandler h : joinHandlers) {
+			if(h instanceof SingleWriterJOHBase) {
+				((SingleWriterJOHBase) h).setAsync(queueSize, strictOrder);
+			}
+		}
+	}
+
+	/**
+	 * Join handlers as they were given in command line
+	 * */
+	public List<String> getJoinHandlersDefinition() {
+		return joinHandlersDefinition;
+	}
 }
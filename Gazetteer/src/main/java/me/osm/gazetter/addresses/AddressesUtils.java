@@ -5,6 +5,7 @@ import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 
+import org.apache.commons.lang3.StringUtils;
 import org.apache.lucene.analysis.miscellaneous.ASCIIFoldingFilter;
 import org.json.JSONObject;
 
@@ -22,6 +23,13 @@ public class AddressesUtils {
 		return String.copyValueOf(out, 0, outLength);
 	}
 	
+	/**
+	 * Lowercased, ascii folded name, null safe.
+	 * */
+	public static String normalizeName(String name) {
+		return foldASCII(StringUtils.stripToEmpty(name).toLowerCase());
+	}
+	
 	public static Map<String, String> filterNameTags(JSONObject obj) {
 		
 		Map<String, String> result = new HashMap<String, String>();
@@ -0,0 +1,42 @@
+package me.osm.gazetter.addresses;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.json.JSONObject;
+
+/**
+ * Boundaries of address point, grouped by address levels.
+ * */
+public final class BoundariesSet {
+
+	private final Map<String, JSONObject> level2Boundary;
+	private final List<BoundaryDescriptor> levels;
+	private final int boundariesHash;
+
+	public BoundariesSet(Map<String, JSONObject> level2Boundary,
+			List<BoundaryDescriptor> levels, int boundariesHash) {
+		this.level2Boundary = Collections.unmodifiableMap(level2Boundary);
+		this.levels = Collections.unmodifiableList(levels);
+		this.boundariesHash = boundariesHash;
+	}
+
+	/**
+	 * Read only map address level -> boundary
+	 * */
+	public Map<String, JSONObject> getLevel2Boundary() {
+		return level2Boundary;
+	}
+
+	/**
+	 * Descriptors of boundaries with address level, in original order
+	 * */
+	public List<BoundaryDescriptor> getLevels() {
+		return levels;
+	}
+
+	public int getBoundariesHash() {
+		return boundariesHash;
+	}
+}
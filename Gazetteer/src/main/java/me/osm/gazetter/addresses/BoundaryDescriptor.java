@@ -0,0 +1,80 @@
+package me.osm.gazetter.addresses;
+
+import static me.osm.gazetter.addresses.AddressesLevelsMatcher.ADDR_LVL;
+import static me.osm.gazetter.addresses.AddressesLevelsMatcher.ADDR_LVL_SIZE;
+import static me.osm.gazetter.addresses.AddressesLevelsMatcher.ADDR_NAME;
+import static me.osm.gazetter.addresses.AddressesLevelsMatcher.ADDR_NAMES;
+
+import java.util.Map;
+import java.util.Set;
+
+import org.json.JSONObject;
+
+/**
+ * Address level and names of boundary.
+ * */
+public final class BoundaryDescriptor {
+
+	private final String id;
+	private final String addrLevel;
+	private final int lvlSize;
+	private final Map<String, String> nameTags;
+	private final Set<String> langs;
+
+	public BoundaryDescriptor(String id, String addrLevel, int lvlSize,
+			Map<String, String> nameTags, Set<String> langs) {
+		this.id = id;
+		this.addrLevel = addrLevel;
+		this.lvlSize = lvlSize;
+		this.nameTags = nameTags;
+		this.langs = langs;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	/**
+	 * @return address level or null
+	 * */
+	public String getAddrLevel() {
+		return addrLevel;
+	}
+
+	public int getLvlSize() {
+		return lvlSize;
+	}
+
+	/**
+	 * Read only name tags
+	 * */
+	public Map<String, String> getNameTags() {
+		return nameTags;
+	}
+
+	public String getName() {
+		return nameTags.get(ADDR_NAME);
+	}
+
+	/**
+	 * Languages of names translations, found in keys of {@link #getNameTags()}
+	 * */
+	public Set<String> getLangs() {
+		return langs;
+	}
+
+	/**
+	 * Returns new address part for this boundary.
+	 * */
+	public JSONObject asAddrLevel() {
+		JSONObject addrLVL = new JSONObject();
+
+		addrLVL.put("lnk", id);
+		addrLVL.put(ADDR_LVL, addrLevel);
+		addrLVL.put(ADDR_LVL_SIZE, lvlSize);
+		addrLVL.put(ADDR_NAME, getName());
+		addrLVL.put(ADDR_NAMES, new JSONObject(nameTags));
+
+		return addrLVL;
+	}
+}
@@ -0,0 +1,75 @@
+package me.osm.gazetter.addresses;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import me.osm.gazetter.join.util.BoundariesCache;
+
+import org.json.JSONObject;
+
+/**
+ * Names of feature, prepared for matching.
+ * <p>
+ * Built once per feature and used for matching against
+ * many addresses, see {@link PreparedNamesMatcher}.
+ * */
+public class NamesSet {
+
+	private final Map<String, String> nameTags;
+	private final Set<String> values;
+	private final String name;
+	private String normalizedName;
+
+	public NamesSet(Map<String, String> nameTags) {
+		this.nameTags = nameTags;
+		this.values = new HashSet<String>(nameTags.values());
+		this.name = nameTags.get("name");
+	}
+
+	/**
+	 * Returns names of feature, memoized inside join of stripe
+	 * (see {@link BoundariesCache.StripeMemo}).
+	 * */
+	public static NamesSet of(JSONObject obj) {
+		return BoundariesCache.namesSet(obj);
+	}
+
+	/**
+	 * Does any of names equals to given one
+	 * */
+	public boolean contains(String s) {
+		return values.contains(s);
+	}
+
+	/**
+	 * Name tags, names set was built from.
+	 * */
+	public Map<String, String> getNameTags() {
+		return Collections.unmodifiableMap(nameTags);
+	}
+
+	public Collection<String> getValues() {
+		return Collections.unmodifiableSet(values);
+	}
+
+	/**
+	 * @return value of name tag or null
+	 * */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Lowercased, ascii folded value of name tag.
+	 * */
+	public String getNormalizedName() {
+		if(normalizedName == null) {
+			normalizedName = AddressesUtils.normalizeName(name);
+		}
+		return normalizedName;
+	}
+
+}
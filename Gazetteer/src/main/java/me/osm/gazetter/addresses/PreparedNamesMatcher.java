@@ -0,0 +1,33 @@
+package me.osm.gazetter.addresses;
+
+import java.util.Map;
+
+/**
+ * Names matching with names prepared once per feature
+ * (see {@link NamesSet}).
+ * <p>
+ * Optional, {@link NamesMatcher} implementations which
+ * doesn't implement it are wrapped with
+ * {@link me.osm.gazetter.addresses.impl.PreparedNamesMatcherAdapter}
+ * */
+public interface PreparedNamesMatcher extends NamesMatcher {
+
+	/**
+	 * Same as {@link #isPlaceNameMatch(String, Map)} 
+	 * but with prepared names.
+	 * */
+	public boolean isPlaceNameMatch(String name, NamesSet names);
+
+	/**
+	 * Same as {@link #isStreetNameMatch(String, Map)} 
+	 * but with prepared names.
+	 * */
+	public boolean isStreetNameMatch(String street, NamesSet names);
+	
+	/**
+	 * Same as {@link #doesStreetsMatch(Map, Map)} 
+	 * but with prepared names.
+	 * */
+	public boolean doesStreetsMatch(NamesSet o1names, NamesSet o2names);
+
+}
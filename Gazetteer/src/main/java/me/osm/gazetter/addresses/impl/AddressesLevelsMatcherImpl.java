@@ -3,6 +3,7 @@ package me.osm.gazetter.addresses.impl;
 import gnu.trove.set.TLongSet;
 import gnu.trove.set.hash.TLongHashSet;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -10,6 +11,9 @@ import me.osm.gazetter.addresses.AddrLevelsComparator;
 import me.osm.gazetter.addresses.AddressesLevelsMatcher;
 import me.osm.gazetter.addresses.AddressesUtils;
 import me.osm.gazetter.addresses.NamesMatcher;
+import me.osm.gazetter.addresses.NamesSet;
+import me.osm.gazetter.addresses.PreparedNamesMatcher;
+import me.osm.gazetter.join.util.BoundariesCache;
 
 import org.apache.commons.lang3.StringUtils;
 import org.json.JSONArray;
@@ -40,6 +44,13 @@ public class AddressesLevelsMatcherImpl implements AddressesLevelsMatcher {
 	protected boolean FORSE_ADDR_CITY_MATCH;
 	protected List<String> placeBoundaries;
 	
+	/**
+	 * Names matcher, which accepts names prepared once per feature.
+	 * */
+	protected PreparedNamesMatcher preparedMatcher() {
+		return PreparedNamesMatcherAdapter.of(namesMatcher);
+	}
+	
 	@Override
 	public JSONObject hnAsJSON(JSONObject addrPoint, JSONObject addrRow) {
 		JSONObject hnAddrPart = new JSONObject();
@@ -83,7 +94,7 @@ public class AddressesLevelsMatcherImpl implements AddressesLevelsMatcher {
 						
 						JSONObject streetAddrPart = new JSONObject();
 						
-						Map<String, String> nameTags = AddressesUtils.filterNameTags(ls);
+						Map<String, String> nameTags = new HashMap<>(BoundariesCache.nameTags(ls));
 						nameTags.putAll(AddressesUtils.filterNameTags(associatedStreet));
 						
 						if(nameTags.get("name") != null) {
@@ -116,7 +127,7 @@ public class AddressesLevelsMatcherImpl implements AddressesLevelsMatcher {
 
 		if(nearbyStreets != null) {
 			for(JSONObject ls : nearbyStreets) {
-				if(namesMatcher.isStreetNameMatch(street, AddressesUtils.filterNameTags(ls))) {
+				if(preparedMatcher().isStreetNameMatch(street, NamesSet.of(ls))) {
 					matchedStreet = ls;
 					break;
 				}
@@ -129,7 +140,7 @@ public class AddressesLevelsMatcherImpl implements AddressesLevelsMatcher {
 		streetAddrPart.put(ADDR_LVL_SIZE, lelvelsComparator.getLVLSize("street"));
 		
 		if(matchedStreet != null) {
-			streetAddrPart.put(ADDR_NAMES, new JSONObject(AddressesUtils.filterNameTags(matchedStreet)));
+			streetAddrPart.put(ADDR_NAMES, new JSONObject(BoundariesCache.nameTags(matchedStreet)));
 			streetAddrPart.put("lnk", matchedStreet.optString("id"));
 			streetAddrPart.put("strtUID", getStreetUUID(matchedStreet, boundariesHash));
 		}
@@ -173,13 +184,13 @@ public class AddressesLevelsMatcherImpl implements AddressesLevelsMatcher {
 				obj = level2Boundary.get("place:quarter");
 			}
 			
-			if(obj == null || !namesMatcher.isPlaceNameMatch(name, AddressesUtils.filterNameTags(obj))) {
+			if(obj == null || !preparedMatcher().isPlaceNameMatch(name, NamesSet.of(obj))) {
 				obj = level2Boundary.get("place:neighbour");
 			}
 			
 			if(obj != null) {
 				quarterJSON.put("lnk", obj.getString("id"));
-				quarterJSON.put(ADDR_NAMES, AddressesUtils.filterNameTags(obj));
+				quarterJSON.put(ADDR_NAMES, new JSONObject(BoundariesCache.nameTags(obj)));
 			}
 			
 			return quarterJSON;
@@ -228,10 +239,10 @@ public class AddressesLevelsMatcherImpl implements AddressesLevelsMatcher {
 		//but only if we have addr:city tag
 		if(obj == null && tagCityName != null && nearestPlace != null) {
 			
-			Map<String, String> nearestPlaceTags = AddressesUtils.filterNameTags(nearestPlace);
+			Map<String, String> nearestPlaceTags = BoundariesCache.nameTags(nearestPlace);
 			
 			if(lelvelsComparator.supports(nearestPlaceLvl) && 
-					namesMatcher.isPlaceNameMatch(tagCityName, nearestPlaceTags)) {
+					preparedMatcher().isPlaceNameMatch(tagCityName, NamesSet.of(nearestPlace))) {
 				
 				obj = nearestPlace;
 				lvl = nearestPlaceLvl;
@@ -259,7 +270,7 @@ public class AddressesLevelsMatcherImpl implements AddressesLevelsMatcher {
 			cityJSON.put(ADDR_NAME, name);
 			cityJSON.put(ADDR_LVL, lvl);
 			cityJSON.put("lnk", obj.getString("id"));
-			cityJSON.put(ADDR_NAMES, AddressesUtils.filterNameTags(obj));
+			cityJSON.put(ADDR_NAMES, new JSONObject(BoundariesCache.nameTags(obj)));
 			cityJSON.put(ADDR_LVL_SIZE, lelvelsComparator.getLVLSize(lvl));
 		}
 		
@@ -273,10 +284,10 @@ public class AddressesLevelsMatcherImpl implements AddressesLevelsMatcher {
 	private Cortage checkPlace(String tagCityName, JSONObject place) {
 		
 		if(place != null) {
-			Map<String, String> hamletNameTags = AddressesUtils.filterNameTags(place);
+			Map<String, String> hamletNameTags = BoundariesCache.nameTags(place);
 			
 			if(tagCityName != null && FORSE_ADDR_CITY_MATCH) {
-				if(namesMatcher.isPlaceNameMatch(tagCityName, hamletNameTags)) {
+				if(preparedMatcher().isPlaceNameMatch(tagCityName, NamesSet.of(place))) {
 					Cortage r = new Cortage();
 					
 					r.obj = place;
@@ -24,10 +24,14 @@ import me.osm.gazetter.addresses.AddressesLevelsMatcher;
 import me.osm.gazetter.addresses.AddressesParser;
 import me.osm.gazetter.addresses.AddressesSchemesParser;
 import me.osm.gazetter.addresses.AddressesUtils;
+import me.osm.gazetter.addresses.BoundariesSet;
+import me.osm.gazetter.addresses.BoundaryDescriptor;
 import me.osm.gazetter.addresses.Constants;
 import me.osm.gazetter.addresses.sorters.CityStreetHNComparator;
 import me.osm.gazetter.addresses.sorters.HNStreetCityComparator;
 import me.osm.gazetter.addresses.sorters.StreetHNCityComparator;
+import me.osm.gazetter.join.util.BoundariesCache;
+import me.osm.gazetter.join.util.BoundariesCache.StripeMemo;
 
 import org.apache.commons.lang3.StringUtils;
 import org.json.JSONArray;
@@ -123,13 +127,11 @@ public class AddressesParserImpl implements AddressesParser {
 			List<JSONObject> nearbyStreets, JSONObject nearestPlace, 
 			JSONObject nearestNeighbour, JSONObject associatedStreet) {
 		
-		Map<String, JSONObject> level2Boundary = new HashMap<String, JSONObject>();
-		for(JSONObject b : boundaries) {
-			String addrLevel = getAddrLevel(b);
-			if(addrLevel != null) {
-				level2Boundary.put(addrLevel, b);
-			}
-		}
+		BoundariesSet boundariesSet = getBoundariesSet(boundaries);
+		Map<String, JSONObject> level2Boundary = boundariesSet.getLevel2Boundary();
+		
+		BoundaryDescriptor nearestPlaceDescriptor = getDescriptor(nearestPlace);
+		String nearestPlaceLevel = nearestPlaceDescriptor == null ? null : nearestPlaceDescriptor.getAddrLevel();
 		
 		JSONArray result = new JSONArray();
 		
@@ -148,7 +150,7 @@ public class AddressesParserImpl implements AddressesParser {
 			addrJsonRow.add(levelsMatcher.hnAsJSON(addrPoint, addrRow));
 			
 			JSONObject streetAsJSON = levelsMatcher.streetAsJSON(
-					addrPoint, addrRow, associatedStreet, nearbyStreets, hashBoundaries(boundaries));
+					addrPoint, addrRow, associatedStreet, nearbyStreets, boundariesSet.getBoundariesHash());
 			
 			if(streetAsJSON != null) {
 				addrJsonRow.add(streetAsJSON);
@@ -164,7 +166,7 @@ public class AddressesParserImpl implements AddressesParser {
 			}
 
 			JSONObject cityJSON = levelsMatcher.cityAsJSON(addrPoint, addrRow, level2Boundary, 
-					nearestPlace, getAddrLevel(nearestPlace));
+					nearestPlace, nearestPlaceLevel);
 			
 			if(cityJSON != null) {
 				addrJsonRow.add(cityJSON);
@@ -174,34 +176,19 @@ public class AddressesParserImpl implements AddressesParser {
 				}
 			}
 			
-			for(JSONObject bndry : boundaries) {
-				String addrLevel = getAddrLevel(bndry); 
+			for(BoundaryDescriptor bndry : boundariesSet.getLevels()) {
 				
-				if(addrLevel != null) {
-					
-					Map<String, String> nTags = AddressesUtils.filterNameTags(bndry);
-					
-					//skip unnamed
-					if(!nTags.containsKey(AddressesLevelsMatcher.ADDR_NAME)) {
-						continue;
-					}
+				//skip unnamed
+				if(!bndry.getNameTags().containsKey(AddressesLevelsMatcher.ADDR_NAME)) {
+					continue;
+				}
 
-					//already added
-					if(matchedBoundaries.contains(bndry.getString("id"))) {
-						continue;
-					}
-					JSONObject addrLVL = new JSONObject();
-					addrLVL.put("lnk", bndry.getString("id"));
-					
-					
-					addrLVL.put(ADDR_LVL, addrLevel);
-					addrLVL.put(ADDR_LVL_SIZE, addrLevelComparator.getLVLSize(addrLevel));
-					addrLVL.put(ADDR_NAME, nTags.get(ADDR_NAME));
-					addrLVL.put(ADDR_NAMES, new JSONObject(nTags));
-					
-					addrJsonRow.add(addrLVL);
+				//already added
+				if(matchedBoundaries.contains(bndry.getId())) {
+					continue;
 				}
 				
+				addrJsonRow.add(bndry.asAddrLevel());
 			}
 			
 			result.put(createAddressRow(properties, addrRow, addrJsonRow));
@@ -210,6 +197,15 @@ public class AddressesParserImpl implements AddressesParser {
 		return result;
 	}
 
+	/**
+	 * Format address row from already matched levels,
+	 * used to benchmark formatting.
+	 * */
+	public final JSONObject formatAddressRow(JSONObject properties,
+			JSONObject addrRow, List<JSONObject> addrJsonRow) {
+		return createAddressRow(properties, addrRow, addrJsonRow);
+	}
+
 	protected JSONObject createAddressRow(JSONObject properties,
 			JSONObject addrRow, List<JSONObject> addrJsonRow) {
 		
@@ -269,7 +265,7 @@ public class AddressesParserImpl implements AddressesParser {
 						return Collections.emptySet();
 					}
 					
-					Set<String> langs = getLangsFromTags(names.keySet());
+					Set<String> langs = getLvlLangs(lvl, names);
 					
 					Iterator<String> it = result.iterator();
 					while (it.hasNext()) {
@@ -289,6 +285,26 @@ public class AddressesParserImpl implements AddressesParser {
 		return result;
 	}
 
+	/**
+	 * Languages of address level names, for boundaries
+	 * they are taken from descriptors, if descriptor
+	 * was built from the same name keys.
+	 * */
+	@SuppressWarnings("unchecked")
+	private Set<String> getLvlLangs(JSONObject lvl, JSONObject names) {
+		StripeMemo memo = BoundariesCache.getStripeMemo(this);
+		String lnk = lvl.optString("lnk", null);
+		
+		if(memo != null && lnk != null) {
+			BoundaryDescriptor descriptor = memo.getDescriptor(lnk);
+			if(descriptor != null && descriptor.getNameTags().keySet().equals(names.keySet())) {
+				return descriptor.getLangs();
+			}
+		}
+		
+		return getLangsFromTags(names.keySet());
+	}
+
 	protected Set<String> getLangsFromTags(Set<String> keySet) {
 		Set<String> result = new HashSet<>();
 		for(String key : keySet) {
@@ -396,25 +412,10 @@ public class AddressesParserImpl implements AddressesParser {
 	public JSONObject boundariesAsArray(JSONObject subj, List<JSONObject> input) {
 		List<JSONObject> result = new ArrayList<>();
 		
-		for(JSONObject bndry : input) {
-			String addrLevel = getAddrLevel(bndry); 
-			if(addrLevel != null) {
-				
-				JSONObject addrLVL = new JSONObject();
-				addrLVL.put("lnk", bndry.getString("id"));
-				
-				Map<String, String> nTags = AddressesUtils.filterNameTags(bndry);
-				
-				if(!nTags.containsKey(ADDR_NAME)) {
-					continue;
-				}
-				
-				addrLVL.put(ADDR_LVL, addrLevel);
-				addrLVL.put(ADDR_LVL_SIZE, addrLevelComparator.getLVLSize(addrLevel));
-				addrLVL.put(ADDR_NAME, nTags.get(ADDR_NAME));
-				addrLVL.put(ADDR_NAMES, new JSONObject(nTags));
-				
-				result.add(addrLVL);
+		BoundariesSet boundariesSet = getBoundariesSet(input);
+		for(BoundaryDescriptor bndry : boundariesSet.getLevels()) {
+			if(bndry.getNameTags().containsKey(ADDR_NAME)) {
+				result.add(bndry.asAddrLevel());
 			}
 		}
 		
@@ -439,11 +440,82 @@ public class AddressesParserImpl implements AddressesParser {
 		}
 		JSONObject fullAddressRow = createBoundaryAddrRow(result, subj);
 		
-		fullAddressRow.put("boundariesHash", hashBoundaries(input));
+		fullAddressRow.put("boundariesHash", boundariesSet.getBoundariesHash());
 		
 		return fullAddressRow;
 	}
 	
+	/**
+	 * Returns boundaries grouped by address levels.
+	 * <p>
+	 * Inside the join of stripe it's computed once per distinct boundaries list.
+	 * */
+	protected BoundariesSet getBoundariesSet(List<JSONObject> boundaries) {
+		StripeMemo memo = BoundariesCache.getStripeMemo(this);
+		
+		if(memo != null) {
+			BoundariesSet set = memo.getBoundariesSet(boundaries);
+			if(set == null) {
+				set = createBoundariesSet(boundaries);
+				memo.putBoundariesSet(boundaries, set);
+			}
+			return set;
+		}
+		
+		return createBoundariesSet(boundaries);
+	}
+
+	protected BoundariesSet createBoundariesSet(List<JSONObject> boundaries) {
+		Map<String, JSONObject> level2Boundary = new HashMap<String, JSONObject>();
+		List<BoundaryDescriptor> levels = new ArrayList<>();
+		
+		for(JSONObject b : boundaries) {
+			BoundaryDescriptor descriptor = getDescriptor(b);
+			if(descriptor.getAddrLevel() != null) {
+				level2Boundary.put(descriptor.getAddrLevel(), b);
+				levels.add(descriptor);
+			}
+		}
+		
+		return new BoundariesSet(level2Boundary, levels, hashBoundaries(boundaries));
+	}
+
+	/**
+	 * Returns address level, name tags and languages of boundary.
+	 * <p>
+	 * Inside the join of stripe it's computed once per boundary.
+	 * */
+	public BoundaryDescriptor getDescriptor(JSONObject obj) {
+		if(obj == null) {
+			return null;
+		}
+		
+		StripeMemo memo = BoundariesCache.getStripeMemo(this);
+		
+		if(memo != null) {
+			BoundaryDescriptor descriptor = memo.getDescriptor(obj);
+			if(descriptor == null) {
+				descriptor = createDescriptor(obj);
+				memo.putDescriptor(obj, descriptor);
+			}
+			return descriptor;
+		}
+		
+		return createDescriptor(obj);
+	}
+
+	protected BoundaryDescriptor createDescriptor(JSONObject obj) {
+		String addrLevel = getAddrLevel(obj);
+		int lvlSize = addrLevel == null ? 0 : addrLevelComparator.getLVLSize(addrLevel);
+		
+		Map<String, String> nameTags = BoundariesCache.nameTags(obj);
+		
+		Set<String> langs = findLangs ? 
+				getLangsFromTags(nameTags.keySet()) : Collections.<String>emptySet();
+		
+		return new BoundaryDescriptor(obj.optString("id", null), addrLevel, lvlSize, nameTags, langs);
+	}
+	
 	public int hashBoundaries(List<JSONObject> input) {
 		
 		if(input != null) {
@@ -451,7 +523,7 @@ public class AddressesParserImpl implements AddressesParser {
 			StringBuilder hashString = new StringBuilder();
 			
 			for(JSONObject bndry : input) {
-				String addrLevel = getAddrLevel(bndry); 
+				String addrLevel = getDescriptor(bndry).getAddrLevel(); 
 				if(addrLevel != null && hashedBoundariesLelvels.contains(addrLevel)) {
 					hashString.append(bndry.getString("id"));
 				}
@@ -0,0 +1,142 @@
+package me.osm.gazetter.addresses.impl;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import gnu.trove.set.hash.TLongHashSet;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Trigrams index of normalized streets names.
+ * <p>
+ * Finds names which are matched by
+ * {@link NamesMatcherImpl#doesNormalizedStreetsMatch(String, String)}
+ * (one of names contains another) without comparison with every indexed name.
+ * <p>
+ * If one name contains another, all trigrams of the shorter one
+ * are in the longer one. So only names, which shares all their trigrams
+ * with query, or contains all trigrams of query, are checked.
+ * <p>
+ * Not thread safe.
+ * */
+public class NamesContainmentIndex {
+
+	private final List<String> names = new ArrayList<>();
+	private final TIntArrayList trigramsCount = new TIntArrayList();
+	private final TLongObjectHashMap<TIntArrayList> postings = new TLongObjectHashMap<>();
+
+	/**
+	 * Names without trigrams, they are checked for every query
+	 * */
+	private final TIntArrayList shortNames = new TIntArrayList();
+
+	private int[] counters = new int[0];
+
+	/**
+	 * Add normalized name into index
+	 *
+	 * @return id of the name
+	 * */
+	public int add(String name) {
+		int id = names.size();
+		names.add(name);
+
+		TLongHashSet trigrams = trigrams(name);
+		trigramsCount.add(trigrams.size());
+
+		if(trigrams.isEmpty()) {
+			shortNames.add(id);
+		}
+
+		for(long t : trigrams.toArray()) {
+			TIntArrayList list = postings.get(t);
+			if(list == null) {
+				list = new TIntArrayList(4);
+				postings.put(t, list);
+			}
+			list.add(id);
+		}
+
+		return id;
+	}
+
+	public String getName(int id) {
+		return names.get(id);
+	}
+
+	public int size() {
+		return names.size();
+	}
+
+	/**
+	 * Returns ids of indexed names, which contains given normalized name
+	 * or are contained in it.
+	 * */
+	public TIntArrayList matches(String name) {
+		TIntArrayList result = new TIntArrayList();
+
+		TLongHashSet trigrams = trigrams(name);
+
+		// query without trigrams may be contained in anything
+		if(trigrams.isEmpty()) {
+			for(int id = 0; id < names.size(); id++) {
+				if(NamesMatcherImpl.doesNormalizedStreetsMatch(name, names.get(id))) {
+					result.add(id);
+				}
+			}
+			return result;
+		}
+
+		if(counters.length < names.size()) {
+			counters = new int[names.size()];
+		}
+
+		TIntArrayList touched = new TIntArrayList();
+		for(long t : trigrams.toArray()) {
+			TIntArrayList list = postings.get(t);
+			if(list != null) {
+				for(int i = 0; i < list.size(); i++) {
+					int id = list.getQuick(i);
+					if(counters[id]++ == 0) {
+						touched.add(id);
+					}
+				}
+			}
+		}
+
+		int queryTrigrams = trigrams.size();
+		for(int i = 0; i < touched.size(); i++) {
+			int id = touched.getQuick(i);
+			int common = counters[id];
+			counters[id] = 0;
+
+			if(common == queryTrigrams || common == trigramsCount.getQuick(id)) {
+				if(NamesMatcherImpl.doesNormalizedStreetsMatch(name, names.get(id))) {
+					result.add(id);
+				}
+			}
+		}
+
+		for(int i = 0; i < shortNames.size(); i++) {
+			int id = shortNames.getQuick(i);
+			if(name.contains(names.get(id))) {
+				result.add(id);
+			}
+		}
+
+		return result;
+	}
+
+	private static TLongHashSet trigrams(String name) {
+		TLongHashSet result = new TLongHashSet();
+		for(int i = 0; i + 3 <= name.length(); i++) {
+			long t = ((long)name.charAt(i) << 32)
+					| ((long)name.charAt(i + 1) << 16)
+					| name.charAt(i + 2);
+			result.add(t);
+		}
+		return result;
+	}
+
+}
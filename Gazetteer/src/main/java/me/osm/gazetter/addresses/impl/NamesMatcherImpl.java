@@ -6,14 +6,14 @@ import java.util.Set;
 
 import me.osm.gazetter.addresses.AddressesUtils;
 import me.osm.gazetter.addresses.NamesMatcher;
-
-import org.apache.commons.lang3.StringUtils;
+import me.osm.gazetter.addresses.NamesSet;
+import me.osm.gazetter.addresses.PreparedNamesMatcher;
 
 /**
  * Default implementation for
  * {@link NamesMatcher}
  * */
-public class NamesMatcherImpl implements NamesMatcher {
+public class NamesMatcherImpl implements PreparedNamesMatcher {
 
 	@Override
 	public boolean isPlaceNameMatch(String name, Set<String> names){
@@ -38,9 +38,40 @@ public class NamesMatcherImpl implements NamesMatcher {
 	public boolean doesStreetsMatch(Map<String, String> o1names,
 			Map<String, String> o2names) {
 		
-		String name1 = AddressesUtils.foldASCII(StringUtils.stripToEmpty(o1names.get("name")).toLowerCase()); 
-		String name2 = AddressesUtils.foldASCII(StringUtils.stripToEmpty(o2names.get("name")).toLowerCase()); 
+		String name1 = normalizeStreetName(o1names.get("name")); 
+		String name2 = normalizeStreetName(o2names.get("name")); 
 		
+		return doesNormalizedStreetsMatch(name1, name2);
+	}
+
+	@Override
+	public boolean isPlaceNameMatch(String name, NamesSet names) {
+		return names.contains(name);
+	}
+
+	@Override
+	public boolean isStreetNameMatch(String street, NamesSet names) {
+		return names.contains(street);
+	}
+
+	@Override
+	public boolean doesStreetsMatch(NamesSet o1names, NamesSet o2names) {
+		return doesNormalizedStreetsMatch(o1names.getNormalizedName(), o2names.getNormalizedName());
+	}
+
+	/**
+	 * Lowercased, ascii folded street name, which is used
+	 * by {@link #doesStreetsMatch(Map, Map)}
+	 * */
+	public static String normalizeStreetName(String name) {
+		return AddressesUtils.normalizeName(name);
+	}
+
+	/**
+	 * Same as {@link #doesStreetsMatch(Map, Map)} but for names
+	 * already normalized with {@link #normalizeStreetName(String)}
+	 * */
+	public static boolean doesNormalizedStreetsMatch(String name1, String name2) {
 		return (name1.contains(name2) || name2.contains(name1));
 	}
 	
@@ -0,0 +1,67 @@
+package me.osm.gazetter.addresses.impl;
+
+import java.util.Map;
+import java.util.Set;
+
+import me.osm.gazetter.addresses.NamesMatcher;
+import me.osm.gazetter.addresses.NamesSet;
+import me.osm.gazetter.addresses.PreparedNamesMatcher;
+
+/**
+ * Makes {@link PreparedNamesMatcher} from any {@link NamesMatcher},
+ * prepared names are matched with name tags they were built from.
+ * */
+public class PreparedNamesMatcherAdapter implements PreparedNamesMatcher {
+
+	private final NamesMatcher matcher;
+
+	private PreparedNamesMatcherAdapter(NamesMatcher matcher) {
+		this.matcher = matcher;
+	}
+
+	/**
+	 * Returns matcher itself if it already supports prepared names.
+	 * */
+	public static PreparedNamesMatcher of(NamesMatcher matcher) {
+		if(matcher instanceof PreparedNamesMatcher) {
+			return (PreparedNamesMatcher) matcher;
+		}
+		return new PreparedNamesMatcherAdapter(matcher);
+	}
+
+	@Override
+	public boolean isPlaceNameMatch(String name, Set<String> names) {
+		return matcher.isPlaceNameMatch(name, names);
+	}
+
+	@Override
+	public boolean isPlaceNameMatch(String name, Map<String, String> filterNameTags) {
+		return matcher.isPlaceNameMatch(name, filterNameTags);
+	}
+
+	@Override
+	public boolean isStreetNameMatch(String street, Map<String, String> filterNameTags) {
+		return matcher.isStreetNameMatch(street, filterNameTags);
+	}
+
+	@Override
+	public boolean doesStreetsMatch(Map<String, String> o1names, Map<String, String> o2names) {
+		return matcher.doesStreetsMatch(o1names, o2names);
+	}
+
+	@Override
+	public boolean isPlaceNameMatch(String name, NamesSet names) {
+		return matcher.isPlaceNameMatch(name, names.getNameTags());
+	}
+
+	@Override
+	public boolean isStreetNameMatch(String street, NamesSet names) {
+		return matcher.isStreetNameMatch(street, names.getNameTags());
+	}
+
+	@Override
+	public boolean doesStreetsMatch(NamesSet o1names, NamesSet o2names) {
+		return matcher.doesStreetsMatch(o1names.getNameTags(), o2names.getNameTags());
+	}
+
+}
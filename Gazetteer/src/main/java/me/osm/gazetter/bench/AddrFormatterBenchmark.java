@@ -0,0 +1,172 @@
+package me.osm.gazetter.bench;
+
+import static me.osm.gazetter.join.out_handlers.GazetteerSchemeConstants.GAZETTEER_SCHEME_ADDRESS;
+import static me.osm.gazetter.join.out_handlers.GazetteerSchemeConstants.GAZETTEER_SCHEME_TAGS;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import me.osm.gazetter.Options;
+import me.osm.gazetter.addresses.AddrLevelsSorting;
+import me.osm.gazetter.addresses.AddressesParser;
+import me.osm.gazetter.addresses.AddressesSchemesParser;
+import me.osm.gazetter.addresses.impl.AddrTextFormatterImpl;
+import me.osm.gazetter.addresses.impl.AddressesParserImpl;
+import me.osm.gazetter.utils.FileUtils;
+import me.osm.gazetter.utils.FileUtils.LineHandler;
+import me.osm.gazetter.utils.GroovyScripts;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Compares speed of addresses texts formatting by groovy script
+ * and by {@link AddrTextFormatterImpl}.
+ * <p>
+ * Address rows are taken from gazetteer json join output (address
+ * objects are written there with default fill_addresses option),
+ * and the same rows are formatted by every parser, groovy script
+ * is used compiled statically and dynamically.
+ * */
+public class AddrFormatterBenchmark {
+
+	private static final String ADDR_PARTS = "parts";
+	private static final String ADDR_TEXT = "text";
+
+	private static final class Row {
+		private final JSONObject properties;
+		private final JSONObject addrRow;
+		private final List<JSONObject> parts;
+
+		private Row(JSONObject properties, JSONObject addrRow, List<JSONObject> parts) {
+			this.properties = properties;
+			this.addrRow = addrRow;
+			this.parts = parts;
+		}
+	}
+
+	/**
+	 * Keeps results of formatting alive for JIT
+	 * */
+	private static volatile long sink = 0;
+
+	private final File groovyFormatter;
+	private final File input;
+	private final AddrLevelsSorting sorting;
+	private final int limit;
+	private final int rounds;
+
+	public AddrFormatterBenchmark(String groovyFormatter, String input,
+			AddrLevelsSorting sorting, int limit, int rounds) {
+
+		this.groovyFormatter = groovyFormatter == null ? null : new File(groovyFormatter);
+		this.input = new File(input);
+		this.sorting = sorting;
+		this.limit = limit;
+		this.rounds = rounds;
+	}
+
+	public void run() {
+		List<Row> rows = readRows();
+		System.out.println("Address rows: " + rows.size());
+
+		if(rows.isEmpty()) {
+			System.out.println("No address rows with parts found in " + input
+					+ ", it should be gazetteer json join output with address objects.");
+			return;
+		}
+
+		Map<String, AddressesParser> parsers = new LinkedHashMap<>();
+		parsers.put("default", newParser(null));
+
+		if(groovyFormatter != null) {
+			parsers.put("groovy static", newParser(GroovyScripts.parseClassStatic(groovyFormatter)));
+			parsers.put("groovy dynamic", newParser(GroovyScripts.parseClass(groovyFormatter)));
+		}
+
+		for(Entry<String, AddressesParser> entry : parsers.entrySet()) {
+			if(!(entry.getValue() instanceof AddressesParserImpl)) {
+				System.out.println(entry.getKey() + ": parser doesn't extend AddressesParserImpl, skip");
+				continue;
+			}
+
+			AddressesParserImpl parser = (AddressesParserImpl) entry.getValue();
+
+			// warm up
+			sink += format(parser, rows);
+
+			long best = Long.MAX_VALUE;
+			for(int i = 0; i < rounds; i++) {
+				long start = System.nanoTime();
+				sink += format(parser, rows);
+				best = Math.min(best, System.nanoTime() - start);
+			}
+
+			System.out.println(String.format("%s: %d ns per row, best of %d rounds",
+					entry.getKey(), best / rows.size(), rounds));
+		}
+	}
+
+	private AddressesParser newParser(Class<?> groovyClass) {
+		return Options.getAddrParser(groovyClass, sorting,
+				Collections.<String>emptySet(), Options.get().isFindLangs());
+	}
+
+	private static long format(AddressesParserImpl parser, List<Row> rows) {
+		long hash = 0;
+		for(Row row : rows) {
+			JSONObject result = parser.formatAddressRow(row.properties, row.addrRow,
+					new ArrayList<JSONObject>(row.parts));
+			hash += result.optString(ADDR_TEXT).length();
+		}
+		return hash;
+	}
+
+	private List<Row> readRows() {
+		final List<Row> rows = new ArrayList<>();
+		try {
+			FileUtils.handleLines(input, new LineHandler() {
+				@Override
+				public void handle(String s) {
+					if(rows.size() >= limit) {
+						return;
+					}
+
+					JSONObject row = new JSONObject(s);
+					JSONObject address = row.optJSONObject(GAZETTEER_SCHEME_ADDRESS);
+					JSONObject tags = row.optJSONObject(GAZETTEER_SCHEME_TAGS);
+
+					if(address == null) {
+						return;
+					}
+
+					JSONArray partsJSON = address.optJSONArray(ADDR_PARTS);
+					if(partsJSON == null) {
+						return;
+					}
+
+					List<JSONObject> parts = new ArrayList<>(partsJSON.length());
+					for(int p = 0; p < partsJSON.length(); p++) {
+						parts.add(partsJSON.getJSONObject(p));
+					}
+
+					JSONObject addrRow = new JSONObject();
+					addrRow.put(AddressesSchemesParser.ADDR_SCHEME,
+							address.optString(AddressesSchemesParser.ADDR_SCHEME));
+
+					rows.add(new Row(tags == null ? new JSONObject() : tags, addrRow, parts));
+				}
+			});
+		}
+		catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+		return rows;
+	}
+
+}
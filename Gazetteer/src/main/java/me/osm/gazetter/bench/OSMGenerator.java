@@ -0,0 +1,433 @@
+package me.osm.gazetter.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import me.osm.gazetter.utils.FileUtils;
+
+import org.apache.commons.lang3.StringEscapeUtils;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Generates synthetic osm xml file.
+ * <p>
+ * Regions (admin_level=4) are placed in a grid of one degree cells
+ * inside one country (admin_level=2). Every region is divided into
+ * districts (admin_level=6), every district has a town with boundary
+ * (admin_level=8), place node, grid of streets with junctions,
+ * buildings, address nodes, interpolation lines, POIs and
+ * associatedStreet relations, and a few villages around.
+ * <p>
+ * Output is the same for the same seed and counts.
+ * Elements are written in three passes over the same generation
+ * code, nodes first, then ways and relations, so nothing but
+ * ids counters has to be kept in memory.
+ * */
+public class OSMGenerator {
+
+	private static final Logger log = LoggerFactory.getLogger(OSMGenerator.class);
+
+	private static final double LON0 = 20.0;
+	private static final double LAT0 = 45.0;
+	private static final double REGION_SIZE = 1.0;
+	private static final double STREET_STEP = 0.002;
+	private static final double HOUSE_SIZE = 0.0002;
+
+	private static final int VILLAGES = 3;
+
+	private static final String TIMESTAMP = "2015-05-01T12:00:00Z";
+
+	private static final String[] NAMES = new String[]{
+		"Oak", "Pine", "Maple", "Cedar", "Elm", "Birch", "Willow", "Ash",
+		"Lake", "Hill", "River", "Park", "Mill", "Church", "Market", "Station"};
+
+	private static final String[][] POI_TAGS = new String[][]{
+		{"amenity", "cafe"}, {"amenity", "pharmacy"}, {"amenity", "school"},
+		{"shop", "convenience"}, {"shop", "bakery"}, {"tourism", "hotel"}};
+
+	private static enum Pass {
+		NODES, WAYS, RELATIONS
+	}
+
+	private static final class Member {
+		private final String type;
+		private final long ref;
+		private final String role;
+
+		private Member(String type, long ref, String role) {
+			this.type = type;
+			this.ref = ref;
+			this.role = role;
+		}
+	}
+
+	private final long seed;
+	private final int regions;
+	private final int districts;
+	private final int streets;
+	private final int buildings;
+	private final int addrNodes;
+	private final int interpolations;
+	private final int pois;
+
+	// current pass state
+	private Pass pass;
+	private PrintWriter out;
+	private Random random;
+	private long nodeId;
+	private long wayId;
+	private long relationId;
+
+	/**
+	 * @param regions number of regions
+	 * @param districts number of districts along one side of region
+	 * @param streets number of streets along one side of town streets grid
+	 * @param buildings buildings per block
+	 * @param addrNodes address nodes per block
+	 * @param interpolations interpolation lines per block
+	 * @param pois POI nodes per block
+	 * */
+	public OSMGenerator(long seed, int regions, int districts, int streets,
+			int buildings, int addrNodes, int interpolations, int pois) {
+
+		if(regions < 1 || districts < 1 || streets < 2) {
+			throw new IllegalArgumentException("At least one region, one district and two streets are required");
+		}
+
+		if((streets + 1) * STREET_STEP > 0.9 * REGION_SIZE / districts) {
+			throw new IllegalArgumentException("Town with " + streets
+					+ " streets doesn't fit into district, use less streets or districts");
+		}
+
+		this.seed = seed;
+		this.regions = regions;
+		this.districts = districts;
+		this.streets = streets;
+		this.buildings = buildings;
+		this.addrNodes = addrNodes;
+		this.interpolations = interpolations;
+		this.pois = pois;
+	}
+
+	/**
+	 * Write osm file. If file name ends with .gz it will be compressed.
+	 *
+	 * @return numbers of written nodes, ways and relations
+	 * */
+	public JSONObject write(File file) {
+		long start = System.currentTimeMillis();
+
+		try {
+			out = FileUtils.getPrintWriter(file, false);
+			try {
+				out.println("<?xml version='1.0' encoding='UTF-8'?>");
+				out.println("<osm version=\"0.6\" generator=\"gazetteer\">");
+
+				for(Pass p : Pass.values()) {
+					pass = p;
+					random = new Random(seed);
+					nodeId = 0;
+					wayId = 0;
+					relationId = 0;
+
+					generate();
+				}
+
+				out.println("</osm>");
+			}
+			finally {
+				out.flush();
+				out.close();
+				out = null;
+			}
+		}
+		catch (IOException e) {
+			throw new RuntimeException("Failed to write " + file, e);
+		}
+
+		JSONObject counts = new JSONObject();
+		counts.put("nodes", nodeId);
+		counts.put("ways", wayId);
+		counts.put("relations", relationId);
+
+		log.info("{} generated in {} ms: {}", file, System.currentTimeMillis() - start, counts);
+
+		return counts;
+	}
+
+	private void generate() {
+		int side = (int) Math.ceil(Math.sqrt(regions));
+		int rows = (regions + side - 1) / side;
+
+		double margin = REGION_SIZE / 100;
+		long countryWay = rectangle(LON0 - margin, LAT0 - margin,
+				LON0 + side * REGION_SIZE + margin, LAT0 + rows * REGION_SIZE + margin);
+		boundary(countryWay, 2, "Synthetica");
+
+		for(int r = 0; r < regions; r++) {
+			double minLon = LON0 + (r % side) * REGION_SIZE;
+			double minLat = LAT0 + (r / side) * REGION_SIZE;
+
+			String name = name(r) + " Region";
+			long regionWay = rectangle(minLon, minLat, minLon + REGION_SIZE, minLat + REGION_SIZE);
+			boundary(regionWay, 4, name);
+
+			double size = REGION_SIZE / districts;
+			for(int dx = 0; dx < districts; dx++) {
+				for(int dy = 0; dy < districts; dy++) {
+					district(name(r) + " " + name(dx * districts + dy),
+							minLon + dx * size, minLat + dy * size, size);
+				}
+			}
+		}
+	}
+
+	private void district(String name, double minLon, double minLat, double size) {
+		double inset = size / 100;
+		long districtWay = rectangle(minLon + inset, minLat + inset,
+				minLon + size - inset, minLat + size - inset);
+		boundary(districtWay, 6, name + " District");
+
+		// town is placed randomly, but inside the district
+		double span = (streets + 1) * STREET_STEP;
+		double free = size - 2 * inset - span;
+		town(name, minLon + inset + random.nextDouble() * free,
+				minLat + inset + random.nextDouble() * free);
+
+		for(int i = 0; i < VILLAGES; i++) {
+			node(minLon + inset + random.nextDouble() * (size - 2 * inset),
+					minLat + inset + random.nextDouble() * (size - 2 * inset),
+					"place", "village", "name", name + " Village " + (i + 1));
+		}
+	}
+
+	/**
+	 * @param minLon, minLat - south west corner of the town
+	 * */
+	private void town(String name, double minLon, double minLat) {
+
+		long boundaryWay = rectangle(minLon, minLat,
+				minLon + (streets + 1) * STREET_STEP, minLat + (streets + 1) * STREET_STEP);
+		boundary(boundaryWay, 8, name);
+
+		double center = (streets + 1) * STREET_STEP / 2;
+		node(minLon + center, minLat + center, "place", "town", "name", name,
+				"population", String.valueOf(1000 + random.nextInt(100000)));
+
+		// junctions, shared by horizontal and vertical streets
+		long[][] grid = new long[streets][streets];
+		for(int i = 0; i < streets; i++) {
+			for(int j = 0; j < streets; j++) {
+				grid[i][j] = node(lon(minLon, j) + jitter(), lat(minLat, i) + jitter());
+			}
+		}
+
+		String[] streetNames = new String[streets];
+		long[] horizontal = new long[streets];
+		for(int i = 0; i < streets; i++) {
+			streetNames[i] = name(i) + " Street";
+			horizontal[i] = way(grid[i], "highway", i == streets / 2 ? "primary" : "residential",
+					"name", streetNames[i]);
+		}
+
+		for(int j = 0; j < streets; j++) {
+			long[] refs = new long[streets];
+			for(int i = 0; i < streets; i++) {
+				refs[i] = grid[i][j];
+			}
+			way(refs, "highway", "tertiary", "name", name(j) + " Avenue");
+		}
+
+		for(int i = 0; i < streets - 1; i++) {
+			List<Member> houses = new ArrayList<>();
+
+			int number = 1;
+			for(int j = 0; j < streets - 1; j++) {
+				number = block(lon(minLon, j), lat(minLat, i), streetNames[i],
+						streetNames[i + 1], number, houses);
+			}
+
+			houses.add(new Member("way", horizontal[i], "street"));
+			relation(houses, "type", "associatedStreet", "name", streetNames[i]);
+		}
+	}
+
+	/**
+	 * Block between two streets. Buildings and address nodes face the
+	 * south street, interpolations are along the north street.
+	 *
+	 * @return next house number of south street
+	 * */
+	private int block(double minLon, double minLat, String street, String northStreet,
+			int number, List<Member> houses) {
+
+		for(int b = 0; b < buildings; b++) {
+			double lon = minLon + (b + 0.5) / buildings * STREET_STEP;
+			double lat = minLat + STREET_STEP * 0.2;
+
+			long[] refs = new long[5];
+			refs[0] = node(lon, lat);
+			refs[1] = node(lon + HOUSE_SIZE, lat);
+			refs[2] = node(lon + HOUSE_SIZE, lat + HOUSE_SIZE);
+			refs[3] = node(lon, lat + HOUSE_SIZE);
+			refs[4] = refs[0];
+
+			String hn = String.valueOf(number);
+			number += 2;
+
+			// houses of associated street may have no addr:street
+			long house = random.nextInt(3) == 0
+					? way(refs, "building", "house", "addr:housenumber", hn)
+					: way(refs, "building", "yes", "addr:housenumber", hn, "addr:street", street);
+
+			houses.add(new Member("way", house, "house"));
+		}
+
+		for(int a = 0; a < addrNodes; a++) {
+			double lon = minLon + (a + 0.5) / addrNodes * STREET_STEP;
+			node(lon, minLat + STREET_STEP * 0.45,
+					"addr:housenumber", String.valueOf(number), "addr:street", street);
+			number += 2;
+		}
+
+		for(int k = 0; k < interpolations; k++) {
+			double from = minLon + (double) k / interpolations * STREET_STEP;
+			double to = minLon + (k + 0.8) / interpolations * STREET_STEP;
+			double lat = minLat + STREET_STEP * 0.85;
+
+			int first = 2 + random.nextInt(50) * 2;
+			long[] refs = new long[]{
+				node(from, lat, "addr:housenumber", String.valueOf(first), "addr:street", northStreet),
+				node(to, lat, "addr:housenumber", String.valueOf(first + 20), "addr:street", northStreet)
+			};
+			way(refs, "addr:interpolation", "even");
+		}
+
+		for(int p = 0; p < pois; p++) {
+			String[] kv = POI_TAGS[random.nextInt(POI_TAGS.length)];
+			node(minLon + random.nextDouble() * STREET_STEP, minLat + STREET_STEP * (0.3 + random.nextDouble() * 0.4),
+					kv[0], kv[1], "name", name(random.nextInt(NAMES.length)) + " " + kv[1]);
+		}
+
+		return number;
+	}
+
+	private static double lon(double minLon, int j) {
+		return minLon + (j + 1) * STREET_STEP;
+	}
+
+	private static double lat(double minLat, int i) {
+		return minLat + (i + 1) * STREET_STEP;
+	}
+
+	private double jitter() {
+		return (random.nextDouble() - 0.5) * STREET_STEP / 10;
+	}
+
+	private static String name(int i) {
+		String name = NAMES[i % NAMES.length];
+		if(i >= NAMES.length) {
+			name += " " + (i / NAMES.length + 1);
+		}
+		return name;
+	}
+
+	/**
+	 * Closed way with 4 nodes
+	 * */
+	private long rectangle(double minLon, double minLat, double maxLon, double maxLat) {
+		long sw = node(minLon, minLat);
+		long se = node(maxLon, minLat);
+		long ne = node(maxLon, maxLat);
+		long nw = node(minLon, maxLat);
+
+		return way(new long[]{sw, se, ne, nw, sw});
+	}
+
+	private long boundary(long outer, int level, String name) {
+		List<Member> members = new ArrayList<>();
+		members.add(new Member("way", outer, "outer"));
+
+		return relation(members, "type", "boundary", "boundary", "administrative",
+				"admin_level", String.valueOf(level), "name", name);
+	}
+
+	private long node(double lon, double lat, String... tags) {
+		long id = ++nodeId;
+		if(pass == Pass.NODES) {
+			StringBuilder sb = new StringBuilder(128);
+			sb.append("  <node id=\"").append(id).append("\" version=\"1\" timestamp=\"")
+				.append(TIMESTAMP).append("\" lat=\"").append(round(lat))
+				.append("\" lon=\"").append(round(lon)).append('"');
+
+			element(sb, "node", tags, false);
+		}
+		return id;
+	}
+
+	private long way(long[] refs, String... tags) {
+		long id = ++wayId;
+		if(pass == Pass.WAYS) {
+			StringBuilder sb = new StringBuilder(256);
+			sb.append("  <way id=\"").append(id).append("\" version=\"1\" timestamp=\"")
+				.append(TIMESTAMP).append("\">\n");
+
+			for(long ref : refs) {
+				sb.append("    <nd ref=\"").append(ref).append("\"/>\n");
+			}
+
+			element(sb, "way", tags, true);
+		}
+		return id;
+	}
+
+	private long relation(List<Member> members, String... tags) {
+		long id = ++relationId;
+		if(pass == Pass.RELATIONS) {
+			StringBuilder sb = new StringBuilder(256);
+			sb.append("  <relation id=\"").append(id).append("\" version=\"1\" timestamp=\"")
+				.append(TIMESTAMP).append("\">\n");
+
+			for(Member m : members) {
+				sb.append("    <member type=\"").append(m.type).append("\" ref=\"")
+					.append(m.ref).append("\" role=\"").append(m.role).append("\"/>\n");
+			}
+
+			element(sb, "relation", tags, true);
+		}
+		return id;
+	}
+
+	/**
+	 * Write tags and close element
+	 *
+	 * @param hasChildren false if element start tag isn't closed yet
+	 * */
+	private void element(StringBuilder sb, String name, String[] tags, boolean hasChildren) {
+		if(!hasChildren) {
+			if(tags.length == 0) {
+				out.println(sb.append("/>"));
+				return;
+			}
+			sb.append(">\n");
+		}
+
+		for(int i = 0; i < tags.length; i += 2) {
+			sb.append("    <tag k=\"").append(tags[i]).append("\" v=\"")
+				.append(StringEscapeUtils.escapeXml(tags[i + 1])).append("\"/>\n");
+		}
+
+		out.println(sb.append("  </").append(name).append('>'));
+	}
+
+	private static double round(double d) {
+		return Math.round(d * 1E7) / 1E7;
+	}
+
+}
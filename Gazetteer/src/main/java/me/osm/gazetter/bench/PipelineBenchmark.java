@@ -0,0 +1,226 @@
+package me.osm.gazetter.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import me.osm.gazetter.Options;
+import me.osm.gazetter.join.JoinExecutor;
+import me.osm.gazetter.join.out_handlers.GazetteerOutWriter;
+import me.osm.gazetter.split.Split;
+import me.osm.gazetter.striper.Slicer;
+import me.osm.gazetter.utils.FileUtils;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs split, slice and join over osm file and reports
+ * wall time, peak heap and io bytes of every phase as json.
+ * <p>
+ * If generator is given, osm file is generated first,
+ * generation is reported as a phase too.
+ * <p>
+ * Bytes read and written are taken from /proc/self/io,
+ * so they are available only on linux and include everything
+ * process reads, jars and osm-doc catalog as well.
+ * On other systems they are reported as -1.
+ * */
+public class PipelineBenchmark {
+
+	private static final Logger log = LoggerFactory.getLogger(PipelineBenchmark.class);
+
+	private static final File PROC_IO = new File("/proc/self/io");
+
+	private final File dataDir;
+	private final File osmFile;
+	private final OSMGenerator generator;
+	private final List<String> handlers;
+	private final String report;
+
+	private final JSONArray phases = new JSONArray();
+
+	/**
+	 * @param osmFile osm file to process, or to generate into if generator is not null
+	 * @param handlers join handlers, gazetteer json into data dir by default
+	 * @param report file for report or - for stdout
+	 * */
+	public PipelineBenchmark(String dataDir, String osmFile, OSMGenerator generator,
+			List<String> handlers, String report) {
+
+		this.dataDir = new File(dataDir);
+		this.generator = generator;
+		this.report = report;
+
+		if(osmFile == null) {
+			this.osmFile = new File(this.dataDir, "synthetic.osm.gz");
+		}
+		else {
+			this.osmFile = new File(osmFile);
+		}
+
+		if(handlers == null || handlers.isEmpty()) {
+			this.handlers = Arrays.asList(GazetteerOutWriter.NAME,
+					"out=" + new File(this.dataDir, "benchmark-out.json.gz").getPath());
+		}
+		else {
+			this.handlers = handlers;
+		}
+	}
+
+	public void run() {
+		long start = System.currentTimeMillis();
+		this.dataDir.mkdirs();
+
+		JSONObject result = new JSONObject();
+
+		if(generator != null) {
+			final JSONObject[] counts = new JSONObject[1];
+			phase("generate", new Runnable() {
+				@Override
+				public void run() {
+					counts[0] = generator.write(osmFile);
+				}
+			});
+			result.put("elements", counts[0]);
+		}
+
+		phase("split", new Runnable() {
+			@Override
+			public void run() {
+				new Split(dataDir, osmFile.getPath(), "none", false).run();
+			}
+		});
+
+		phase("slice", new Runnable() {
+			@Override
+			public void run() {
+				List<String> empty = Collections.emptyList();
+				new Slicer(dataDir.getPath()).run("jar", Arrays.asList("all"),
+						empty, empty, empty, null, empty, false);
+			}
+		});
+
+		phase("join", new Runnable() {
+			@Override
+			public void run() {
+				Options.get().setJoinHandlers(new ArrayList<String>(handlers));
+				new JoinExecutor(new HashSet<String>()).run(dataDir.getPath(), null);
+			}
+		});
+
+		result.put("input", osmFile.getPath());
+		result.put("inputBytes", osmFile.length());
+		result.put("threads", Options.get().getNumberOfThreads());
+		result.put("maxHeapBytes", Runtime.getRuntime().maxMemory());
+		result.put("wallMs", System.currentTimeMillis() - start);
+		result.put("phases", phases);
+
+		writeReport(result);
+	}
+
+	private void phase(String name, Runnable task) {
+		List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+		for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if(pool.getType() == MemoryType.HEAP && pool.isValid()) {
+				pool.resetPeakUsage();
+				heapPools.add(pool);
+			}
+		}
+
+		long[] ioBefore = readProcIO();
+		long start = System.nanoTime();
+
+		task.run();
+
+		long wallMs = (System.nanoTime() - start) / 1000000;
+		long[] ioAfter = readProcIO();
+
+		// sum of pools peaks, pools may peak at different moments,
+		// so it's an upper bound of real peak
+		long peakHeap = 0;
+		for(MemoryPoolMXBean pool : heapPools) {
+			peakHeap += pool.getPeakUsage().getUsed();
+		}
+
+		JSONObject phase = new JSONObject();
+		phase.put("name", name);
+		phase.put("wallMs", wallMs);
+		phase.put("peakHeapBytes", peakHeap);
+		phase.put("bytesRead", ioBefore == null || ioAfter == null ? -1 : ioAfter[0] - ioBefore[0]);
+		phase.put("bytesWritten", ioBefore == null || ioAfter == null ? -1 : ioAfter[1] - ioBefore[1]);
+		phase.put("dataDirBytes", size(dataDir));
+
+		phases.put(phase);
+
+		log.info("Benchmark phase {}: {}", name, phase);
+	}
+
+	private void writeReport(JSONObject result) {
+		try {
+			PrintWriter writer = "-".equals(report)
+					? new PrintWriter(System.out) : FileUtils.getPrintWriter(new File(report), false);
+
+			writer.println(result.toString(2));
+			writer.flush();
+
+			if(!"-".equals(report)) {
+				writer.close();
+			}
+		}
+		catch (IOException e) {
+			throw new RuntimeException("Failed to write report " + report, e);
+		}
+	}
+
+	/**
+	 * @return chars read and written by process, or null
+	 * if /proc/self/io isn't available
+	 * */
+	private static long[] readProcIO() {
+		if(!PROC_IO.canRead()) {
+			return null;
+		}
+
+		try {
+			long[] result = new long[]{-1, -1};
+			for(String line : FileUtils.readLines(PROC_IO)) {
+				if(line.startsWith("rchar:")) {
+					result[0] = Long.parseLong(line.substring(6).trim());
+				}
+				else if(line.startsWith("wchar:")) {
+					result[1] = Long.parseLong(line.substring(6).trim());
+				}
+			}
+			return result[0] < 0 || result[1] < 0 ? null : result;
+		}
+		catch (Exception e) {
+			return null;
+		}
+	}
+
+	private static long size(File f) {
+		if(f.isDirectory()) {
+			long size = 0;
+			File[] files = f.listFiles();
+			if(files != null) {
+				for(File child : files) {
+					size += size(child);
+				}
+			}
+			return size;
+		}
+		return f.length();
+	}
+
+}
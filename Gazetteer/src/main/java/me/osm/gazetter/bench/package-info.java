@@ -0,0 +1,4 @@
+/**
+ * Synthetic data, whole pipeline and addresses formatting benchmarks.
+ * */
+package me.osm.gazetter.bench;
@@ -7,14 +7,41 @@ import java.util.HashMap;
 import java.util.Map;
 
 import me.osm.gazetter.Options;
+import me.osm.gazetter.metrics.Metrics;
+import me.osm.gazetter.metrics.Timer;
 import me.osm.gazetter.striper.GeoJsonWriter;
 import me.osm.gazetter.utils.FileUtils;
 
 public class FileWriteDao implements WriteDao {
 
 	private static final Map<String, PrintWriter> writers = new HashMap<String, PrintWriter>();
+	
+	/**
+	 * Time spent by slice threads waiting for stripe writer lock.
+	 * <p>
+	 * Only every LOCK_WAIT_SAMPLE-th write of thread is measured,
+	 * so timer itself doesn't add contention to the lock.
+	 * */
+	private static final Timer lockWait = Metrics.timer("write_dao.lock_wait");
+	
+	private static final int LOCK_WAIT_SAMPLE = 64;
+	
+	private static final ThreadLocal<int[]> writesCounters = new ThreadLocal<int[]>() {
+		@Override
+		protected int[] initialValue() {
+			return new int[1];
+		}
+	};
+	
 	private File dir;
 	
+	private static final ThreadLocal<char[]> buffers = new ThreadLocal<char[]>() {
+		@Override
+		protected char[] initialValue() {
+			return new char[1024 * 16];
+		}
+	};
+	
 	public FileWriteDao(File dir) {
 		this.dir = dir;
 		dir.mkdirs();
@@ -23,12 +50,46 @@ public class FileWriteDao implements WriteDao {
 	@Override
 	public void write(String line, String key) throws IOException {
 		PrintWriter w = getWriter(key);
+		boolean sampled = sampleLockWait();
+		long start = sampled ? lockWait.start() : 0;
 		synchronized (w) {
+			if(sampled) {
+				lockWait.stop(start);
+			}
 			assert GeoJsonWriter.getTimestamp(line) != null;
 			w.println(line);
 		}
 	}
 
+	@Override
+	public void write(StringBuilder line, String key) throws IOException {
+		int length = line.length();
+		
+		char[] chars = buffers.get();
+		if(chars.length < length) {
+			chars = new char[Math.max(length, chars.length * 2)];
+			buffers.set(chars);
+		}
+		line.getChars(0, length, chars, 0);
+		
+		PrintWriter w = getWriter(key);
+		boolean sampled = sampleLockWait();
+		long start = sampled ? lockWait.start() : 0;
+		synchronized (w) {
+			if(sampled) {
+				lockWait.stop(start);
+			}
+			assert GeoJsonWriter.getTimestamp(line.toString()) != null;
+			w.write(chars, 0, length);
+			w.println();
+		}
+	}
+
+	private static boolean sampleLockWait() {
+		int[] counter = writesCounters.get();
+		return ++counter[0] % LOCK_WAIT_SAMPLE == 0;
+	}
+
 	private PrintWriter getWriter(String key) throws IOException {
 
 		boolean useGZ = Options.get().isCompress();
@@ -53,11 +114,18 @@ public class FileWriteDao implements WriteDao {
 		return pw;
 	}
 
+	/**
+	 * Close all writers. If something will be written after
+	 * close, writers will be reopened in append mode.
+	 * */
 	@Override
 	public void close() {
-		for(PrintWriter writer : writers.values()) {
-			writer.flush();
-			writer.close();
+		synchronized(writers) {
+			for(PrintWriter writer : writers.values()) {
+				writer.flush();
+				writer.close();
+			}
+			writers.clear();
 		}
 	}
 
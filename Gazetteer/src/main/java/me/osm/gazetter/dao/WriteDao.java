@@ -4,5 +4,12 @@ import java.io.IOException;
 
 public interface WriteDao {
 	public void write(String line, String key) throws IOException;
+	
+	/**
+	 * Write line from the reusable buffer, 
+	 * without copying it into a String.
+	 * */
+	public void write(StringBuilder line, String key) throws IOException;
+	
 	public void close();
 }
@@ -11,12 +11,6 @@ import org.json.JSONObject;
 
 public class AddrPointFormatter implements AddrJointHandler {
 	
-	private AddressesParser parser; 
-
-	public AddrPointFormatter() {
-		parser = Options.get().getAddressesParser();
-	}
-
 	@Override
 	public JSONObject handle(JSONObject addrPoint, List<JSONObject> boundaries, 
 			List<JSONObject> nearbyStreets,
@@ -27,6 +21,9 @@ public class AddrPointFormatter implements AddrJointHandler {
 //		List<JSONObject> streetsRefers = JSONFeature.asRefers(nearbyStreets);
 		List<JSONObject> streetsRefers = nearbyStreets;
 		
+		// parser is taken for every call, because it could be thread local
+		AddressesParser parser = Options.get().getAddressesParser();
+		
 		JSONArray addresses = parser.parse(
 				addrPoint, boundaries, streetsRefers, 
 				nearestPlace, nearestNeighbour, associatedStreet);
@@ -24,7 +24,6 @@ public class JoinAndUpdateTask implements Runnable {
 	public void run() {
 		joinTask.run();
 		joinTask = null;
-		System.gc();
 		updateTask.run();
 	}
 
@@ -1,31 +1,28 @@
 package me.osm.gazetter.join;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.InputStreamReader;
-import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 import me.osm.gazetter.Options;
 import me.osm.gazetter.addresses.AddressesParser;
-import me.osm.gazetter.join.out_handlers.JoinOutHandler;
 import me.osm.gazetter.join.util.BoundaryCortage;
 import me.osm.gazetter.striper.GeoJsonWriter;
 import me.osm.gazetter.striper.JSONFeature;
 import me.osm.gazetter.utils.FileUtils;
 import me.osm.gazetter.utils.FileUtils.LineHandler;
+import me.osm.gazetter.utils.sort.ExternalSorter;
+import me.osm.gazetter.utils.sort.ExternalSorter.KeyExtractor;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.time.DurationFormatUtils;
@@ -33,7 +30,6 @@ import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.code.externalsorting.ExternalSort;
 import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.index.quadtree.Quadtree;
 
@@ -41,6 +37,11 @@ public class JoinBoundariesExecutor {
 	
 	private static final Logger log = LoggerFactory.getLogger(JoinBoundariesExecutor.class);
 	
+	/**
+	 * Stripe name, used for boundaries from binx in out handlers
+	 * */
+	public static final String BINX_STRIPE = "binx.gjson";
+	
 	private File binxFile;
 	
 	private Map<BoundaryCortage, BoundaryCortage> bhierarchy = 
@@ -48,29 +49,24 @@ public class JoinBoundariesExecutor {
 	
 	private AddressesParser addressesParser;
 	
-	private static final AdmLvlComparator ADM_LVL_COMPARATOR = new AdmLvlComparator();
+	/**
+	 * Admin levels of boundaries, collected while binx is sorted
+	 * */
+	private final Set<Integer> lvls = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
 	
-	private static class AdmLvlComparator implements Comparator<String> {
-
-		private Set<Integer> lvls = new HashSet<>();
+	private final KeyExtractor<Integer> admLvlKey = new KeyExtractor<Integer>() {
 		
 		@Override
-		public int compare(String arg0, String arg1) {
+		public Integer key(String line) {
+			String lvl = GeoJsonWriter.getAdmLevel(line);
+			int i = lvl == null ? -1 : Integer.parseInt(lvl);
 			
-			int i1 = arg0 == null ? -1 : Integer.parseInt(GeoJsonWriter.getAdmLevel(arg0));
-			int i2 = arg1 == null ? -1 : Integer.parseInt(GeoJsonWriter.getAdmLevel(arg1));
+			if(i > 0) lvls.add(i);
 			
-			if(i1 > 0) lvls.add(i1);
-			if(i2 > 0) lvls.add(i2);
-			
-			return Integer.compare(i1, i2);
-		}
-
-		public Set<Integer> getLvls() {
-			return lvls;
+			return i;
 		}
 		
-	}
+	};
 	
 	public void run(String stripesFolder, List<JSONObject> common, Set<String> filter) {
 
@@ -81,10 +77,10 @@ public class JoinBoundariesExecutor {
 					.withGz(new File(stripesFolder + "/binx.gjson"));
 			
 			if(binxFile.exists()) {
-				List<String> bndrs = FileUtils.readLines(binxFile);
-				Collections.sort(bndrs, ADM_LVL_COMPARATOR);
-				FileUtils.writeLines(binxFile, bndrs);
-				bndrs = null;
+				ExternalSorter.byKey(admLvlKey)
+					.setDistinct(true)
+					.setThreads(Options.get().getNumberOfThreads())
+					.sort(binxFile, binxFile, new File(stripesFolder));
 			}
 			else {
 				log.trace("Skip boundaries index sorting");
@@ -113,19 +109,10 @@ public class JoinBoundariesExecutor {
 		
 		addressesParser = Options.get().getAddressesParser();
 		
-		BufferedReader binxReader = new BufferedReader(new InputStreamReader(FileUtils.getFileIS(binxFile)));
-		List<File> l = ExternalSort.sortInBatch(binxReader, binxFile.length() * 10, ADM_LVL_COMPARATOR,
-                100, 100 * 1024 * 1024, Charset.forName("UTF8"), new File(stripesFolder), true, 0,
-                true);
+		List<Integer> lvls = new ArrayList<Integer>(this.lvls);
+		Collections.sort(lvls);
 		
-		binxFile = new File(stripesFolder + "/" + "binx-sorted.gjson");
-		ExternalSort.mergeSortedFiles(l, binxFile, ADM_LVL_COMPARATOR, Charset.forName("UTF8"),
-                true, false, true);
-                
-       List<Integer> lvls = new ArrayList<Integer>(ADM_LVL_COMPARATOR.getLvls());
-       Collections.sort(lvls);
-       
-       final Iterator<Integer> lvlsi = lvls.iterator();
+		final Iterator<Integer> lvlsi = lvls.iterator();
 
 		if (lvls.size() >= 2) {
 			
@@ -237,8 +224,6 @@ public class JoinBoundariesExecutor {
 			}
 			
 		});
-		
-		binxFile.delete();
 	}
 	
 	private void fillHierarchy(List<BoundaryCortage> ups, List<BoundaryCortage> dwns) {
@@ -268,8 +253,6 @@ public class JoinBoundariesExecutor {
 	}
 	
 	private void handleOut(JSONObject obj) {
-		for(JoinOutHandler handler : Options.get().getJoinOutHandlers()) {
-			handler.handle(obj, "binx.gjson");
-		}
+		Options.get().getHandlersFanOut().handle(obj, BINX_STRIPE);
 	}
 }
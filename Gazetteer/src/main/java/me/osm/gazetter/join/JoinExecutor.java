@@ -4,10 +4,14 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FilenameFilter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -16,10 +20,20 @@ import java.util.concurrent.atomic.AtomicInteger;
 
 import me.osm.gazetter.Options;
 import me.osm.gazetter.join.out_handlers.JoinOutHandler;
+import me.osm.gazetter.join.out_handlers.SingleWriterJOHBase;
+import me.osm.gazetter.join.util.BoundariesCache;
 import me.osm.gazetter.join.util.JoinFailuresHandler;
-import me.osm.gazetter.join.util.MemorySupervizor;
+import me.osm.gazetter.join.util.MemoryGovernor;
+import me.osm.gazetter.join.util.MemoryGovernor.Pressure;
+import me.osm.gazetter.join.util.MemoryGovernor.PressureListener;
+import me.osm.gazetter.join.util.MemoryGovernor.Reservation;
+import me.osm.gazetter.metrics.Histogram;
+import me.osm.gazetter.metrics.Metrics;
+import me.osm.gazetter.metrics.Timer;
 
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.time.DurationFormatUtils;
 import org.json.JSONArray;
 import org.json.JSONObject;
@@ -36,8 +50,32 @@ public class JoinExecutor implements JoinFailuresHandler{
 	
 	private Set<String> filter;
 	
+	/**
+	 * Up to 1/8 of heap is used for cached boundaries geometries
+	 * */
+	private final BoundariesCache boundariesCache = 
+			BoundariesCache.withMemoryLimit(Runtime.getRuntime().maxMemory() / 8);
+	
+	private boolean incremental;
+	
+	private static final String PARTS_FOLDER = "join-parts";
+	
+	private static final Histogram stripesQueueDepth = Metrics.histogram("join.executor.queue_depth");
+	private static final Timer stripesTimer = Metrics.timer("join.phase.stripes");
+	private static final Timer boundariesTimer = Metrics.timer("join.phase.boundaries");
+	private static final Timer handlersTimer = Metrics.timer("join.phase.handlers_done");
+	
 	public JoinExecutor(Set<String> filter) {
+		this(filter, false);
+	}
+
+	/**
+	 * @param incremental join only stripes which were changed since previous
+	 * incremental join, and reuse handlers outputs for others.
+	 * */
+	public JoinExecutor(Set<String> filter, boolean incremental) {
 		this.filter = filter;
+		this.incremental = incremental;
 	}
 
 	private JoinBoundariesExecutor jbe = new JoinBoundariesExecutor();
@@ -60,8 +98,15 @@ public class JoinExecutor implements JoinFailuresHandler{
 
 		try {
 			List<JSONObject> common = getCommonPart(coomonPartFile);
+			
+			JoinManifest manifest = null;
+			if(incremental) {
+				manifest = prepareIncremental(stripesFolder, coomonPartFile);
+			}
 
-			joinStripes(stripesFolder, common);
+			long phase = stripesTimer.start();
+			joinStripes(stripesFolder, common, manifest);
+			stripesTimer.stop(phase);
 
 			log.info(
 					"Join stripes done in {}",
@@ -69,31 +114,136 @@ public class JoinExecutor implements JoinFailuresHandler{
 							- start));
 			
 			start = new Date().getTime();
+			phase = boundariesTimer.start();
 			jbe.run(stripesFolder, common, filter);
+			boundariesTimer.stop(phase);
+			
+			log.info(
+					"Join boundaries done in {}",
+					DurationFormatUtils.formatDurationHMS(new Date().getTime()
+							- start));
+			
+			start = new Date().getTime();
+			phase = handlersTimer.start();
+			Options.get().getHandlersFanOut().allDone();
+			handlersTimer.stop(phase);
+			
+			log.info(
+					"All handlers done in {}",
+					DurationFormatUtils.formatDurationHMS(new Date().getTime()
+							- start));
+			
+			if(manifest != null) {
+				manifest.save();
+			}
 			
 		} catch (Exception e) {
 			throw new RuntimeException(e);
 		}
+	}
 
-		log.info(
-				"Join boundaries done in {}",
-				DurationFormatUtils.formatDurationHMS(new Date().getTime()
-						- start));
+	/**
+	 * Switch handlers to stripes parts output and read join manifest.
+	 * 
+	 * @return manifest or null, if some of handlers doesn't support 
+	 * incremental join.
+	 * */
+	private JoinManifest prepareIncremental(String stripesFolder, String coomonPartFile) {
+		
+		List<SingleWriterJOHBase> handlers = getPartsHandlers();
+		if(handlers == null) {
+			log.warn("Some of join handlers doesn't support incremental join. Join all stripes.");
+			return null;
+		}
+		
+		File folder = new File(stripesFolder);
+		
+		int i = 0;
+		for(SingleWriterJOHBase h : handlers) {
+			h.setPartsFolder(new File(folder, PARTS_FOLDER + "/" + (i++) + "-" + h.getClass().getSimpleName()));
+			
+			// boundaries from binx are always rejoined
+			h.dropStripeParts(JoinBoundariesExecutor.BINX_STRIPE);
+		}
+		
+		JoinManifest manifest = JoinManifest.load(folder);
+		if(!manifest.checkDependencies(getDependenciesHash(coomonPartFile))) {
+			log.info("Join dependencies were changed. Join all stripes.");
+			
+			for(SingleWriterJOHBase h : handlers) {
+				for(File part : h.getPartsFolder().listFiles()) {
+					part.delete();
+				}
+			}
+		}
 		
-		start = new Date().getTime();
+		// forget about deleted stripes
+		for(String stripe : manifest.getStripes()) {
+			if(!new File(folder, stripe).exists()) {
+				dropOutputs(folder, manifest, stripe);
+				manifest.forget(stripe);
+			}
+		}
+		
+		return manifest;
+	}
+
+	private List<SingleWriterJOHBase> getPartsHandlers() {
+		List<SingleWriterJOHBase> result = new ArrayList<>();
 		for(JoinOutHandler h : Options.get().getJoinOutHandlers()) {
-			h.allDone();
+			if(!(h instanceof SingleWriterJOHBase)) {
+				return null;
+			}
+			result.add((SingleWriterJOHBase) h);
 		}
+		return result;
+	}
+
+	/**
+	 * Everything, besides stripe content, which affects join results. 
+	 * */
+	private String getDependenciesHash(String coomonPartFile) {
+		StringBuilder sb = new StringBuilder();
 		
-		log.info(
-				"All handlers done in {}",
-				DurationFormatUtils.formatDurationHMS(new Date().getTime()
-						- start));
+		if(coomonPartFile != null && new File(coomonPartFile).exists()) {
+			sb.append(JoinManifest.hash(new File(coomonPartFile)));
+		}
+		sb.append(';').append(StringUtils.join(Options.get().getJoinHandlersDefinition(), ' '));
+		sb.append(';').append(Options.get().getSorting());
+		sb.append(';').append(Options.get().isFindLangs());
+		sb.append(';').append(StringUtils.join(new TreeSet<String>(filter), ' '));
+		
+		// scripts may be changed without changing theirs paths
+		for(String handler : Options.get().getJoinHandlersDefinition()) {
+			if(handler.endsWith(".groovy")) {
+				sb.append(';').append(JoinManifest.hash(new File(handler)));
+			}
+		}
+		
+		String addrFormatter = Options.get().getAddrFormatter();
+		if(addrFormatter != null) {
+			sb.append(';').append(JoinManifest.hash(new File(addrFormatter)));
+		}
+		sb.append(';').append(StringUtils.join(new TreeSet<String>(Options.get().getSkippInFullText()), ' '));
+		sb.append(';').append(Options.get().getAddressesParser().getClass().getName());
+		sb.append(';').append(Options.get().getNamesMatcher().getClass().getName());
+		
+		return DigestUtils.md5Hex(sb.toString());
+	}
+
+	private void dropOutputs(File folder, JoinManifest manifest, String stripe) {
+		for(String output : manifest.getOutputs(stripe)) {
+			new File(folder, output).delete();
+		}
+		
+		for(SingleWriterJOHBase h : getPartsHandlers()) {
+			h.dropStripeParts(stripe);
+		}
 	}
 
 	private final List<File> fails = Collections.synchronizedList(new ArrayList<File>());;
 	
-	private void joinStripes(String stripesFolder, List<JSONObject> common) {
+	private void joinStripes(String stripesFolder, List<JSONObject> common, JoinManifest manifest) {
 		
 		int threads = Options.get().getNumberOfThreads();
 		
@@ -103,8 +253,37 @@ public class JoinExecutor implements JoinFailuresHandler{
 		
 		File folder = new File(stripesFolder);
 		File[] stripesFiles = folder.listFiles(STRIPE_FILE_FN_FILTER);
+		
+		Map<File, String> hashes = new HashMap<>();
+		if(manifest != null) {
+			List<File> dirty = new ArrayList<>();
+			for(File stripeF : stripesFiles) {
+				String hash = JoinManifest.hash(stripeF);
+				if(manifest.isDirty(stripeF, hash)) {
+					dropOutputs(folder, manifest, stripeF.getName());
+					dirty.add(stripeF);
+					hashes.put(stripeF, hash);
+				}
+			}
+			
+			log.info("{} from {} stripes were changed since previous join.", dirty.size(), stripesFiles.length);
+			stripesFiles = dirty.toArray(new File[dirty.size()]);
+		}
+		
 		stripesCounter = new AtomicInteger(stripesFiles.length); 
 		fails.clear();
+		
+		// cached geometries are the first thing we may drop
+		PressureListener shrinkCache = new PressureListener() {
+			@Override
+			public void onPressure(Pressure pressure) {
+				if(pressure == Pressure.CRITICAL) {
+					boundariesCache.clear();
+				}
+			}
+		};
+		MemoryGovernor.get().addListener(shrinkCache);
+		
 		for(File stripeF : stripesFiles) {
 			tryToExecute(common, threads, queue, executorService, stripeF);
 		}
@@ -121,6 +300,7 @@ public class JoinExecutor implements JoinFailuresHandler{
 		
 		if(!fails.isEmpty()) {
 			log.info("Rerun join for {} from {} files. In one thread.", fails.size(), stripesFiles.length);
+			discardOutputs(fails);
 		}
 		
 		ArrayList<File> oneThread = new ArrayList<File>(fails);
@@ -131,6 +311,35 @@ public class JoinExecutor implements JoinFailuresHandler{
 		
 		if(!fails.isEmpty()) {
 			log.error("Failed to join: {}", fails);
+			discardOutputs(fails);
+		}
+		
+		if(manifest != null) {
+			// stripes parts are written by handlers threads
+			Options.get().getHandlersFanOut().barrier();
+			updateManifest(folder, manifest, Arrays.asList(stripesFiles), hashes);
+		}
+		
+		MemoryGovernor.get().removeListener(shrinkCache);
+		boundariesCache.clear();
+	}
+
+	/**
+	 * Drop lines, which handlers got from failed stripes.
+	 * <p>
+	 * Lines, which are already written into the main output,
+	 * (unsorted output without stripes parts) can't be discarded.
+	 * */
+	private void discardOutputs(List<File> stripes) {
+		// features of failed stripes may be still queued
+		Options.get().getHandlersFanOut().barrier();
+		
+		for(JoinOutHandler h : Options.get().getJoinOutHandlers()) {
+			if(h instanceof SingleWriterJOHBase) {
+				for(File stripeF : stripes) {
+					((SingleWriterJOHBase) h).discardStripe(stripeF.getName());
+				}
+			}
 		}
 	}
 
@@ -138,19 +347,45 @@ public class JoinExecutor implements JoinFailuresHandler{
 			LinkedBlockingQueue<Runnable> queue,
 			ExecutorService executorService, File stripeF) {
 		
-		long avaibleRAMMeg = MemorySupervizor.getAvaibleRAMMeg();
-		if(queue.size() < threads && avaibleRAMMeg > 500) {
-			log.trace("Send {} to execution queue. Free mem: {}meg", stripeF, avaibleRAMMeg);
-			executorService.execute(new JoinSliceRunable(addrPointFormatter, stripeF, common, filter, this, this));
-		}
-		else {
+		stripesQueueDepth.update(queue.size());
+		while(queue.size() >= threads) {
 			try {
-				Thread.sleep(5000);
+				Thread.sleep(100);
 			}
 			catch (InterruptedException e) {
 				throw new RuntimeException(e);
 			}
-			tryToExecute(common, threads, queue, executorService, stripeF);
+		}
+		
+		// blocks while memory is under pressure
+		Reservation reservation = MemoryGovernor.get().admit(JoinSliceRunable.estimateMemory(stripeF));
+		log.trace("Send {} to execution queue. Reserved: {}meg", stripeF, 
+				MemoryGovernor.get().getReserved() / 1048576);
+		
+		JoinSliceRunable job = new JoinSliceRunable(addrPointFormatter, stripeF, common, filter, this, this);
+		job.setReservation(reservation);
+		executorService.execute(job);
+	}
+
+	private void updateManifest(File folder, JoinManifest manifest, 
+			List<File> joined, Map<File, String> hashes) {
+		
+		String folderPath = folder.getAbsolutePath();
+		for(File stripeF : joined) {
+			if(fails.contains(stripeF)) {
+				dropOutputs(folder, manifest, stripeF.getName());
+				manifest.forget(stripeF.getName());
+			}
+			else {
+				List<String> outputs = new ArrayList<>();
+				for(SingleWriterJOHBase h : getPartsHandlers()) {
+					for(File part : h.getStripeParts(stripeF.getName())) {
+						outputs.add(StringUtils.removeStart(
+								part.getAbsolutePath(), folderPath + File.separator));
+					}
+				}
+				manifest.stripeJoined(stripeF.getName(), hashes.get(stripeF), outputs);
+			}
 		}
 	}
 
@@ -182,6 +417,10 @@ public class JoinExecutor implements JoinFailuresHandler{
 	public AtomicInteger getStripesCounter() {
 		return stripesCounter;
 	}
+
+	public BoundariesCache getBoundariesCache() {
+		return boundariesCache;
+	}
 	
 	@Override
 	public void failed(File f) {
@@ -0,0 +1,178 @@
+package me.osm.gazetter.join;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.IOUtils;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Stores results of previous join in stripes folder.
+ *
+ * For every joined stripe manifest keeps md5 hash of stripe file
+ * and list of handlers outputs (stripes parts), produced for it.
+ * Also manifest keeps hash of join dependencies (common part, handlers
+ * definitions and so on), if it's changed, all stripes are dirty.
+ * */
+public class JoinManifest {
+
+	public static final String FILE_NAME = "join-manifest.json";
+
+	private static final String DEPENDENCIES = "dependencies";
+	private static final String STRIPES = "stripes";
+	private static final String HASH = "hash";
+	private static final String OUTPUTS = "outputs";
+
+	private final File file;
+	private JSONObject manifest;
+
+	private JoinManifest(File file, JSONObject manifest) {
+		this.file = file;
+		this.manifest = manifest;
+	}
+
+	/**
+	 * Read manifest from stripes folder, or create new empty one.
+	 * */
+	public static JoinManifest load(File stripesFolder) {
+		File file = new File(stripesFolder, FILE_NAME);
+
+		JSONObject manifest = new JSONObject();
+		if(file.exists()) {
+			InputStream is = null;
+			try {
+				is = new FileInputStream(file);
+				manifest = new JSONObject(IOUtils.toString(is));
+			}
+			catch (Exception e) {
+				throw new RuntimeException("Failed to read join manifest " + file, e);
+			}
+			finally {
+				IOUtils.closeQuietly(is);
+			}
+		}
+
+		if(!manifest.has(STRIPES)) {
+			manifest.put(STRIPES, new JSONObject());
+		}
+
+		return new JoinManifest(file, manifest);
+	}
+
+	/**
+	 * Check that manifest was created with the same join dependencies,
+	 * if not - forget about all joined stripes.
+	 *
+	 * @return true if dependencies wasn't changed
+	 * */
+	public boolean checkDependencies(String dependenciesHash) {
+		if(dependenciesHash.equals(manifest.optString(DEPENDENCIES))) {
+			return true;
+		}
+
+		manifest.put(DEPENDENCIES, dependenciesHash);
+		manifest.put(STRIPES, new JSONObject());
+
+		return false;
+	}
+
+	/**
+	 * Stripe should be rejoined if it wasn't joined before,
+	 * if it was changed, or if some of it outputs are missed.
+	 * */
+	public boolean isDirty(File stripe, String hash) {
+		JSONObject stripeInfo = manifest.getJSONObject(STRIPES).optJSONObject(stripe.getName());
+		if(stripeInfo == null || !hash.equals(stripeInfo.optString(HASH))) {
+			return true;
+		}
+
+		for(String output : getOutputs(stripe.getName())) {
+			if(!new File(file.getParentFile(), output).exists()) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Outputs (relative to stripes folder) produced for stripe during previous join.
+	 * */
+	public List<String> getOutputs(String stripe) {
+		List<String> result = new ArrayList<>();
+
+		JSONObject stripeInfo = manifest.getJSONObject(STRIPES).optJSONObject(stripe);
+		if(stripeInfo != null) {
+			JSONArray outputs = stripeInfo.optJSONArray(OUTPUTS);
+			for(int i = 0; outputs != null && i < outputs.length(); i++) {
+				result.add(outputs.getString(i));
+			}
+		}
+
+		return result;
+	}
+
+	public void stripeJoined(String stripe, String hash, Collection<String> outputs) {
+		JSONObject stripeInfo = new JSONObject();
+		stripeInfo.put(HASH, hash);
+		stripeInfo.put(OUTPUTS, new JSONArray(outputs));
+
+		manifest.getJSONObject(STRIPES).put(stripe, stripeInfo);
+	}
+
+	public void forget(String stripe) {
+		manifest.getJSONObject(STRIPES).remove(stripe);
+	}
+
+	/**
+	 * Names of all stripes, stored in manifest.
+	 * */
+	@SuppressWarnings("unchecked")
+	public Set<String> getStripes() {
+		return new HashSet<String>(manifest.getJSONObject(STRIPES).keySet());
+	}
+
+	public void save() {
+		PrintWriter writer = null;
+		try {
+			writer = new PrintWriter(file, "UTF8");
+			writer.print(manifest.toString());
+		}
+		catch (IOException e) {
+			throw new RuntimeException("Failed to write join manifest " + file, e);
+		}
+		finally {
+			if(writer != null) {
+				writer.close();
+			}
+		}
+	}
+
+	/**
+	 * Md5 hash of file content.
+	 * */
+	public static String hash(File f) {
+		InputStream is = null;
+		try {
+			is = new FileInputStream(f);
+			return DigestUtils.md5Hex(is);
+		}
+		catch (IOException e) {
+			throw new RuntimeException("Failed to read " + f, e);
+		}
+		finally {
+			IOUtils.closeQuietly(is);
+		}
+	}
+
+}
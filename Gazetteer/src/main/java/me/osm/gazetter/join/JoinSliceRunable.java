@@ -22,15 +22,25 @@ import me.osm.gazetter.addresses.AddrLevelsComparator;
 import me.osm.gazetter.addresses.AddrLevelsSorting;
 import me.osm.gazetter.addresses.AddressesParser;
 import me.osm.gazetter.addresses.AddressesUtils;
-import me.osm.gazetter.addresses.NamesMatcher;
+import me.osm.gazetter.addresses.BoundaryDescriptor;
+import me.osm.gazetter.addresses.NamesSet;
+import me.osm.gazetter.addresses.PreparedNamesMatcher;
+import me.osm.gazetter.addresses.impl.AddressesParserImpl;
+import me.osm.gazetter.addresses.impl.PreparedNamesMatcherAdapter;
 import me.osm.gazetter.addresses.sorters.CityStreetHNComparator;
 import me.osm.gazetter.addresses.sorters.HNStreetCityComparator;
 import me.osm.gazetter.addresses.sorters.StreetHNCityComparator;
 import me.osm.gazetter.join.PoiAddrJoinBuilder.BestFitAddresses;
-import me.osm.gazetter.join.out_handlers.JoinOutHandler;
+import me.osm.gazetter.join.util.BoundariesCache;
+import me.osm.gazetter.join.util.BoundariesCache.CachedBoundary;
 import me.osm.gazetter.join.util.JoinFailuresHandler;
-import me.osm.gazetter.join.util.MemorySupervizor;
-import me.osm.gazetter.join.util.MemorySupervizor.InsufficientMemoryException;
+import me.osm.gazetter.join.util.MemoryGovernor;
+import me.osm.gazetter.join.util.MemoryGovernor.InsufficientMemoryException;
+import me.osm.gazetter.join.util.MemoryGovernor.Reservation;
+import me.osm.gazetter.metrics.Counter;
+import me.osm.gazetter.metrics.Histogram;
+import me.osm.gazetter.metrics.Metrics;
+import me.osm.gazetter.metrics.Timer;
 import me.osm.gazetter.striper.FeatureTypes;
 import me.osm.gazetter.striper.GeoJsonWriter;
 import me.osm.gazetter.striper.JSONFeature;
@@ -54,6 +64,8 @@ import com.vividsolutions.jts.geom.LineString;
 import com.vividsolutions.jts.geom.MultiPolygon;
 import com.vividsolutions.jts.geom.Point;
 import com.vividsolutions.jts.geom.Polygon;
+import com.vividsolutions.jts.geom.prep.PreparedGeometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometryFactory;
 import com.vividsolutions.jts.index.SpatialIndex;
 import com.vividsolutions.jts.index.quadtree.Quadtree;
 import com.vividsolutions.jts.index.strtree.STRtree;
@@ -65,9 +77,62 @@ public class JoinSliceRunable implements Runnable {
 	
 	private static final int MB = 1024*1024;
 	
+	/**
+	 * Rough estimation of heap used by parsed stripe and indexes
+	 * per byte of stripe file.
+	 * */
+	private static final int HEAP_PER_FILE_BYTE = 8;
+	private static final int HEAP_PER_GZIP_FILE_BYTE = 40;
+	
 	private static final double STREET_BUFFER_DISTANCE = 1.0 / 111195.0 * 500;
 	private static final double POI_BUFFER_DISTANCE = 1.0 / 111195.0 * 100;
 	
+	private static final Timer stripeTimer = Metrics.timer("join.stripe");
+	private static final Histogram stripeFeatures = Metrics.histogram("join.stripe.features");
+	private static final Counter stripesDone = Metrics.counter("join.stripes.done");
+	private static final Counter stripesDelayed = Metrics.counter("join.stripes.delayed");
+	private static final Counter stripesFailed = Metrics.counter("join.stripes.failed");
+	
+	/**
+	 * Join phases, timed by {@link #debug(Phase, long)}
+	 * */
+	private static enum Phase {
+		READ_FEATURES("readFeatures"),
+		INITIALIZE_MAPS("initializeMaps"),
+		FILL_ADDR_POINTS_INDEX("fill addrPointsIndex"),
+		SORT_BOUNDARIES("sort boundaries"),
+		FILL_STREETS_POINTS_INDEX("fill streetsPointsIndex"),
+		FILL_POIS_INDEX("fill poisIndex"),
+		MERGE_POIS("mergePois"),
+		FILL_PLACES_POINTS_INDEX("fill placesPointsIndex"),
+		FILL_POI_PNT_2_BUILNG("fill poiPnt2Builng"),
+		JOIN_BOUNDARIES("join [addr2bndries, place2bndries, poi2bndries, street2bndries]"),
+		JOIN_BOUNDARIES_2_STREETS("write json streets to boundaries"),
+		JOIN_STREETS_2_ADDRESSES("joinStreets2Addresses"),
+		JOIN_ADDR_2_PLACE_VORONOY("join addr2PlaceVoronoy"),
+		JOIN_ADDR_2_NEIGHBOUR_VORONOY("join addr2NeighbourVoronoy"),
+		JOIN_JUNCTIONS_WITH_STREETS("joinJunctionsWithStreets"),
+		JOIN_BNDG_2_POI("joinBndg2Poi"),
+		JOIN_BNDG_2_ADDR("joinBndg2Addr"),
+		FILL_ADDR_2_AS_STREET("fillAddr2AsStreet"),
+		JOIN_POI_2_ADDRESSES("joinPoi2Addresses"),
+		WRITE_ADDR_POINTS("write out addrPoints"),
+		WRITE_STREET_2_BNDRIES("write out street2bndries"),
+		WRITE_JUNCTIONS("write out junctions"),
+		WRITE_PLACE_2_BNDRIES("write out place2bndries"),
+		WRITE_BOUNDARIES("write out boundaries"),
+		WRITE_PLACES_VORONOI("write out placesVoronoi"),
+		WRITE_NEIGHBOURS_VORONOI("write out neighboursVoronoi");
+
+		private final String msg;
+		private final Timer timer;
+
+		private Phase(String msg) {
+			this.msg = msg;
+			this.timer = Metrics.timer("join.stripe." + msg);
+		}
+	}
+	
 	private File src;
 	
 	// data and indexes 
@@ -113,8 +178,12 @@ public class JoinSliceRunable implements Runnable {
 
 	// dependancies --------------------------------------------------------------------------------
 	private final PoiAddrJoinBuilder poiAddrJoinBuilder = new PoiAddrJoinBuilder();
-	private final AddressesParser addressesParser = Options.get().getAddressesParser();
-	final NamesMatcher namesMatcher = Options.get().getNamesMatcher();
+	
+	/**
+	 * Taken in join thread, see {@link Options#getAddressesParser()}
+	 * */
+	private AddressesParser addressesParser;
+	final PreparedNamesMatcher namesMatcher = PreparedNamesMatcherAdapter.of(Options.get().getNamesMatcher());
 	private final AddrLevelsComparator addrLevelComparator;
 	
 	// misc
@@ -126,6 +195,12 @@ public class JoinSliceRunable implements Runnable {
 
 	private JoinFailuresHandler failureHandler;
 	
+	private BoundariesCache boundariesCache;
+	
+	private long featuresCount = 0;
+	
+	private Reservation reservation;
+	
 	public JoinSliceRunable(AddrJointHandler handler, File src, 
 			List<JSONObject> common, Set<String> filter, JoinExecutor joiner, 
 			JoinFailuresHandler failureHandler) {
@@ -140,6 +215,14 @@ public class JoinSliceRunable implements Runnable {
 			this.stripesCounter = joiner.getStripesCounter();
 		}
 		
+		if(joiner != null) {
+			this.boundariesCache = joiner.getBoundariesCache();
+		}
+		else {
+			this.boundariesCache = new BoundariesCache(0);
+		}
+		this.boundariesCache.schedule(src.getName());
+		
 		AddrLevelsSorting sorting = Options.get().getSorting();
 		if(AddrLevelsSorting.HN_STREET_CITY == sorting) {
 			addrLevelComparator = new HNStreetCityComparator();
@@ -170,30 +253,35 @@ public class JoinSliceRunable implements Runnable {
 		
 		Thread.currentThread().setName("join-" + this.src.getName());
 		
+		long stripeStart = stripeTimer.start();
+		if(reservation == null) {
+			reservation = MemoryGovernor.get().reserve(estimateMemory(src));
+		}
+		
 		try {
 			long total = new Date().getTime();
 			
-			MemorySupervizor.checkMemory();
+			reservation.check();
 			
 			long s = new Date().getTime();
 			readFeatures();
 			
-			s = debug("readFeatures", s);
+			s = debug(Phase.READ_FEATURES, s);
 			
 			initializeMaps();
 			
-			s = debug("initializeMaps", s);
+			s = debug(Phase.INITIALIZE_MAPS, s);
 			
 			for(JSONObject point : addrPoints) {
 				JSONArray ca = point.getJSONObject(GeoJsonWriter.GEOMETRY).getJSONArray(GeoJsonWriter.COORDINATES);
 				addrPointsIndex.insert(new Envelope(new Coordinate(ca.getDouble(0), ca.getDouble(1))), point);
 			}
 			
-			s = debug("fill addrPointsIndex", s);
+			s = debug(Phase.FILL_ADDR_POINTS_INDEX, s);
 
 			Collections.sort(boundaries, BY_ID_COMPARATOR);
 			
-			s = debug("sort boundaries", s);
+			s = debug(Phase.SORT_BOUNDARIES, s);
 			
 			for(JSONObject street : streets) {
 				JSONArray ca = street.getJSONObject(GeoJsonWriter.GEOMETRY).getJSONArray(GeoJsonWriter.COORDINATES);
@@ -204,45 +292,52 @@ public class JoinSliceRunable implements Runnable {
 				}
 			}
 			
-			s = debug("fill streetsPointsIndex", s);
+			s = debug(Phase.FILL_STREETS_POINTS_INDEX, s);
 			
 			for(JSONObject point : pois) {
 				JSONArray ca = point.getJSONObject(GeoJsonWriter.GEOMETRY).getJSONArray(GeoJsonWriter.COORDINATES);
 				poisIndex.insert(new Envelope(new Coordinate(ca.getDouble(0), ca.getDouble(1))), point);
 			}
 			
-			s = debug("fill poisIndex", s);
+			s = debug(Phase.FILL_POIS_INDEX, s);
 
 			mergePois();
 			
-			s = debug("mergePois", s);
+			s = debug(Phase.MERGE_POIS, s);
 			
 			for(JSONObject point : places) {
 				JSONArray ca = point.getJSONObject(GeoJsonWriter.GEOMETRY).getJSONArray(GeoJsonWriter.COORDINATES);
 				placesPointsIndex.insert(new Envelope(new Coordinate(ca.getDouble(0), ca.getDouble(1))), point);
 			}
 			
-			s = debug("fill placesPointsIndex", s);
+			s = debug(Phase.FILL_PLACES_POINTS_INDEX, s);
 			
 			for(JSONObject obj : poi2bdng) {
 				poiPnt2Builng.put(obj.getLong("nodeId"), obj);
 			}
 			
-			s = debug("fill poiPnt2Builng", s);
+			s = debug(Phase.FILL_POI_PNT_2_BUILNG, s);
 			
 			for(JSONObject obj : addr2bdng) {
 				addrPnt2Builng.put(obj.getLong("nodeId"), obj);
 			}
 			
-			MemorySupervizor.checkMemory();
+			reservation.check();
+			
+			addressesParser = Options.get().getAddressesParser();
+			BoundariesCache.openStripe();
 			
 			join();
 			
 			write();
 
-			for(JoinOutHandler h : Options.get().getJoinOutHandlers()) {
-				h.stripeDone(this.src.getName());
-			}
+			Options.get().getHandlersFanOut().stripeDone(this.src.getName());
+			
+			boundariesCache.stripeDone(this.src.getName());
+			
+			stripeTimer.stop(stripeStart);
+			stripeFeatures.update(featuresCount);
+			stripesDone.inc();
 			
 			if(log.isTraceEnabled() && this.stripesCounter != null) {
 				log.info("Done. {} left", this.stripesCounter.decrementAndGet());
@@ -252,12 +347,14 @@ public class JoinSliceRunable implements Runnable {
 		}
 		catch (InsufficientMemoryException e) {
 			log.trace("Join delayed. File: {}.", this.src);
+			stripesDelayed.inc();
 			if(failureHandler != null) {
 				failureHandler.failed(this.src);
 			}
 		}
 		catch (Throwable t) {
 			log.error("Join failed. File: {}. Error: {}", this.src, t.getMessage());
+			stripesFailed.inc();
 			
 			if(failureHandler != null) {
 				failureHandler.failed(this.src);
@@ -265,11 +362,31 @@ public class JoinSliceRunable implements Runnable {
 		}
 		finally {
 			clean();
+			reservation.release();
+			reservation = null;
 		}
 		
 	}
+	
+	/**
+	 * Memory reserved by {@link JoinExecutor} before the job 
+	 * was submitted. If not set, job reserves memory by itself.
+	 * */
+	public void setReservation(Reservation reservation) {
+		this.reservation = reservation;
+	}
+	
+	/**
+	 * @return rough estimation of heap needed to join stripe file
+	 * */
+	public static long estimateMemory(File stripe) {
+		return stripe.length() * (stripe.getName().endsWith(".gz") 
+				? HEAP_PER_GZIP_FILE_BYTE : HEAP_PER_FILE_BYTE);
+	}
 
 	private void clean() {
+		BoundariesCache.releaseStripe();
+		
 		addrPoints.clear();
 		addrPointsIndex = null;
 		streetsPointsIndex = null;
@@ -308,11 +425,14 @@ public class JoinSliceRunable implements Runnable {
 
 	}
 
-	private long debug(String msg, long s) {
-		Runtime runtime = Runtime.getRuntime();
+	private long debug(Phase phase, long s) {
 		long f = new Date().getTime();
-		log.trace(msg + " d:" + DurationFormatUtils.formatDurationHMS(f - s) + " m:" + 
-				((runtime.totalMemory() - runtime.freeMemory()) / MB + "mb"));
+		phase.timer.update((f - s) * 1000000);
+		if(log.isTraceEnabled()) {
+			Runtime runtime = Runtime.getRuntime();
+			log.trace(phase.msg + " d:" + DurationFormatUtils.formatDurationHMS(f - s) + " m:" + 
+					((runtime.totalMemory() - runtime.freeMemory()) / MB + "mb"));
+		}
 		
 		return f;
 	}
@@ -405,16 +525,14 @@ public class JoinSliceRunable implements Runnable {
 		try {
 			FileUtils.handleLines(src, new LineHandler() {
 				
-				private int counter = 0;
-				
 				@Override
 				public void handle(String line) {
 					String ftype = GeoJsonWriter.getFtype(line);
-					counter++;
+					featuresCount++;
 					
-					if(counter % 10000 == 0) {
+					if(featuresCount % 10000 == 0) {
 						try {
-							MemorySupervizor.checkMemory();
+							reservation.check();
 						}
 						catch (InsufficientMemoryException e) {
 							throw new RuntimeException(e);
@@ -500,12 +618,13 @@ public class JoinSliceRunable implements Runnable {
 			
 		});
 		
-		s = debug("sort boundaries", s);
+		s = debug(Phase.SORT_BOUNDARIES, s);
 		
 		joinNeighbourPlaces(places, placesVoronoi);
 		
+		String stripe = this.src.getName();
 		for(JSONObject boundary : boundaries) {
-			Polygon polygon = GeoJsonWriter.getPolygonGeometry(boundary);
+			PreparedGeometry polygon = boundariesCache.getGeometry(boundary, stripe).getPrepared();
 			
 			many2ManyJoin(boundary, polygon, addr2bndries, addrPointsIndex);
 			many2ManyJoin(boundary, polygon, place2bndries, placesPointsIndex);
@@ -514,36 +633,36 @@ public class JoinSliceRunable implements Runnable {
 			
 		}
 		
-		MemorySupervizor.checkMemory();
+		reservation.check();
 		
-		s = debug("join [addr2bndries, place2bndries, poi2bndries, street2bndries]", s);
+		s = debug(Phase.JOIN_BOUNDARIES, s);
 		
 		joinBoundaries2Streets();
-		s = debug("write json streets to boundaries", s);
+		s = debug(Phase.JOIN_BOUNDARIES_2_STREETS, s);
 		
 		joinStreets2Addresses();
-		s = debug("joinStreets2Addresses", s);
+		s = debug(Phase.JOIN_STREETS_2_ADDRESSES, s);
 		
 		one2OneJoin(placesVoronoi, addr2PlaceVoronoy);
-		s = debug("join addr2PlaceVoronoy", s);
+		s = debug(Phase.JOIN_ADDR_2_PLACE_VORONOY, s);
 		
 		one2OneJoin(neighboursVoronoi, addr2NeighbourVoronoy);
-		s = debug("join addr2NeighbourVoronoy", s);
+		s = debug(Phase.JOIN_ADDR_2_NEIGHBOUR_VORONOY, s);
 		
 		joinJunctionsWithStreets();
-		s = debug("joinJunctionsWithStreets", s);
+		s = debug(Phase.JOIN_JUNCTIONS_WITH_STREETS, s);
 		
 		joinBndg2Poi();
-		s = debug("joinBndg2Poi", s);
+		s = debug(Phase.JOIN_BNDG_2_POI, s);
 		
 		joinBndg2Addr();
-		s = debug("joinBndg2Addr", s);
+		s = debug(Phase.JOIN_BNDG_2_ADDR, s);
 
 		fillAddr2AsStreet();
-		s = debug("fillAddr2AsStreet", s);
+		s = debug(Phase.FILL_ADDR_2_AS_STREET, s);
 		
 		joinPoi2Addresses();
-		s = debug("joinPoi2Addresses", s);
+		s = debug(Phase.JOIN_POI_2_ADDRESSES, s);
 		
 	}
 
@@ -551,7 +670,7 @@ public class JoinSliceRunable implements Runnable {
 	 * Find unique streets' addresses
 	 * */
 	private void createStreetsNetworks() {
-		List<JSONObject> streetParts = new ArrayList<>(); 
+		StreetsNetworksBuilder networksBuilder = new StreetsNetworksBuilder();
 		
 		Iterator<JSONObject> iterator = streets.iterator();
 		while(iterator.hasNext()) {
@@ -559,6 +678,11 @@ public class JoinSliceRunable implements Runnable {
 			
 			JSONArray boundaries = jsonObject.optJSONArray("boundaries");
 			if(boundaries != null) {
+				long wayId = jsonObject.getJSONObject(GeoJsonWriter.META).getLong("id");
+				Envelope envelope = GeoJsonWriter.getLineStringGeometry(
+						jsonObject.getJSONObject(GeoJsonWriter.GEOMETRY).getJSONArray(GeoJsonWriter.COORDINATES))
+						.getEnvelopeInternal();
+				
 				for(int i = 0; i < boundaries.length(); i++) {
 					JSONObject b = boundaries.getJSONObject(i);
 					long bhash = b.getLong("boundariesHash");
@@ -567,42 +691,27 @@ public class JoinSliceRunable implements Runnable {
 					hghway.put("boundariesHash", bhash);
 					hghway.put("boundaries", new JSONArray(Arrays.asList(b)));
 					
-					streetParts.add(hghway);
+					networksBuilder.addSegment(hghway, wayId, bhash, envelope);
 				}
 			}
 			
 			iterator.remove();
 		}
 		
-		Collections.sort(streetParts, StreetsSorterByNameAndBoundaries.INSTANCE);
-		
-		if(streetParts.size() > 1) {
-			List<JSONObject> streetsNetBunch = new ArrayList<>();
-
-			JSONObject prev = streetParts.get(0);
-			streetsNetBunch.add(prev);
-			
-			for(int i = 1; i < streetParts.size(); i++) {
-				JSONObject next = streetParts.get(i);
-				
-				int compare = StreetsSorterByNameAndBoundaries.INSTANCE.compare(prev, next);
-			
-				// Equals
-				if(compare == 0) {
-					streetsNetBunch.add(next);
-				}
-				else {
-					joinStreetsNet(streetsNetBunch);
-					streetsNetBunch.clear();
-					streetsNetBunch.add(next);
+		for(JSONObject junction : junctions) {
+			JSONArray ways = junction.optJSONArray("ways");
+			if(ways != null) {
+				List<Long> wayIds = new ArrayList<>(ways.length());
+				for(int i = 0; i < ways.length(); i++) {
+					wayIds.add(ways.getLong(i));
 				}
-				prev = next;
-			}
-			
-			if(!streetsNetBunch.isEmpty()) {
-				joinStreetsNet(streetsNetBunch);
+				networksBuilder.addJunction(wayIds);
 			}
 		}
+		
+		for(List<JSONObject> network : networksBuilder.build()) {
+			joinStreetsNet(network);
+		}
 	}
 
 	private void joinStreetsNet(List<JSONObject> streetsNetBunch) {
@@ -628,8 +737,8 @@ public class JoinSliceRunable implements Runnable {
 			String nameHash = StringUtils.replaceChars(
 					String.valueOf(name.hashCode()), '-', 'm');
 			
-			String id = "hghnet" + "-" + String.format("%010d", hash) + 
-					"-" + nameHash;
+			String id = HilbertCurveHasher.appendHash(new StringBuilder("hghnet-"), hash) 
+					.append('-').append(nameHash).toString();
 			
 			hghnet.put("id", id);
 			hghnet.put("feature_id", id);
@@ -734,13 +843,13 @@ public class JoinSliceRunable implements Runnable {
 			@SuppressWarnings("deprecation")
 			Geometry buffer = ls.buffer(STREET_BUFFER_DISTANCE, 2, BufferOp.CAP_ROUND);
 			if(buffer instanceof Polygon) {
-				many2ManyJoin(strtJSON, (Polygon) buffer, addr2streets, addrPointsIndex);
+				many2ManyJoin(strtJSON, PreparedGeometryFactory.prepare(buffer), addr2streets, addrPointsIndex);
 			}
 			else if(buffer instanceof MultiPolygon) {
 				for(int i = 0; i < buffer.getNumGeometries(); i++) {
 					Polygon p = (Polygon) buffer.getGeometryN(i);
 					if(p.isValid()) {
-						many2ManyJoin(strtJSON, p, addr2streets, addrPointsIndex);
+						many2ManyJoin(strtJSON, PreparedGeometryFactory.prepare(p), addr2streets, addrPointsIndex);
 					}
 				}
 			}
@@ -792,18 +901,7 @@ public class JoinSliceRunable implements Runnable {
 
 	
 	private void handleOut(JSONObject poi) {
-		if(poi != null) {
-			for(JoinOutHandler handler : Options.get().getJoinOutHandlers()) {
-				try {
-					handler.handle(poi, this.src.getName());
-				}
-				catch (Exception e) {
-					String id = poi.optString("id"); 
-					String errMessage = String.format("Eception in handler %s for %s", handler.getClass().getName(),  id);
-					log.error(errMessage, e);
-				}
-			}
-		}
+		Options.get().getHandlersFanOut().handle(poi, this.src.getName());
 	}
 
 	private Collection<String> getIds(List<JSONObject> addrPnts) {
@@ -929,7 +1027,7 @@ public class JoinSliceRunable implements Runnable {
 			addr2PlaceVoronoy = null;
 			addr2streets = null;
 			
-			s = debug("write out addrPoints", s);
+			s = debug(Phase.WRITE_ADDR_POINTS, s);
 			
 			for(JSONObject street : street2bndries.keySet()) {
 				if(street.has("boundaries")) {
@@ -940,7 +1038,7 @@ public class JoinSliceRunable implements Runnable {
 				}
 			}
 			
-			s = debug("write out street2bndries", s);
+			s = debug(Phase.WRITE_STREET_2_BNDRIES, s);
 			
 			for(JSONObject jun : junctions) {
 				GeoJsonWriter.addTimestamp(jun);
@@ -948,7 +1046,7 @@ public class JoinSliceRunable implements Runnable {
 				handleOut(jun);
 			}
 			
-			s = debug("write out junctions", s);
+			s = debug(Phase.WRITE_JUNCTIONS, s);
 			
 			for(Entry<JSONObject, List<JSONObject>> entry : place2bndries.entrySet()) {
 				List<JSONObject> boundaries = new ArrayList<>(entry.getValue());
@@ -958,7 +1056,7 @@ public class JoinSliceRunable implements Runnable {
 					
 					String name = place.getJSONObject(GeoJsonWriter.PROPERTIES).optString("name");
 					for(JSONObject b : boundaries) {
-						if(namesMatcher.isPlaceNameMatch(name, AddressesUtils.filterNameTags(b))) {
+						if(namesMatcher.isPlaceNameMatch(name, NamesSet.of(b))) {
 							place.put("matchedBoundary", b);
 							break;
 						}
@@ -972,7 +1070,7 @@ public class JoinSliceRunable implements Runnable {
 				}
 			}
 			
-			s = debug("write out place2bndries", s);
+			s = debug(Phase.WRITE_PLACE_2_BNDRIES, s);
 			
 			for(JSONObject boundary : boundaries) {
 				GeoJsonWriter.addTimestamp(boundary);
@@ -980,7 +1078,7 @@ public class JoinSliceRunable implements Runnable {
 				handleOut(boundary);
 			}
 			
-			s = debug("write out boundaries", s);
+			s = debug(Phase.WRITE_BOUNDARIES, s);
 
 			for(JSONObject obj : placesVoronoi) {
 				GeoJsonWriter.addTimestamp(obj);
@@ -988,7 +1086,7 @@ public class JoinSliceRunable implements Runnable {
 				handleOut(obj);
 			}
 			
-			s = debug("write out placesVoronoi", s);
+			s = debug(Phase.WRITE_PLACES_VORONOI, s);
 
 			for(JSONObject obj : neighboursVoronoi) {
 				GeoJsonWriter.addTimestamp(obj);
@@ -996,7 +1094,7 @@ public class JoinSliceRunable implements Runnable {
 				handleOut(obj);
 			}
 			
-			s = debug("write out neighboursVoronoi", s);
+			s = debug(Phase.WRITE_NEIGHBOURS_VORONOI, s);
 			
 			createStreetsNetworks();
 		}
@@ -1034,8 +1132,8 @@ public class JoinSliceRunable implements Runnable {
 		}
 	}
 
-	private void many2ManyJoin(JSONObject object, Polygon polyg, Map<JSONObject, List<JSONObject>> result, SpatialIndex index) {
-		Envelope polygonEnvelop = polyg.getEnvelopeInternal();
+	private void many2ManyJoin(JSONObject object, PreparedGeometry polyg, Map<JSONObject, List<JSONObject>> result, SpatialIndex index) {
+		Envelope polygonEnvelop = polyg.getGeometry().getEnvelopeInternal();
 		for (Object entry : index.query(polygonEnvelop)) {
 			
 			JSONArray pntg = ((JSONObject)entry).getJSONObject(GeoJsonWriter.GEOMETRY).getJSONArray(GeoJsonWriter.COORDINATES);
@@ -1052,9 +1150,9 @@ public class JoinSliceRunable implements Runnable {
 		}
 	}
 
-	private void highwaysJoin(JSONObject newBoundary, Polygon polyg, Map<JSONObject, List<List<JSONObject>>> result, SpatialIndex index) {
+	private void highwaysJoin(JSONObject newBoundary, PreparedGeometry polyg, Map<JSONObject, List<List<JSONObject>>> result, SpatialIndex index) {
 		
-		Envelope polygonEnvelop = polyg.getEnvelopeInternal();
+		Envelope polygonEnvelop = polyg.getGeometry().getEnvelopeInternal();
 		
 		Set<JSONObject> uniqueHW = new HashSet<JSONObject>();
 		for (Object entry : index.query(polygonEnvelop)) {
@@ -1065,8 +1163,8 @@ public class JoinSliceRunable implements Runnable {
 			}
 		}
 		
+		int bLevel = getBlevel(newBoundary);
 		for (JSONObject highway: uniqueHW ) { 
-			int bLevel = getBlevel(newBoundary);
 			
 			if(result.get(highway) == null) {
 				result.put(highway, new ArrayList<List<JSONObject>>());
@@ -1118,10 +1216,7 @@ public class JoinSliceRunable implements Runnable {
 					
 					//add to exists row (with coordinates check)
 					else {
-						JSONArray coords = last.getJSONObject(GeoJsonWriter.GEOMETRY)
-								.getJSONArray(GeoJsonWriter.COORDINATES);
-						
-						Point centroid = GeoJsonWriter.getPolygonGeometry(coords).getCentroid();
+						Point centroid = boundariesCache.getGeometry(last, this.src.getName()).getCentroid();
 						
 						if(polyg.contains(centroid)) {
 							row.add(newBoundary);
@@ -1132,12 +1227,22 @@ public class JoinSliceRunable implements Runnable {
 		}
 	}
 
+	/**
+	 * Size of boundary address level, default parser
+	 * memoizes it inside the join of stripe.
+	 * */
 	private int getBlevel(JSONObject newBoundary) {
+		if(addressesParser instanceof AddressesParserImpl) {
+			BoundaryDescriptor descriptor = ((AddressesParserImpl) addressesParser).getDescriptor(newBoundary);
+			return descriptor.getLvlSize();
+		}
+		
 		int bLevel = 0;
 		String addrLevel = addressesParser.getAddrLevel(newBoundary);
 		if(addrLevel != null) {
 			bLevel = addrLevelComparator.getLVLSize(addrLevel);
 		}
+		
 		return bLevel;
 	}
 
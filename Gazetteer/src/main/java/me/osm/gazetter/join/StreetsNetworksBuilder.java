@@ -0,0 +1,267 @@
+package me.osm.gazetter.join;
+
+import gnu.trove.set.hash.TIntHashSet;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import me.osm.gazetter.Options;
+import me.osm.gazetter.addresses.AddressesUtils;
+import me.osm.gazetter.addresses.NamesMatcher;
+import me.osm.gazetter.addresses.impl.NamesContainmentIndex;
+import me.osm.gazetter.addresses.impl.NamesMatcherImpl;
+import me.osm.gazetter.utils.UnionFind;
+
+import org.json.JSONObject;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.index.strtree.STRtree;
+
+/**
+ * Groups streets segments into streets networks.
+ * <p>
+ * Segments are joined into one network if they have the same boundaries,
+ * matched names (see {@link NamesMatcher#doesStreetsMatch(Map, Map)})
+ * and if they are connected by junction or their envelopes touches each other.
+ * <p>
+ * Names are interned once per segment, and networks are built with union-find,
+ * so there are no pairwise comparisons of JSONObjects.
+ * For default {@link NamesMatcherImpl} matched names are found with
+ * {@link NamesContainmentIndex}, other matchers are asked once per pair of names.
+ * */
+public class StreetsNetworksBuilder {
+
+	/**
+	 * Envelopes are expanded by ~1m, to connect segments
+	 * which don't share the node.
+	 * */
+	private static final double ENVELOPE_TOLERANCE = 1.0 / 111195.0;
+
+	private final NamesMatcher matcher;
+
+	/**
+	 * Names are matched by containment, as in NamesMatcherImpl,
+	 * so matches could be found with namesIndex.
+	 * */
+	private final boolean containment;
+
+	private final List<JSONObject> segments = new ArrayList<>();
+	private final List<Envelope> envelopes = new ArrayList<>();
+	private final List<Long> boundaries = new ArrayList<>();
+
+	/**
+	 * Interned normalized name per segment
+	 * */
+	private final List<Integer> names = new ArrayList<>();
+
+	private final Map<Object, Integer> namesIds = new HashMap<>();
+	private final NamesContainmentIndex namesIndex = new NamesContainmentIndex();
+
+	/**
+	 * Name tags by name id, for matchers other than default one.
+	 * */
+	private final List<Map<String, String>> namesTags = new ArrayList<>();
+
+	/**
+	 * Ids of matched names, found lazily.
+	 * */
+	private final List<TIntHashSet> namesMatches = new ArrayList<>();
+
+	private final Map<Long, List<Integer>> way2segments = new HashMap<>();
+	private final List<Collection<Long>> junctions = new ArrayList<>();
+
+	/**
+	 * Uses names matcher from {@link Options}
+	 * */
+	public StreetsNetworksBuilder() {
+		this(Options.get().getNamesMatcher());
+	}
+
+	public StreetsNetworksBuilder(NamesMatcher matcher) {
+		this.matcher = matcher;
+		// subclasses may override matching
+		this.containment = matcher.getClass() == NamesMatcherImpl.class;
+	}
+
+	/**
+	 * @param segment street segment with one boundaries row
+	 * @param wayId osm id of the street way
+	 * @param boundariesHash hash of boundaries row
+	 * @param envelope envelope of the segment geometry
+	 * */
+	public void addSegment(JSONObject segment, long wayId, long boundariesHash, Envelope envelope) {
+
+		int index = segments.size();
+
+		segments.add(segment);
+		boundaries.add(boundariesHash);
+		envelopes.add(expand(envelope));
+
+		Map<String, String> nameTags = AddressesUtils.filterNameTags(segment);
+		Object key = containment ? NamesMatcherImpl.normalizeStreetName(nameTags.get("name")) : nameTags;
+
+		Integer nameId = namesIds.get(key);
+		if(nameId == null) {
+			if(containment) {
+				nameId = namesIndex.add((String) key);
+			}
+			else {
+				nameId = namesTags.size();
+				namesTags.add(nameTags);
+			}
+			namesIds.put(key, nameId);
+			namesMatches.add(null);
+		}
+		names.add(nameId);
+
+		List<Integer> waySegments = way2segments.get(wayId);
+		if(waySegments == null) {
+			waySegments = new ArrayList<>(2);
+			way2segments.put(wayId, waySegments);
+		}
+		waySegments.add(index);
+	}
+
+	/**
+	 * @param ways ids of ways connected in junction
+	 * */
+	public void addJunction(Collection<Long> ways) {
+		junctions.add(ways);
+	}
+
+	/**
+	 * Returns streets networks, segments inside networks,
+	 * and networks are ordered as segments were added.
+	 * */
+	public List<List<JSONObject>> build() {
+
+		UnionFind uf = new UnionFind(segments.size());
+
+		joinByEnvelopes(uf);
+		joinByJunctions(uf);
+
+		Map<Integer, List<JSONObject>> networks = new LinkedHashMap<>();
+		for(int i = 0; i < segments.size(); i++) {
+			int root = uf.find(i);
+			List<JSONObject> network = networks.get(root);
+			if(network == null) {
+				network = new ArrayList<>();
+				networks.put(root, network);
+			}
+			network.add(segments.get(i));
+		}
+
+		return new ArrayList<>(networks.values());
+	}
+
+	@SuppressWarnings("unchecked")
+	private void joinByEnvelopes(UnionFind uf) {
+
+		Map<Long, List<Integer>> byBoundaries = new HashMap<>();
+		for(int i = 0; i < segments.size(); i++) {
+			List<Integer> list = byBoundaries.get(boundaries.get(i));
+			if(list == null) {
+				list = new ArrayList<>();
+				byBoundaries.put(boundaries.get(i), list);
+			}
+			list.add(i);
+		}
+
+		for(List<Integer> group : byBoundaries.values()) {
+			if(group.size() < 2) {
+				continue;
+			}
+
+			STRtree index = new STRtree();
+			for(Integer i : group) {
+				index.insert(envelopes.get(i), i);
+			}
+
+			for(Integer i : group) {
+				for(Integer j : (List<Integer>)index.query(envelopes.get(i))) {
+					if(j > i && match(i, j)) {
+						uf.union(i, j);
+					}
+				}
+			}
+		}
+	}
+
+	private void joinByJunctions(UnionFind uf) {
+		for(Collection<Long> ways : junctions) {
+			List<Integer> connected = new ArrayList<>();
+			for(Long way : ways) {
+				List<Integer> waySegments = way2segments.get(way);
+				if(waySegments != null) {
+					connected.addAll(waySegments);
+				}
+			}
+
+			for(int a = 0; a < connected.size(); a++) {
+				for(int b = a + 1; b < connected.size(); b++) {
+					int i = connected.get(a);
+					int j = connected.get(b);
+					if(boundaries.get(i).equals(boundaries.get(j)) && match(i, j)) {
+						uf.union(i, j);
+					}
+				}
+			}
+		}
+	}
+
+	private boolean match(int i, int j) {
+		int n1 = names.get(i);
+		int n2 = names.get(j);
+
+		if(n1 == n2) {
+			return true;
+		}
+
+		if(!containment) {
+			return matchByMatcher(n1, n2);
+		}
+
+		TIntHashSet matches = namesMatches.get(n1);
+		if(matches == null) {
+			matches = new TIntHashSet(namesIndex.matches(namesIndex.getName(n1)));
+			namesMatches.set(n1, matches);
+		}
+
+		return matches.contains(n2);
+	}
+
+	/**
+	 * Memoizes both positive and negative results,
+	 * negative are stored as -(id + 1).
+	 * */
+	private boolean matchByMatcher(int n1, int n2) {
+		TIntHashSet matches = namesMatches.get(n1);
+		if(matches == null) {
+			matches = new TIntHashSet();
+			namesMatches.set(n1, matches);
+		}
+
+		if(matches.contains(n2)) {
+			return true;
+		}
+		if(matches.contains(-(n2 + 1))) {
+			return false;
+		}
+
+		boolean match = matcher.doesStreetsMatch(namesTags.get(n1), namesTags.get(n2));
+		matches.add(match ? n2 : -(n2 + 1));
+
+		return match;
+	}
+
+	private static Envelope expand(Envelope envelope) {
+		Envelope e = new Envelope(envelope);
+		e.expandBy(ENVELOPE_TOLERANCE);
+		return e;
+	}
+
+}
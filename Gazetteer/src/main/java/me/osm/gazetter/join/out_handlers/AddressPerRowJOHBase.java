@@ -1,34 +1,65 @@
 package me.osm.gazetter.join.out_handlers;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-
+import me.osm.gazetter.join.out_handlers.AddressRows.AddressRow;
 import me.osm.gazetter.out.AddrRowValueExctractorImpl;
 import me.osm.gazetter.striper.FeatureTypes;
 
-import org.json.JSONArray;
 import org.json.JSONObject;
 
 /**
  * Originally objects like building, poi or highways
- * may have more than one address,
+ * may have more than one address, handlers based on this
+ * class get one call per address row.
  * */
 public abstract class AddressPerRowJOHBase extends SingleWriterJOHBase {
 
 	protected volatile boolean dropEmptyAddresses = true;
 	
+	/**
+	 * Address rows of the feature, which is handled by current thread
+	 * */
+	private final ThreadLocal<AddressRows> current = new ThreadLocal<>();
+	
 	@Override
 	public void handle(JSONObject object, String stripe) {
-		List<JSONObject> addresses = listAddresses(object, stripe);
-		if(addresses != null && !addresses.isEmpty()) {
-			for(JSONObject address : addresses) {
-				handle(object, address, stripe);
+		handle(AddressRows.of(object, stripe));
+	}
+	
+	/**
+	 * Handle address rows, which may be shared with other handlers.
+	 * */
+	public void handle(AddressRows rows) {
+		current.set(rows);
+		try {
+			JSONObject object = rows.getObject();
+			String stripe = rows.getStripe();
+			
+			if(!rows.getRows().isEmpty()) {
+				for(AddressRow row : rows.getRows()) {
+					handle(object, row.getAddress(), stripe);
+				}
 			}
+			else if (!dropEmptyAddresses) {
+				handle(object, null, stripe);
+			}
+		}
+		finally {
+			current.remove();
 		}
-		else if (!dropEmptyAddresses) {
-			handle(object, null, stripe);
+	}
+	
+	/**
+	 * Shared row for address of the feature handled by this thread,
+	 * so uid and levels are computed once for all the handlers.
+	 * 
+	 * @return row or null if address isn't from handled feature
+	 * */
+	protected AddressRow getAddressRow(JSONObject address) {
+		AddressRows rows = current.get();
+		if(rows == null || address == null) {
+			return null;
 		}
+		return rows.getRow(address);
 	}
 	
 	public static String getUID(JSONObject oject, JSONObject addressRow) {
@@ -138,156 +169,4 @@ public abstract class AddressPerRowJOHBase extends SingleWriterJOHBase {
 		
 	}
 
-	protected List<JSONObject> listAddresses(JSONObject jsonObject, String stripe) {
-		
-		String ftype = jsonObject.optString("ftype");
-
-		if(FeatureTypes.ADDR_POINT_FTYPE.equals(ftype)) {
-			JSONArray addresses = jsonObject.optJSONArray("addresses");
-			if(addresses != null) {
-				List<JSONObject> result = new ArrayList<JSONObject>();
-				for(int ri = 0; ri < addresses.length(); ri++ ) {
-					result.add(addresses.getJSONObject(ri));
-				}
-				return result;
-			}
-		}
-		
-		else if(FeatureTypes.HIGHWAY_FEATURE_TYPE.equals(ftype)) {
-			JSONArray boundaries = jsonObject.optJSONArray("boundaries");
-			if(boundaries != null) {
-				List<JSONObject> result = new ArrayList<JSONObject>();
-				for(int i = 0; i < boundaries.length(); i++) {
-					result.add(boundaries.getJSONObject(i));
-				}
-				return result;
-			}
-		}
-
-		else if(FeatureTypes.HIGHWAY_NET_FEATURE_TYPE.equals(ftype)) {
-			JSONArray boundaries = jsonObject.optJSONArray("boundaries");
-			if(boundaries != null) {
-				List<JSONObject> result = new ArrayList<JSONObject>();
-				for(int i = 0; i < boundaries.length(); i++) {
-					result.add(boundaries.getJSONObject(i));
-				}
-				return result;
-			}
-		}
-		
-		else if(FeatureTypes.PLACE_POINT_FTYPE.equals(ftype)) {
-			JSONObject boundaries = jsonObject.optJSONObject("boundaries");
-			if(boundaries != null) {
-				List<JSONObject> result = new ArrayList<JSONObject>();
-				result.add(boundaries);
-				return result;
-			}
-		}
-		
-		else if(FeatureTypes.POI_FTYPE.equals(ftype)) {
-			List<JSONObject> addresses = new ArrayList<JSONObject>();
-			String poiAddrMatch = fillPoiAddresses(jsonObject, addresses);
-			if(addresses.isEmpty() || "nearest".equals(poiAddrMatch)) {
-				
-				if(jsonObject.optJSONObject("boundaries") == null) {
-					return null;
-				}
-				
-				poiAddrMatch = "boundaries";
-				addresses =  new ArrayList<JSONObject>(Collections.singletonList(jsonObject.optJSONObject("boundaries")));
-			}
-			
-			for(JSONObject addrO : addresses) {
-				addrO.put("poiAddrMatch", poiAddrMatch);
-			}
-			
-			return addresses;
-		}
-		
-		JSONObject b =jsonObject.optJSONObject("boundaries");
-		if(b != null) {
-			return Collections.singletonList(jsonObject.optJSONObject("boundaries"));
-		}
-		
-		return null;
-	}
-	
-	private String fillPoiAddresses(JSONObject poi, List<JSONObject> result) {
-		
-		JSONObject joinedAddresses = poi.optJSONObject("joinedAddresses");
-		if(joinedAddresses != null) {
-			
-			//"sameSource"
-			if(getAddressesFromObj(result, joinedAddresses, "sameSource")) {
-				return "sameSource";
-			}
-			
-			//"contains"
-			if(getAddressesFromCollection(result, joinedAddresses, "contains")) {
-				return "contains";
-			}
-
-			//"shareBuildingWay"
-			if(getAddressesFromCollection(result, joinedAddresses, "shareBuildingWay")) {
-				return "shareBuildingWay";
-			}
-
-			//"nearestShareBuildingWay"
-			if(getAddressesFromCollection(result, joinedAddresses, "nearestShareBuildingWay")) {
-				return "nearestShareBuildingWay";
-			}
-
-			//"nearest"
-			if(getAddressesFromObj(result, joinedAddresses, "nearest")) {
-				return "nearest";
-			}
-			
-		}
-		
-		return null;
-	}
-
-	private boolean getAddressesFromObj(List<JSONObject> result,
-			JSONObject joinedAddresses, String key) {
-		
-		boolean founded = false;
-		
-		JSONObject ss = joinedAddresses.optJSONObject(key);
-		if(ss != null) {
-			JSONArray addresses = ss.optJSONArray("addresses");
-			if(addresses != null) {
-				for(int i = 0; i < addresses.length(); i++) {
-					result.add(addresses.getJSONObject(i));
-				}
-				founded = true;
-			}
-		}
-		
-		return founded;
-	}
-
-	private boolean getAddressesFromCollection(List<JSONObject> result,
-			JSONObject joinedAddresses, String key) {
-		
-		boolean founded = false;
-		
-		JSONArray contains = joinedAddresses.optJSONArray("contains");
-		if(contains != null && contains.length() > 0) {
-			
-			for(int ci = 0; ci < contains.length(); ci++) {
-				JSONObject co = contains.getJSONObject(ci);
-				JSONArray addresses = co.optJSONArray("addresses");
-				if(addresses != null) {
-					for(int i = 0; i < addresses.length(); i++) {
-						result.add(addresses.getJSONObject(i));
-						founded = true;
-					}
-				}
-			}
-			
-		}
-		
-		return founded;
-	}
-
 }
@@ -0,0 +1,313 @@
+package me.osm.gazetter.join.out_handlers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import me.osm.gazetter.out.AddrRowValueExctractorImpl;
+import me.osm.gazetter.striper.FeatureTypes;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Feature with its address rows, built once
+ * and shared by all the output handlers.
+ * <p>
+ * Should be treated as read only, handlers may use it
+ * from different threads. Row uid and levels map are
+ * computed on first access and cached.
+ * */
+public final class AddressRows {
+
+	/**
+	 * Cached value for rows without levels
+	 * */
+	private static final Map<String, JSONObject> NO_LEVELS = Collections.emptyMap();
+
+	public static final class AddressRow {
+
+		private final JSONObject object;
+		private final String ftype;
+		private final JSONObject address;
+
+		private volatile String uid;
+		private volatile Map<String, JSONObject> levels;
+
+		private AddressRow(JSONObject object, String ftype, JSONObject address) {
+			this.object = object;
+			this.ftype = ftype;
+			this.address = address;
+		}
+
+		public JSONObject getAddress() {
+			return address;
+		}
+
+		/**
+		 * See {@link AddrRowValueExctractorImpl#getUID(JSONObject, JSONObject, String)}
+		 * */
+		public String getUID() {
+			String result = uid;
+			if(result == null) {
+				result = AddrRowValueExctractorImpl.getUID(object, address, ftype);
+				uid = result;
+			}
+			return result;
+		}
+
+		/**
+		 * @return address parts by level, or null
+		 * if address row has no parts
+		 * */
+		public Map<String, JSONObject> getLevels() {
+			Map<String, JSONObject> result = levels;
+			if(result == null) {
+				result = mapLevels(address);
+				levels = result;
+			}
+			return result == NO_LEVELS ? null : result;
+		}
+
+		private static Map<String, JSONObject> mapLevels(JSONObject addrRow) {
+			try {
+				Map<String, JSONObject> result = new HashMap<String, JSONObject>();
+
+				JSONArray parts = addrRow.getJSONArray("parts");
+				for(int i = 0; i < parts.length(); i++) {
+					JSONObject part = parts.getJSONObject(i);
+					result.put(part.getString("lvl"), part);
+				}
+
+				return Collections.unmodifiableMap(result);
+			}
+			catch (JSONException e) {
+				return NO_LEVELS;
+			}
+		}
+	}
+
+	private final JSONObject object;
+	private final String ftype;
+	private final String stripe;
+	private final List<AddressRow> rows;
+
+	private AddressRows(JSONObject object, String stripe, List<JSONObject> addresses) {
+		this.object = object;
+		this.ftype = object.optString("ftype");
+		this.stripe = stripe;
+
+		if(addresses == null || addresses.isEmpty()) {
+			this.rows = Collections.emptyList();
+		}
+		else {
+			List<AddressRow> rows = new ArrayList<>(addresses.size());
+			for(JSONObject address : addresses) {
+				rows.add(new AddressRow(object, ftype, address));
+			}
+			this.rows = Collections.unmodifiableList(rows);
+		}
+	}
+
+	public static AddressRows of(JSONObject object, String stripe) {
+		return new AddressRows(object, stripe, listAddresses(object));
+	}
+
+	/**
+	 * Standalone row, for address which doesn't come from {@link AddressRows}
+	 * */
+	public static AddressRow row(JSONObject object, JSONObject address) {
+		return new AddressRow(object, object.optString("ftype"), address);
+	}
+
+	public JSONObject getObject() {
+		return object;
+	}
+
+	public String getFtype() {
+		return ftype;
+	}
+
+	public String getStripe() {
+		return stripe;
+	}
+
+	public List<AddressRow> getRows() {
+		return rows;
+	}
+
+	/**
+	 * @return row for address object, or null if
+	 * address isn't one of this feature addresses
+	 * */
+	public AddressRow getRow(JSONObject address) {
+		for(AddressRow row : rows) {
+			if(row.address == address) {
+				return row;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Originally objects like building, poi or highways
+	 * may have more than one address.
+	 * <p>
+	 * For pois, poiAddrMatch is written into every address.
+	 * */
+	public static List<JSONObject> listAddresses(JSONObject jsonObject) {
+
+		String ftype = jsonObject.optString("ftype");
+
+		if(FeatureTypes.ADDR_POINT_FTYPE.equals(ftype)) {
+			JSONArray addresses = jsonObject.optJSONArray("addresses");
+			if(addresses != null) {
+				List<JSONObject> result = new ArrayList<JSONObject>();
+				for(int ri = 0; ri < addresses.length(); ri++ ) {
+					result.add(addresses.getJSONObject(ri));
+				}
+				return result;
+			}
+		}
+
+		else if(FeatureTypes.HIGHWAY_FEATURE_TYPE.equals(ftype)) {
+			JSONArray boundaries = jsonObject.optJSONArray("boundaries");
+			if(boundaries != null) {
+				List<JSONObject> result = new ArrayList<JSONObject>();
+				for(int i = 0; i < boundaries.length(); i++) {
+					result.add(boundaries.getJSONObject(i));
+				}
+				return result;
+			}
+		}
+
+		else if(FeatureTypes.HIGHWAY_NET_FEATURE_TYPE.equals(ftype)) {
+			JSONArray boundaries = jsonObject.optJSONArray("boundaries");
+			if(boundaries != null) {
+				List<JSONObject> result = new ArrayList<JSONObject>();
+				for(int i = 0; i < boundaries.length(); i++) {
+					result.add(boundaries.getJSONObject(i));
+				}
+				return result;
+			}
+		}
+
+		else if(FeatureTypes.PLACE_POINT_FTYPE.equals(ftype)) {
+			JSONObject boundaries = jsonObject.optJSONObject("boundaries");
+			if(boundaries != null) {
+				List<JSONObject> result = new ArrayList<JSONObject>();
+				result.add(boundaries);
+				return result;
+			}
+		}
+
+		else if(FeatureTypes.POI_FTYPE.equals(ftype)) {
+			List<JSONObject> addresses = new ArrayList<JSONObject>();
+			String poiAddrMatch = fillPoiAddresses(jsonObject, addresses);
+			if(addresses.isEmpty() || "nearest".equals(poiAddrMatch)) {
+
+				if(jsonObject.optJSONObject("boundaries") == null) {
+					return null;
+				}
+
+				poiAddrMatch = "boundaries";
+				addresses =  new ArrayList<JSONObject>(Collections.singletonList(jsonObject.optJSONObject("boundaries")));
+			}
+
+			for(JSONObject addrO : addresses) {
+				addrO.put("poiAddrMatch", poiAddrMatch);
+			}
+
+			return addresses;
+		}
+
+		JSONObject b =jsonObject.optJSONObject("boundaries");
+		if(b != null) {
+			return Collections.singletonList(jsonObject.optJSONObject("boundaries"));
+		}
+
+		return null;
+	}
+
+	private static String fillPoiAddresses(JSONObject poi, List<JSONObject> result) {
+
+		JSONObject joinedAddresses = poi.optJSONObject("joinedAddresses");
+		if(joinedAddresses != null) {
+
+			//"sameSource"
+			if(getAddressesFromObj(result, joinedAddresses, "sameSource")) {
+				return "sameSource";
+			}
+
+			//"contains"
+			if(getAddressesFromCollection(result, joinedAddresses, "contains")) {
+				return "contains";
+			}
+
+			//"shareBuildingWay"
+			if(getAddressesFromCollection(result, joinedAddresses, "shareBuildingWay")) {
+				return "shareBuildingWay";
+			}
+
+			//"nearestShareBuildingWay"
+			if(getAddressesFromCollection(result, joinedAddresses, "nearestShareBuildingWay")) {
+				return "nearestShareBuildingWay";
+			}
+
+			//"nearest"
+			if(getAddressesFromObj(result, joinedAddresses, "nearest")) {
+				return "nearest";
+			}
+
+		}
+
+		return null;
+	}
+
+	private static boolean getAddressesFromObj(List<JSONObject> result,
+			JSONObject joinedAddresses, String key) {
+
+		boolean founded = false;
+
+		JSONObject ss = joinedAddresses.optJSONObject(key);
+		if(ss != null) {
+			JSONArray addresses = ss.optJSONArray("addresses");
+			if(addresses != null) {
+				for(int i = 0; i < addresses.length(); i++) {
+					result.add(addresses.getJSONObject(i));
+				}
+				founded = true;
+			}
+		}
+
+		return founded;
+	}
+
+	private static boolean getAddressesFromCollection(List<JSONObject> result,
+			JSONObject joinedAddresses, String key) {
+
+		boolean founded = false;
+
+		JSONArray contains = joinedAddresses.optJSONArray("contains");
+		if(contains != null && contains.length() > 0) {
+
+			for(int ci = 0; ci < contains.length(); ci++) {
+				JSONObject co = contains.getJSONObject(ci);
+				JSONArray addresses = co.optJSONArray("addresses");
+				if(addresses != null) {
+					for(int i = 0; i < addresses.length(); i++) {
+						result.add(addresses.getJSONObject(i));
+						founded = true;
+					}
+				}
+			}
+
+		}
+
+		return founded;
+	}
+
+}
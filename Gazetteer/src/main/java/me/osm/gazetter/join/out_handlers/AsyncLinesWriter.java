@@ -0,0 +1,178 @@
+package me.osm.gazetter.join.out_handlers;
+
+import java.io.PrintWriter;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+
+import me.osm.gazetter.metrics.Histogram;
+import me.osm.gazetter.metrics.Metrics;
+import me.osm.gazetter.metrics.Timer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes lines in separate thread.
+ * <p>
+ * Producers (join threads) prepare lines and put them into bounded
+ * queue, so they are blocked only if writer can't keep up with them.
+ * Lines are written in the order they were queued.
+ * <p>
+ * Barriers are used to wait until all previously queued lines are
+ * written and flushed.
+ * */
+public class AsyncLinesWriter {
+
+	private static final Logger log = LoggerFactory.getLogger(AsyncLinesWriter.class);
+
+	private static final class Item {
+		private final PrintWriter writer;
+		private final String line;
+		private final List<String> lines;
+		private final CountDownLatch barrier;
+
+		private Item(PrintWriter writer, String line, List<String> lines, CountDownLatch barrier) {
+			this.writer = writer;
+			this.line = line;
+			this.lines = lines;
+			this.barrier = barrier;
+		}
+	}
+
+	private static final Item STOP = new Item(null, null, null, null);
+
+	private static final Histogram queueDepth = Metrics.histogram("out.queue_depth");
+	private static final Timer putWait = Metrics.timer("out.queue_put_wait");
+
+	private final BlockingQueue<Item> queue;
+	private final Thread consumer;
+
+	private volatile Throwable error = null;
+
+	public AsyncLinesWriter(String name, int queueSize) {
+		this.queue = new ArrayBlockingQueue<>(queueSize);
+
+		this.consumer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				consume();
+			}
+		}, "out-" + name);
+
+		this.consumer.setDaemon(true);
+		this.consumer.start();
+	}
+
+	/**
+	 * Queue line to be written.
+	 * */
+	public void write(PrintWriter writer, String line) {
+		put(new Item(writer, line, null, null));
+	}
+
+	/**
+	 * Queue a bunch of lines, which will be written together.
+	 * */
+	public void write(PrintWriter writer, List<String> lines) {
+		put(new Item(writer, null, lines, null));
+	}
+
+	/**
+	 * Wait till all queued lines are written and flushed.
+	 * */
+	public void barrier() {
+		CountDownLatch latch = new CountDownLatch(1);
+		put(new Item(null, null, null, latch));
+		try {
+			latch.await();
+		}
+		catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+		checkError();
+	}
+
+	/**
+	 * Write everything and stop writer thread.
+	 * */
+	public void close() {
+		barrier();
+		put(STOP);
+		try {
+			consumer.join();
+		}
+		catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private void put(Item item) {
+		checkError();
+		queueDepth.update(queue.size());
+		try {
+			long start = putWait.start();
+			queue.put(item);
+			putWait.stop(start);
+		}
+		catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private void checkError() {
+		if(error != null) {
+			throw new RuntimeException("Failed to write out", error);
+		}
+	}
+
+	private void consume() {
+		Set<PrintWriter> dirty = Collections.newSetFromMap(new IdentityHashMap<PrintWriter, Boolean>());
+		while(true) {
+			Item item;
+			try {
+				item = queue.take();
+			}
+			catch (InterruptedException e) {
+				return;
+			}
+
+			if(item == STOP) {
+				return;
+			}
+
+			try {
+				if(item.barrier != null) {
+					for(PrintWriter w : dirty) {
+						w.flush();
+					}
+					dirty.clear();
+					item.barrier.countDown();
+				}
+				else if(error == null) {
+					if(item.line != null) {
+						item.writer.println(item.line);
+					}
+					else {
+						for(String s : item.lines) {
+							item.writer.println(s);
+						}
+					}
+					dirty.add(item.writer);
+				}
+			}
+			catch (Throwable t) {
+				log.error("Failed to write out", t);
+				error = t;
+				if(item.barrier != null) {
+					item.barrier.countDown();
+				}
+			}
+		}
+	}
+
+}
@@ -19,13 +19,9 @@ import static me.osm.gazetter.join.out_handlers.GazetteerSchemeConstants.GAZETTE
 import static me.osm.gazetter.join.out_handlers.GazetteerSchemeConstants.GAZETTEER_SCHEME_TIMESTAMP;
 import static me.osm.gazetter.join.out_handlers.GazetteerSchemeConstants.GAZETTEER_SCHEME_TYPE;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.io.PrintWriter;
-import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -40,6 +36,7 @@ import java.util.Map.Entry;
 import java.util.Set;
 
 import me.osm.gazetter.addresses.AddressesUtils;
+import me.osm.gazetter.join.out_handlers.AddressRows.AddressRow;
 import me.osm.gazetter.join.util.ExportTagsStatisticCollector;
 import me.osm.gazetter.out.AddrRowValueExctractorImpl;
 import me.osm.gazetter.striper.FeatureTypes;
@@ -48,6 +45,7 @@ import me.osm.gazetter.striper.JSONFeature;
 import me.osm.gazetter.utils.FileUtils;
 import me.osm.gazetter.utils.JSONHash;
 import me.osm.gazetter.utils.LocatePoint;
+import me.osm.gazetter.utils.sort.ExternalSorter.KeyExtractor;
 import me.osm.osmdoc.localization.L10n;
 import me.osm.osmdoc.model.Feature;
 import me.osm.osmdoc.model.Tag.Val;
@@ -64,7 +62,7 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import com.google.code.externalsorting.ExternalSort;
+import com.google.code.externalsorting.Reducer;
 import com.vividsolutions.jts.geom.Coordinate;
 import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.geom.LineString;
@@ -79,7 +77,7 @@ public class GazetteerOutWriter extends AddressPerRowJOHBase  {
 			TRANSLATE_POI_TYPES_OPTION, 
 			"fill_addresses", "export_all_names", 
 			"full_geometry",
-			"usage", "tag-stat");
+			"usage", "tag-stat", "tag-stat-stripes");
 
 	private TagsStatisticCollector tagStatistics;
 
@@ -101,6 +99,8 @@ public class GazetteerOutWriter extends AddressPerRowJOHBase  {
 
 	private String tagStatPath;
 	
+	private PrintWriter tagStatStripesWriter;
+	
 	private String outFile;
 	
 	@Override
@@ -152,7 +152,20 @@ public class GazetteerOutWriter extends AddressPerRowJOHBase  {
 			tagStatistics = new LogTagsStatisticCollector();
 		}
 		else {
-			tagStatistics = new ExportTagsStatisticCollector();
+			ExportTagsStatisticCollector collector = new ExportTagsStatisticCollector();
+			
+			String stripesStatPath = parsedOpts.getString("tag-stat-stripes", null);
+			if(stripesStatPath != null) {
+				try {
+					tagStatStripesWriter = FileUtils.getPrintWriter(new File(stripesStatPath), false);
+				}
+				catch (IOException e) {
+					throw new RuntimeException(e);
+				}
+				collector.setStripesWriter(tagStatStripesWriter);
+			}
+			
+			tagStatistics = collector;
 		}
 		
 		return this;
@@ -222,6 +235,14 @@ public class GazetteerOutWriter extends AddressPerRowJOHBase  {
 		usage.append("\t\talt_names - Export addr parts alternative names.");
 		usage.append("\n");
 
+		usage.append("\n");
+		usage.append("\ttag-stat=<file> Write statistic of parsed poi tags values.");
+		usage.append("\n");
+		usage.append("\n");
+		
+		usage.append("\ttag-stat-stripes=<file> With tag-stat, also write statistic for every stripe, line per stripe.");
+		usage.append("\n");
+		
 		usage.append("\n");
 		usage.append("\tusage Print this message and exit.");
 		usage.append("\n");
@@ -239,12 +260,15 @@ public class GazetteerOutWriter extends AddressPerRowJOHBase  {
 			return;
 		}
 		
+		if(tagStatistics instanceof ExportTagsStatisticCollector) {
+			((ExportTagsStatisticCollector)tagStatistics).setStripe(stripe);
+		}
+		
 		JSONFeature result = new JSONFeature();
 		fillObject(result, address, object);
 		fillPOI(result, object, address.getString("poiAddrMatch"));
 		
-		println(result.toString());
-		flush();
+		println(stripe, result.toString());
 	}
 	
 	@Override
@@ -253,8 +277,7 @@ public class GazetteerOutWriter extends AddressPerRowJOHBase  {
 		
 		JSONFeature result = new JSONFeature();
 		fillObject(result, address, object);
-		println(result.toString());
-		flush();
+		println(stripe, result.toString());
 	}
 	
 	@Override
@@ -263,8 +286,7 @@ public class GazetteerOutWriter extends AddressPerRowJOHBase  {
 		
 		JSONFeature result = new JSONFeature();
 		fillObject(result, address, object);
-		println(result.toString());
-		flush();
+		println(stripe, result.toString());
 	}
 	
 	@Override
@@ -273,8 +295,7 @@ public class GazetteerOutWriter extends AddressPerRowJOHBase  {
 		
 		JSONFeature result = new JSONFeature();
 		fillObject(result, address, object);
-		println(result.toString());
-		flush();
+		println(stripe, result.toString());
 	}
 	
 	@Override
@@ -287,8 +308,7 @@ public class GazetteerOutWriter extends AddressPerRowJOHBase  {
 		
 		JSONFeature result = new JSONFeature();
 		fillObject(result, address, object);
-		println(result.toString());
-		flush();
+		println(stripe, result.toString());
 	}
 	
 	@Override
@@ -296,8 +316,7 @@ public class GazetteerOutWriter extends AddressPerRowJOHBase  {
 			JSONObject address, String stripe) {
 		JSONFeature result = new JSONFeature();
 		fillObject(result, address, object);
-		println(result.toString());
-		flush();
+		println(stripe, result.toString());
 	}
 	
 	@Override
@@ -306,8 +325,7 @@ public class GazetteerOutWriter extends AddressPerRowJOHBase  {
 		if(StringUtils.contains(stripe, "binx")) {
 			JSONFeature result = new JSONFeature();
 			fillObject(result, address, object);
-			println(result.toString());
-			flush();
+			println(stripe, result.toString());
 		}
 	}
 	
@@ -317,7 +335,9 @@ public class GazetteerOutWriter extends AddressPerRowJOHBase  {
 	protected void fillObject(JSONFeature result, JSONObject addrRow, JSONObject jsonObject) {
 		
 		String ftype = jsonObject.getString("ftype");
-		String rowId = AddrRowValueExctractorImpl.getUID(jsonObject, addrRow, ftype);
+		AddressRow row = getAddressRow(addrRow);
+		String rowId = row != null ? row.getUID() 
+				: AddrRowValueExctractorImpl.getUID(jsonObject, addrRow, ftype);
 		
 		result.put(GAZETTEER_SCHEME_ID, rowId);
 		result.put(GAZETTEER_SCHEME_FEATURE_ID, jsonObject.getString("id"));
@@ -330,7 +350,7 @@ public class GazetteerOutWriter extends AddressPerRowJOHBase  {
 		
 		Set<String> langs = getLangs(addrRow);
 		
-		Map<String, JSONObject> mapLevels = mapLevels(addrRow);
+		Map<String, JSONObject> mapLevels = row != null ? row.getLevels() : mapLevels(addrRow);
 
 		putName(result, ftype, mapLevels, jsonObject, addrRow);
 		
@@ -872,30 +892,34 @@ public class GazetteerOutWriter extends AddressPerRowJOHBase  {
 		super.initializeWriter(this.outFile);
 	}
 	
+	@Override
+	protected KeyExtractor<String> getSortKeys() {
+		return JSONByIdComparator.KEYS;
+	}
+	
+	@Override
+	protected Reducer getReducer() {
+		return ReduceHighwayNetworks.INSTANCE;
+	}
+	
+	@Override
+	public void stripeDone(String stripe) {
+		super.stripeDone(stripe);
+		
+		if(tagStatistics instanceof ExportTagsStatisticCollector) {
+			((ExportTagsStatisticCollector)tagStatistics).stripeDone(stripe);
+		}
+	}
+	
+	/**
+	 * Output is sorted by stripes in join threads,
+	 * here we only merge sorted runs.
+	 * */
 	@Override
 	public void allDone() {
 		
 		super.allDone();
 
-		try {
-			File file = new File(this.outFile);
-			BufferedReader fbr = new BufferedReader(new InputStreamReader(FileUtils.getFileIS(file)));
-			
-			List<File> batch = ExternalSort.sortInBatch(fbr, file.length(), new JSONByIdComparator(), 
-					ExternalSort.DEFAULTMAXTEMPFILES, ExternalSort.estimateAvailableMemory(), 
-					Charset.forName("utf-8"), null, true, 0, true, ReduceHighwayNetworks.INSTANCE);
-			
-			initializeWriter(outFile);
-			
-			ExternalSort.mergeSortedFiles(batch, new BufferedWriter(writer), 
-					new JSONByIdComparator(), Charset.forName("utf-8"), true, true, 
-					ReduceHighwayNetworks.INSTANCE);
-			
-		}
-		catch (Exception e) {
-			throw new RuntimeException(e);
-		}
-		
 		writeTagStat();
 	}
 
@@ -916,6 +940,10 @@ public class GazetteerOutWriter extends AddressPerRowJOHBase  {
 			} catch (IOException e) {
 				throw new RuntimeException();
 			}
+			
+			if(tagStatStripesWriter != null) {
+				tagStatStripesWriter.close();
+			}
 		}
 	}
 }
@@ -0,0 +1,314 @@
+package me.osm.gazetter.join.out_handlers;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+
+import me.osm.gazetter.metrics.Histogram;
+import me.osm.gazetter.metrics.Metrics;
+import me.osm.gazetter.striper.JSONFeature;
+
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Passes joined features to all the output handlers.
+ * <p>
+ * Address rows of the feature are built once and shared
+ * by handlers based on {@link AddressPerRowJOHBase}.
+ * <p>
+ * By default handlers are called one by one from join threads.
+ * In parallel mode every handler has its own thread and queue,
+ * so slow handler doesn't block others, and join threads only
+ * prepare features. Join code may still change features after
+ * they were passed to handlers (boundaries are referenced from
+ * places for instance), so in parallel mode feature is copied
+ * once in join thread and the copy is shared by handlers, which
+ * shouldn't change it. {@link MutatingJoinOutHandler}s get
+ * their own copies.
+ * <p>
+ * If handler thread fails with an error, features for it are
+ * not accepted anymore, and join fails.
+ * */
+public class HandlersFanOut {
+
+	private static final Logger log = LoggerFactory.getLogger(HandlersFanOut.class);
+
+	private static final Histogram queueDepth = Metrics.histogram("out.handlers.queue_depth");
+
+	private final List<JoinOutHandler> handlers;
+	private final boolean shareRows;
+
+	private List<Worker> workers = null;
+
+	public HandlersFanOut(Collection<JoinOutHandler> handlers) {
+		this.handlers = new ArrayList<>(handlers);
+
+		boolean shareRows = false;
+		for(JoinOutHandler h : handlers) {
+			shareRows = shareRows || h instanceof AddressPerRowJOHBase;
+		}
+		this.shareRows = shareRows;
+	}
+
+	/**
+	 * Run every handler in its own thread.
+	 *
+	 * @param queueSize max number of features waiting for every handler
+	 * */
+	public synchronized void setParallel(int queueSize) {
+		if(workers == null) {
+			workers = new ArrayList<>(handlers.size());
+			for(JoinOutHandler h : handlers) {
+				workers.add(new Worker(h, queueSize));
+			}
+		}
+	}
+
+	public boolean isParallel() {
+		return workers != null;
+	}
+
+	public void handle(JSONObject object, String stripe) {
+		if(object == null) {
+			return;
+		}
+
+		if(workers != null) {
+			object = JSONFeature.deepCopy(object);
+		}
+
+		AddressRows rows = shareRows ? AddressRows.of(object, stripe) : null;
+
+		if(workers != null) {
+			Item item = new Item(object, rows, stripe, null, null);
+			for(Worker w : workers) {
+				w.put(item);
+			}
+		}
+		else {
+			for(JoinOutHandler h : handlers) {
+				handle(h, object, rows, stripe);
+			}
+		}
+	}
+
+	/**
+	 * In parallel mode stripeDone is queued after stripe features
+	 * and handled asynchronously, use {@link #barrier()} to wait for it.
+	 * */
+	public void stripeDone(String stripe) {
+		if(workers != null) {
+			Item item = new Item(null, null, stripe, null, null);
+			for(Worker w : workers) {
+				w.put(item);
+			}
+		}
+		else {
+			for(JoinOutHandler h : handlers) {
+				h.stripeDone(stripe);
+			}
+		}
+	}
+
+	/**
+	 * Wait till all queued features and stripes are handled.
+	 * */
+	public void barrier() {
+		if(workers != null) {
+			CountDownLatch latch = new CountDownLatch(workers.size());
+			Item item = new Item(null, null, null, latch, null);
+			for(Worker w : workers) {
+				w.put(item);
+			}
+			await(latch);
+			checkErrors();
+		}
+	}
+
+	/**
+	 * Call allDone for every handler, in parallel mode handlers
+	 * are finished simultaneously and workers are stopped.
+	 * */
+	public void allDone() {
+		if(workers == null) {
+			for(JoinOutHandler h : handlers) {
+				h.allDone();
+			}
+			return;
+		}
+
+		CountDownLatch latch = new CountDownLatch(workers.size());
+		Item item = new Item(null, null, null, null, latch);
+		for(Worker w : workers) {
+			w.put(item);
+		}
+		await(latch);
+
+		List<Worker> finished = workers;
+		workers = null;
+
+		for(Worker w : finished) {
+			if(w.error != null) {
+				throw new RuntimeException("Handler " + w.handler.getClass().getName() 
+						+ " failed", w.error);
+			}
+		}
+	}
+
+	private void checkErrors() {
+		for(Worker w : workers) {
+			w.checkError();
+		}
+	}
+
+	private static void handle(JoinOutHandler h, JSONObject object, AddressRows rows, String stripe) {
+		try {
+			if(rows != null && h instanceof AddressPerRowJOHBase) {
+				((AddressPerRowJOHBase) h).handle(rows);
+			}
+			else {
+				h.handle(object, stripe);
+			}
+		}
+		catch (Exception e) {
+			String id = object.optString("id");
+			String errMessage = String.format("Eception in handler %s for %s", h.getClass().getName(),  id);
+			log.error(errMessage, e);
+		}
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await();
+		}
+		catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Feature, stripe done, barrier or all done
+	 * */
+	private static final class Item {
+		private final JSONObject object;
+		private final AddressRows rows;
+		private final String stripe;
+		private final CountDownLatch barrier;
+		private final CountDownLatch allDone;
+
+		private Item(JSONObject object, AddressRows rows, String stripe,
+				CountDownLatch barrier, CountDownLatch allDone) {
+			this.object = object;
+			this.rows = rows;
+			this.stripe = stripe;
+			this.barrier = barrier;
+			this.allDone = allDone;
+		}
+	}
+
+	private static final class Worker implements Runnable {
+
+		private final JoinOutHandler handler;
+		private final BlockingQueue<Item> queue;
+
+		private volatile Throwable error = null;
+
+		private Worker(JoinOutHandler handler, int queueSize) {
+			this.handler = handler;
+			this.queue = new ArrayBlockingQueue<>(queueSize);
+
+			Thread thread = new Thread(this, "handler-" + handler.getClass().getSimpleName());
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		private void checkError() {
+			if(error != null) {
+				throw new RuntimeException("Handler " + handler.getClass().getName() 
+						+ " failed", error);
+			}
+		}
+
+		private void put(Item item) {
+			// failed worker doesn't take features,
+			// but still counts down barriers
+			if(item.object != null) {
+				checkError();
+			}
+			queueDepth.update(queue.size());
+			try {
+				queue.put(item);
+			}
+			catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		@Override
+		public void run() {
+			while(true) {
+				Item item;
+				try {
+					item = queue.take();
+				}
+				catch (InterruptedException e) {
+					return;
+				}
+
+				if(item.barrier != null) {
+					item.barrier.countDown();
+				}
+				else if(item.allDone != null) {
+					try {
+						if(error == null) {
+							handler.allDone();
+						}
+					}
+					catch (Throwable t) {
+						log.error("Handler {} failed to finish", handler.getClass().getName(), t);
+						error = t;
+					}
+					finally {
+						item.allDone.countDown();
+					}
+					return;
+				}
+				else if(error == null) {
+					try {
+						handle(item);
+					}
+					catch (Throwable t) {
+						log.error("Handler {} failed", handler.getClass().getName(), t);
+						error = t;
+					}
+				}
+			}
+		}
+
+		private void handle(Item item) {
+			if(item.object != null) {
+				if(handler instanceof MutatingJoinOutHandler) {
+					// shared rows reference shared feature
+					HandlersFanOut.handle(handler, JSONFeature.deepCopy(item.object), null, item.stripe);
+				}
+				else {
+					HandlersFanOut.handle(handler, item.object, item.rows, item.stripe);
+				}
+			}
+			else if(item.stripe != null) {
+				try {
+					handler.stripeDone(item.stripe);
+				}
+				catch (Exception e) {
+					log.error("Handler {} failed on stripe {} done", handler.getClass().getName(), item.stripe, e);
+				}
+			}
+		}
+	}
+
+}
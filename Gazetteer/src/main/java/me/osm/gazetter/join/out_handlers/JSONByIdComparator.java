@@ -3,9 +3,21 @@ package me.osm.gazetter.join.out_handlers;
 import java.util.Comparator;
 
 import me.osm.gazetter.striper.GeoJsonWriter;
+import me.osm.gazetter.utils.sort.ExternalSorter.KeyExtractor;
 
 public class JSONByIdComparator implements Comparator<String> {
 
+	/**
+	 * Ids of lines as sort keys, lines without id go first
+	 * */
+	public static final KeyExtractor<String> KEYS = new KeyExtractor<String>() {
+		@Override
+		public String key(String line) {
+			String id = GeoJsonWriter.getId(line);
+			return id == null ? "" : id;
+		}
+	};
+
 	@Override
 	public int compare(String o1, String o2) {
 		
@@ -0,0 +1,12 @@
+package me.osm.gazetter.join.out_handlers;
+
+/**
+ * Handler, which changes features passed to it.
+ * <p>
+ * With parallel handlers all of them get the same instance
+ * of feature, handlers marked with this interface get
+ * their own copy.
+ * */
+public interface MutatingJoinOutHandler extends JoinOutHandler {
+
+}
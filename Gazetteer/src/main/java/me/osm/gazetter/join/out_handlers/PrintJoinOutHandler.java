@@ -8,7 +8,7 @@ public class PrintJoinOutHandler extends SingleWriterJOHBase {
 
 	@Override
 	public void handle(JSONObject object, String stripe) {
-		println(object.toString());
+		println(stripe, object.toString());
 	}
 
 
@@ -1,24 +1,110 @@
 package me.osm.gazetter.join.out_handlers;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+import me.osm.gazetter.Options;
 import me.osm.gazetter.utils.FileUtils;
+import me.osm.gazetter.utils.FileUtils.LineHandler;
+import me.osm.gazetter.utils.sort.ExternalSorter;
+import me.osm.gazetter.utils.sort.ExternalSorter.KeyExtractor;
+
+import com.google.code.externalsorting.Reducer;
 
 public abstract class SingleWriterJOHBase implements JoinOutHandler {
 
+	private static final String PART_SUFFIX = ".part.gz";
+	private static final String RUN_INFIX = ".run";
+
+	/**
+	 * Max number of lines of one stripe, sorted in memory
+	 * */
+	private static final int MAX_RUN_LINES = 200000;
+
 	protected PrintWriter writer = new PrintWriter(System.out);
-	
+
 	private static final Object mutex = new Object();
-	
+
+	/**
+	 * If not null, output of every stripe is written into
+	 * separate file inside this folder, and all files are
+	 * merged into the main writer at allDone.
+	 * */
+	private File partsFolder = null;
+
+	/**
+	 * Parts folder was created only to hold sorted runs,
+	 * and should be deleted at allDone.
+	 * */
+	private boolean temporaryParts = false;
+
+	private final Map<String, PrintWriter> partsWriters = new ConcurrentHashMap<>();
+
+	/**
+	 * If not null, lines are written in separate thread.
+	 * */
+	private AsyncLinesWriter async = null;
+
+	/**
+	 * Keep lines of every stripe together in output.
+	 * */
+	private boolean strictOrder = false;
+
+	private final Map<String, StripeBuffer> stripesBuffers = new ConcurrentHashMap<>();
+
+	/**
+	 * Created on first use, when sort comparator is already initialized
+	 * */
+	private volatile ExternalSorter<String> sorter = null;
+
+	/**
+	 * Lines of one stripe, waiting for stripeDone.
+	 * */
+	private final class StripeBuffer {
+
+		private final String stripe;
+		private List<String> lines = new ArrayList<>();
+		private int runs = 0;
+
+		private StripeBuffer(String stripe) {
+			this.stripe = stripe;
+		}
+
+		private synchronized void add(String s) {
+			lines.add(s);
+			if(isSorted() && lines.size() >= MAX_RUN_LINES) {
+				writeOut();
+			}
+		}
+
+		private synchronized void writeOut() {
+			if(isSorted()) {
+				if(!lines.isEmpty()) {
+					getSorter().writeRun(lines, getRunFile(stripe, runs++));
+				}
+			}
+			else if(!lines.isEmpty()) {
+				async.write(getStripeWriter(stripe), lines);
+			}
+			lines = new ArrayList<>();
+		}
+	}
+
 	@Override
 	public JoinOutHandler newInstance(List<String> options) {
 
 		if(!options.isEmpty()) {
 			initializeWriter(options.get(0));
 		}
-		
+
 		return this;
 	}
 
@@ -32,26 +118,336 @@ public abstract class SingleWriterJOHBase implements JoinOutHandler {
 			throw new RuntimeException(e);
 		}
 	}
-	
+
+	/**
+	 * Override to get output sorted.
+	 * <p>
+	 * Output of every stripe will be sorted in memory at stripeDone,
+	 * and written as sorted run. At allDone runs will be merged
+	 * into the main writer.
+	 *
+	 * @return comparator for output lines or null to leave them unsorted
+	 * */
+	protected Comparator<String> getSortComparator() {
+		return null;
+	}
+
+	/**
+	 * Override to get output sorted by keys, same as {@link #getSortComparator()},
+	 * but key is extracted once per line, instead of once per comparison.
+	 *
+	 * @return extractor of naturally ordered keys or null
+	 * */
+	protected KeyExtractor<String> getSortKeys() {
+		return null;
+	}
+
+	/**
+	 * Reducer for lines, which are equal by sort comparator.
+	 * <p>
+	 * If it's null, only first line is kept.
+	 * */
+	protected Reducer getReducer() {
+		return null;
+	}
+
+	/**
+	 * Writer for merged sorted runs.
+	 * <p>
+	 * Override to drop sort keys, if handler adds them to lines
+	 * to make comparator cheaper.
+	 * */
+	protected PrintWriter getMergeWriter(PrintWriter writer) {
+		return writer;
+	}
+
+	private ExternalSorter<String> getSorter() {
+		ExternalSorter<String> s = sorter;
+		if(s == null) {
+			Reducer reducer = getReducer();
+			KeyExtractor<String> keys = getSortKeys();
+			s = (keys != null ? ExternalSorter.byKey(keys) : ExternalSorter.lines(getSortComparator()))
+					.setReducer(reducer == null ? ExternalSorter.KEEP_FIRST : reducer)
+					.setThreads(Options.get().getNumberOfThreads());
+			sorter = s;
+		}
+		return s;
+	}
+
+	private boolean isSorted() {
+		return getSortKeys() != null || getSortComparator() != null;
+	}
+
 	protected void println(String s) {
-		synchronized (mutex) {
-			writer.println(s);
+		if(async != null) {
+			async.write(writer, s);
+		}
+		else {
+			synchronized (mutex) {
+				writer.println(s);
+			}
 		}
 	}
-	
+
+	/**
+	 * Write line produced for stripe.
+	 *
+	 * Same as println(s) unless stripes parts,
+	 * sorted output or strict order are used.
+	 * */
+	protected void println(String stripe, String s) {
+		if(isSorted() || (async != null && strictOrder)) {
+			getStripeBuffer(stripe).add(s);
+		}
+		else if(partsFolder == null) {
+			println(s);
+		}
+		else if(async != null) {
+			async.write(getStripeWriter(stripe), s);
+		}
+		else {
+			PrintWriter partWriter = getStripeWriter(stripe);
+			synchronized (partWriter) {
+				partWriter.println(s);
+			}
+		}
+	}
+
+	private StripeBuffer getStripeBuffer(String stripe) {
+		StripeBuffer buffer = stripesBuffers.get(stripe);
+		if(buffer == null) {
+			synchronized (stripesBuffers) {
+				buffer = stripesBuffers.get(stripe);
+				if(buffer == null) {
+					buffer = new StripeBuffer(stripe);
+					stripesBuffers.put(stripe, buffer);
+				}
+			}
+		}
+		return buffer;
+	}
+
+	/**
+	 * Move lines written into this handler to the separate writer thread.
+	 * <p>
+	 * Handlers still build lines in join threads, but don't wait for
+	 * each other on writing. stripeDone and allDone waits until
+	 * all queued lines are written.
+	 *
+	 * @param queueSize max number of lines waiting to be written
+	 * @param strictOrder write all lines of stripe together, lines
+	 * 	will be buffered in memory till the stripeDone.
+	 * */
+	public void setAsync(int queueSize, boolean strictOrder) {
+		this.async = new AsyncLinesWriter(getClass().getSimpleName(), queueSize);
+		this.strictOrder = strictOrder;
+	}
+
+	protected boolean isAsync() {
+		return async != null;
+	}
+
+	/**
+	 * Returns writer for stripe output.
+	 *
+	 * Unless stripes parts are used it's the main writer.
+	 * */
+	protected PrintWriter getStripeWriter(String stripe) {
+		if(partsFolder == null) {
+			return writer;
+		}
+
+		PrintWriter partWriter = partsWriters.get(stripe);
+		if(partWriter == null) {
+			synchronized (partsWriters) {
+				partWriter = partsWriters.get(stripe);
+				if(partWriter == null) {
+					try {
+						partWriter = FileUtils.getPrintWriter(getStripePart(stripe), false);
+					}
+					catch (Exception e) {
+						throw new RuntimeException(e);
+					}
+					partsWriters.put(stripe, partWriter);
+				}
+			}
+		}
+
+		return partWriter;
+	}
+
+	/**
+	 * Write output of every stripe into separate file inside given folder.
+	 *
+	 * Used by incremental join, to replace outputs only for changed stripes.
+	 * */
+	public void setPartsFolder(File folder) {
+		folder.mkdirs();
+		this.partsFolder = folder;
+		this.temporaryParts = false;
+	}
+
+	public File getPartsFolder() {
+		return partsFolder;
+	}
+
+	/**
+	 * File with stripe output, when stripes parts are used.
+	 * */
+	public File getStripePart(String stripe) {
+		return new File(partsFolder, stripe + PART_SUFFIX);
+	}
+
+	/**
+	 * All files with stripe output, when stripes parts are used.
+	 * <p>
+	 * Sorted output of big stripes is splitted into several runs.
+	 * */
+	public List<File> getStripeParts(String stripe) {
+		List<File> result = new ArrayList<>();
+
+		File part = getStripePart(stripe);
+		for(int i = 1; part.exists(); i++) {
+			result.add(part);
+			part = getRunFile(stripe, i);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Drop all files with stripe output
+	 * */
+	public void dropStripeParts(String stripe) {
+		getStripePart(stripe).delete();
+		for(int i = 1; getRunFile(stripe, i).delete(); i++) {
+			//delete next run
+		}
+	}
+
+	private synchronized File getRunFile(String stripe, int run) {
+		if(partsFolder == null) {
+			try {
+				partsFolder = Files.createTempDirectory("gazetteer-runs").toFile();
+				temporaryParts = true;
+			}
+			catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		if(run == 0) {
+			return getStripePart(stripe);
+		}
+
+		return new File(partsFolder, stripe + RUN_INFIX + run + PART_SUFFIX);
+	}
+
 	@Override
 	public void stripeDone(String stripe) {
+		StripeBuffer buffer = stripesBuffers.remove(stripe);
+		if(buffer != null) {
+			buffer.writeOut();
+		}
+		if(async != null) {
+			async.barrier();
+		}
+		if(partsFolder != null) {
+			closePart(stripe);
+		}
 		writer.flush();
 	}
-	
+
+	/**
+	 * Drop buffered lines and parts of the stripe, which join has failed,
+	 * so it could be joined again.
+	 * */
+	public void discardStripe(String stripe) {
+		stripesBuffers.remove(stripe);
+		if(async != null) {
+			async.barrier();
+		}
+		closePart(stripe);
+		if(partsFolder != null) {
+			dropStripeParts(stripe);
+		}
+	}
+
+	private void closePart(String stripe) {
+		PrintWriter partWriter = partsWriters.remove(stripe);
+		if(partWriter != null) {
+			partWriter.flush();
+			partWriter.close();
+		}
+	}
+
 	@Override
 	public void allDone() {
+		for(String stripe : new ArrayList<String>(stripesBuffers.keySet())) {
+			stripesBuffers.remove(stripe).writeOut();
+		}
+		if(async != null) {
+			async.close();
+			async = null;
+		}
+		if(partsFolder != null) {
+			mergeParts();
+		}
 		writer.flush();
 		writer.close();
 	}
-	
+
+	/**
+	 * Copy all stripes parts into the main writer.
+	 * */
+	private void mergeParts() {
+		for(String stripe : new ArrayList<String>(partsWriters.keySet())) {
+			closePart(stripe);
+		}
+
+		File[] files = partsFolder.listFiles();
+		Arrays.sort(files);
+
+		List<File> parts = new ArrayList<>();
+		for(File f : files) {
+			if(f.getName().endsWith(PART_SUFFIX)) {
+				parts.add(f);
+			}
+		}
+
+		if(isSorted()) {
+			getSorter().merge(parts, getMergeWriter(writer), partsFolder);
+		}
+		else {
+			for(File part : parts) {
+				try {
+					FileUtils.handleLines(part, new LineHandler() {
+						@Override
+						public void handle(String s) {
+							writer.println(s);
+						}
+					});
+				}
+				catch (Exception e) {
+					throw new RuntimeException(e);
+				}
+			}
+		}
+
+		if(temporaryParts) {
+			for(File part : parts) {
+				part.delete();
+			}
+			partsFolder.delete();
+			partsFolder = null;
+		}
+	}
+
 	public void flush() {
-		writer.flush();
+		// async writer flushes on barriers
+		if(async == null) {
+			writer.flush();
+		}
 	}
 
 
@@ -0,0 +1,411 @@
+package me.osm.gazetter.join.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+
+import me.osm.gazetter.addresses.AddressesUtils;
+import me.osm.gazetter.addresses.BoundariesSet;
+import me.osm.gazetter.addresses.BoundaryDescriptor;
+import me.osm.gazetter.addresses.NamesSet;
+import me.osm.gazetter.striper.GeoJsonWriter;
+
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.geom.Polygon;
+import com.vividsolutions.jts.geom.prep.PreparedGeometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometryFactory;
+
+/**
+ * Shared cache of parsed boundaries for join phase.
+ *
+ * Big boundaries are replicated into every stripe they cross,
+ * so without cache we parse same polygons and same addr levels
+ * again and again in every join thread.
+ *
+ * Geometries are keyed by boundary id and stripe (every stripe
+ * has it's own piece of boundary).
+ *
+ * Cached values are read only, and may be used from any join thread.
+ *
+ * Amount of cached geometries is limited by total number of points.
+ * Geometries of joined stripes are dropped at once, other stripes
+ * are evicted in the same order as they were scheduled for join.
+ *
+ * Address levels, name tags and names languages of boundaries
+ * (see {@link BoundaryDescriptor}) are memoized for the join of
+ * a stripe, between {@link #openStripe()} and {@link #releaseStripe()}
+ * calls made by the join thread, see {@link StripeMemo}.
+ * */
+public class BoundariesCache {
+
+	private static final Logger log = LoggerFactory.getLogger(BoundariesCache.class);
+
+	/**
+	 * Rough estimation of memory, used by one point of prepared polygon
+	 * (coordinate, index nodes, JSON is not counted).
+	 * */
+	private static final int BYTES_PER_POINT = 120;
+
+	private static final PreparedGeometryFactory preparedFactory = new PreparedGeometryFactory();
+
+	/**
+	 * Parsed and prepared boundary geometry.
+	 * */
+	public static final class CachedBoundary {
+
+		private final Polygon polygon;
+		private final PreparedGeometry prepared;
+		private final int points;
+		private volatile Point centroid;
+
+		private CachedBoundary(Polygon polygon) {
+			this.polygon = polygon;
+			this.prepared = preparedFactory.create(polygon);
+			this.points = polygon.getNumPoints();
+		}
+
+		public Polygon getPolygon() {
+			return polygon;
+		}
+
+		public PreparedGeometry getPrepared() {
+			return prepared;
+		}
+
+		public Point getCentroid() {
+			if(centroid == null) {
+				centroid = polygon.getCentroid();
+			}
+			return centroid;
+		}
+
+	}
+
+	/**
+	 * Per thread memo for the join of a stripe.
+	 * <p>
+	 * All addresses of the stripe refers the same boundaries objects,
+	 * so address level, name tags and languages of boundary are computed
+	 * only once per stripe, instead of once per address point.
+	 * Prepared names (see {@link NamesSet}) of streets and places
+	 * are memoized the same way.
+	 * <p>
+	 * Objects are identified by reference, so they shouldn't
+	 * be modified while memo is open.
+	 * */
+	public static final class StripeMemo {
+
+		private final Map<JSONObject, Map<String, String>> nameTags =
+				new IdentityHashMap<JSONObject, Map<String, String>>();
+
+		private final Map<JSONObject, NamesSet> namesSets =
+				new IdentityHashMap<JSONObject, NamesSet>();
+
+		private final Map<JSONObject, BoundaryDescriptor> descriptors =
+				new IdentityHashMap<JSONObject, BoundaryDescriptor>();
+
+		private final Map<String, BoundaryDescriptor> descriptorsById =
+				new HashMap<String, BoundaryDescriptor>();
+
+		private final Map<BoundariesKey, BoundariesSet> sets =
+				new HashMap<BoundariesKey, BoundariesSet>();
+
+		/**
+		 * Descriptors depends on parser, which have computed them.
+		 * */
+		private Object owner;
+
+		public BoundaryDescriptor getDescriptor(JSONObject obj) {
+			return descriptors.get(obj);
+		}
+
+		/**
+		 * Returns descriptor of previously memoized object with given id
+		 * */
+		public BoundaryDescriptor getDescriptor(String id) {
+			return descriptorsById.get(id);
+		}
+
+		public void putDescriptor(JSONObject obj, BoundaryDescriptor descriptor) {
+			descriptors.put(obj, descriptor);
+			if(descriptor.getId() != null) {
+				descriptorsById.put(descriptor.getId(), descriptor);
+			}
+		}
+
+		public BoundariesSet getBoundariesSet(List<JSONObject> boundaries) {
+			return sets.get(new BoundariesKey(boundaries));
+		}
+
+		public void putBoundariesSet(List<JSONObject> boundaries, BoundariesSet set) {
+			sets.put(new BoundariesKey(boundaries), set);
+		}
+	}
+
+	/**
+	 * Boundaries list compared by elements references.
+	 * */
+	private static final class BoundariesKey {
+
+		private final JSONObject[] boundaries;
+		private final int hash;
+
+		private BoundariesKey(List<JSONObject> list) {
+			boundaries = list.toArray(new JSONObject[list.size()]);
+
+			int h = 1;
+			for(JSONObject b : boundaries) {
+				h = 31 * h + System.identityHashCode(b);
+			}
+			hash = h;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if(!(obj instanceof BoundariesKey)) {
+				return false;
+			}
+
+			JSONObject[] other = ((BoundariesKey) obj).boundaries;
+			if(other.length != boundaries.length) {
+				return false;
+			}
+
+			for(int i = 0; i < boundaries.length; i++) {
+				if(other[i] != boundaries[i]) {
+					return false;
+				}
+			}
+
+			return true;
+		}
+	}
+
+	private static final ThreadLocal<StripeMemo> memo = new ThreadLocal<StripeMemo>();
+
+	private final long maxPoints;
+
+	//guarded by this, together with stripes caches
+	private long points = 0;
+
+	//guarded by this, ordered as stripes were scheduled
+	private final LinkedHashMap<String, Map<String, CachedBoundary>> stripes = new LinkedHashMap<>();
+
+	/**
+	 * Creates cache which uses no more then given amount of memory.
+	 * */
+	public static BoundariesCache withMemoryLimit(long bytes) {
+		return new BoundariesCache(Math.max(bytes / BYTES_PER_POINT, 0));
+	}
+
+	/**
+	 * @param maxPoints max number of points for all cached geometries
+	 * */
+	public BoundariesCache(long maxPoints) {
+		this.maxPoints = maxPoints;
+	}
+
+	/**
+	 * Register stripe in scheduling queue.
+	 *
+	 * Stripes which were scheduled earlier will be evicted first.
+	 * */
+	public synchronized void schedule(String stripe) {
+		if(!stripes.containsKey(stripe)) {
+			stripes.put(stripe, new ConcurrentHashMap<String, CachedBoundary>());
+		}
+	}
+
+	/**
+	 * Mark stripe as successfully joined, its geometries
+	 * won't be read anymore, so they are dropped.
+	 *
+	 * Stripes, which failed to join, aren't marked, so they keep
+	 * their geometries for second run.
+	 * */
+	public synchronized void stripeDone(String stripe) {
+		drop(stripe);
+	}
+
+	/**
+	 * Returns parsed and prepared geometry of boundary from stripe.
+	 * */
+	public CachedBoundary getGeometry(JSONObject boundary, String stripe) {
+
+		String id = boundary.optString("id", null);
+
+		Map<String, CachedBoundary> stripeCache = getStripeCache(stripe);
+
+		CachedBoundary cached = (id == null || stripeCache == null) ? null : stripeCache.get(id);
+		if(cached != null) {
+			return cached;
+		}
+
+		cached = new CachedBoundary(GeoJsonWriter.getPolygonGeometry(boundary));
+
+		if(id != null && stripeCache != null && cached.points <= maxPoints) {
+			return put(stripe, stripeCache, id, cached);
+		}
+
+		return cached;
+	}
+
+	/**
+	 * Map and points counter are updated under the same lock,
+	 * so eviction can't clear the map between them.
+	 * */
+	private synchronized CachedBoundary put(String stripe,
+			Map<String, CachedBoundary> stripeCache, String id, CachedBoundary cached) {
+
+		// stripe cache was evicted and dropped meanwhile
+		if(stripes.get(stripe) != stripeCache) {
+			return cached;
+		}
+
+		CachedBoundary old = stripeCache.get(id);
+		if(old != null) {
+			return old;
+		}
+
+		stripeCache.put(id, cached);
+		points += cached.points;
+
+		if(points > maxPoints) {
+			evict(stripe);
+		}
+
+		return cached;
+	}
+
+	/**
+	 * Start memoization of boundaries descriptors for current thread,
+	 * drops previously memoized values.
+	 * */
+	public static void openStripe() {
+		memo.set(new StripeMemo());
+	}
+
+	/**
+	 * Stop memoization for current thread.
+	 * */
+	public static void releaseStripe() {
+		memo.remove();
+	}
+
+	/**
+	 * Returns memo of current thread, or null if it wasn't opened.
+	 * <p>
+	 * If memo was filled by other owner, descriptors will be cleared.
+	 * */
+	public static StripeMemo getStripeMemo(Object owner) {
+		StripeMemo m = memo.get();
+
+		if(m != null && m.owner != owner) {
+			m.descriptors.clear();
+			m.descriptorsById.clear();
+			m.sets.clear();
+			m.owner = owner;
+		}
+
+		return m;
+	}
+
+	/**
+	 * Same as {@link AddressesUtils#filterNameTags(JSONObject)},
+	 * but returned map is memoized and read only.
+	 * */
+	public static Map<String, String> nameTags(JSONObject obj) {
+		StripeMemo m = memo.get();
+		if(m == null || obj == null) {
+			return AddressesUtils.filterNameTags(obj);
+		}
+
+		Map<String, String> tags = m.nameTags.get(obj);
+		if(tags == null) {
+			tags = Collections.unmodifiableMap(AddressesUtils.filterNameTags(obj));
+			m.nameTags.put(obj, tags);
+		}
+
+		return tags;
+	}
+
+	/**
+	 * Returns prepared names of object, memoized if memo is opened.
+	 * */
+	public static NamesSet namesSet(JSONObject obj) {
+		StripeMemo m = memo.get();
+		if(m == null || obj == null) {
+			return new NamesSet(AddressesUtils.filterNameTags(obj));
+		}
+
+		NamesSet names = m.namesSets.get(obj);
+		if(names == null) {
+			names = new NamesSet(nameTags(obj));
+			m.namesSets.put(obj, names);
+		}
+
+		return names;
+	}
+
+	/**
+	 * Drop all cached geometries.
+	 * */
+	public synchronized void clear() {
+		for(Map<String, CachedBoundary> stripeCache : stripes.values()) {
+			stripeCache.clear();
+		}
+		stripes.clear();
+		points = 0;
+	}
+
+	private synchronized Map<String, CachedBoundary> getStripeCache(String stripe) {
+		return stripes.get(stripe);
+	}
+
+	private synchronized void evict(String current) {
+
+		// in the order of scheduling
+		List<String> order = new ArrayList<>(stripes.keySet());
+		order.remove(current);
+
+		Iterator<String> iterator = order.iterator();
+		while(points > maxPoints && iterator.hasNext()) {
+			String stripe = iterator.next();
+
+			Map<String, CachedBoundary> stripeCache = stripes.get(stripe);
+			for(Entry<String, CachedBoundary> entry : stripeCache.entrySet()) {
+				points -= entry.getValue().points;
+			}
+			stripeCache.clear();
+
+			log.trace("Evict {} boundaries cache", stripe);
+		}
+	}
+
+	private void drop(String stripe) {
+		Map<String, CachedBoundary> stripeCache = stripes.remove(stripe);
+		if(stripeCache != null) {
+			for(Entry<String, CachedBoundary> entry : stripeCache.entrySet()) {
+				points -= entry.getValue().points;
+			}
+			stripeCache.clear();
+		}
+	}
+
+}
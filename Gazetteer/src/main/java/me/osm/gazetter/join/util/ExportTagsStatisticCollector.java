@@ -1,11 +1,15 @@
 package me.osm.gazetter.join.util;
 
+import gnu.trove.iterator.TLongIntIterator;
+import gnu.trove.map.hash.TLongIntHashMap;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.ConcurrentHashMap;
 
 import me.osm.osmdoc.model.Feature;
 import me.osm.osmdoc.model.Tag;
@@ -16,108 +20,276 @@ import me.osm.osmdoc.read.tagvalueparsers.TagsStatisticCollector;
 import org.apache.commons.lang3.StringUtils;
 import org.json.JSONObject;
 
+/**
+ * Collects statistics of parsed poi tags values.
+ * <p>
+ * Every stripe is counted into it's own table, keyed by interned
+ * (feature, tag, value) ids. Stripe is handled by one thread at a time,
+ * so there is no contention between join threads, and with parallel
+ * handlers rows of interleaved stripes are still counted separately.
+ * Handler sets the stripe of current thread with {@link #setStripe(String)}.
+ * Tables are merged into totals on {@link #stripeDone(String)},
+ * and the rest of them on {@link #asJson()}.
+ * */
 public class ExportTagsStatisticCollector implements TagsStatisticCollector {
-	
-	private static final String PATH_SEPARATOR = "/";
-	
-	private static final Map<String, AtomicInteger> stat = new HashMap<String, AtomicInteger>();
-	private static final Object MUTEX = new Object();
+
+	private static final String ERROR = "_error";
+	private static final String TOTAL = "_total";
+
+	private static final int FEATURE_BITS = 21;
+	private static final int TAG_BITS = 21;
+	private static final int VALUE_BITS = 22;
+
+	/**
+	 * Strings interned into sequential ids.
+	 * */
+	private static final class Dictionary {
+
+		private final int limit;
+		private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+		private final List<String> values = new ArrayList<>();
+
+		private Dictionary(int bits) {
+			this.limit = 1 << bits;
+		}
+
+		private int id(String s) {
+			Integer id = ids.get(s);
+			if(id == null) {
+				synchronized (this) {
+					id = ids.get(s);
+					if(id == null) {
+						if(values.size() >= limit) {
+							throw new IllegalStateException("Too many distinct values for tags statistic");
+						}
+						id = values.size();
+						values.add(s);
+						ids.put(s, id);
+					}
+				}
+			}
+			return id;
+		}
+
+		private synchronized String get(int id) {
+			return values.get(id);
+		}
+	}
+
+	private final Dictionary features = new Dictionary(FEATURE_BITS);
+	private final Dictionary tags = new Dictionary(TAG_BITS);
+	private final Dictionary values = new Dictionary(VALUE_BITS);
+
+	/**
+	 * Key of table for rows counted without stripe
+	 * */
+	private static final String NO_STRIPE = "";
+
+	/**
+	 * Tables of stripes, which are not done yet
+	 * */
+	private final Map<String, TLongIntHashMap> tables = new ConcurrentHashMap<>();
+
+	/**
+	 * Table of the stripe, handled by current thread
+	 * */
+	private final ThreadLocal<TLongIntHashMap> table = new ThreadLocal<TLongIntHashMap>() {
+		@Override
+		protected TLongIntHashMap initialValue() {
+			return getTable(NO_STRIPE);
+		}
+	};
+
+	private final TLongIntHashMap totals = new TLongIntHashMap();
+
+	/**
+	 * If not null, statistic of every stripe is written here.
+	 * */
+	private PrintWriter stripesWriter;
 
 	@Override
 	public void success(Object pv, Tag tag, Val val, String rawValue,
 			TagValueParser parser, List<Feature> poiClassess) {
-		
-		for(Feature f : poiClassess) {
-			String key = getKey(f.getName(), tag.getKey().getValue(), getValueString(pv));
-			increment(key);
-		}
+
+		increment(tag, getValueString(pv), poiClassess);
 	}
 
 	@Override
 	public void failed(Tag tag, String rawValue, TagValueParser parser,
 			List<Feature> poiClassess) {
-		
-		for(Feature f : poiClassess) {
-			String key = getKey(f.getName(), tag.getKey().getValue(), "_error");
-			increment(key);
-		}
+
+		increment(tag, ERROR, poiClassess);
 	}
 
+	private void increment(Tag tag, String valueString, List<Feature> poiClassess) {
 
-	private void increment(String key) {
-		if(stat.get(key) == null) {
-			synchronized (MUTEX) {
-				if(stat.get(key) == null) {
-					stat.put(key, new AtomicInteger());
-				}
+		TLongIntHashMap t = table.get();
+
+		long tagAndValue = ((long)tags.id(tag.getKey().getValue()) << VALUE_BITS)
+				| values.id(StringUtils.isNotBlank(valueString) ? valueString : "");
+
+		// uncontended, unless rows are counted without stripe
+		synchronized (t) {
+			for(Feature f : poiClassess) {
+				long key = ((long)features.id(f.getName()) << (TAG_BITS + VALUE_BITS)) | tagAndValue;
+				t.adjustOrPutValue(key, 1, 1);
 			}
 		}
-		stat.get(key).getAndIncrement();
 	}
 
-	private String getKey(String fname, String key, String valueString) {
-		StringBuilder sb = new StringBuilder();
-		
-		sb.append(PATH_SEPARATOR).append(fname).append(PATH_SEPARATOR).append(key);
-		
-		if(StringUtils.isNotBlank(valueString)) {
-			sb.append(PATH_SEPARATOR).append(valueString);
+	private TLongIntHashMap getTable(String stripe) {
+		TLongIntHashMap t = tables.get(stripe);
+		if(t == null) {
+			synchronized (tables) {
+				t = tables.get(stripe);
+				if(t == null) {
+					t = new TLongIntHashMap();
+					tables.put(stripe, t);
+				}
+			}
 		}
-		
-		return sb.toString();
+		return t;
+	}
+
+	/**
+	 * Count following rows of current thread for stripe.
+	 * */
+	public void setStripe(String stripe) {
+		table.set(getTable(stripe == null ? NO_STRIPE : stripe));
 	}
 
 	private String getValueString(Object pv) {
-		
+
 		if(pv instanceof String) {
 			return (String) pv;
 		}
-		
+
 		else if(pv instanceof Boolean) {
-			return pv.toString(); 
+			return pv.toString();
 		}
 		//wh
 		else if(pv instanceof JSONObject) {
 			if(((JSONObject)pv).optBoolean("24_7")) {
 				return "24_7";
 			}
-			return "_total"; 
+			return TOTAL;
 		}
-		
-		return "_total";
+
+		return TOTAL;
 	}
 
+	/**
+	 * Write statistic of every stripe as separate line into writer.
+	 * */
+	public void setStripesWriter(PrintWriter writer) {
+		this.stripesWriter = writer;
+	}
+
+	/**
+	 * Merge counters of stripe into totals.
+	 * <p>
+	 * Should be called when all rows of the stripe are handled.
+	 * */
+	public void stripeDone(String stripe) {
+		TLongIntHashMap t = tables.remove(stripe);
+
+		if(t == null) {
+			return;
+		}
+
+		synchronized (t) {
+			if(t.isEmpty()) {
+				return;
+			}
+
+			synchronized (totals) {
+				merge(t, totals);
+			}
+
+			if(stripesWriter != null) {
+				JSONObject stat = new JSONObject();
+				stat.put("stripe", stripe);
+				stat.put("features", asJson(t));
+
+				String line = stat.toString();
+				synchronized (stripesWriter) {
+					stripesWriter.println(line);
+				}
+			}
+
+			t.clear();
+		}
+	}
+
+	/**
+	 * Returns statistic for all stripes.
+	 * <p>
+	 * Should be called when all threads are done.
+	 * */
 	public Collection<JSONObject> asJson() {
+		synchronized (totals) {
+			for(TLongIntHashMap t : tables.values()) {
+				synchronized (t) {
+					merge(t, totals);
+					t.clear();
+				}
+			}
+
+			if(stripesWriter != null) {
+				stripesWriter.flush();
+			}
+
+			return asJson(totals);
+		}
+	}
+
+	private static void merge(TLongIntHashMap from, TLongIntHashMap to) {
+		TLongIntIterator iterator = from.iterator();
+		while(iterator.hasNext()) {
+			iterator.advance();
+			to.adjustOrPutValue(iterator.key(), iterator.value(), iterator.value());
+		}
+	}
+
+	private Collection<JSONObject> asJson(TLongIntHashMap stat) {
 		Map<String, JSONObject> res = new HashMap<>();
-		
-		for(Entry<String, AtomicInteger> entry : stat.entrySet()) {
-			String[] split = StringUtils.split(entry.getKey(), PATH_SEPARATOR);
-			if(!res.containsKey(split[0])) {
-				
-				JSONObject obj = new JSONObject();
-				
-				obj.put("name", split[0]);
+
+		TLongIntIterator iterator = stat.iterator();
+		while(iterator.hasNext()) {
+			iterator.advance();
+
+			long key = iterator.key();
+			int count = iterator.value();
+
+			String feature = features.get((int)(key >>> (TAG_BITS + VALUE_BITS)));
+			String tag = tags.get((int)((key >>> VALUE_BITS) & ((1L << TAG_BITS) - 1)));
+			String value = values.get((int)(key & ((1L << VALUE_BITS) - 1)));
+
+			JSONObject obj = res.get(feature);
+			if(obj == null) {
+				obj = new JSONObject();
+
+				obj.put("name", feature);
 				obj.put("tags_info", new JSONObject());
-				
-				res.put(split[0], obj);
+
+				res.put(feature, obj);
 			}
-			
-			JSONObject tagInfo = res.get(split[0]).getJSONObject("tags_info").optJSONObject(split[1]);
+
+			JSONObject tagInfo = obj.getJSONObject("tags_info").optJSONObject(tag);
 			if(tagInfo == null) {
 				tagInfo = new JSONObject();
-				res.get(split[0]).getJSONObject("tags_info").put(split[1], tagInfo);
+				obj.getJSONObject("tags_info").put(tag, tagInfo);
 			}
-			
-			if(split.length > 2) {
-				tagInfo.put(split[2], entry.getValue().get());
-				if(!"_error".equals(split[2])) {
-					tagInfo.put("_total", tagInfo.optInt("_total") + entry.getValue().get());
+
+			if(!value.isEmpty()) {
+				tagInfo.put(value, tagInfo.optInt(value) + count);
+				if(!ERROR.equals(value)) {
+					tagInfo.put(TOTAL, tagInfo.optInt(TOTAL) + count);
 				}
 			}
 		}
-		
+
 		return res.values();
 	}
-	
 
 }
@@ -0,0 +1,340 @@
+package me.osm.gazetter.join.util;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+
+import me.osm.gazetter.metrics.Counter;
+import me.osm.gazetter.metrics.Metrics;
+import me.osm.gazetter.metrics.Timer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Watches tenured heap pool and hands out memory reservations for join jobs.
+ * <p>
+ * Doesn't poll free memory and never calls System.gc(),
+ * pressure is detected by pool usage thresholds and gc notifications:
+ * <ul>
+ * <li>HIGH - pool usage crossed usage threshold, there may be
+ * just a garbage, so new jobs aren't admitted until next gc.</li>
+ * <li>CRITICAL - pool is still above collection threshold after gc,
+ * new jobs aren't admitted, caches are asked to shrink and
+ * running jobs are asked to step back (see {@link Reservation#check()}).</li>
+ * </ul>
+ * Pressure is cleared by the gc which leaves pool below both thresholds.
+ * Young gcs don't lower tenured pool usage, so they don't clear it.
+ * */
+public class MemoryGovernor {
+
+	private static final Logger log = LoggerFactory.getLogger(MemoryGovernor.class);
+
+	/**
+	 * Part of tenured pool, after which we start to worry.
+	 * */
+	private static final double USAGE_THRESHOLD = 0.80;
+
+	/**
+	 * Part of tenured pool, which may stay alive after gc.
+	 * */
+	private static final double COLLECTION_THRESHOLD = 0.70;
+
+	/**
+	 * Part of heap available for reservations.
+	 * */
+	private static final double RESERVATIONS_BUDGET = 0.75;
+
+	/**
+	 * Same as com.sun.management.GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION,
+	 * but without dependency on com.sun classes.
+	 * */
+	private static final String GC_NOTIFICATION = "com.sun.management.gc.notification";
+
+	private static final Counter highPressure = Metrics.counter("memory.pressure.high");
+	private static final Counter criticalPressure = Metrics.counter("memory.pressure.critical");
+	private static final Timer admissionWait = Metrics.timer("memory.admission_wait");
+
+	public static enum Pressure {
+		NORMAL, HIGH, CRITICAL
+	}
+
+	/**
+	 * Cooperative reaction on memory pressure:
+	 * drop caches, spill buffers to disk etc.
+	 * <p>
+	 * Called from jmx notifications thread, so should be short
+	 * and thread safe.
+	 * */
+	public static interface PressureListener {
+		public void onPressure(Pressure pressure);
+	}
+
+	/**
+	 * Thrown by jobs checkpoints, when job should give up
+	 * and be rescheduled later.
+	 * */
+	public static final class InsufficientMemoryException extends Exception {
+
+		private static final long serialVersionUID = -8081720083932767145L;
+
+	}
+
+	/**
+	 * Memory, reserved for one job.
+	 * */
+	public final class Reservation {
+
+		private final long bytes;
+		private boolean released = false;
+
+		private Reservation(long bytes) {
+			this.bytes = bytes;
+		}
+
+		public long getBytes() {
+			return bytes;
+		}
+
+		/**
+		 * Checkpoint for long running jobs. Throws if memory pressure
+		 * is critical and job isn't the only one, so the last job
+		 * always has a chance to finish.
+		 * */
+		public void check() throws InsufficientMemoryException {
+			if(pressure == Pressure.CRITICAL && jobs() > 1) {
+				throw new InsufficientMemoryException();
+			}
+		}
+
+		public void release() {
+			synchronized (MemoryGovernor.this) {
+				if(!released) {
+					released = true;
+					reserved -= bytes;
+					reservations--;
+					MemoryGovernor.this.notifyAll();
+				}
+			}
+		}
+	}
+
+	private static final MemoryGovernor INSTANCE = new MemoryGovernor();
+
+	public static MemoryGovernor get() {
+		return INSTANCE;
+	}
+
+	private final MemoryPoolMXBean tenured;
+	private final long budget;
+
+	private final List<PressureListener> listeners = new CopyOnWriteArrayList<>();
+
+	private volatile Pressure pressure = Pressure.NORMAL;
+	private volatile long gcCountAtRaise = 0;
+
+	private long reserved = 0;
+	private int reservations = 0;
+
+	private MemoryGovernor() {
+		this.tenured = findTenuredPool();
+		this.budget = (long) (Runtime.getRuntime().maxMemory() * RESERVATIONS_BUDGET);
+
+		if(tenured == null) {
+			log.warn("Tenured heap pool with thresholds support not found, memory pressure won't be tracked");
+			return;
+		}
+
+		long max = poolMax();
+		tenured.setUsageThreshold((long) (max * USAGE_THRESHOLD));
+		tenured.setCollectionUsageThreshold((long) (max * COLLECTION_THRESHOLD));
+
+		NotificationListener listener = new NotificationListener() {
+			@Override
+			public void handleNotification(Notification notification, Object handback) {
+				String type = notification.getType();
+
+				if(MemoryNotificationInfo.MEMORY_THRESHOLD_EXCEEDED.equals(type)) {
+					raise(Pressure.HIGH);
+				}
+				else if(MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(type)) {
+					raise(Pressure.CRITICAL);
+				}
+				else if(GC_NOTIFICATION.equals(type)) {
+					afterGC();
+				}
+			}
+		};
+
+		((NotificationEmitter) ManagementFactory.getMemoryMXBean())
+			.addNotificationListener(listener, null, null);
+
+		for(GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			if(gc instanceof NotificationEmitter) {
+				((NotificationEmitter) gc).addNotificationListener(listener, null, null);
+			}
+		}
+	}
+
+	public Pressure getPressure() {
+		return pressure;
+	}
+
+	/**
+	 * Heap which could be reserved by all the jobs together.
+	 * */
+	public long getBudget() {
+		return budget;
+	}
+
+	public synchronized long getReserved() {
+		return reserved;
+	}
+
+	public void addListener(PressureListener listener) {
+		listeners.add(listener);
+	}
+
+	public void removeListener(PressureListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Blocks until there is no pressure and bytes fits into
+	 * reservations budget, then reserves them.
+	 * <p>
+	 * If nothing is reserved, job is admitted anyway.
+	 * */
+	public Reservation admit(long bytes) {
+		long start = admissionWait.start();
+		synchronized (this) {
+			while(reservations > 0 &&
+					(pressure != Pressure.NORMAL || reserved + bytes > budget)) {
+				try {
+					// gc notifications may be unsupported, so recheck from time to time
+					wait(1000);
+				}
+				catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+				afterGC();
+			}
+			admissionWait.stop(start);
+			return doReserve(bytes);
+		}
+	}
+
+	/**
+	 * Reserves memory without waiting, for jobs
+	 * which are run outside of executor.
+	 * */
+	public synchronized Reservation reserve(long bytes) {
+		return doReserve(bytes);
+	}
+
+	private Reservation doReserve(long bytes) {
+		reserved += bytes;
+		reservations++;
+		return new Reservation(bytes);
+	}
+
+	private synchronized int jobs() {
+		return reservations;
+	}
+
+	private synchronized void raise(Pressure level) {
+		if(level.compareTo(pressure) <= 0) {
+			return;
+		}
+
+		pressure = level;
+		gcCountAtRaise = gcCount();
+
+		if(level == Pressure.CRITICAL) {
+			criticalPressure.inc();
+			log.info("Memory pressure is critical, {}mb of tenured heap is used after gc",
+					tenured.getCollectionUsage().getUsed() / 1048576);
+		}
+		else {
+			highPressure.inc();
+			log.debug("Memory pressure is high");
+		}
+
+		for(PressureListener l : listeners) {
+			try {
+				l.onPressure(level);
+			}
+			catch (Exception e) {
+				log.warn("Pressure listener failed", e);
+			}
+		}
+	}
+
+	/**
+	 * Collection usage is the pool usage after the most recent gc
+	 * of this pool, it's updated by jvm, so it's cheap to read.
+	 * <p>
+	 * Pressure is cleared only by gc which happened after it was raised,
+	 * and only if current pool usage is back under usage threshold:
+	 * collection usage isn't refreshed by young gcs, and they only
+	 * add promoted objects to tenured pool, so HIGH pressure stays
+	 * until tenured pool is actually collected.
+	 * */
+	private void afterGC() {
+		if(tenured == null) {
+			return;
+		}
+
+		// the whole check under the lock, so concurrent raise
+		// can't be overwritten by the clear based on stale usage
+		synchronized (this) {
+			long used = tenured.getCollectionUsage().getUsed();
+			if(used > tenured.getCollectionUsageThreshold()) {
+				raise(Pressure.CRITICAL);
+			}
+			else if(pressure != Pressure.NORMAL && gcCount() > gcCountAtRaise
+					&& !tenured.isUsageThresholdExceeded()) {
+				pressure = Pressure.NORMAL;
+				notifyAll();
+				log.debug("Memory pressure is cleared");
+			}
+		}
+	}
+
+	private static long gcCount() {
+		long count = 0;
+		for(GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			count += Math.max(0, gc.getCollectionCount());
+		}
+		return count;
+	}
+
+	private long poolMax() {
+		long max = tenured.getUsage().getMax();
+		return max > 0 ? max : Runtime.getRuntime().maxMemory();
+	}
+
+	private static MemoryPoolMXBean findTenuredPool() {
+		MemoryPoolMXBean result = null;
+		for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if(pool.getType() == MemoryType.HEAP && pool.isValid()
+					&& pool.isUsageThresholdSupported()
+					&& pool.isCollectionUsageThresholdSupported()) {
+
+				if(result == null || pool.getUsage().getMax() > result.getUsage().getMax()) {
+					result = pool;
+				}
+			}
+		}
+		return result;
+	}
+
+}
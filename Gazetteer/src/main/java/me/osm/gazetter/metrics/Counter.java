@@ -0,0 +1,24 @@
+package me.osm.gazetter.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Monotonic counter
+ * */
+public class Counter {
+
+	private final AtomicLong value = new AtomicLong();
+
+	public void inc() {
+		value.incrementAndGet();
+	}
+
+	public void add(long n) {
+		value.addAndGet(n);
+	}
+
+	public long get() {
+		return value.get();
+	}
+
+}
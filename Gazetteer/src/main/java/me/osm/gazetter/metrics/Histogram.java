@@ -0,0 +1,105 @@
+package me.osm.gazetter.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.json.JSONObject;
+
+/**
+ * Distribution of non negative values.
+ * <p>
+ * Values are counted in power of two buckets, so percentiles
+ * are approximate: reported value is the upper bound of the bucket,
+ * at most two times bigger than the real one.
+ * */
+public class Histogram {
+
+	private static final int BUCKETS = 64;
+
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong sum = new AtomicLong();
+	private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+	private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+	public void update(long value) {
+		if(value < 0) {
+			value = 0;
+		}
+
+		count.incrementAndGet();
+		sum.addAndGet(value);
+		buckets.incrementAndGet(bucket(value));
+
+		long m = min.get();
+		while(value < m && !min.compareAndSet(m, value)) {
+			m = min.get();
+		}
+
+		m = max.get();
+		while(value > m && !max.compareAndSet(m, value)) {
+			m = max.get();
+		}
+	}
+
+	public long getCount() {
+		return count.get();
+	}
+
+	public long getSum() {
+		return sum.get();
+	}
+
+	public long getMin() {
+		return count.get() == 0 ? 0 : min.get();
+	}
+
+	public long getMax() {
+		return count.get() == 0 ? 0 : max.get();
+	}
+
+	/**
+	 * @param q quantile, 0.5 for median
+	 * */
+	public long getPercentile(double q) {
+		long total = count.get();
+		if(total == 0) {
+			return 0;
+		}
+
+		long rank = (long) Math.ceil(q * total);
+		long seen = 0;
+		for(int i = 0; i < BUCKETS; i++) {
+			seen += buckets.get(i);
+			if(seen >= rank) {
+				return Math.min(upperBound(i), getMax());
+			}
+		}
+		return getMax();
+	}
+
+	public JSONObject toJSON() {
+		long n = getCount();
+
+		JSONObject json = new JSONObject();
+		json.put("count", n);
+		json.put("sum", getSum());
+		json.put("min", getMin());
+		json.put("max", getMax());
+		json.put("mean", n == 0 ? 0 : (double) getSum() / n);
+		json.put("p50", getPercentile(0.5));
+		json.put("p90", getPercentile(0.9));
+		json.put("p99", getPercentile(0.99));
+
+		return json;
+	}
+
+	private static int bucket(long value) {
+		return value == 0 ? 0 : Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(value));
+	}
+
+	private static long upperBound(int bucket) {
+		return bucket == 0 ? 0 : bucket >= 63 ? Long.MAX_VALUE : (1L << bucket) - 1;
+	}
+
+}
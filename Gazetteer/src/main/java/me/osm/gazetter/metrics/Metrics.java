@@ -0,0 +1,89 @@
+package me.osm.gazetter.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.json.JSONObject;
+
+/**
+ * Registry of metrics, shared by the whole process.
+ * <p>
+ * Metrics are created on first access by name. Don't look them
+ * up in hot loops, keep a reference in static field instead.
+ * <p>
+ * Names are dot separated, starting with the part of pipeline:
+ * reader.nodes, join.stripe, write_dao.lock_wait and so on.
+ * */
+public final class Metrics {
+
+	private static final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<>();
+	private static final ConcurrentMap<String, Timer> timers = new ConcurrentHashMap<>();
+	private static final ConcurrentMap<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+	private Metrics() {
+		
+	}
+
+	public static Counter counter(String name) {
+		Counter c = counters.get(name);
+		if(c == null) {
+			counters.putIfAbsent(name, new Counter());
+			c = counters.get(name);
+		}
+		return c;
+	}
+
+	public static Timer timer(String name) {
+		Timer t = timers.get(name);
+		if(t == null) {
+			timers.putIfAbsent(name, new Timer());
+			t = timers.get(name);
+		}
+		return t;
+	}
+
+	public static Histogram histogram(String name) {
+		Histogram h = histograms.get(name);
+		if(h == null) {
+			histograms.putIfAbsent(name, new Histogram());
+			h = histograms.get(name);
+		}
+		return h;
+	}
+
+	/**
+	 * All metrics, which were updated at least once, sorted by name
+	 * */
+	public static JSONObject toJSON() {
+		JSONObject counters = new JSONObject();
+		for(Map.Entry<String, Counter> e : new TreeMap<>(Metrics.counters).entrySet()) {
+			if(e.getValue().get() != 0) {
+				counters.put(e.getKey(), e.getValue().get());
+			}
+		}
+
+		JSONObject timers = new JSONObject();
+		for(Map.Entry<String, Timer> e : new TreeMap<>(Metrics.timers).entrySet()) {
+			if(e.getValue().getCount() != 0) {
+				timers.put(e.getKey(), e.getValue().toJSON());
+			}
+		}
+
+		JSONObject histograms = new JSONObject();
+		for(Map.Entry<String, Histogram> e : new TreeMap<>(Metrics.histograms).entrySet()) {
+			if(e.getValue().getCount() != 0) {
+				histograms.put(e.getKey(), e.getValue().toJSON());
+			}
+		}
+
+		JSONObject result = new JSONObject();
+		result.put("counters", counters);
+		result.put("timers", timers);
+		result.put("histograms", histograms);
+
+		return result;
+	}
+
+}
@@ -0,0 +1,131 @@
+package me.osm.gazetter.metrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import me.osm.gazetter.Options;
+import me.osm.gazetter.Versions;
+import me.osm.gazetter.utils.FileUtils;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Json report of one command run: wall time, threads, heap and GC 
+ * usage and all the collected {@link Metrics}.
+ * <p>
+ * Create it before the command starts and write after it's done.
+ * */
+public class RunReport {
+
+	private static final Logger log = LoggerFactory.getLogger(RunReport.class);
+
+	private final String command;
+	private final List<String> args;
+	private final Date started = new Date();
+	private final long startNanos = System.nanoTime();
+
+	private final Map<String, long[]> gcBaseline = new HashMap<>();
+
+	public RunReport(String command, List<String> args) {
+		this.command = command;
+		this.args = args;
+
+		for(GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			gcBaseline.put(gc.getName(), new long[]{gc.getCollectionCount(), gc.getCollectionTime()});
+		}
+	}
+
+	/**
+	 * Default report file: reports/command-yyyyMMdd-HHmmss.json in data dir
+	 * */
+	public File defaultFile(String dataDir) {
+		return new File(new File(dataDir, "reports"), 
+				command + "-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(started) + ".json");
+	}
+
+	public JSONObject toJSON() {
+		JSONObject report = new JSONObject();
+
+		report.put("command", command);
+		report.put("args", new JSONArray(args));
+		report.put("version", Versions.gazetteer);
+		report.put("started", new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ").format(started));
+		report.put("wallMs", (System.nanoTime() - startNanos) / 1000000);
+		report.put("threads", Options.get().getNumberOfThreads());
+		report.put("availableProcessors", Runtime.getRuntime().availableProcessors());
+
+		JSONObject heap = new JSONObject();
+		heap.put("max", Runtime.getRuntime().maxMemory());
+		
+		// sum of pools peaks, it's an upper bound of the real peak
+		long peak = 0;
+		for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if(pool.getType() == MemoryType.HEAP && pool.isValid()) {
+				peak += pool.getPeakUsage().getUsed();
+			}
+		}
+		heap.put("peakUsed", peak);
+		report.put("heap", heap);
+
+		JSONObject gcs = new JSONObject();
+		long gcTime = 0;
+		for(GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			long[] base = gcBaseline.get(gc.getName());
+			long count = gc.getCollectionCount() - (base == null ? 0 : base[0]);
+			long time = gc.getCollectionTime() - (base == null ? 0 : base[1]);
+
+			JSONObject gcJSON = new JSONObject();
+			gcJSON.put("count", count);
+			gcJSON.put("timeMs", time);
+			gcs.put(gc.getName(), gcJSON);
+
+			gcTime += time;
+		}
+		gcs.put("totalTimeMs", gcTime);
+		report.put("gc", gcs);
+
+		report.put("metrics", Metrics.toJSON());
+
+		return report;
+	}
+
+	/**
+	 * Write report, errors are logged but not thrown, 
+	 * report shouldn't fail the command which is already done.
+	 * */
+	public void write(File file) {
+		try {
+			if(file.getParentFile() != null) {
+				file.getParentFile().mkdirs();
+			}
+
+			PrintWriter writer = FileUtils.getPrintWriter(file, false);
+			try {
+				writer.println(toJSON().toString(2));
+			}
+			finally {
+				writer.flush();
+				writer.close();
+			}
+
+			log.info("Run report is written to {}", file);
+		}
+		catch (IOException e) {
+			log.warn("Failed to write run report {}: {}", file, e.getMessage());
+		}
+	}
+
+}
@@ -0,0 +1,53 @@
+package me.osm.gazetter.metrics;
+
+import org.json.JSONObject;
+
+/**
+ * Histogram of durations, measured in nanoseconds
+ * and reported in milliseconds.
+ * <pre>
+ * long start = timer.start();
+ * ...
+ * timer.stop(start);
+ * </pre>
+ * */
+public class Timer extends Histogram {
+
+	private static final double NANOS_TO_MS = 1.0 / 1000000;
+
+	public long start() {
+		return System.nanoTime();
+	}
+
+	/**
+	 * Record time passed since start
+	 * 
+	 * @return recorded duration in nanoseconds
+	 * */
+	public long stop(long start) {
+		long duration = System.nanoTime() - start;
+		update(duration);
+		return duration;
+	}
+
+	@Override
+	public JSONObject toJSON() {
+		long n = getCount();
+
+		JSONObject json = new JSONObject();
+		json.put("count", n);
+		json.put("totalMs", ms(getSum()));
+		json.put("maxMs", ms(getMax()));
+		json.put("meanMs", n == 0 ? 0 : ms(getSum()) / n);
+		json.put("p50Ms", ms(getPercentile(0.5)));
+		json.put("p90Ms", ms(getPercentile(0.9)));
+		json.put("p99Ms", ms(getPercentile(0.99)));
+
+		return json;
+	}
+
+	private static double ms(long nanos) {
+		return Math.round(nanos * NANOS_TO_MS * 1000) / 1000.0;
+	}
+
+}
@@ -0,0 +1,5 @@
+/**
+ * Counters, timers and histograms collected during the run
+ * and json run report.
+ * */
+package me.osm.gazetter.metrics;
@@ -0,0 +1,516 @@
+package me.osm.gazetter.osc;
+
+import gnu.trove.iterator.TLongIterator;
+import gnu.trove.set.hash.TLongHashSet;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+
+import me.osm.gazetter.join.JoinBoundariesExecutor;
+import me.osm.gazetter.join.JoinExecutor;
+import me.osm.gazetter.osc.OscReader.Changes;
+import me.osm.gazetter.sortupdate.SortAndUpdateTask;
+import me.osm.gazetter.striper.GeoJsonWriter;
+import me.osm.gazetter.striper.JSONFeature;
+import me.osm.gazetter.striper.Slicer;
+import me.osm.gazetter.striper.readers.PointsReader.Node;
+import me.osm.gazetter.striper.readers.RelationsReader.Relation;
+import me.osm.gazetter.striper.readers.RelationsReader.Relation.RelationMember;
+import me.osm.gazetter.striper.readers.RelationsReader.Relation.RelationMember.ReferenceType;
+import me.osm.gazetter.striper.readers.WaysReader.Way;
+import me.osm.gazetter.utils.FileUtils;
+import me.osm.gazetter.utils.FileUtils.LineHandler;
+
+import org.apache.commons.lang3.StringEscapeUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.time.DurationFormatUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Applies osm change files to stripes.
+ * <p>
+ * Objects affected by changes (changed objects, ways with changed nodes,
+ * relations with changed members) are resolved with {@link OscIndex}.
+ * Affected objects with everything they need to build geometries
+ * are written into small osm extract, which is sliced as usual.
+ * Unchanged highways, which share nodes with affected objects, are
+ * added to extract to rebuild junctions, their features are not replaced.
+ * New features are appended to stripes, features of affected
+ * objects, which weren't created again, are appended with remove action.
+ * Touched stripes are sorted and updated, so incremental join
+ * will rejoin them.
+ * */
+public class OscApplier {
+
+	private static final Logger log = LoggerFactory.getLogger(OscApplier.class);
+
+	/**
+	 * How deep to look for parents of changed relations
+	 * */
+	private static final int MAX_RELATIONS_DEPTH = 5;
+
+	private static final String HEADER = "<?xml version='1.0' encoding='UTF-8'?>";
+
+	private static final FilenameFilter STRIPES_AND_BINX = new FilenameFilter() {
+		@Override
+		public boolean accept(File dir, String name) {
+			return JoinExecutor.STRIPE_FILE_FN_FILTER.accept(dir, name)
+					|| name.startsWith(JoinBoundariesExecutor.BINX_STRIPE);
+		}
+	};
+
+	/**
+	 * Osm objects, which will be sliced again
+	 * */
+	private static final class Extract {
+		private final Map<Long, Node> nodes = new TreeMap<>();
+		private final Map<Long, Way> ways = new TreeMap<>();
+		private final Map<Long, Relation> relations = new TreeMap<>();
+
+		/**
+		 * Keys of all objects, which features should be replaced
+		 * */
+		private final Set<String> keys = new HashSet<>();
+	}
+
+	private final File dataDir;
+	private final List<String> oscFiles;
+
+	private final String poiCatalog;
+	private final List<String> exclude;
+	private final List<String> named;
+	private final String boundariesFallbackIndex;
+	private final List<String> boundariesFallbackTypes;
+	private final boolean x10;
+
+	public OscApplier(String dataDir, List<String> oscFiles, String poiCatalog,
+			List<String> exclude, List<String> named, String boundariesFallbackIndex,
+			List<String> boundariesFallbackTypes, boolean x10) {
+
+		this.dataDir = new File(dataDir);
+		this.oscFiles = oscFiles;
+		this.poiCatalog = poiCatalog;
+		this.exclude = exclude;
+		this.named = named;
+		this.boundariesFallbackIndex = boundariesFallbackIndex;
+		this.boundariesFallbackTypes = boundariesFallbackTypes;
+		this.x10 = x10;
+	}
+
+	public void run() {
+		long start = new Date().getTime();
+
+		if(!OscIndex.exists(dataDir)) {
+			log.info("Osc index not found, build it");
+			OscIndex.build(dataDir);
+		}
+
+		OscIndex index = OscIndex.open(dataDir);
+
+		OscReader reader = new OscReader();
+		for(String osc : oscFiles) {
+			reader.read(new File(osc));
+		}
+
+		Changes changes = reader.getChanges();
+		if(changes.isEmpty()) {
+			log.info("No changes found");
+			index.save();
+			return;
+		}
+
+		Extract extract = resolve(changes, index);
+		log.info("Apply changes. Slice {} nodes, {} ways, {} relations", new Object[]{
+				extract.nodes.size(), extract.ways.size(), extract.relations.size()});
+
+		File tmp = null;
+		try {
+			tmp = Files.createTempDirectory(dataDir.toPath(), "osc").toFile();
+
+			writeExtract(extract, tmp);
+
+			new Slicer(tmp.getPath()).run(poiCatalog, Arrays.asList("all"),
+					exclude, named, Collections.<String>emptyList(),
+					boundariesFallbackIndex, boundariesFallbackTypes, x10);
+
+			Set<String> touched = applyFeatures(tmp, extract, index);
+
+			updateIndex(changes, index);
+			index.save();
+
+			updateStripes(touched);
+
+			log.info("Osm changes applied in {}. {} stripes were updated.",
+					DurationFormatUtils.formatDurationHMS(new Date().getTime() - start),
+					touched.size());
+		}
+		catch (IOException e) {
+			throw new RuntimeException("Failed to apply osm changes", e);
+		}
+		finally {
+			if(tmp != null) {
+				try {
+					org.apache.commons.io.FileUtils.deleteDirectory(tmp);
+				}
+				catch (IOException e) {
+					log.warn("Failed to delete {}", tmp);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Find all objects affected by changes and load everything
+	 * they need to be sliced.
+	 * */
+	private Extract resolve(Changes changes, OscIndex index) {
+		Extract extract = new Extract();
+
+		TLongHashSet nodeIds = new TLongHashSet(changes.nodes.keySet());
+		nodeIds.addAll(changes.deletedNodes);
+
+		TLongHashSet wayIds = new TLongHashSet(changes.ways.keySet());
+		wayIds.addAll(changes.deletedWays);
+
+		TLongHashSet relIds = new TLongHashSet(changes.relations.keySet());
+		relIds.addAll(changes.deletedRelations);
+
+		// ways with changed nodes and relations with changed members
+		TLongIterator iterator = nodeIds.iterator();
+		while(iterator.hasNext()) {
+			long n = iterator.next();
+			wayIds.addAll(index.getNodeWays(n));
+			relIds.addAll(index.getParentRelations(OscIndex.key('n', n)));
+		}
+
+		iterator = wayIds.iterator();
+		while(iterator.hasNext()) {
+			relIds.addAll(index.getParentRelations(OscIndex.key('w', iterator.next())));
+		}
+
+		TLongHashSet level = new TLongHashSet(relIds);
+		for(int depth = 0; depth < MAX_RELATIONS_DEPTH && !level.isEmpty(); depth++) {
+			TLongHashSet next = new TLongHashSet();
+
+			iterator = level.iterator();
+			while(iterator.hasNext()) {
+				for(long parent : index.getParentRelations(OscIndex.key('r', iterator.next())).toArray()) {
+					if(relIds.add(parent)) {
+						next.add(parent);
+					}
+				}
+			}
+
+			level = next;
+		}
+
+		// load bodies
+		iterator = relIds.iterator();
+		while(iterator.hasNext()) {
+			long r = iterator.next();
+			extract.keys.add(OscIndex.key('r', r));
+
+			Relation rel = changes.deletedRelations.contains(r) ? null
+					: changes.relations.containsKey(r) ? changes.relations.get(r) : index.getRelation(r);
+
+			if(rel != null) {
+				extract.relations.put(r, rel);
+				for(RelationMember m : rel.members) {
+					if(m.type == ReferenceType.WAY) {
+						wayIds.add(m.ref);
+					}
+					else if(m.type == ReferenceType.NODE) {
+						nodeIds.add(m.ref);
+					}
+				}
+			}
+		}
+
+		iterator = wayIds.iterator();
+		while(iterator.hasNext()) {
+			long w = iterator.next();
+			extract.keys.add(OscIndex.key('w', w));
+
+			Way old = index.getWay(w);
+			Way way = changes.deletedWays.contains(w) ? null
+					: changes.ways.containsKey(w) ? changes.ways.get(w) : old;
+
+			if(way != null) {
+				extract.ways.put(w, way);
+				nodeIds.addAll(way.nodes);
+			}
+
+			// junctions at nodes, removed from way, should be rebuilt too
+			if(old != null && old != way) {
+				nodeIds.addAll(old.nodes);
+			}
+		}
+
+		// Junctions are built from all the highways, which share a node.
+		// Unchanged highways, which pass through affected nodes, are sliced
+		// too, but only to rebuild junctions, their own features are kept.
+		TLongHashSet contextNodes = new TLongHashSet();
+
+		iterator = nodeIds.iterator();
+		while(iterator.hasNext()) {
+			for(long w : index.getNodeWays(iterator.next()).toArray()) {
+				if(!wayIds.contains(w) && !extract.ways.containsKey(w)) {
+					Way way = index.getWay(w);
+					if(way != null && isHighway(way)) {
+						extract.ways.put(w, way);
+						contextNodes.addAll(way.nodes);
+					}
+				}
+			}
+		}
+
+		iterator = nodeIds.iterator();
+		while(iterator.hasNext()) {
+			long n = iterator.next();
+			extract.keys.add(OscIndex.key('n', n));
+			loadNode(n, changes, index, extract);
+		}
+
+		contextNodes.removeAll(nodeIds);
+		iterator = contextNodes.iterator();
+		while(iterator.hasNext()) {
+			loadNode(iterator.next(), changes, index, extract);
+		}
+
+		return extract;
+	}
+
+	private static void loadNode(long n, Changes changes, OscIndex index, Extract extract) {
+		if(changes.deletedNodes.contains(n)) {
+			return;
+		}
+
+		Node node = changes.nodes.containsKey(n) ? changes.nodes.get(n) : index.getNode(n);
+		if(node != null) {
+			extract.nodes.put(n, node);
+		}
+		else {
+			log.warn("Node {} not found", n);
+		}
+	}
+
+	/**
+	 * Ways which may be a part of junction, the same check as in HighwaysBuilder
+	 * */
+	private static boolean isHighway(Way way) {
+		String highway = way.tags.get("highway");
+		return highway != null && !"bus_stop".equals(highway) && !"platform".equals(highway)
+				&& way.tags.containsKey("name");
+	}
+
+	private static void writeExtract(Extract extract, File folder) throws IOException {
+		String timestamp = GeoJsonWriter.getNowTimestampString();
+
+		PrintWriter writer = FileUtils.getPrintWriter(new File(folder, "nodes.osm"), false);
+		try {
+			writer.println(HEADER);
+			writer.println("<osm>");
+			for(Node node : extract.nodes.values()) {
+				writer.println("<node id=\"" + node.id + "\" lon=\"" + node.lon + "\" lat=\"" + node.lat
+						+ "\" timestamp=\"" + timestamp + "\">");
+				writeTags(writer, node.tags);
+				writer.println("</node>");
+			}
+			writer.println("</osm>");
+		}
+		finally {
+			writer.close();
+		}
+
+		writer = FileUtils.getPrintWriter(new File(folder, "ways.osm"), false);
+		try {
+			writer.println(HEADER);
+			writer.println("<osm>");
+			for(Way way : extract.ways.values()) {
+				writer.println("<way id=\"" + way.id + "\">");
+				for(Long n : way.nodes) {
+					writer.println("<nd ref=\"" + n + "\"/>");
+				}
+				writeTags(writer, way.tags);
+				writer.println("</way>");
+			}
+			writer.println("</osm>");
+		}
+		finally {
+			writer.close();
+		}
+
+		writer = FileUtils.getPrintWriter(new File(folder, "rels.osm"), false);
+		try {
+			writer.println(HEADER);
+			writer.println("<osm>");
+			for(Relation rel : extract.relations.values()) {
+				writer.println("<relation id=\"" + rel.id + "\">");
+				for(RelationMember m : rel.members) {
+					writer.println("<member type=\"" + m.type.name().toLowerCase() + "\" ref=\"" + m.ref
+							+ "\" role=\"" + StringEscapeUtils.escapeXml(StringUtils.stripToEmpty(m.role)) + "\"/>");
+				}
+				writeTags(writer, rel.tags);
+				writer.println("</relation>");
+			}
+			writer.println("</osm>");
+		}
+		finally {
+			writer.close();
+		}
+	}
+
+	private static void writeTags(PrintWriter writer, Map<String, String> tags) {
+		for(Entry<String, String> tag : tags.entrySet()) {
+			writer.println("<tag k=\"" + StringEscapeUtils.escapeXml(tag.getKey())
+					+ "\" v=\"" + StringEscapeUtils.escapeXml(tag.getValue()) + "\"/>");
+		}
+	}
+
+	/**
+	 * Append sliced features to stripes, and remove lines for features
+	 * of affected objects, which weren't created again.
+	 *
+	 * @return names of touched stripes
+	 * */
+	private Set<String> applyFeatures(File slices, Extract extract, OscIndex index) throws IOException {
+
+		final Map<String, List<String>> lines = new HashMap<>();
+		final Map<String, Set<String>> ids = new HashMap<>();
+		final Map<String, String> featureKeys = new HashMap<>();
+		final Set<String> keys = extract.keys;
+
+		for(File f : slices.listFiles(STRIPES_AND_BINX)) {
+			final String stripe = FileUtils.withGz(new File(dataDir, f.getName())).getName();
+
+			final List<String> stripeLines = get(lines, stripe);
+			final Set<String> stripeIds = new HashSet<>();
+			ids.put(stripe, stripeIds);
+
+			FileUtils.handleLines(f, new LineHandler() {
+				@Override
+				public void handle(String s) {
+					if(StringUtils.isNotEmpty(s)) {
+						String id = GeoJsonWriter.getId(s);
+						String key = OscIndex.featureKey(s, id);
+
+						// features of objects, loaded only to build junctions
+						if(!keys.contains(key)) {
+							return;
+						}
+
+						stripeLines.add(s);
+						stripeIds.add(id);
+						featureKeys.put(id, key);
+					}
+				}
+			});
+		}
+
+		String timestamp = GeoJsonWriter.getNowTimestampString();
+		int removed = 0;
+		for(String key : extract.keys) {
+			for(String[] feature : index.getFeatures(key)) {
+				String stripe = feature[0];
+				String id = feature[1];
+
+				Set<String> stripeIds = ids.get(stripe);
+				if(stripeIds == null || !stripeIds.contains(id)) {
+					get(lines, stripe).add(removeLine(id, timestamp));
+					index.removeFeature(key, stripe, id);
+					removed++;
+				}
+			}
+		}
+
+		for(Entry<String, Set<String>> entry : ids.entrySet()) {
+			for(String id : entry.getValue()) {
+				index.putFeature(featureKeys.get(id), entry.getKey(), id);
+			}
+		}
+
+		log.info("{} features were removed", removed);
+
+		for(Entry<String, List<String>> entry : lines.entrySet()) {
+			PrintWriter writer = FileUtils.getPrintWriterWithGZAppendTrick(
+					new File(dataDir, entry.getKey()), true);
+			try {
+				for(String line : entry.getValue()) {
+					writer.println(line);
+				}
+			}
+			finally {
+				writer.close();
+			}
+		}
+
+		return lines.keySet();
+	}
+
+	private static List<String> get(Map<String, List<String>> lines, String stripe) {
+		List<String> list = lines.get(stripe);
+		if(list == null) {
+			list = new ArrayList<>();
+			lines.put(stripe, list);
+		}
+		return list;
+	}
+
+	private static String removeLine(String id, String timestamp) {
+		JSONFeature feature = new JSONFeature();
+		feature.put("id", id);
+		feature.put("ftype", StringUtils.substringBefore(id, "-"));
+		feature.put(GeoJsonWriter.TIMESTAMP, timestamp);
+		feature.put("action", "remove");
+		feature.put("actionDetailed", "Removed by osm change");
+		return feature.toString();
+	}
+
+	private static void updateIndex(Changes changes, OscIndex index) {
+		for(Node node : changes.nodes.values()) {
+			index.putNode(node);
+		}
+		for(Way way : changes.ways.values()) {
+			index.putWay(way);
+		}
+		for(Relation rel : changes.relations.values()) {
+			index.putRelation(rel);
+		}
+
+		for(long n : changes.deletedNodes.toArray()) {
+			index.deleteNode(n);
+		}
+		for(long w : changes.deletedWays.toArray()) {
+			index.deleteWay(w);
+		}
+		for(long r : changes.deletedRelations.toArray()) {
+			index.deleteRelation(r);
+		}
+	}
+
+	/**
+	 * Sort and update touched stripes. Their hashes are changed,
+	 * so incremental join will rejoin them.
+	 * */
+	private void updateStripes(Set<String> touched) {
+		for(String stripe : touched) {
+			new SortAndUpdateTask(new File(dataDir, stripe)).run();
+		}
+	}
+
+}
@@ -0,0 +1,815 @@
+package me.osm.gazetter.osc;
+
+import gnu.trove.list.TLongList;
+import gnu.trove.list.array.TLongArrayList;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import me.osm.gazetter.Options;
+import me.osm.gazetter.join.JoinBoundariesExecutor;
+import me.osm.gazetter.join.JoinExecutor;
+import me.osm.gazetter.striper.GeoJsonWriter;
+import me.osm.gazetter.striper.readers.BinaryElements;
+import me.osm.gazetter.striper.readers.PointsReader;
+import me.osm.gazetter.striper.readers.PointsReader.Node;
+import me.osm.gazetter.striper.readers.PointsReader.PointsHandler;
+import me.osm.gazetter.striper.readers.RelationsReader;
+import me.osm.gazetter.striper.readers.RelationsReader.Relation;
+import me.osm.gazetter.striper.readers.RelationsReader.Relation.RelationMember;
+import me.osm.gazetter.striper.readers.RelationsReader.Relation.RelationMember.ReferenceType;
+import me.osm.gazetter.striper.readers.RelationsReader.RelationsHandler;
+import me.osm.gazetter.striper.readers.WaysReader;
+import me.osm.gazetter.striper.readers.WaysReader.Way;
+import me.osm.gazetter.striper.readers.WaysReader.WaysHandler;
+import me.osm.gazetter.utils.FileUtils;
+import me.osm.gazetter.utils.FileUtils.LineHandler;
+import me.osm.gazetter.utils.JSONLineScanner;
+import me.osm.gazetter.utils.sort.ExternalSorter;
+
+import org.apache.commons.lang3.StringUtils;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.code.externalsorting.Reducer;
+
+/**
+ * Persisted index of osm objects, used to apply osm changes to stripes.
+ * <p>
+ * Index keeps nodes coordinates and tags, ways and relations bodies,
+ * reverse references (node to ways, member to relations) and
+ * ids of features in stripes, generated for every osm object.
+ * <p>
+ * Every part of index is a sorted text file, lines are found by binary
+ * search. Changes are appended to delta files, which are read into memory,
+ * and merged into sorted files when they become too big.
+ * */
+public class OscIndex {
+
+	private static final Logger log = LoggerFactory.getLogger(OscIndex.class);
+
+	public static final String FOLDER = "osc-index";
+
+	private static final String NODES = "nodes";
+	private static final String WAYS = "ways";
+	private static final String RELATIONS = "relations";
+	private static final String NODE_WAYS = "node-ways";
+	private static final String MEMBERS = "members";
+	private static final String FEATURES = "features";
+
+	private static final String INDEX_SUFFIX = ".idx";
+	private static final String DELTA_SUFFIX = ".delta";
+
+	/**
+	 * Value of deleted object
+	 * */
+	private static final String DELETED = "-";
+
+	/**
+	 * Prefix of removed value of multivalued part
+	 * */
+	private static final char REMOVED = '!';
+
+	/**
+	 * Merge delta into index, if it has more lines than that
+	 * */
+	private static final int COMPACT_LIMIT = 1000000;
+
+	/**
+	 * Approximate number of lines in one sorted run during index build
+	 * */
+	private static final int RUN_LINES = 500000;
+
+	private static final Pattern FEATURE_ID_OSM_PART = Pattern.compile("-([nwr])(\\d+)(?:-\\d+)?$");
+
+	private static final Comparator<String> LINES_COMPARATOR = new Comparator<String>() {
+		@Override
+		public int compare(String s1, String s2) {
+			return s1.compareTo(s2);
+		}
+	};
+
+	private static final Comparator<String> KEYS_COMPARATOR = new Comparator<String>() {
+		@Override
+		public int compare(String s1, String s2) {
+			return SortedLinesFile.key(s1).compareTo(SortedLinesFile.key(s2));
+		}
+	};
+
+	/**
+	 * Sorts lines and keeps one of equal lines
+	 * */
+	private static final ExternalSorter<String> LINES_SORTER =
+			ExternalSorter.lines(LINES_COMPARATOR).setReducer(ExternalSorter.KEEP_FIRST).setThreads(1);
+
+	/**
+	 * Keeps the latest line
+	 * */
+	private static final Reducer LATEST_REDUCER = new Reducer() {
+		@Override
+		public String merge(String s1, String s2) {
+			return s2;
+		}
+	};
+
+	/**
+	 * One part of index.
+	 * <p>
+	 * Single valued part keeps only the latest line for a key,
+	 * multivalued keeps all of them, except removed ones.
+	 * Removed values are written into delta as tombstones
+	 * ({@code key\t!value}), which are resolved on read and compaction.
+	 * */
+	private static final class Part {
+
+		private final String name;
+		private final boolean single;
+
+		private SortedLinesFile file;
+		private final Map<String, List<String>> delta = new HashMap<>();
+		private final List<String> appended = new ArrayList<>();
+		private int deltaLines = 0;
+
+		private Part(String name, boolean single) {
+			this.name = name;
+			this.single = single;
+		}
+
+		private List<String> find(String key) throws IOException {
+			List<String> result = new ArrayList<>();
+
+			List<String> d = delta.get(key);
+			if(single && d != null) {
+				result.add(d.get(d.size() - 1));
+				return result;
+			}
+
+			if(file != null) {
+				if(single) {
+					List<String> lines = file.find(key);
+					if(!lines.isEmpty()) {
+						result.add(lines.get(lines.size() - 1));
+					}
+				}
+				else {
+					result.addAll(file.find(key));
+				}
+			}
+
+			if(d != null) {
+				for(String line : d) {
+					if(isRemoved(line)) {
+						result.remove(unremoved(line));
+					}
+					else if(!result.contains(line)) {
+						result.add(line);
+					}
+				}
+			}
+
+			return result;
+		}
+
+		private void add(String line) {
+			String key = SortedLinesFile.key(line);
+
+			List<String> d = delta.get(key);
+			if(d == null) {
+				d = new ArrayList<>(1);
+				delta.put(key, d);
+			}
+			d.add(line);
+			appended.add(line);
+		}
+	}
+
+	private final File folder;
+	private final Map<String, Part> parts = new LinkedHashMap<>();
+
+	private OscIndex(File folder) {
+		this.folder = folder;
+
+		for(Part p : Arrays.asList(
+				new Part(NODES, true), new Part(WAYS, true), new Part(RELATIONS, true),
+				new Part(NODE_WAYS, false), new Part(MEMBERS, false), new Part(FEATURES, false))) {
+
+			parts.put(p.name, p);
+		}
+	}
+
+	public static boolean exists(File dataDir) {
+		return new File(new File(dataDir, FOLDER), FEATURES + INDEX_SUFFIX).exists();
+	}
+
+	/**
+	 * Open index and read deltas.
+	 * */
+	public static OscIndex open(File dataDir) {
+		final OscIndex index = new OscIndex(new File(dataDir, FOLDER));
+
+		try {
+			for(final Part p : index.parts.values()) {
+				File idx = new File(index.folder, p.name + INDEX_SUFFIX);
+				if(idx.exists()) {
+					p.file = new SortedLinesFile(idx);
+				}
+
+				File delta = new File(index.folder, p.name + DELTA_SUFFIX);
+				if(delta.exists()) {
+					FileUtils.handleLines(delta, new LineHandler() {
+						@Override
+						public void handle(String s) {
+							if(StringUtils.isNotEmpty(s)) {
+								p.add(s);
+								p.deltaLines++;
+							}
+						}
+					});
+					p.appended.clear();
+				}
+			}
+		}
+		catch (IOException e) {
+			throw new RuntimeException("Failed to open osc index in " + dataDir, e);
+		}
+
+		return index;
+	}
+
+	/**
+	 * Build index from splitted osm data and slices.
+	 * <p>
+	 * Splitted data are read from nodes.osm, ways.osm and rels.osm,
+	 * or from binary files, written by split-slice with --keep-split.
+	 * */
+	public static void build(File dataDir) {
+		File nodesOsm = FileUtils.withGz(new File(dataDir, "nodes.osm"));
+		File nodesBin = FileUtils.withGz(new File(dataDir, BinaryElements.NODES));
+
+		if(!nodesOsm.exists() && !nodesBin.exists()) {
+			throw new IllegalStateException("Osc index is built from splitted osm data, but "
+					+ dataDir + " has neither nodes.osm nor " + BinaryElements.NODES
+					+ ". Run split, or split-slice with --keep-split, before apply-osc.");
+		}
+
+		File folder = new File(dataDir, FOLDER);
+		folder.mkdirs();
+
+		final Map<String, IndexWriter> writers = new HashMap<>();
+		for(String name : Arrays.asList(NODES, WAYS, RELATIONS, NODE_WAYS, MEMBERS, FEATURES)) {
+			writers.put(name, new IndexWriter(new File(folder, name + INDEX_SUFFIX)));
+		}
+
+		try {
+			HashSet<String> drop = new HashSet<String>();
+
+			PointsHandler nodesHandler = new PointsHandler() {
+				@Override
+				public void handle(Node node) {
+					writers.get(NODES).add(nodeLine(node));
+				}
+			};
+
+			WaysHandler waysHandler = new WaysHandler() {
+				@Override
+				public void handle(Way way) {
+					writers.get(WAYS).add(wayLine(way));
+					for(String line : nodeWaysLines(way)) {
+						writers.get(NODE_WAYS).add(line);
+					}
+				}
+			};
+
+			RelationsHandler relationsHandler = new RelationsHandler() {
+				@Override
+				public void handle(Relation rel) {
+					writers.get(RELATIONS).add(relationLine(rel));
+					for(String line : membersLines(rel)) {
+						writers.get(MEMBERS).add(line);
+					}
+				}
+			};
+
+			if(nodesOsm.exists()) {
+				new PointsReader(drop).read(FileUtils.getFileIS(nodesOsm), nodesHandler);
+				log.info("Osc index: done nodes");
+
+				new WaysReader(drop).read(FileUtils.getFileIS(
+						FileUtils.withGz(new File(dataDir, "ways.osm"))), waysHandler);
+				log.info("Osc index: done ways");
+
+				new RelationsReader(drop).read(FileUtils.getFileIS(
+						FileUtils.withGz(new File(dataDir, "rels.osm"))), relationsHandler);
+			}
+			else {
+				BinaryElements.readNodes(nodesBin, drop, nodesHandler);
+				log.info("Osc index: done nodes");
+
+				BinaryElements.readWays(FileUtils.withGz(
+						new File(dataDir, BinaryElements.WAYS)), drop, waysHandler);
+				log.info("Osc index: done ways");
+
+				BinaryElements.readRelations(FileUtils.withGz(
+						new File(dataDir, BinaryElements.RELATIONS)), drop, relationsHandler);
+			}
+			log.info("Osc index: done relations");
+
+			List<File> stripes = new ArrayList<>(Arrays.asList(
+					dataDir.listFiles(JoinExecutor.STRIPE_FILE_FN_FILTER)));
+
+			File binx = FileUtils.withGz(new File(dataDir, JoinBoundariesExecutor.BINX_STRIPE));
+			if(binx.exists()) {
+				stripes.add(binx);
+			}
+
+			for(File stripe : stripes) {
+				final String stripeName = stripe.getName();
+				FileUtils.handleLines(stripe, new LineHandler() {
+					@Override
+					public void handle(String s) {
+						if(StringUtils.isNotEmpty(s)) {
+							String id = GeoJsonWriter.getId(s);
+							writers.get(FEATURES).add(featureLine(featureKey(s, id), stripeName, id));
+						}
+					}
+				});
+			}
+			log.info("Osc index: done features");
+
+			for(IndexWriter w : writers.values()) {
+				w.finish();
+			}
+		}
+		catch (IOException e) {
+			throw new RuntimeException("Failed to build osc index in " + dataDir, e);
+		}
+	}
+
+	/**
+	 * Writes lines with sorted runs and merge them into index file.
+	 * */
+	private static final class IndexWriter {
+
+		private final File file;
+		private final List<String> chunk = new ArrayList<>();
+		private final List<File> runs = new ArrayList<>();
+
+		private IndexWriter(File file) {
+			this.file = file;
+		}
+
+		private void add(String line) {
+			chunk.add(line);
+			if(chunk.size() >= RUN_LINES) {
+				flush();
+			}
+		}
+
+		private void flush() {
+			File run = new File(file.getPath() + ".run" + runs.size() + ".gz");
+			runs.add(run);
+			LINES_SORTER.writeRun(chunk, run);
+			chunk.clear();
+		}
+
+		private void finish() throws IOException {
+			flush();
+
+			PrintWriter writer = FileUtils.getPrintWriter(file, false);
+			try {
+				ExternalSorter.lines(LINES_COMPARATOR).setReducer(ExternalSorter.KEEP_FIRST)
+						.setThreads(Options.get().getNumberOfThreads())
+						.merge(runs, writer, file.getParentFile());
+			}
+			finally {
+				writer.close();
+				for(File run : runs) {
+					run.delete();
+				}
+			}
+		}
+	}
+
+	public static String key(char type, long id) {
+		String s = Long.toString(id);
+		StringBuilder sb = new StringBuilder(20).append(type);
+		for(int i = s.length(); i < 19; i++) {
+			sb.append('0');
+		}
+		return sb.append(s).toString();
+	}
+
+	public static String key(ReferenceType type, long id) {
+		return key(Character.toLowerCase(type.name().charAt(0)), id);
+	}
+
+	/**
+	 * Key of osm object, which feature was created from.
+	 * */
+	public static String featureKey(String line, String id) {
+		Matcher matcher = FEATURE_ID_OSM_PART.matcher(id);
+		if(matcher.find()) {
+			return key(matcher.group(1).charAt(0), Long.parseLong(matcher.group(2)));
+		}
+
+		JSONLineScanner feature = new JSONLineScanner(GeoJsonWriter.META);
+		JSONLineScanner meta = new JSONLineScanner("type", "id");
+		if(feature.scan(line) && feature.has(0)
+				&& meta.scan(line, feature.start(0), feature.end(0))
+				&& meta.has(0) && meta.has(1)) {
+			return key(meta.get(0).charAt(0), meta.getLong(1, 0));
+		}
+
+		throw new IllegalArgumentException("Can't read osm type and id of feature " + id);
+	}
+
+	public Node getNode(long id) {
+		String line = getSingle(NODES, key('n', id));
+		if(line == null) {
+			return null;
+		}
+
+		String[] row = StringUtils.splitPreserveAllTokens(line, '\t');
+
+		Node node = new Node();
+		node.id = id;
+		node.lon = Double.parseDouble(row[1]);
+		node.lat = Double.parseDouble(row[2]);
+		node.tags = parseTags(row[3]);
+
+		return node;
+	}
+
+	public Way getWay(long id) {
+		String line = getSingle(WAYS, key('w', id));
+		if(line == null) {
+			return null;
+		}
+
+		String[] row = StringUtils.splitPreserveAllTokens(line, '\t');
+
+		Way way = new Way();
+		way.id = id;
+		for(String n : StringUtils.split(row[1], ',')) {
+			way.nodes.add(Long.parseLong(n));
+		}
+		way.tags = parseTags(row[2]);
+
+		return way;
+	}
+
+	public Relation getRelation(long id) {
+		String line = getSingle(RELATIONS, key('r', id));
+		if(line == null) {
+			return null;
+		}
+
+		String[] row = StringUtils.splitPreserveAllTokens(line, '\t');
+
+		Relation rel = new Relation();
+		rel.id = id;
+
+		JSONArray members = new JSONArray(row[1]);
+		for(int i = 0; i < members.length(); i++) {
+			JSONObject m = members.getJSONObject(i);
+
+			RelationMember member = new RelationMember();
+			member.type = ReferenceType.valueOf(m.getString("type"));
+			member.ref = m.getLong("ref");
+			member.role = m.optString("role", null);
+
+			rel.members.add(member);
+		}
+		rel.tags = parseTags(row[2]);
+
+		return rel;
+	}
+
+	/**
+	 * Ids of ways, which contain node
+	 * */
+	public TLongList getNodeWays(long node) {
+		return getRefs(NODE_WAYS, key('n', node));
+	}
+
+	/**
+	 * Ids of relations, which have object as a member
+	 * */
+	public TLongList getParentRelations(String key) {
+		return getRefs(MEMBERS, key);
+	}
+
+	/**
+	 * Features of osm object.
+	 *
+	 * @return pairs of stripe file name and feature id
+	 * */
+	public List<String[]> getFeatures(String key) {
+		List<String[]> result = new ArrayList<>();
+		for(String line : find(FEATURES, key)) {
+			String[] row = StringUtils.splitPreserveAllTokens(line, '\t');
+			result.add(new String[]{row[1], row[2]});
+		}
+		return result;
+	}
+
+	public void putNode(Node node) {
+		parts.get(NODES).add(nodeLine(node));
+	}
+
+	public void deleteNode(long id) {
+		parts.get(NODES).add(key('n', id) + "\t" + DELETED);
+	}
+
+	public void putWay(Way way) {
+		List<String> lines = nodeWaysLines(way);
+
+		Way old = getWay(way.id);
+		if(old != null) {
+			removeAll(NODE_WAYS, nodeWaysLines(old), lines);
+		}
+
+		parts.get(WAYS).add(wayLine(way));
+		for(String line : lines) {
+			parts.get(NODE_WAYS).add(line);
+		}
+	}
+
+	public void deleteWay(long id) {
+		Way old = getWay(id);
+		if(old != null) {
+			removeAll(NODE_WAYS, nodeWaysLines(old), Collections.<String>emptyList());
+		}
+
+		parts.get(WAYS).add(key('w', id) + "\t" + DELETED);
+	}
+
+	public void putRelation(Relation rel) {
+		List<String> lines = membersLines(rel);
+
+		Relation old = getRelation(rel.id);
+		if(old != null) {
+			removeAll(MEMBERS, membersLines(old), lines);
+		}
+
+		parts.get(RELATIONS).add(relationLine(rel));
+		for(String line : lines) {
+			parts.get(MEMBERS).add(line);
+		}
+	}
+
+	public void deleteRelation(long id) {
+		Relation old = getRelation(id);
+		if(old != null) {
+			removeAll(MEMBERS, membersLines(old), Collections.<String>emptyList());
+		}
+
+		parts.get(RELATIONS).add(key('r', id) + "\t" + DELETED);
+	}
+
+	public void putFeature(String key, String stripe, String featureId) {
+		parts.get(FEATURES).add(featureLine(key, stripe, featureId));
+	}
+
+	/**
+	 * Feature was removed from stripe or moved into another one.
+	 * */
+	public void removeFeature(String key, String stripe, String featureId) {
+		parts.get(FEATURES).add(removed(featureLine(key, stripe, featureId)));
+	}
+
+	/**
+	 * Write tombstones for old lines, which are not in new ones.
+	 * */
+	private void removeAll(String part, List<String> old, List<String> lines) {
+		Set<String> keep = new HashSet<>(lines);
+		for(String line : new HashSet<>(old)) {
+			if(!keep.contains(line)) {
+				parts.get(part).add(removed(line));
+			}
+		}
+	}
+
+	/**
+	 * Write changes into deltas, merge big deltas into index files.
+	 * */
+	public void save() {
+		try {
+			for(Part p : parts.values()) {
+				if(!p.appended.isEmpty()) {
+					FileUtils.writeLines(new File(folder, p.name + DELTA_SUFFIX), p.appended, true);
+					p.deltaLines += p.appended.size();
+					p.appended.clear();
+				}
+
+				if(p.file != null) {
+					p.file.close();
+				}
+
+				if(p.deltaLines > COMPACT_LIMIT) {
+					compact(p);
+				}
+			}
+		}
+		catch (IOException e) {
+			throw new RuntimeException("Failed to save osc index " + folder, e);
+		}
+	}
+
+	private void compact(Part p) throws IOException {
+		File idx = new File(folder, p.name + INDEX_SUFFIX);
+		File delta = new File(folder, p.name + DELTA_SUFFIX);
+		File run = new File(folder, p.name + ".run.gz");
+		File tmp = new File(folder, p.name + ".tmp");
+
+		log.info("Merge osc index delta {}", delta);
+
+		List<String> lines = FileUtils.readLines(delta);
+
+		ExternalSorter<String> sorter = p.single
+				? ExternalSorter.lines(KEYS_COMPARATOR).setReducer(LATEST_REDUCER)
+				: LINES_SORTER;
+
+		// tombstones of multivalued part hide lines of index
+		// and previous lines of delta, but not the later ones
+		final Set<String> removed = new HashSet<>();
+		if(!p.single) {
+			Set<String> added = new LinkedHashSet<>();
+			for(String line : lines) {
+				if(isRemoved(line)) {
+					String value = unremoved(line);
+					added.remove(value);
+					removed.add(value);
+				}
+				else {
+					added.add(line);
+					removed.remove(line);
+				}
+			}
+			lines = new ArrayList<>(added);
+		}
+
+		sorter.writeRun(lines, run);
+
+		List<File> runs = new ArrayList<>();
+		if(idx.exists()) {
+			runs.add(idx);
+		}
+		runs.add(run);
+
+		PrintWriter writer = FileUtils.getPrintWriter(tmp, false);
+		try {
+			sorter.merge(runs, new PrintWriter(writer) {
+				@Override
+				public void println(String line) {
+					if(!removed.contains(line)) {
+						super.println(line);
+					}
+				}
+			}, folder);
+		}
+		finally {
+			writer.close();
+			run.delete();
+		}
+
+		idx.delete();
+		if(!tmp.renameTo(idx)) {
+			throw new IOException("Failed to rename " + tmp + " to " + idx);
+		}
+		delta.delete();
+	}
+
+	private List<String> find(String part, String key) {
+		try {
+			return parts.get(part).find(key);
+		}
+		catch (IOException e) {
+			throw new RuntimeException("Failed to read osc index " + part, e);
+		}
+	}
+
+	private String getSingle(String part, String key) {
+		List<String> lines = find(part, key);
+		if(lines.isEmpty()) {
+			return null;
+		}
+
+		String line = lines.get(0);
+		if(line.endsWith("\t" + DELETED)) {
+			return null;
+		}
+
+		return line;
+	}
+
+	private TLongList getRefs(String part, String key) {
+		Set<String> refs = new HashSet<>();
+		for(String line : find(part, key)) {
+			refs.add(StringUtils.substringAfter(line, "\t"));
+		}
+
+		TLongList result = new TLongArrayList(refs.size());
+		for(String ref : refs) {
+			result.add(Long.parseLong(ref.substring(1)));
+		}
+		return result;
+	}
+
+	private static String removed(String line) {
+		int tab = line.indexOf('\t');
+		return line.substring(0, tab + 1) + REMOVED + line.substring(tab + 1);
+	}
+
+	private static boolean isRemoved(String line) {
+		int tab = line.indexOf('\t');
+		return tab >= 0 && tab + 1 < line.length() && line.charAt(tab + 1) == REMOVED;
+	}
+
+	private static String unremoved(String line) {
+		int tab = line.indexOf('\t');
+		return line.substring(0, tab + 1) + line.substring(tab + 2);
+	}
+
+	private static String nodeLine(Node node) {
+		return key('n', node.id) + "\t" + node.lon + "\t" + node.lat + "\t" + tagsString(node.tags);
+	}
+
+	private static String wayLine(Way way) {
+		return key('w', way.id) + "\t" + StringUtils.join(way.nodes, ',') + "\t" + tagsString(way.tags);
+	}
+
+	private static String relationLine(Relation rel) {
+		JSONArray members = new JSONArray();
+		for(RelationMember m : rel.members) {
+			JSONObject member = new JSONObject();
+			member.put("type", m.type.name());
+			member.put("ref", m.ref);
+			if(m.role != null) {
+				member.put("role", m.role);
+			}
+			members.put(member);
+		}
+
+		return key('r', rel.id) + "\t" + members.toString() + "\t" + tagsString(rel.tags);
+	}
+
+	private static List<String> nodeWaysLines(Way way) {
+		List<String> result = new ArrayList<>();
+		String wayKey = key('w', way.id);
+		for(Long n : new HashSet<Long>(way.nodes)) {
+			result.add(key('n', n) + "\t" + wayKey);
+		}
+		return result;
+	}
+
+	private static List<String> membersLines(Relation rel) {
+		List<String> result = new ArrayList<>();
+		String relKey = key('r', rel.id);
+		for(RelationMember m : rel.members) {
+			result.add(key(m.type, m.ref) + "\t" + relKey);
+		}
+		return result;
+	}
+
+	private static String featureLine(String key, String stripe, String featureId) {
+		return key + "\t" + stripe + "\t" + featureId;
+	}
+
+	private static String tagsString(Map<String, String> tags) {
+		if(tags == null || tags.isEmpty()) {
+			return "";
+		}
+		return new JSONObject(tags).toString();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Map<String, String> parseTags(String s) {
+		Map<String, String> tags = new HashMap<>();
+		if(StringUtils.isNotEmpty(s)) {
+			JSONObject obj = new JSONObject(s);
+			for(String k : (Collection<String>) obj.keySet()) {
+				tags.put(k, obj.getString(k));
+			}
+		}
+		return tags;
+	}
+
+}
@@ -0,0 +1,177 @@
+package me.osm.gazetter.osc;
+
+import gnu.trove.set.hash.TLongHashSet;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import me.osm.gazetter.striper.readers.PointsReader.Node;
+import me.osm.gazetter.striper.readers.RelationsReader.Relation;
+import me.osm.gazetter.striper.readers.RelationsReader.Relation.RelationMember;
+import me.osm.gazetter.striper.readers.RelationsReader.Relation.RelationMember.ReferenceType;
+import me.osm.gazetter.striper.readers.WaysReader.Way;
+import me.osm.gazetter.utils.FileUtils;
+
+import org.apache.commons.lang3.StringUtils;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Reads osm change files (osc).
+ * <p>
+ * Changes from all readed files are accumulated, so later
+ * versions of objects override previous ones.
+ * */
+public class OscReader extends DefaultHandler {
+
+	/**
+	 * Latest versions of created and modified objects
+	 * and ids of deleted ones.
+	 * */
+	public static final class Changes {
+		public final Map<Long, Node> nodes = new HashMap<>();
+		public final Map<Long, Way> ways = new HashMap<>();
+		public final Map<Long, Relation> relations = new HashMap<>();
+
+		public final TLongHashSet deletedNodes = new TLongHashSet();
+		public final TLongHashSet deletedWays = new TLongHashSet();
+		public final TLongHashSet deletedRelations = new TLongHashSet();
+
+		public boolean isEmpty() {
+			return nodes.isEmpty() && ways.isEmpty() && relations.isEmpty()
+					&& deletedNodes.isEmpty() && deletedWays.isEmpty() && deletedRelations.isEmpty();
+		}
+	}
+
+	private final Changes changes = new Changes();
+
+	private boolean delete = false;
+
+	private Node node;
+	private Way way;
+	private Relation relation;
+
+	public void read(File osc) {
+		InputStream is = null;
+		try {
+			is = FileUtils.getFileIS(osc);
+			SAXParser saxParser = SAXParserFactory.newInstance().newSAXParser();
+			saxParser.parse(is, this);
+		}
+		catch (Exception e) {
+			throw new RuntimeException("Parsing failed for: " + osc, e);
+		}
+		finally {
+			if(is != null) {
+				try {
+					is.close();
+				}
+				catch (Exception e) {
+					//ignore
+				}
+			}
+		}
+	}
+
+	public Changes getChanges() {
+		return changes;
+	}
+
+	@Override
+	public void startElement(String uri, String localName, String qName,
+			Attributes attributes) throws SAXException {
+
+		if(qName.equals("delete")) {
+			delete = true;
+		}
+		else if(qName.equals("create") || qName.equals("modify")) {
+			delete = false;
+		}
+		else if(qName.equals("node")) {
+			node = new Node();
+			node.id = Long.valueOf(attributes.getValue("id"));
+
+			String lon = attributes.getValue("lon");
+			String lat = attributes.getValue("lat");
+			if(StringUtils.isNotEmpty(lon) && StringUtils.isNotEmpty(lat)) {
+				node.lon = Double.valueOf(lon);
+				node.lat = Double.valueOf(lat);
+			}
+		}
+		else if(qName.equals("way")) {
+			way = new Way();
+			way.id = Long.valueOf(attributes.getValue("id"));
+		}
+		else if(qName.equals("relation")) {
+			relation = new Relation();
+			relation.id = Long.valueOf(attributes.getValue("id"));
+		}
+		else if(qName.equals("nd") && way != null) {
+			way.nodes.add(Long.valueOf(attributes.getValue("ref")));
+		}
+		else if(qName.equals("member") && relation != null) {
+			RelationMember m = new RelationMember();
+			m.ref = Long.valueOf(attributes.getValue("ref"));
+			m.type = ReferenceType.valueOf(attributes.getValue("type").toUpperCase());
+			if(StringUtils.isNotEmpty(attributes.getValue("role"))) {
+				m.role = attributes.getValue("role");
+			}
+			relation.members.add(m);
+		}
+		else if(qName.equals("tag")) {
+			Map<String, String> tags = node != null ? node.tags
+					: way != null ? way.tags
+					: relation != null ? relation.tags : null;
+
+			if(tags != null) {
+				tags.put(attributes.getValue("k"), attributes.getValue("v"));
+			}
+		}
+	}
+
+	@Override
+	public void endElement(String uri, String localName, String qName)
+			throws SAXException {
+
+		if(qName.equals("node")) {
+			if(delete) {
+				changes.nodes.remove(node.id);
+				changes.deletedNodes.add(node.id);
+			}
+			else {
+				changes.nodes.put(node.id, node);
+				changes.deletedNodes.remove(node.id);
+			}
+			node = null;
+		}
+		else if(qName.equals("way")) {
+			if(delete || way.nodes.size() < 2) {
+				changes.ways.remove(way.id);
+				changes.deletedWays.add(way.id);
+			}
+			else {
+				changes.ways.put(way.id, way);
+				changes.deletedWays.remove(way.id);
+			}
+			way = null;
+		}
+		else if(qName.equals("relation")) {
+			if(delete) {
+				changes.relations.remove(relation.id);
+				changes.deletedRelations.add(relation.id);
+			}
+			else {
+				changes.relations.put(relation.id, relation);
+				changes.deletedRelations.remove(relation.id);
+			}
+			relation = null;
+		}
+	}
+
+}
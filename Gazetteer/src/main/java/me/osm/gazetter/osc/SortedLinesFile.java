@@ -0,0 +1,136 @@
+package me.osm.gazetter.osc;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Uncompressed text file with lines sorted by key,
+ * which allows to find lines by key with binary search.
+ * <p>
+ * Key is the part of line before first tab.
+ * Not thread safe.
+ * */
+public class SortedLinesFile {
+
+	private static final int CHUNK = 4096;
+
+	private final RandomAccessFile file;
+	private final long length;
+
+	private final byte[] buffer = new byte[CHUNK];
+	private final ByteArrayOutputStream lineBuffer = new ByteArrayOutputStream(256);
+
+	/**
+	 * Offset of the line after last readed one
+	 * */
+	private long nextLine;
+
+	public SortedLinesFile(File f) throws IOException {
+		this.file = new RandomAccessFile(f, "r");
+		this.length = file.length();
+	}
+
+	/**
+	 * Find all lines with given key.
+	 * */
+	public List<String> find(String key) throws IOException {
+		List<String> result = new ArrayList<>();
+
+		long lo = 0;
+		long hi = length;
+
+		while(lo < hi) {
+			long mid = (lo + hi) >>> 1;
+			long start = lineStart(mid);
+
+			if(start >= length) {
+				hi = mid;
+				continue;
+			}
+
+			String line = readLine(start);
+			if(key(line).compareTo(key) < 0) {
+				lo = nextLine;
+			}
+			else {
+				hi = mid;
+			}
+		}
+
+		long pos = lineStart(Math.min(lo, hi));
+		while(pos < length) {
+			String line = readLine(pos);
+			if(!key(line).equals(key)) {
+				break;
+			}
+			result.add(line);
+			pos = nextLine;
+		}
+
+		return result;
+	}
+
+	public void close() {
+		try {
+			file.close();
+		}
+		catch (IOException e) {
+			//ignore
+		}
+	}
+
+	public static String key(String line) {
+		int tab = line.indexOf('\t');
+		return tab < 0 ? line : line.substring(0, tab);
+	}
+
+	/**
+	 * Offset of the first line, which starts at or after pos
+	 * */
+	private long lineStart(long pos) throws IOException {
+		if(pos == 0) {
+			return 0;
+		}
+
+		long p = pos - 1;
+		while(p < length) {
+			file.seek(p);
+			int n = file.read(buffer, 0, (int) Math.min(CHUNK, length - p));
+			for(int i = 0; i < n; i++) {
+				if(buffer[i] == '\n') {
+					return p + i + 1;
+				}
+			}
+			p += n;
+		}
+
+		return length;
+	}
+
+	private String readLine(long pos) throws IOException {
+		lineBuffer.reset();
+
+		long p = pos;
+		while(p < length) {
+			file.seek(p);
+			int n = file.read(buffer, 0, (int) Math.min(CHUNK, length - p));
+			for(int i = 0; i < n; i++) {
+				if(buffer[i] == '\n') {
+					lineBuffer.write(buffer, 0, i);
+					nextLine = p + i + 1;
+					return lineBuffer.toString("UTF8");
+				}
+			}
+			lineBuffer.write(buffer, 0, n);
+			p += n;
+		}
+
+		nextLine = length;
+		return lineBuffer.toString("UTF8");
+	}
+
+}
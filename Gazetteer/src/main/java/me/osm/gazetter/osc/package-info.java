@@ -0,0 +1,4 @@
+/**
+ * Applying of osm changes (osc) to stripes
+ * */
+package me.osm.gazetter.osc;
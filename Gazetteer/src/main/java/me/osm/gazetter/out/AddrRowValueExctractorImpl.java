@@ -10,6 +10,7 @@ import me.osm.gazetter.addresses.AddressesSchemesParser;
 import me.osm.gazetter.striper.FeatureTypes;
 import me.osm.gazetter.striper.GeoJsonWriter;
 
+import org.apache.commons.lang3.StringUtils;
 import org.json.JSONObject;
 
 public class AddrRowValueExctractorImpl implements AddrRowValueExtractor {
@@ -58,71 +59,114 @@ public class AddrRowValueExctractorImpl implements AddrRowValueExtractor {
 	
 	private Set<String> supported = new HashSet<String>(getSupportedKeys());
 
-	@Override
-	public String getValue(String key, JSONObject jsonObject, Map<String, JSONObject> levels, JSONObject addrRow) {
-		
-		if(levels == null) {
-			return null;
-		}
-		
-		try {
-			
-			if(UID.equals(key)) {
-				
-				String ftype = jsonObject.getString("ftype");
-				return getUID(jsonObject, addrRow, ftype);
+	/**
+	 * Values are empty if there are no address parts,
+	 * or if address row has no requested fields.
+	 * */
+	private static abstract class LevelsValueExtractor implements KeyValueExtractor {
+
+		@Override
+		public String getValue(JSONObject jsonObject, Map<String, JSONObject> levels, JSONObject addrRow) {
+			if(levels == null) {
+				return null;
 			}
 			
-			if(ADDR_TEXT.equals(key)) {
-				return addrRow.optString("text");
+			try {
+				return value(jsonObject, levels, addrRow);
 			}
-
-			if(ADDR_LONG_TEXT.equals(key)) {
-				return addrRow.optString("longText");
+			catch (Exception e) {
+				return null;
 			}
+		}
+		
+		protected abstract String value(JSONObject jsonObject, Map<String, JSONObject> levels, JSONObject addrRow);
+		
+	}
+	
+	@Override
+	public String getValue(String key, JSONObject jsonObject, Map<String, JSONObject> levels, JSONObject addrRow) {
+		return (String) forKey(key).getValue(jsonObject, levels, addrRow);
+	}
 
-			if(key.endsWith(".uid")) {
-				String keyUID = key.replace(".uid", "");
-				
-				if("street".equals(keyUID)) {
-					int strtUID = levels.get(keyUID).getInt("strtUID");
+	@Override
+	public KeyValueExtractor forKey(String key) {
+		
+		if(UID.equals(key)) {
+			return new LevelsValueExtractor() {
+				@Override
+				protected String value(JSONObject jsonObject, Map<String, JSONObject> levels, JSONObject addrRow) {
+					String ftype = jsonObject.getString("ftype");
+					return getUID(jsonObject, addrRow, ftype);
+				}
+			};
+		}
+		
+		if(ADDR_TEXT.equals(key) || ADDR_LONG_TEXT.equals(key)) {
+			final String field = ADDR_TEXT.equals(key) ? "text" : "longText";
+			return new LevelsValueExtractor() {
+				@Override
+				protected String value(JSONObject jsonObject, Map<String, JSONObject> levels, JSONObject addrRow) {
+					return addrRow.optString(field);
+				}
+			};
+		}
+		
+		if(STREET_UID.equals(key)) {
+			return new LevelsValueExtractor() {
+				@Override
+				protected String value(JSONObject jsonObject, Map<String, JSONObject> levels, JSONObject addrRow) {
+					int strtUID = levels.get(STREET).getInt("strtUID");
 					if(strtUID == 0) {
-						return levels.get(keyUID).getString("lnk");
+						return levels.get(STREET).getString("lnk");
 					}
 					
 					String h = getPositiveHash(strtUID);
 					
-					return levels.get(keyUID).getString("lnk") + "-" + h;
+					return levels.get(STREET).getString("lnk") + "-" + h;
 				}
-				
-				return levels.get(keyUID).getString("lnk");
-			}
-
-				
-			if(key.endsWith(".id")) {
-				return levels.get(key.replace(".id", "")).getString("lnk");
-			}
-
-			if(key.endsWith(".lvl-size")) {
-				return levels.get(key.replace(".lvl-size", "")).getString("lvl-size");
-			}
-			
-			if(LETTER.equals(key)) {
-				return jsonObject.getJSONObject(GeoJsonWriter.PROPERTIES).optString("addr:letter");
-			}
-			
-			JSONObject lvl = levels.get(key);
-			if(lvl != null && lvl.has("name")) {
-				return lvl.getString("name");
-			}
-			
-			return null;
-			
+			};
+		}
+		
+		if(key.endsWith(".uid") || key.endsWith(".id")) {
+			final String level = StringUtils.substringBeforeLast(key, ".");
+			return new LevelsValueExtractor() {
+				@Override
+				protected String value(JSONObject jsonObject, Map<String, JSONObject> levels, JSONObject addrRow) {
+					return levels.get(level).getString("lnk");
+				}
+			};
 		}
-		catch (Exception e) {
-			return null;
+		
+		if(key.endsWith(".lvl-size")) {
+			final String level = StringUtils.substringBeforeLast(key, ".");
+			return new LevelsValueExtractor() {
+				@Override
+				protected String value(JSONObject jsonObject, Map<String, JSONObject> levels, JSONObject addrRow) {
+					return levels.get(level).getString("lvl-size");
+				}
+			};
 		}
 		
+		if(LETTER.equals(key)) {
+			return new LevelsValueExtractor() {
+				@Override
+				protected String value(JSONObject jsonObject, Map<String, JSONObject> levels, JSONObject addrRow) {
+					return jsonObject.getJSONObject(GeoJsonWriter.PROPERTIES).optString("addr:letter");
+				}
+			};
+		}
+		
+		final String level = key;
+		return new LevelsValueExtractor() {
+			@Override
+			protected String value(JSONObject jsonObject, Map<String, JSONObject> levels, JSONObject addrRow) {
+				JSONObject lvl = levels.get(level);
+				if(lvl != null && lvl.has("name")) {
+					return lvl.getString("name");
+				}
+				return null;
+			}
+		};
 	}
 
 	public static String getUID(JSONObject jsonObject, JSONObject addrRow,
@@ -153,7 +197,7 @@ public class AddrRowValueExctractorImpl implements AddrRowValueExtractor {
 		return jsonObject.getString("id");
 	}
 
-	private static String getPositiveHash(int hash) {
+	static String getPositiveHash(int hash) {
 		if(hash > 0) {
 			return String.valueOf(hash);
 		}
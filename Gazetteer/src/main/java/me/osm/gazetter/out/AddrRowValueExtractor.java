@@ -7,7 +7,21 @@ import org.json.JSONObject;
 
 public interface AddrRowValueExtractor {
 
+	/**
+	 * Extractor of one key values
+	 * */
+	public static interface KeyValueExtractor {
+		
+		public Object getValue(JSONObject jsonObject, Map<String, JSONObject> levels, JSONObject addrRow);
+		
+	}
+	
 	public Object getValue(String key, JSONObject jsonObject, Map<String, JSONObject> levels, JSONObject addrRow);
+	
+	/**
+	 * Resolve key once, to get values of many rows.
+	 * */
+	public KeyValueExtractor forKey(String key);
 
 	public Collection<String> getSupportedKeys();
 	
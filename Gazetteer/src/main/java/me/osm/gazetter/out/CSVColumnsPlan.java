@@ -0,0 +1,131 @@
+package me.osm.gazetter.out;
+
+import java.util.List;
+
+import me.osm.gazetter.join.out_handlers.AddressRows.AddressRow;
+import me.osm.gazetter.out.AddrRowValueExtractor.KeyValueExtractor;
+import me.osm.gazetter.striper.FeatureTypes;
+
+import org.apache.commons.lang3.StringUtils;
+import org.json.JSONObject;
+
+/**
+ * Csv columns, compiled once from columns keys.
+ * <p>
+ * Every key is resolved into extractor at handler initialization,
+ * so for every row we don't check keys sets and don't parse keys.
+ * Address uid and levels are taken from shared {@link AddressRow},
+ * they are computed once for all the handlers.
+ * */
+public class CSVColumnsPlan {
+
+	private static final String UID = "uid";
+
+	/**
+	 * Value extractor for one key.
+	 * */
+	private static abstract class Cell {
+		protected abstract Object get(String ftype, JSONObject object, AddressRow row);
+	}
+
+	/**
+	 * Keys of one column, first not empty value is used.
+	 * */
+	private final Cell[][] columns;
+
+	private int uidColumn = -1;
+
+	public CSVColumnsPlan(List<List<String>> columns, FeatureValueExtractor featureEXT,
+			FeatureValueExtractor poiEXT, AddrRowValueExtractor addrRowEXT) {
+
+		this.columns = new Cell[columns.size()][];
+
+		for(int i = 0; i < columns.size(); i++) {
+			List<String> keys = columns.get(i);
+			this.columns[i] = new Cell[keys.size()];
+
+			for(int k = 0; k < keys.size(); k++) {
+				String key = keys.get(k);
+				if(UID.equals(key)) {
+					uidColumn = i;
+				}
+
+				if(addrRowEXT.supports(key)) {
+					this.columns[i][k] = addrRowCell(key, addrRowEXT);
+				}
+				else {
+					this.columns[i][k] = featureCell(key, featureEXT, poiEXT);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return index of column with uid or -1
+	 * */
+	public int getUIDColumn() {
+		return uidColumn;
+	}
+
+	/**
+	 * @return values of row columns, strings are stripped to null
+	 * */
+	public Object[] row(String ftype, JSONObject object, AddressRow addrRow) {
+		Object[] row = new Object[columns.length];
+		for(int i = 0; i < columns.length; i++) {
+			for(Cell cell : columns[i]) {
+				Object value = cell.get(ftype, object, addrRow);
+
+				if(value instanceof String) {
+					value = StringUtils.stripToNull((String) value);
+				}
+
+				if(value != null) {
+					row[i] = value;
+					break;
+				}
+			}
+		}
+
+		return row;
+	}
+
+	private Cell featureCell(final String key, final FeatureValueExtractor featureEXT,
+			final FeatureValueExtractor poiEXT) {
+
+		return new Cell() {
+			@Override
+			protected Object get(String ftype, JSONObject object, AddressRow row) {
+				if(FeatureTypes.POI_FTYPE.equals(ftype)) {
+					return poiEXT.getValue(key, object);
+				}
+				return featureEXT.getValue(key, object);
+			}
+		};
+	}
+
+	private Cell addrRowCell(String key, AddrRowValueExtractor addrRowEXT) {
+
+		// uid is computed once per row for all the handlers
+		if(UID.equals(key)) {
+			return new Cell() {
+				@Override
+				protected Object get(String ftype, JSONObject object, AddressRow row) {
+					if(row.getLevels() == null) {
+						return null;
+					}
+					return row.getUID();
+				}
+			};
+		}
+
+		final KeyValueExtractor extractor = addrRowEXT.forKey(key);
+		return new Cell() {
+			@Override
+			protected Object get(String ftype, JSONObject object, AddressRow row) {
+				return extractor.getValue(object, row.getLevels(), row.getAddress());
+			}
+		};
+	}
+
+}
@@ -1,21 +1,18 @@
 package me.osm.gazetter.out;
 
-import java.io.File;
-import java.io.IOException;
-import java.nio.charset.Charset;
+import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
-import java.util.concurrent.atomic.AtomicInteger;
 
 import me.osm.gazetter.join.out_handlers.AddressPerRowJOHBase;
+import me.osm.gazetter.join.out_handlers.AddressRows;
+import me.osm.gazetter.join.out_handlers.AddressRows.AddressRow;
 import me.osm.gazetter.join.out_handlers.HandlerOptions;
 import me.osm.gazetter.join.out_handlers.JoinOutHandler;
 import me.osm.gazetter.striper.FeatureTypes;
@@ -25,13 +22,8 @@ import me.osm.osmdoc.read.DOCReader;
 import me.osm.osmdoc.read.OSMDocFacade;
 
 import org.apache.commons.lang3.StringUtils;
-import org.json.JSONArray;
-import org.json.JSONException;
 import org.json.JSONObject;
-import org.supercsv.io.CsvListWriter;
-import org.supercsv.prefs.CsvPreference;
 
-import com.google.code.externalsorting.ExternalSort;
 
 public class CSVOutWriter extends AddressPerRowJOHBase {
 	
@@ -53,17 +45,18 @@ public class CSVOutWriter extends AddressPerRowJOHBase {
 	
 	private int uuidColumnIndex = -1;
 	
+	private CSVColumnsPlan plan;
+	
+	private static final char DELIMITER = '\t';
+	private static final char QUOTE = '"';
+	private static final char KEY_SEPARATOR = '\t';
+	
 	private static final Set<String> OPTIONS = new HashSet<String>(
 			Arrays.asList("out", "columns", "types", "poi-catalog"));
 	
-	private CsvListWriter csvWriter = null;
-
 	private LinkedHashSet<String> orderedTypes;
 
-	private String outFile;
-	private static AtomicInteger instances = new AtomicInteger();
-
-	private String tmpFile;
+	private Comparator<String> comparator;
 	
 	@Override
 	public JoinOutHandler newInstance(List<String> options) {
@@ -83,23 +76,17 @@ public class CSVOutWriter extends AddressPerRowJOHBase {
 
 		checkColumnsKeys();
 		
-		createComparator();
-
 		orderedTypes = new LinkedHashSet<>(parsedOpts.getList("types", Arrays.asList("adrpnt", "poipnt")));
 
 		initializePOICatalog(parsedOpts);
 		
+		plan = new CSVColumnsPlan(columns, featureEXT, poiEXT, addrRowEXT);
+		
+		createComparator();
+		
 		return this;
 	}
 
-	@Override
-	protected void initializeWriter(String file) {
-		this.outFile = file;
-		tmpFile = "out-csv" + instances.getAndIncrement() + ".csv.tmp";
-		super.initializeWriter(tmpFile);
-		csvWriter = new CsvListWriter(writer, CsvPreference.TAB_PREFERENCE);
-	}
-	
 	private void initializePOICatalog(HandlerOptions paresedOpts) {
 		String poiCatalog = paresedOpts.getString("poi-catalog", "jar");
 		if(poiCatalog.endsWith(".xml") || poiCatalog.equals("jar")) {
@@ -115,15 +102,7 @@ public class CSVOutWriter extends AddressPerRowJOHBase {
 	}
 
 	private void createComparator() {
-		int i = 0;
-		for(List<String> bc : this.columns) {
-			for(String key : bc) {
-				if(key.equals("uid")) {
-					uuidColumnIndex = i;
-				}
-			}
-			i++;
-		}
+		uuidColumnIndex = plan.getUIDColumn();
 		
 		if(this.uuidColumnIndex < 0) {
 			defaultcomparator = new Comparator<String>() {
@@ -137,19 +116,19 @@ public class CSVOutWriter extends AddressPerRowJOHBase {
 			};
 		}
 		else {
+			// rows are prefixed with uid, see handle
 			defaultcomparator = new Comparator<String>() {
 				@Override
 				public int compare(String r1, String r2) {
 					if(r1 == null && r2 == null) return 0;
 	            	if(r1 == null || r2 == null) return r1 == null ? -1 : 1;
 					
-					String uid1 = StringUtils.split(r1, '\t')[uuidColumnIndex];
-					String uid2 = StringUtils.split(r2, '\t')[uuidColumnIndex];
-					
-					return uid1.compareTo(uid2);
+					return compareKeys(r1, r2);
 				}
 			};
 		}
+		
+		comparator = defaultcomparator;
 	}
 
 	private void checkColumnsKeys() {
@@ -217,90 +196,124 @@ public class CSVOutWriter extends AddressPerRowJOHBase {
 				return;
 			}
 			
-			List<Object> row = new ArrayList<>();
-			Map<String, JSONObject> mapLevels = mapLevels(address);
+			StringBuilder sb = rowBuffer.get();
+			sb.setLength(0);
+			
+			AddressRow addrRow = getAddressRow(address);
+			if(addrRow == null) {
+				addrRow = AddressRows.row(object, address);
+			}
+			
+			Object[] row = plan.row(ftype, object, addrRow);
+			if(uuidColumnIndex >= 0) {
+				if(row[uuidColumnIndex] != null) {
+					sb.append(row[uuidColumnIndex]);
+				}
+				sb.append(KEY_SEPARATOR);
+			}
 			
-			for (List<String> column : columns) {
-				row.add(getColumn(ftype, object, mapLevels, address, column));
+			for(int i = 0; i < row.length; i++) {
+				if(i > 0) {
+					sb.append(DELIMITER);
+				}
+				if(row[i] != null) {
+					appendEscaped(sb, row[i].toString());
+				}
 			}
 
-			writeCsvRow(row);
+			println(stripe, sb.toString());
 		}
 		
 	}
 	
-	private synchronized void writeCsvRow(List<Object> row) {
-		try {
-			csvWriter.write(row);
-			csvWriter.flush();
-		} catch (IOException e) {
-			throw new RuntimeException(e);
+	/**
+	 * Rows are formatted in the calling (join) thread.
+	 * */
+	private final ThreadLocal<StringBuilder> rowBuffer = new ThreadLocal<StringBuilder>() {
+		@Override
+		protected StringBuilder initialValue() {
+			return new StringBuilder(256);
 		}
-		
-	}
+	};
 
-	private Map<String, JSONObject> mapLevels(JSONObject addrRow) {
-		try {
-			Map<String, JSONObject> result = new HashMap<String, JSONObject>();
-			
-			JSONArray parts = addrRow.getJSONArray("parts"); 
-			for(int i = 0; i < parts.length(); i++) {
-				JSONObject part = parts.getJSONObject(i);
-				result.put(part.getString("lvl"), part); 
+	/**
+	 * Same quoting as super csv uses with tab preference:
+	 * value is quoted if it contains delimiter, quote or new line,
+	 * quotes are doubled and new lines are replaced with \n.
+	 * */
+	private static void appendEscaped(StringBuilder sb, String value) {
+		int start = sb.length();
+		boolean quote = false;
+		
+		for(int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if(c == DELIMITER) {
+				quote = true;
+				sb.append(c);
 			}
-			
-			return result;
-		}
-		catch (JSONException e) {
-			return null;
-		}
-	}
-
-	private Object getColumn(String ftype, JSONObject jsonObject, 
-			Map<String, JSONObject> addrRowLevels, JSONObject addrRow, List<String> column) {
-		for(String key : column) {
-
-			Object value = null;
-			if(addrRowKeys.contains(key)) {
-				value = addrRowEXT.getValue(key, jsonObject, addrRowLevels, addrRow);
+			else if(c == QUOTE) {
+				quote = true;
+				sb.append(QUOTE).append(QUOTE);
 			}
-			else {
-				if(FeatureTypes.POI_FTYPE.equals(ftype)) {
-					value = poiEXT.getValue(key, jsonObject);
-				}
-				else {
-					value = featureEXT.getValue(key, jsonObject);
+			else if(c == '\r') {
+				quote = true;
+				sb.append('\n');
+				if(i + 1 < value.length() && value.charAt(i + 1) == '\n') {
+					i++;
 				}
 			}
+			else if(c == '\n') {
+				quote = true;
+				sb.append('\n');
+			}
+			else {
+				sb.append(c);
+			}
+		}
+		
+		if(quote) {
+			sb.insert(start, QUOTE).append(QUOTE);
+		}
+	}
+	
+	/**
+	 * Compare sort keys, which are separated from rows by tab.
+	 * */
+	private static int compareKeys(String r1, String r2) {
+		for(int i = 0; ; i++) {
+			char c1 = i < r1.length() ? r1.charAt(i) : KEY_SEPARATOR;
+			char c2 = i < r2.length() ? r2.charAt(i) : KEY_SEPARATOR;
 			
-			if(value instanceof String) {
-				value = StringUtils.stripToNull((String) value);
+			if(c1 == KEY_SEPARATOR || c2 == KEY_SEPARATOR) {
+				if(c1 == c2) {
+					return 0;
+				}
+				return c1 == KEY_SEPARATOR ? -1 : 1;
 			}
 			
-			if(value != null) {
-				return value;
+			if(c1 != c2) {
+				return c1 - c2;
 			}
 		}
-		return null;
 	}
 	
 	@Override
-	public void allDone() {
-		
-		try {
-			csvWriter.flush();
-			super.allDone();
-
-			List<File> batch = ExternalSort.sortInBatch(
-					new File(tmpFile), defaultcomparator, ExternalSort.DEFAULTMAXTEMPFILES,
-					Charset.forName("utf8"), null, true);
-			ExternalSort.mergeSortedFiles(batch, new File(outFile), defaultcomparator, true);
-			
-			new File(tmpFile).delete();
-			
-		} catch (IOException e) {
-			throw new RuntimeException(e);
+	protected PrintWriter getMergeWriter(final PrintWriter writer) {
+		if(uuidColumnIndex < 0) {
+			return writer;
 		}
+		
+		return new PrintWriter(writer) {
+			@Override
+			public void println(String keyed) {
+				writer.println(keyed.substring(keyed.indexOf(KEY_SEPARATOR) + 1));
+			}
+		};
+	}
+	
+	@Override
+	protected Comparator<String> getSortComparator() {
+		return comparator;
 	}
 	
 }
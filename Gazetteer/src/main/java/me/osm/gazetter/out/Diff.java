@@ -1,30 +1,69 @@
 package me.osm.gazetter.out;
 
+import static me.osm.gazetter.join.out_handlers.GazetteerSchemeConstants.GAZETTEER_SCHEME_ID;
+import static me.osm.gazetter.join.out_handlers.GazetteerSchemeConstants.GAZETTEER_SCHEME_MD5;
+import static me.osm.gazetter.join.out_handlers.GazetteerSchemeConstants.GAZETTEER_SCHEME_TIMESTAMP;
+
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
-import me.osm.gazetter.striper.GeoJsonWriter;
+import me.osm.gazetter.Options;
 import me.osm.gazetter.utils.FileUtils;
 import me.osm.gazetter.utils.FileUtils.LineHandler;
+import me.osm.gazetter.utils.JSONLineScanner;
 
 import org.apache.commons.lang3.StringUtils;
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+/**
+ * Writes difference between two gazetteer json dumps.
+ * <p>
+ * Every line of output is one of:
+ * <ul>
+ * <li>+ new feature</li>
+ * <li>N feature with newer version</li>
+ * <li>- removed feature</li>
+ * <li>O feature which is newer in old dump</li>
+ * </ul>
+ * If both dumps are sorted by id (as out-gazetteer writes them),
+ * they are merged in one streaming pass with constant memory.
+ * Otherwise both dumps are splitted into partitions by id hash,
+ * and partitions are compared in memory in parallel.
+ * */
 public class Diff {
-	
+
+	private static final Logger log = LoggerFactory.getLogger(Diff.class);
+
+	/**
+	 * Approximate size of the old dump partition, compared in memory
+	 * */
+	private static final long PARTITION_SIZE = 128L * 1024 * 1024;
+
 	private String oldPath;
 	private String newPath;
 	private PrintWriter out;
-	
+
 	public Diff(String oldPath, String newPath, String out) {
 		try {
 			this.oldPath = oldPath;
 			this.newPath = newPath;
-			
+
 			if(out.equals("-")) {
 				this.out = new PrintWriter(System.out);
 			}
@@ -37,83 +76,387 @@ public class Diff {
 		}
 	}
 
-	private TreeMap<String, Object[]> map = new TreeMap<>();
-	
+	private static final class NotSortedException extends Exception {
+		private static final long serialVersionUID = 2924583125962071377L;
+	}
+
+	/**
+	 * Reads id, md5 and timestamp of the dump line in one scan
+	 * */
+	private static final class Header {
+
+		private static final int ID = 0;
+		private static final int MD5 = 1;
+		private static final int TIMESTAMP = 2;
+
+		private final JSONLineScanner scanner = new JSONLineScanner(
+				GAZETTEER_SCHEME_ID, GAZETTEER_SCHEME_MD5, GAZETTEER_SCHEME_TIMESTAMP);
+
+		private String line;
+
+		private void read(String line) {
+			this.line = line;
+			if(!scanner.scan(line) || !scanner.has(ID)) {
+				log.error("Can't parse id for line {}", line);
+			}
+		}
+
+		private String id() {
+			return StringUtils.defaultString(scanner.getString(ID));
+		}
+
+		private String md5() {
+			return scanner.getString(MD5);
+		}
+
+		private Date timestamp() {
+			String timestamp = scanner.getString(TIMESTAMP);
+			if(timestamp != null) {
+				try {
+					return new DateTime(timestamp).toDate();
+				}
+				catch (Exception e) {
+					log.error("Can't parse timestamp {} for line {}", timestamp, line);
+				}
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Dump reader, keeps current line and it's id
+	 * */
+	private static final class DumpReader {
+
+		private final BufferedReader reader;
+		private final Header header = new Header();
+		private String line;
+		private String id;
+
+		private DumpReader(File f) throws IOException {
+			reader = new BufferedReader(new InputStreamReader(FileUtils.getFileIS(f), "UTF8"));
+		}
+
+		/**
+		 * Read next not empty line
+		 *
+		 * @return false at the end of file
+		 * @throws NotSortedException if line id is less than previous one
+		 * */
+		private boolean next() throws IOException, NotSortedException {
+			String prevId = id;
+
+			do {
+				line = reader.readLine();
+			}
+			while(line != null && StringUtils.isEmpty(line));
+
+			if(line == null) {
+				id = null;
+				return false;
+			}
+
+			header.read(line);
+			id = header.id();
+			if(prevId != null && prevId.compareTo(id) > 0) {
+				throw new NotSortedException();
+			}
+
+			return true;
+		}
+
+		private void close() {
+			try {
+				reader.close();
+			}
+			catch (IOException e) {
+				//ignore
+			}
+		}
+	}
+
 	public void run() {
 		try {
-			FileUtils.handleLines(new File(this.oldPath), new LineHandler() {
+			File tmp = File.createTempFile("diff", ".gz");
+			try {
+				boolean merged = false;
 
-				@Override
-				public void handle(String s) {
-					String id = GeoJsonWriter.getId(s);
-					Date timestamp = GeoJsonWriter.getTimestamp(s);
-					String md5 = GeoJsonWriter.getMD5(s);
-					
-					map.put(id, new Object[]{md5, timestamp});
+				PrintWriter tmpWriter = FileUtils.getPrintWriter(tmp, false);
+				try {
+					merged = mergeSorted(new File(this.oldPath), new File(this.newPath), tmpWriter);
 				}
-				
-			});
+				finally {
+					tmpWriter.close();
+				}
+
+				if(merged) {
+					FileUtils.handleLines(tmp, new LineHandler() {
+						@Override
+						public void handle(String s) {
+							out.println(s);
+						}
+					});
+				}
+				else {
+					log.info("Dumps aren't sorted by id, compare them by partitions");
+					partitionedDiff(new File(this.oldPath), new File(this.newPath));
+				}
+			}
+			finally {
+				tmp.delete();
+			}
+
+			out.flush();
+			out.close();
+
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Merge join of dumps sorted by id.
+	 *
+	 * @return false if dumps aren't sorted
+	 * */
+	private static boolean mergeSorted(File oldFile, File newFile, PrintWriter out) throws IOException {
+		DumpReader olds = new DumpReader(oldFile);
+		DumpReader news = new DumpReader(newFile);
+
+		try {
+			boolean hasOld = olds.next();
+			boolean hasNew = news.next();
+
+			while(hasOld || hasNew) {
+				int c = !hasOld ? 1 : !hasNew ? -1 : olds.id.compareTo(news.id);
+
+				if(c < 0) {
+					out.println("- " + olds.line);
+					hasOld = olds.next();
+				}
+				else if(c > 0) {
+					out.println("+ " + news.line);
+					hasNew = news.next();
+				}
+				else {
+					compare(olds.header, news.header, out);
+					hasOld = olds.next();
+					hasNew = news.next();
+				}
+			}
+
+			return true;
+		}
+		catch (NotSortedException e) {
+			return false;
+		}
+		finally {
+			olds.close();
+			news.close();
+		}
+	}
+
+	private static void compare(Header oldLine, Header newLine, PrintWriter out) {
+		if(!StringUtils.equals(oldLine.md5(), newLine.md5())) {
+			if(isNewer(oldLine.timestamp(), newLine.timestamp())) {
+				out.println("N " + newLine.line);
+			}
+			else {
+				out.println("O " + oldLine.line);
+			}
+		}
+	}
+
+	private static boolean isNewer(Date oldTimestamp, Date newTimestamp) {
+		if(oldTimestamp == null || newTimestamp == null) {
+			return true;
+		}
+		return oldTimestamp.before(newTimestamp);
+	}
+
+	/**
+	 * Split both dumps into partitions by id hash, and compare
+	 * partitions in parallel.
+	 * */
+	private void partitionedDiff(File oldFile, File newFile) throws IOException {
+
+		final int n = (int) Math.max(1, Math.min(1024, oldFile.length() / PARTITION_SIZE + 1));
+
+		final File folder = Files.createTempDirectory("diff-parts").toFile();
+		try {
+			final List<File> oldParts = partition(oldFile, folder, "old", n);
+			final List<File> newParts = partition(newFile, folder, "new", n);
+			final List<File> outParts = new ArrayList<>(n);
+
+			ExecutorService executor = Executors.newFixedThreadPool(Options.get().getNumberOfThreads());
+			try {
+				List<Future<?>> futures = new ArrayList<>();
+
+				for(int i = 0; i < n; i++) {
+					final int p = i;
+					final File outPart = new File(folder, "out-" + i + ".gz");
+					outParts.add(outPart);
+
+					futures.add(executor.submit(new Runnable() {
+						@Override
+						public void run() {
+							PrintWriter writer = null;
+							try {
+								writer = FileUtils.getPrintWriter(outPart, false);
+								diffInMemory(oldParts.get(p), newParts.get(p), writer);
+							}
+							catch (IOException e) {
+								throw new RuntimeException(e);
+							}
+							finally {
+								if(writer != null) {
+									writer.close();
+								}
+							}
+						}
+					}));
+				}
+
+				for(Future<?> f : futures) {
+					f.get();
+				}
+			}
+			catch (Exception e) {
+				throw new RuntimeException("Failed to compare dumps partitions", e);
+			}
+			finally {
+				executor.shutdown();
+			}
+
+			for(File part : outParts) {
+				FileUtils.handleLines(part, new LineHandler() {
+					@Override
+					public void handle(String s) {
+						out.println(s);
+					}
+				});
+			}
+		}
+		finally {
+			File[] files = folder.listFiles();
+			if(files != null) {
+				for(File f : files) {
+					f.delete();
+				}
+			}
+			folder.delete();
+		}
+	}
+
+	private static List<File> partition(File f, File folder, String prefix, final int n) throws IOException {
+		List<File> parts = new ArrayList<>(n);
+		final PrintWriter[] writers = new PrintWriter[n];
+
+		try {
+			for(int i = 0; i < n; i++) {
+				File part = new File(folder, prefix + "-" + i + ".gz");
+				parts.add(part);
+				writers[i] = FileUtils.getPrintWriter(part, false);
+			}
+
+			FileUtils.handleLines(f, new LineHandler() {
+
+				private final Header header = new Header();
 
-			final Set<String> olds = new HashSet<String>();
-			
-			FileUtils.handleLines(new File(this.newPath), new LineHandler() {
-				
 				@Override
 				public void handle(String s) {
 					if(StringUtils.isEmpty(s)) {
 						return;
 					}
-					
-					String id = GeoJsonWriter.getId(s);
-					Date timestamp = GeoJsonWriter.getTimestamp(s);
-					String md5 = GeoJsonWriter.getMD5(s);
-					
-					Object[] row = map.get(id);
-					if(row == null) {
-						out.println("+ " + s);
-					}
-					else {
-						if (!((String)row[0]).equals(md5)) {
-							if(((Date)row[1]).before(timestamp)) {
-								out.println("N " + s);
-							}
-							else {
-								olds.add(id);
-							}
-						}
-					}
-					
-					map.remove(id);
-					
+
+					header.read(s);
+					int p = (header.id().hashCode() & Integer.MAX_VALUE) % n;
+					writers[p].println(s);
 				}
-				
 			});
-			
-			if(!map.isEmpty() || !olds.isEmpty()) {
-				FileUtils.handleLines(new File(this.oldPath), new LineHandler() {
+		}
+		finally {
+			for(PrintWriter w : writers) {
+				if(w != null) {
+					w.close();
+				}
+			}
+		}
 
-					@Override
-					public void handle(String s) {
-						String id = GeoJsonWriter.getId(s);
-						
-						if(map.containsKey(id)) {
-							out.println("- " + s);
+		return parts;
+	}
+
+	/**
+	 * Compare dumps with map of old ids in memory
+	 * */
+	private static void diffInMemory(File oldFile, File newFile, final PrintWriter out) throws IOException {
+
+		final Map<String, Object[]> map = new HashMap<>();
+		final Header header = new Header();
+
+		FileUtils.handleLines(oldFile, new LineHandler() {
+
+			@Override
+			public void handle(String s) {
+				header.read(s);
+				map.put(header.id(), new Object[]{header.md5(), header.timestamp()});
+			}
+
+		});
+
+		final Set<String> olds = new HashSet<String>();
+
+		FileUtils.handleLines(newFile, new LineHandler() {
+
+			@Override
+			public void handle(String s) {
+				if(StringUtils.isEmpty(s)) {
+					return;
+				}
+
+				header.read(s);
+				String id = header.id();
+
+				Object[] row = map.get(id);
+				if(row == null) {
+					out.println("+ " + s);
+				}
+				else {
+					if (!StringUtils.equals((String)row[0], header.md5())) {
+						if(isNewer((Date)row[1], header.timestamp())) {
+							out.println("N " + s);
 						}
-						
-						else if(olds.contains(id)) {
-							out.println("O " + s);
+						else {
+							olds.add(id);
 						}
 					}
-					
-				});
+				}
+
+				map.remove(id);
+
 			}
-			
-			out.flush();
-			out.close();
-			
-		} catch (IOException e) {
-			throw new RuntimeException(e);
+
+		});
+
+		if(!map.isEmpty() || !olds.isEmpty()) {
+			FileUtils.handleLines(oldFile, new LineHandler() {
+
+				@Override
+				public void handle(String s) {
+					header.read(s);
+					String id = header.id();
+
+					if(map.containsKey(id)) {
+						out.println("- " + s);
+					}
+
+					else if(olds.contains(id)) {
+						out.println("O " + s);
+					}
+				}
+
+			});
 		}
 	}
-	
+
 }
@@ -2,25 +2,72 @@ package me.osm.gazetter.sortupdate;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.Collections;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
-import java.util.Date;
-import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import me.osm.gazetter.striper.GeoJsonWriter;
+import me.osm.gazetter.utils.FileUtils;
+import me.osm.gazetter.utils.FileUtils.LineFilter;
+import me.osm.gazetter.utils.FileUtils.LineHandler;
+import me.osm.gazetter.utils.JSONLineScanner;
+import me.osm.gazetter.utils.sort.ExternalSorter;
 
-import org.json.JSONObject;
+import org.apache.commons.lang3.StringUtils;
+import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Sorts stripe by id and timestamp (newer first), drops outdated
+ * versions of features and features with remove action
+ * (with their older versions).
+ * <p>
+ * Keys (id, timestamp, action) are extracted once per line.
+ * Stripes bigger than {@link #IN_MEMORY_LIMIT} are sorted externally,
+ * via sorted runs with keys written in front of lines.
+ * */
 public class SortAndUpdateTask implements Runnable {
-	
+
 	private static final Logger log = LoggerFactory.getLogger(SortAndUpdateTask.class);
 
+	/**
+	 * Max size of stripe (uncompressed, approximately) sorted in memory
+	 * */
+	private static final long IN_MEMORY_LIMIT = 256L * 1024 * 1024;
+
+	/**
+	 * Approximate size of lines in one sorted run, in chars
+	 * */
+	private static final long RUN_CHARS = 64L * 1024 * 1024;
+
+	/**
+	 * Approximate compression ratio of gzipped stripes
+	 * */
+	private static final int GZ_RATIO = 4;
+
+	private static final String REMOVE = "remove";
+	private static final char KEY_SEPARATOR = '\t';
+
+	/**
+	 * Keyed lines are unique (line number is a part of key),
+	 * so they are sorted just as strings
+	 * */
+	private static final ExternalSorter<String> KEYED_LINES_SORTER =
+			ExternalSorter.byKey(ExternalSorter.LINES).setThreads(1);
+
+	private static final int ID = 0;
+	private static final int TIMESTAMP = 1;
+	private static final int ACTION = 2;
+
 	private File stripeF;
-	
+
+	// task runs in one thread, so scanner is reused for all lines
+	private final JSONLineScanner header = new JSONLineScanner("id", GeoJsonWriter.TIMESTAMP, "action");
+
 	private static final AtomicInteger counter = new AtomicInteger();
 
 	public SortAndUpdateTask(File stripeF) {
@@ -30,67 +77,266 @@ public class SortAndUpdateTask implements Runnable {
 	@Override
 	public void run() {
 		try {
-			
-			List<String> lines = me.osm.gazetter.utils.FileUtils.readLines(stripeF);
-			
-			Collections.sort(lines, new Comparator<String>() {
+			long size = stripeF.length();
+			if(stripeF.getName().endsWith(".gz")) {
+				size *= GZ_RATIO;
+			}
+
+			if(size > IN_MEMORY_LIMIT) {
+				sortExternal();
+			}
+			else {
+				sortInMemory();
+			}
+		} catch (IOException e) {
+			throw new RuntimeException("Failed to update " + this.stripeF, e);
+		}
+
+	}
+
+	private void sortInMemory() throws IOException {
+		List<String> lines = FileUtils.readLines(stripeF, new LineFilter() {
+			@Override
+			public boolean isSuitable(String s) {
+				return StringUtils.isNotEmpty(s);
+			}
+		});
+
+		int n = lines.size();
+		final String[] ids = new String[n];
+		final long[] timestamps = new long[n];
+		boolean[] remove = new boolean[n];
+		Integer[] order = new Integer[n];
+
+		for(int i = 0; i < n; i++) {
+			String line = lines.get(i);
+			scanHeader(line);
+			ids[i] = id();
+			timestamps[i] = timestamp(line);
+			remove[i] = header.equals(ACTION, REMOVE);
+			order[i] = i;
+		}
+
+		Arrays.sort(order, new Comparator<Integer>() {
+
+			@Override
+			public int compare(Integer i1, Integer i2) {
+				int c = ids[i1].compareTo(ids[i2]);
+				if(c != 0) {
+					return c;
+				}
+
+				// newer first
+				return Long.compare(timestamps[i2], timestamps[i1]);
+			}
+
+		});
+
+		PrintWriter writer = FileUtils.getPrintWriter(stripeF, false);
+		try {
+			UpdateFilter filter = new UpdateFilter(writer);
+			for(Integer i : order) {
+				filter.write(ids[i], timestamps[i], remove[i], lines.get(i));
+			}
+		}
+		finally {
+			writer.flush();
+			writer.close();
+		}
+	}
+
+	/**
+	 * Write sorted runs of keyed lines, then merge them into stripe.
+	 * <p>
+	 * Keyed line is: id, inverted timestamp, line number, action flag and
+	 * original line, so plain strings order of keyed lines is the
+	 * order of update.
+	 * */
+	private void sortExternal() throws IOException {
+		final List<File> runs = new ArrayList<>();
+
+		try {
+			final List<String> chunk = new ArrayList<>();
+			final long[] chunkChars = new long[]{0};
+			final long[] lineNumber = new long[]{0};
+
+			FileUtils.handleLines(stripeF, new LineHandler() {
 
 				@Override
-				public int compare(String paramT1, String paramT2) {
-					String id1 = GeoJsonWriter.getId(paramT1);
-					String id2 = GeoJsonWriter.getId(paramT2);
-
-					if (id1.equals(id2)) {
-						Date d1 = GeoJsonWriter.getTimestamp(paramT1);
-						Date d2 = GeoJsonWriter.getTimestamp(paramT2);
-						
-						return d2.compareTo(d1);
+				public void handle(String s) {
+					if(StringUtils.isEmpty(s)) {
+						return;
 					}
 
-					return id1.compareTo(id2);
+					chunk.add(keyedLine(s, lineNumber[0]++));
+					chunkChars[0] += s.length();
+
+					if(chunkChars[0] >= RUN_CHARS) {
+						writeRun(chunk, runs);
+						chunkChars[0] = 0;
+					}
 				}
 
 			});
 
-			Iterator<String> iterator = lines.iterator();
-
-			String prevId = null;
-			Date prevTimestamp = null;
-
-			while (iterator.hasNext()) {
-				String line = iterator.next();
-
-				String id = GeoJsonWriter.getId(line);
-				Date timestamp = GeoJsonWriter.getTimestamp(line);
-				
-				if("remove".equals(GeoJsonWriter.getAction(line))) {
-					iterator.remove();
-					counter.getAndIncrement();
-					
-					log.info("Remove feature. Reason: {}", new JSONObject(line).optString("actionDetailed"));
-					
-					//do not save removed id and timestamp
-					//into prevId and prevTimestamp
-					continue;
-				}
+			if(!chunk.isEmpty()) {
+				writeRun(chunk, runs);
+			}
 
-				if (prevId != null && prevTimestamp != null
-						&& id.equals(prevId) && timestamp.before(prevTimestamp)) {
-					iterator.remove();
-					counter.getAndIncrement();
-				}
+			log.info("Update {} with external sort, {} runs", stripeF, runs.size());
+
+			// stripe is fully copied into runs, so it's safe to overwrite it
+			PrintWriter writer = FileUtils.getPrintWriter(stripeF, false);
+			try {
+				KEYED_LINES_SORTER.merge(runs, new KeyedLinesWriter(writer), stripeF.getParentFile());
+			}
+			finally {
+				writer.flush();
+				writer.close();
+			}
+		}
+		finally {
+			for(File run : runs) {
+				run.delete();
+			}
+		}
+	}
+
+	private void writeRun(List<String> chunk, List<File> runs) {
+		File run = new File(stripeF.getParentFile(),
+				stripeF.getName() + ".upd-run" + runs.size() + ".gz");
+		runs.add(run);
+
+		KEYED_LINES_SORTER.writeRun(chunk, run);
+		chunk.clear();
+	}
+
+	private String keyedLine(String line, long lineNumber) {
+		StringBuilder sb = new StringBuilder(line.length() + 64);
+
+		scanHeader(line);
+		sb.append(id()).append(KEY_SEPARATOR);
+
+		// inverted, so newer goes first
+		appendPadded(sb, Long.MAX_VALUE - timestamp(line)).append(KEY_SEPARATOR);
+		appendPadded(sb, lineNumber).append(KEY_SEPARATOR);
+
+		sb.append(header.equals(ACTION, REMOVE) ? 'R' : 'K').append(KEY_SEPARATOR);
+		sb.append(line);
+
+		return sb.toString();
+	}
+
+	private static StringBuilder appendPadded(StringBuilder sb, long value) {
+		String s = Long.toString(value);
+		for(int i = s.length(); i < 19; i++) {
+			sb.append('0');
+		}
+		return sb.append(s);
+	}
+
+	private void scanHeader(String line) {
+		if(!header.scan(line) || !header.has(ID)) {
+			log.error("Can't parse id for line {}", line);
+		}
+	}
+
+	/**
+	 * Id of the last scanned line
+	 * */
+	private String id() {
+		return StringUtils.defaultString(header.getString(ID));
+	}
+
+	/**
+	 * Timestamp in millis of the last scanned line, 
+	 * features without timestamp are treated as the oldest ones.
+	 * */
+	private long timestamp(String line) {
+		CharSequence timestamp = header.get(TIMESTAMP);
+		if(timestamp != null) {
+			try {
+				return Math.max(0, new DateTime(timestamp.toString()).getMillis());
+			}
+			catch (Exception e) {
+				log.error("Can't parse timestamp {} for line {}", timestamp, line);
+				return 0;
+			}
+		}
 
+		log.error("Can't parse timestamp for line {}", line);
+		return 0;
+	}
+
+	/**
+	 * Drops removed and outdated features while lines are written.
+	 * <p>
+	 * Lines should come sorted by id, newer first.
+	 * */
+	private static final class UpdateFilter {
+
+		private final PrintWriter writer;
+		private final JSONLineScanner details = new JSONLineScanner("actionDetailed");
+
+		private String prevId = null;
+		private long prevTimestamp;
+
+		private UpdateFilter(PrintWriter writer) {
+			this.writer = writer;
+		}
+
+		private void write(String id, long timestamp, boolean remove, String line) {
+			if(remove) {
+				counter.getAndIncrement();
+
+				details.scan(line);
+				log.info("Remove feature. Reason: {}", StringUtils.defaultString(details.getString(0)));
+
+				//older versions of removed feature are dropped too
 				prevId = id;
 				prevTimestamp = timestamp;
+				return;
 			}
 
-			me.osm.gazetter.utils.FileUtils.writeLines(stripeF, lines);
-		} catch (IOException e) {
-			throw new RuntimeException("Failed to update " + this.stripeF, e);
+			if (prevId != null && id.equals(prevId) && timestamp < prevTimestamp) {
+				counter.getAndIncrement();
+			}
+			else {
+				writer.println(line);
+			}
+
+			prevId = id;
+			prevTimestamp = timestamp;
+		}
+	}
+
+	/**
+	 * Parses keys of merged keyed lines and passes them through {@link UpdateFilter}
+	 * */
+	private static final class KeyedLinesWriter extends PrintWriter {
+
+		private final UpdateFilter filter;
+
+		private KeyedLinesWriter(PrintWriter writer) {
+			super(writer);
+			this.filter = new UpdateFilter(writer);
+		}
+
+		@Override
+		public void println(String keyed) {
+			int idEnd = keyed.indexOf(KEY_SEPARATOR);
+			int tsEnd = keyed.indexOf(KEY_SEPARATOR, idEnd + 1);
+			int numEnd = keyed.indexOf(KEY_SEPARATOR, tsEnd + 1);
+
+			String id = keyed.substring(0, idEnd);
+			long timestamp = Long.MAX_VALUE - Long.parseLong(keyed.substring(idEnd + 1, tsEnd));
+			boolean remove = keyed.charAt(numEnd + 1) == 'R';
+
+			filter.write(id, timestamp, remove, keyed.substring(numEnd + 3));
 		}
 
 	}
-	
+
 	public static int countUpdatedLines() {
 		return counter.get();
 	}
@@ -0,0 +1,358 @@
+package me.osm.gazetter.split;
+
+import gnu.trove.list.array.TLongArrayList;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import me.osm.gazetter.utils.FileUtils;
+import me.osm.gazetter.utils.FileUtils.LineHandler;
+import me.osm.gazetter.utils.LongBitmap;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.time.DurationFormatUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Polygon;
+import com.vividsolutions.jts.geom.prep.PreparedGeometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometryFactory;
+
+/**
+ * Selects osm elements for the area (bbox or polygon).
+ * <p>
+ * Keeps nodes inside the area, ways with at least one node inside
+ * (with all of theirs nodes, even if they are outside) and relations
+ * with members inside the area or kept ways and relations.
+ * <p>
+ * Boundaries and multipolygons, which cross the area edge, are completed:
+ * all of theirs member ways with all of theirs nodes are kept,
+ * so polygons of countries and regions could be built. Other members
+ * of the kept relations, which are entirely outside the area are not kept,
+ * so such relations may be incomplete.
+ * <p>
+ * Selection is made by one scan of osm file and stored as bitmaps of ids,
+ * ways of incomplete boundaries are added by the second scan (if there are any),
+ * so split itself is made by the next read of the same file.
+ * */
+public class AreaFilter implements LineHandler {
+
+	private static final Logger log = LoggerFactory.getLogger(AreaFilter.class);
+
+	private static final GeometryFactory factory = new GeometryFactory();
+
+	private final Envelope envelope;
+	private final PreparedGeometry polygon;
+
+	// nodes inside the area
+	private final LongBitmap inside = new LongBitmap();
+
+	// inside nodes and nodes of kept ways
+	private final LongBitmap nodes = new LongBitmap();
+	private final LongBitmap ways = new LongBitmap();
+	private final LongBitmap relations = new LongBitmap();
+
+	// member ways of kept boundaries and multipolygons,
+	// which are not kept on the first look
+	private final LongBitmap incomplete = new LongBitmap();
+
+	// pairs of parent and child relations ids,
+	// for parents which are not kept on the first look
+	private final TLongArrayList relationsTree = new TLongArrayList();
+
+	private AreaFilter(Envelope envelope, Geometry polygon) {
+		this.envelope = envelope;
+		this.polygon = polygon == null ? null : PreparedGeometryFactory.prepare(polygon);
+	}
+
+	/**
+	 * @param bbox minlon, minlat, maxlon, maxlat
+	 * */
+	public static AreaFilter bbox(List<Double> bbox) {
+		if(bbox.size() != 4) {
+			throw new IllegalArgumentException("Bbox should be defined as minlon minlat maxlon maxlat");
+		}
+		return new AreaFilter(new Envelope(bbox.get(0), bbox.get(2), bbox.get(1), bbox.get(3)), null);
+	}
+
+	/**
+	 * Read area from osmosis polygon (*.poly) file.
+	 * Sections which names starts with ! are holes.
+	 * */
+	public static AreaFilter poly(File polyFile) {
+		List<String> lines;
+		try {
+			lines = FileUtils.readLines(polyFile);
+		}
+		catch (IOException e) {
+			throw new RuntimeException("Failed to read polygon file " + polyFile, e);
+		}
+
+		Geometry outer = null;
+		Geometry holes = null;
+
+		// first line is the name of polygon
+		int i = 1;
+		while(i < lines.size()) {
+			String section = StringUtils.strip(lines.get(i++));
+			if(section.isEmpty()) {
+				continue;
+			}
+			if(section.equals("END")) {
+				break;
+			}
+
+			List<Coordinate> coords = new ArrayList<>();
+			for(; i < lines.size(); i++) {
+				String line = StringUtils.strip(lines.get(i));
+				if(line.equals("END")) {
+					i++;
+					break;
+				}
+				if(!line.isEmpty()) {
+					String[] lonlat = StringUtils.split(line);
+					coords.add(new Coordinate(Double.parseDouble(lonlat[0]), Double.parseDouble(lonlat[1])));
+				}
+			}
+			if(!coords.get(0).equals2D(coords.get(coords.size() - 1))) {
+				coords.add(new Coordinate(coords.get(0)));
+			}
+
+			Polygon ring = factory.createPolygon(coords.toArray(new Coordinate[coords.size()]));
+			if(section.startsWith("!")) {
+				holes = holes == null ? ring : holes.union(ring);
+			}
+			else {
+				outer = outer == null ? ring : outer.union(ring);
+			}
+		}
+
+		if(outer == null) {
+			throw new IllegalArgumentException("There is no polygons in " + polyFile);
+		}
+
+		Geometry area = holes == null ? outer : outer.difference(holes);
+		return new AreaFilter(area.getEnvelopeInternal(), area);
+	}
+
+	/**
+	 * Scan osm file and select ids
+	 * */
+	public void scan(InputStream is) {
+		long start = new Date().getTime();
+
+		FileUtils.handleLines(is, this);
+
+		// Child relations may be listed after the parents
+		boolean changed = true;
+		while(changed) {
+			changed = false;
+			for(int i = 0; i < relationsTree.size(); i += 2) {
+				long parent = relationsTree.get(i);
+				if(!relations.get(parent) && relations.get(relationsTree.get(i + 1))) {
+					relations.set(parent);
+					changed = true;
+				}
+			}
+		}
+
+		log.info("Area filter: {} nodes, {} ways, {} relations selected in {}", new Object[]{
+				nodes.size(), ways.size(), relations.size(),
+				DurationFormatUtils.formatDurationHMS(new Date().getTime() - start)});
+	}
+
+	/**
+	 * @return true if some boundaries or multipolygons should be
+	 * completed by {@link #complete(InputStream)}
+	 * */
+	public boolean hasIncomplete() {
+		return incomplete.size() > 0;
+	}
+
+	/**
+	 * Scan osm file again and select missing ways
+	 * of boundaries and multipolygons with theirs nodes.
+	 * */
+	public void complete(InputStream is) {
+		long start = new Date().getTime();
+		long waysBefore = ways.size();
+
+		FileUtils.handleLines(is, new LineHandler() {
+
+			private boolean insideWay = false;
+
+			@Override
+			public void handle(String line) {
+				String s = StringUtils.strip(line);
+
+				if(s.startsWith("<way ")) {
+					long id = id(s);
+					insideWay = !s.endsWith("/>") && id >= 0 && incomplete.get(id) && !ways.get(id);
+					if(insideWay) {
+						ways.set(id);
+					}
+				}
+				else if(s.startsWith("<nd ") && insideWay) {
+					long ref = Long.parseLong(attr(s, "ref"));
+					if(ref >= 0) {
+						nodes.set(ref);
+					}
+				}
+				else if(s.startsWith("</way>")) {
+					insideWay = false;
+				}
+			}
+
+		});
+
+		log.info("Area filter: {} ways of boundaries and multipolygons added in {}",
+				ways.size() - waysBefore,
+				DurationFormatUtils.formatDurationHMS(new Date().getTime() - start));
+	}
+
+	public boolean acceptNode(long id) {
+		return nodes.get(id);
+	}
+
+	public boolean acceptWay(long id) {
+		return ways.get(id);
+	}
+
+	public boolean acceptRelation(long id) {
+		return relations.get(id);
+	}
+
+	private boolean insideWay = false;
+	private long way;
+	private boolean wayInside = false;
+	private final TLongArrayList wayNodes = new TLongArrayList();
+
+	private boolean insideRelation = false;
+	private long relation;
+	private boolean relationInside = false;
+	private boolean relationArea = false;
+	private final TLongArrayList relationWays = new TLongArrayList();
+
+	@Override
+	public void handle(String line) {
+		String s = StringUtils.strip(line);
+
+		if(s.startsWith("<node ")) {
+			long id = id(s);
+			double lon = Double.parseDouble(attr(s, "lon"));
+			double lat = Double.parseDouble(attr(s, "lat"));
+			if(id >= 0 && contains(lon, lat)) {
+				inside.set(id);
+				nodes.set(id);
+			}
+		}
+		else if(s.startsWith("<way ")) {
+			way = id(s);
+			wayInside = false;
+			wayNodes.resetQuick();
+			insideWay = !s.endsWith("/>");
+		}
+		else if(s.startsWith("<nd ") && insideWay) {
+			long ref = Long.parseLong(attr(s, "ref"));
+			wayNodes.add(ref);
+			wayInside = wayInside || inside.get(ref);
+		}
+		else if(s.startsWith("</way>")) {
+			if(wayInside && way >= 0) {
+				ways.set(way);
+				for(int i = 0; i < wayNodes.size(); i++) {
+					if(wayNodes.get(i) >= 0) {
+						nodes.set(wayNodes.get(i));
+					}
+				}
+			}
+			insideWay = false;
+		}
+		else if(s.startsWith("<relation ")) {
+			relation = id(s);
+			relationInside = false;
+			relationArea = false;
+			relationWays.resetQuick();
+			insideRelation = !s.endsWith("/>");
+		}
+		else if(s.startsWith("<member ") && insideRelation) {
+			String type = attr(s, "type");
+			long ref = Long.parseLong(attr(s, "ref"));
+			if("node".equals(type)) {
+				relationInside = relationInside || inside.get(ref);
+			}
+			else if("way".equals(type)) {
+				relationInside = relationInside || ways.get(ref);
+				relationWays.add(ref);
+			}
+			else if("relation".equals(type)) {
+				if(relations.get(ref)) {
+					relationInside = true;
+				}
+				else if(relation >= 0 && ref >= 0) {
+					relationsTree.add(relation);
+					relationsTree.add(ref);
+				}
+			}
+		}
+		else if(s.startsWith("<tag ") && insideRelation) {
+			if("type".equals(attr(s, "k"))) {
+				String type = attr(s, "v");
+				relationArea = "boundary".equals(type) || "multipolygon".equals(type);
+			}
+		}
+		else if(s.startsWith("</relation>")) {
+			if(relationInside && relation >= 0) {
+				relations.set(relation);
+
+				if(relationArea) {
+					for(int i = 0; i < relationWays.size(); i++) {
+						long ref = relationWays.get(i);
+						if(ref >= 0 && !ways.get(ref)) {
+							incomplete.set(ref);
+						}
+					}
+				}
+			}
+			insideRelation = false;
+		}
+	}
+
+	private boolean contains(double lon, double lat) {
+		if(!envelope.contains(lon, lat)) {
+			return false;
+		}
+		return polygon == null
+				|| polygon.intersects(factory.createPoint(new Coordinate(lon, lat)));
+	}
+
+	/**
+	 * @return id of the element from the line with the opening tag
+	 * */
+	public static long id(String s) {
+		return Long.parseLong(attr(s, "id"));
+	}
+
+	/**
+	 * Get value of xml attribute from the line with the tag
+	 * */
+	public static String attr(String s, String name) {
+		int i = s.indexOf(" " + name + "=");
+		if(i < 0) {
+			return null;
+		}
+
+		int from = i + name.length() + 2;
+		char quote = s.charAt(from);
+		return s.substring(from + 1, s.indexOf(quote, from + 1));
+	}
+
+}
@@ -0,0 +1,158 @@
+package me.osm.gazetter.split;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import me.osm.gazetter.Options;
+import me.osm.gazetter.striper.readers.BinaryElements;
+import me.osm.gazetter.striper.readers.PointsReader.Node;
+import me.osm.gazetter.striper.readers.RelationsReader.Relation;
+import me.osm.gazetter.striper.readers.RelationsReader.Relation.RelationMember;
+import me.osm.gazetter.striper.readers.RelationsReader.Relation.RelationMember.ReferenceType;
+import me.osm.gazetter.striper.readers.WaysReader.Way;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.time.DurationFormatUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Splits osm file into binary nodes, ways and relations files.
+ * <p>
+ * Unlike {@link Split}, osm file is parsed once here, and slicer
+ * reads elements from binary files without XML parsing.
+ *
+ * @see BinaryElements
+ * */
+public class BinarySplit extends DefaultHandler {
+
+	private static final Logger log = LoggerFactory.getLogger(BinarySplit.class);
+
+	private final InputStream fileIS;
+
+	private final BinaryElements.Writer nodes;
+	private final BinaryElements.Writer ways;
+	private final BinaryElements.Writer relations;
+
+	private Node node;
+	private long nodeTimestamp;
+	private Way way;
+	private Relation relation;
+
+	public BinarySplit(File destFolder, String input, String compression) {
+		fileIS = Split.openInput(input, compression);
+		destFolder.mkdirs();
+
+		String suffix = Options.get().isCompress() ? ".gz" : "";
+		try {
+			nodes = new BinaryElements.Writer(new File(destFolder, BinaryElements.NODES + suffix));
+			ways = new BinaryElements.Writer(new File(destFolder, BinaryElements.WAYS + suffix));
+			relations = new BinaryElements.Writer(new File(destFolder, BinaryElements.RELATIONS + suffix));
+		}
+		catch (IOException e) {
+			throw new RuntimeException("Failed to initialize splitter. "
+					+ "DestFolder: " + destFolder + " Input: " + input, e);
+		}
+	}
+
+	public void run() {
+		long start = new Date().getTime();
+
+		try {
+			SAXParser saxParser = SAXParserFactory.newInstance().newSAXParser();
+			saxParser.parse(fileIS, this);
+
+			nodes.close();
+			ways.close();
+			relations.close();
+		}
+		catch (Exception e) {
+			throw new RuntimeException("Binary split failed", e);
+		}
+
+		log.info("Binary split done in {}", DurationFormatUtils.formatDurationHMS(new Date().getTime() - start));
+	}
+
+	@Override
+	public void startElement(String uri, String localName, String qName,
+			Attributes attributes) throws SAXException {
+
+		if(qName.equals("node")) {
+			node = new Node();
+			node.tags = new LinkedHashMap<>();
+			node.id = Long.valueOf(attributes.getValue("id"));
+			node.lon = Double.valueOf(attributes.getValue("lon"));
+			node.lat = Double.valueOf(attributes.getValue("lat"));
+
+			String ts = attributes.getValue("timestamp");
+			nodeTimestamp = ts == null ? Long.MIN_VALUE
+					: Timestamp.valueOf(StringUtils.remove(ts, 'Z').replace('T', ' ')).getTime();
+		}
+		else if(qName.equals("way")) {
+			way = new Way();
+			way.tags = new LinkedHashMap<>();
+			way.id = Long.valueOf(attributes.getValue("id"));
+		}
+		else if(qName.equals("relation")) {
+			relation = new Relation();
+			relation.tags = new LinkedHashMap<>();
+			relation.id = Long.valueOf(attributes.getValue("id"));
+		}
+		else if(qName.equals("nd") && way != null) {
+			way.nodes.add(Long.valueOf(attributes.getValue("ref")));
+		}
+		else if(qName.equals("member") && relation != null) {
+			RelationMember m = new RelationMember();
+			m.ref = Long.valueOf(attributes.getValue("ref"));
+			m.type = ReferenceType.valueOf(attributes.getValue("type").toUpperCase());
+			if(!attributes.getValue("role").isEmpty()) {
+				m.role = attributes.getValue("role");
+			}
+			relation.members.add(m);
+		}
+		else if(qName.equals("tag")) {
+			Map<String, String> tags = node != null ? node.tags
+					: way != null ? way.tags
+					: relation != null ? relation.tags : null;
+
+			if(tags != null) {
+				tags.put(attributes.getValue("k"), attributes.getValue("v"));
+			}
+		}
+	}
+
+	@Override
+	public void endElement(String uri, String localName, String qName)
+			throws SAXException {
+
+		try {
+			if(qName.equals("node")) {
+				nodes.write(node, nodeTimestamp);
+				node = null;
+			}
+			else if(qName.equals("way")) {
+				ways.write(way);
+				way = null;
+			}
+			else if(qName.equals("relation")) {
+				relations.write(relation);
+				relation = null;
+			}
+		}
+		catch (IOException e) {
+			throw new SAXException(e);
+		}
+	}
+
+}
@@ -9,6 +9,7 @@ import java.util.Date;
 import java.util.zip.GZIPInputStream;
 
 import me.osm.gazetter.Options;
+import me.osm.gazetter.metrics.Metrics;
 import me.osm.gazetter.utils.FileUtils;
 import me.osm.gazetter.utils.FileUtils.LineHandler;
 
@@ -32,27 +33,26 @@ public class Split implements LineHandler {
 	private PrintWriter relPW;
 
 	public Split (File destFolder, String input, String compression, boolean append) {
-		try {
+		this(destFolder, input, compression, append, null);
+	}
+	
+	/**
+	 * @param filter keep only elements selected by area filter, 
+	 * osm file will be read two or three times, so filter can't be used with STDIN.
+	 * */
+	public Split (File destFolder, String input, String compression, boolean append, AreaFilter filter) {
+		this.filter = filter;
+		if(filter != null) {
 			if(input.equals("-")) {
-				if("gzip".equals(compression)) {
-					fileIS = new GZIPInputStream(System.in);
-				}
-				else if("bz2".equals(compression)) {
-					fileIS = new BZip2CompressorInputStream(System.in);
-				}
-				else {
-					fileIS = System.in;
-				}
+				throw new IllegalArgumentException("Area filter can't be used with STDIN input");
 			}
-			else {
-				fileIS = FileUtils.getFileIS(new File(input));
+			filter.scan(openInput(input, compression));
+			if(filter.hasIncomplete()) {
+				filter.complete(openInput(input, compression));
 			}
 		}
-		catch (FileNotFoundException e) {
-			throw new RuntimeException("Input file not found: " + input, e);
-		} catch (IOException e) {
-			throw new RuntimeException("Read error for file: " + input, e);
-		}
+		
+		fileIS = openInput(input, compression);
 		destFolder.mkdirs();
 		try {
 			boolean compress = !append && Options.get().isCompress();
@@ -73,6 +73,35 @@ public class Split implements LineHandler {
 		}
 	}
 	
+	/**
+	 * Open osm file, or STDIN if input is "-"
+	 * 
+	 * @param compression compression of STDIN
+	 * */
+	public static InputStream openInput(String input, String compression) {
+		try {
+			if(input.equals("-")) {
+				if("gzip".equals(compression)) {
+					return new GZIPInputStream(System.in);
+				}
+				else if("bz2".equals(compression)) {
+					return new BZip2CompressorInputStream(System.in);
+				}
+				else {
+					return System.in;
+				}
+			}
+			else {
+				return FileUtils.getFileIS(new File(input));
+			}
+		}
+		catch (FileNotFoundException e) {
+			throw new RuntimeException("Input file not found: " + input, e);
+		} catch (IOException e) {
+			throw new RuntimeException("Read error for file: " + input, e);
+		}
+	}
+	
 	public void run() {
 		long start = new Date().getTime();
 
@@ -108,14 +137,27 @@ public class Split implements LineHandler {
 		nodePW.close();
 		wayPW.close();
 		relPW.close();
+		
+		Metrics.counter("split.nodes").add(nodes);
+		Metrics.counter("split.ways").add(ways);
+		Metrics.counter("split.relations").add(relations);
 	}
 
+	private long nodes = 0;
+	private long ways = 0;
+	private long relations = 0;
+	
 	private boolean insideNode = false;
 	private boolean insideWay = false;
 	private boolean insideRelation = false;
 
 	private InputStream fileIS;
 	
+	private final AreaFilter filter;
+	
+	// current element is filtered out
+	private boolean skip = false;
+	
 	@Override
 	public void handle(String line) {
 
@@ -124,6 +166,8 @@ public class Split implements LineHandler {
 		//node
 		{
 			if(s.startsWith("<node ")) {
+				nodes++;
+				skip = filter != null && !filter.acceptNode(AreaFilter.id(s));
 				writeNode(line);
 				insideNode = true;
 				if(s.endsWith("/>")) {
@@ -147,6 +191,8 @@ public class Split implements LineHandler {
 		//way
 		{
 			if(s.startsWith("<way ")) {
+				ways++;
+				skip = filter != null && !filter.acceptWay(AreaFilter.id(s));
 				writeWay(line);
 				insideWay = true;
 				if(s.endsWith("/>")) {
@@ -170,6 +216,8 @@ public class Split implements LineHandler {
 		//relation
 		{
 			if(s.startsWith("<relation ")) {
+				relations++;
+				skip = filter != null && !filter.acceptRelation(AreaFilter.id(s));
 				writeRel(line);
 				insideRelation = true;
 				if(s.endsWith("/>")) {
@@ -192,15 +240,21 @@ public class Split implements LineHandler {
 	}
 
 	private void writeRel(String s) {
-		relPW.println(s);
+		if(!skip) {
+			relPW.println(s);
+		}
 	}
 
 	private void writeWay(String s) {
-		wayPW.println(s);
+		if(!skip) {
+			wayPW.println(s);
+		}
 	}
 
 	private void writeNode(String s) {
-		nodePW.println(s);
+		if(!skip) {
+			nodePW.println(s);
+		}
 	}
 	
 }
@@ -14,6 +14,7 @@ import java.util.Map;
 
 import me.osm.gazetter.utils.FileUtils;
 import me.osm.gazetter.utils.FileUtils.LineHandler;
+import me.osm.gazetter.utils.sort.ExternalSorter;
 
 import org.apache.commons.lang3.StringUtils;
 import org.joda.time.LocalDateTime;
@@ -21,7 +22,6 @@ import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.code.externalsorting.ExternalSort;
 import com.vividsolutions.jts.geom.MultiPolygon;
 import com.vividsolutions.jts.io.WKTReader;
 
@@ -148,6 +148,12 @@ public class BoundariesFallbacker {
 		}
 	}
 
+	public void flush() {
+		if(writer != null) {
+			writer.flush();
+		}
+	}
+
 	public void close() {
 		if(writer != null) {
 			writer.flush();
@@ -167,7 +173,7 @@ public class BoundariesFallbacker {
 
 	private void sortAndMerge() {
 		try {
-			ExternalSort.sort(file, file);
+			ExternalSorter.byKey(ExternalSorter.LINES).sort(file, file, null);
 			
 			File tmp = new File(this.fallbackPath + ".tmp");
 			OutputStream os = new FileOutputStream(tmp, true);
@@ -3,9 +3,11 @@ package me.osm.gazetter.striper;
 import static me.osm.gazetter.utils.FileUtils.getFileIS;
 
 import java.io.File;
+import java.sql.Timestamp;
 import java.util.HashSet;
 
 import me.osm.gazetter.striper.builders.Builder;
+import me.osm.gazetter.striper.readers.BinaryElements;
 import me.osm.gazetter.striper.readers.PointsReader;
 import me.osm.gazetter.striper.readers.RelationsReader;
 import me.osm.gazetter.striper.readers.WaysReader;
@@ -18,49 +20,176 @@ import org.slf4j.LoggerFactory;
  * Runs reading of nodes, ways and relation files
  * */
 public class Engine {
-	
+
 	private static final Logger log = LoggerFactory.getLogger(Engine.class);
-	
-	public void filter(HashSet<String> drop, String datatDir, Builder... builders) {
-		File nodes = FileUtils.withGz(new File(datatDir + "/" + "nodes.osm"));
-		File ways = FileUtils.withGz(new File(datatDir + "/" + "ways.osm"));
-		File rels = FileUtils.withGz(new File(datatDir + "/" + "rels.osm"));
 
-		try {
+	/**
+	 * Splitted osm data
+	 * */
+	private static interface Source {
+
+		public void readRelations(Builder[] builders) throws Exception;
+
+		public void readWays(Builder[] builders) throws Exception;
+
+		/**
+		 * @return the youngest node timestamp
+		 * */
+		public Timestamp readNodes(Builder[] builders) throws Exception;
+
+	}
+
+	/**
+	 * nodes.osm, ways.osm and rels.osm written by split
+	 * */
+	private static final class XMLSource implements Source {
+
+		private final HashSet<String> drop;
+		private final File nodes;
+		private final File ways;
+		private final File rels;
+
+		private XMLSource(HashSet<String> drop, String datatDir) {
+			this.drop = drop;
+			this.nodes = FileUtils.withGz(new File(datatDir + "/" + "nodes.osm"));
+			this.ways = FileUtils.withGz(new File(datatDir + "/" + "ways.osm"));
+			this.rels = FileUtils.withGz(new File(datatDir + "/" + "rels.osm"));
+		}
+
+		@Override
+		public void readRelations(Builder[] builders) throws Exception {
 			new RelationsReader(drop).read(getFileIS(rels), builders);
-			log.info("First run: done relations.");
-			for(Builder builder : builders) {
-				builder.firstRunDoneRelations();
-			}
+		}
 
+		@Override
+		public void readWays(Builder[] builders) throws Exception {
 			new WaysReader(drop).read(getFileIS(ways), builders);
-			log.info("First run: done ways.");
-			for(Builder builder : builders) {
-				builder.firstRunDoneWays();
-			}
+		}
 
+		@Override
+		public Timestamp readNodes(Builder[] builders) throws Exception {
 			PointsReader pr = new PointsReader(drop);
 			pr.read(getFileIS(nodes), builders);
-			log.info("First run: done nodes.");
-			for(Builder builder : builders) {
-				builder.firstRunDoneNodes();
+			return pr.getLastNodeTimestamp();
+		}
+	}
+
+	/**
+	 * Binary files written by split-slice
+	 * */
+	private static final class BinarySource implements Source {
+
+		private final HashSet<String> drop;
+		private final File nodes;
+		private final File ways;
+		private final File rels;
+
+		private BinarySource(HashSet<String> drop, String datatDir) {
+			this.drop = drop;
+			this.nodes = FileUtils.withGz(new File(datatDir + "/" + BinaryElements.NODES));
+			this.ways = FileUtils.withGz(new File(datatDir + "/" + BinaryElements.WAYS));
+			this.rels = FileUtils.withGz(new File(datatDir + "/" + BinaryElements.RELATIONS));
+		}
+
+		@Override
+		public void readRelations(Builder[] builders) throws Exception {
+			BinaryElements.readRelations(rels, drop, builders);
+		}
+
+		@Override
+		public void readWays(Builder[] builders) throws Exception {
+			BinaryElements.readWays(ways, drop, builders);
+		}
+
+		@Override
+		public Timestamp readNodes(Builder[] builders) throws Exception {
+			return BinaryElements.readNodes(nodes, drop, builders);
+		}
+	}
+
+	private final SliceCheckpoint checkpoint;
+
+	public Engine() {
+		this(null);
+	}
+
+	/**
+	 * @param checkpoint save builders state between runs
+	 * and resume from the last saved one, it could be null
+	 * */
+	public Engine(SliceCheckpoint checkpoint) {
+		this.checkpoint = checkpoint;
+	}
+
+	public void filter(HashSet<String> drop, String datatDir, Builder... builders) {
+		filter(new XMLSource(drop, datatDir), datatDir, builders);
+	}
+
+	/**
+	 * Read elements from binary files, written by {@link me.osm.gazetter.split.BinarySplit}
+	 * */
+	public void filterBinary(HashSet<String> drop, String datatDir, Builder... builders) {
+		filter(new BinarySource(drop, datatDir), datatDir, builders);
+	}
+
+	private void filter(Source source, String datatDir, Builder... builders) {
+		try {
+			int done = SliceCheckpoint.NOTHING_DONE;
+			if(checkpoint != null) {
+				done = checkpoint.restoreBuilders(builders);
 			}
-			log.info("Yongest known timestamp of a node: " + pr.getLastNodeTimestamp());
 
-			new WaysReader(drop).read(getFileIS(ways), builders);
-			log.info("Second run: done ways.");
-			for(Builder builder : builders) {
-				builder.secondRunDoneWays();
+			if(done < SliceCheckpoint.FIRST_RUN_RELATIONS) {
+				source.readRelations(builders);
+				log.info("First run: done relations.");
+				for(Builder builder : builders) {
+					builder.firstRunDoneRelations();
+				}
+				checkpoint(SliceCheckpoint.FIRST_RUN_RELATIONS, builders);
 			}
-			
-			new RelationsReader(drop).read(getFileIS(rels), builders);
+
+			if(done < SliceCheckpoint.FIRST_RUN_WAYS) {
+				source.readWays(builders);
+				log.info("First run: done ways.");
+				for(Builder builder : builders) {
+					builder.firstRunDoneWays();
+				}
+				checkpoint(SliceCheckpoint.FIRST_RUN_WAYS, builders);
+			}
+
+			if(done < SliceCheckpoint.FIRST_RUN_NODES) {
+				Timestamp lastNodeTimestamp = source.readNodes(builders);
+				log.info("First run: done nodes.");
+				for(Builder builder : builders) {
+					builder.firstRunDoneNodes();
+				}
+				log.info("Yongest known timestamp of a node: " + lastNodeTimestamp);
+				checkpoint(SliceCheckpoint.FIRST_RUN_NODES, builders);
+			}
+
+			if(done < SliceCheckpoint.SECOND_RUN_WAYS) {
+				source.readWays(builders);
+				log.info("Second run: done ways.");
+				for(Builder builder : builders) {
+					builder.secondRunDoneWays();
+				}
+				checkpoint(SliceCheckpoint.SECOND_RUN_WAYS, builders);
+			}
+
+			source.readRelations(builders);
 			log.info("Second run: done relations.");
 			for(Builder builder : builders) {
 				builder.secondRunDoneRelations();
 			}
-			
+
 		} catch (Exception e) {
 			throw new RuntimeException("Parsing failed. Data dir: " + datatDir, e);
 		}
 	}
+
+	private void checkpoint(int phase, Builder[] builders) {
+		if(checkpoint != null) {
+			checkpoint.save(phase, builders);
+		}
+	}
 }
@@ -3,20 +3,21 @@ package me.osm.gazetter.striper;
 import static me.osm.gazetter.join.out_handlers.GazetteerSchemeConstants.GAZETTEER_SCHEME_MD5;
 import static me.osm.gazetter.join.out_handlers.GazetteerSchemeConstants.GAZETTEER_SCHEME_TIMESTAMP;
 
-import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import me.osm.gazetter.utils.HilbertCurveHasher;
 import me.osm.gazetter.utils.JSONHash;
+import me.osm.gazetter.utils.JSONLineScanner;
 
 import org.apache.commons.codec.digest.DigestUtils;
-import org.apache.commons.lang3.StringUtils;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
 import org.joda.time.LocalDateTime;
@@ -27,6 +28,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.CoordinateSequence;
 import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.geom.GeometryFactory;
 import com.vividsolutions.jts.geom.LineString;
@@ -49,12 +51,8 @@ public class GeoJsonWriter {
 
 	private static final Logger log = LoggerFactory.getLogger(GeoJsonWriter.class.getName());
 	
-	private static final String TIMESTAMP_PATTERN = "\"" + GeoJsonWriter.TIMESTAMP +  "\":\"";
-	private static final String ID_PATTERN = "\"id\":\"";
-	private static final String FTYPE_PATTERN = "\"ftype\":\"";
-	private static final String ACTION_PATTERN = "\"action\":\"";
-	private static final String ADM_LVL_PATTERN = "\"admin_level\":\"";
-	private static final String MD5_PATTERN = "\"md5\":\"";
+	private static final String ACTION = "action";
+	private static final String ADMIN_LEVEL = "admin_level";
 	
 	public static final String META = "metainfo";
 	public static final String FULL_GEOMETRY = "fullGeometry";
@@ -82,50 +80,266 @@ public class GeoJsonWriter {
 		
 	}
 	
+	private static final String ID = "id";
+	private static final String FTYPE = "ftype";
+	
+	// The order of keys in JSON depends on JSONObject internals, 
+	// so lets get it from JSONObject itself, and write keys in the same order
+	private static final String[] FEATURE_KEYS = keysOrder(new JSONFeature(), 
+			ID, FTYPE, GEOJSON_TYPE_KEY, GEOMETRY, PROPERTIES, META, TIMESTAMP);
+	
+	private static final ConcurrentMap<String, String[]> FEATURE_KEYS_WITH = 
+			new ConcurrentHashMap<String, String[]>();
+	
+	private static final String[] GEOMETRY_KEYS = keysOrder(new JSONObject(), 
+			GEOMETRY_TYPE, COORDINATES);
+
+	private static final long[] POW10 = new long[]{
+		1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L};
+	
+	private static final class CachedTimestamp {
+		
+		private final long second;
+		private final String value;
+		
+		public CachedTimestamp(long second, String value) {
+			this.second = second;
+			this.value = value;
+		}
+		
+	}
+	
+	private static volatile CachedTimestamp timestamp = null;
+	
+	/**
+	 * Scanners for the get* methods, which read only one key from the line
+	 * */
+	private static final class HeaderScanners {
+		private final JSONLineScanner id = new JSONLineScanner(ID);
+		private final JSONLineScanner ftype = new JSONLineScanner(FTYPE);
+		private final JSONLineScanner timestamp = new JSONLineScanner(TIMESTAMP);
+		private final JSONLineScanner action = new JSONLineScanner(ACTION);
+		private final JSONLineScanner md5 = new JSONLineScanner(GAZETTEER_SCHEME_MD5);
+		private final JSONLineScanner properties = new JSONLineScanner(PROPERTIES);
+		private final JSONLineScanner admLevel = new JSONLineScanner(ADMIN_LEVEL);
+	}
+	
+	private static final ThreadLocal<HeaderScanners> scanners = new ThreadLocal<HeaderScanners>() {
+		@Override
+		protected HeaderScanners initialValue() {
+			return new HeaderScanners();
+		}
+	};
+	
 	public static JSONObject geometryToJSON(Geometry g) {
-		if(g == null) {
+		String type = geometryType(g);
+		if(type == null) {
 			return null;
 		}
 		
-		if(g instanceof MultiPolygon) {
-			JSONObject geomJSON = new JSONObject();
-			geomJSON.put(GEOMETRY_TYPE, "MultiPolygon");
-			List<String> rings = new ArrayList<>();
-			for(int i = 0; i < g.getNumGeometries(); i++) {
-				rings.add(asJsonString((Polygon) g.getGeometryN(i)));
+		StringBuilder coordinates = new StringBuilder();
+		appendCoordinates(coordinates, g);
+		
+		JSONObject geomJSON = new JSONObject();
+		geomJSON.put(GEOMETRY_TYPE, type);
+		geomJSON.put(COORDINATES, new JsonStringWrapper(coordinates.toString()));
+		return geomJSON;
+	}
+	
+	/**
+	 * Feature serialized once, to write it with different geometries.
+	 * */
+	public static final class FeatureTemplate {
+		
+		private static final String PLACEHOLDER = "\u0000geometry\u0000";
+		
+		private final String prefix;
+		private final String suffix;
+		
+		/**
+		 * @param feature feature without geometry
+		 * */
+		public FeatureTemplate(JSONObject feature) {
+			feature.put(GEOMETRY, new JsonStringWrapper(PLACEHOLDER));
+			String json = feature.toString();
+			feature.remove(GEOMETRY);
+			
+			int i = json.indexOf(PLACEHOLDER);
+			this.prefix = json.substring(0, i);
+			this.suffix = json.substring(i + PLACEHOLDER.length());
+		}
+		
+		/**
+		 * Writes the same as feature.put("geometry", geometryToJSON(g)).toString()
+		 * */
+		public void append(StringBuilder sb, Geometry g) {
+			String type = geometryType(g);
+			if(type == null) {
+				throw new IllegalArgumentException("Unsupported geometry " + g.getGeometryType());
 			}
-			geomJSON.put(COORDINATES, new JsonStringWrapper("[" + StringUtils.join(rings, ",") + "]"));
-			return geomJSON;
+			
+			sb.append(prefix);
+			appendGeometry(sb, type, g);
+			sb.append(suffix);
+		}
+		
+	}
+	
+	private static String geometryType(Geometry g) {
+		if(g instanceof MultiPolygon) {
+			return "MultiPolygon";
 		}
 		if(g instanceof Polygon) {
-			JSONObject geomJSON = new JSONObject();
-			geomJSON.put(GEOMETRY_TYPE, "Polygon");
-			geomJSON.put(COORDINATES, new JsonStringWrapper(asJsonString((Polygon) g)));
-			return geomJSON;
+			return "Polygon";
 		}
-		else if (g instanceof LineString) {
-			JSONObject geomJSON = new JSONObject();
-			geomJSON.put(GEOMETRY_TYPE, "LineString");
-			geomJSON.put(COORDINATES, new JsonStringWrapper(asJsonString((LineString) g)));
-			return geomJSON;
+		if(g instanceof LineString) {
+			return "LineString";
 		}
-		else if(g instanceof Point) {
-			JSONObject geomJSON = new JSONObject();
-			geomJSON.put(GEOMETRY_TYPE, "Point");
-			geomJSON.put(COORDINATES, new JsonStringWrapper("[" + 
-					String.format(Locale.US, "%.8f", ((Point)g).getX()) + "," + 
-					String.format(Locale.US, "%.8f", ((Point)g).getY()) + "]"));
-			return geomJSON;
+		if(g instanceof Point) {
+			return "Point";
 		}
 		return null;
 	}
 	
 	public static String featureAsGeoJSON(String id, String type, Map<String, String> attributes, Geometry g, JSONObject meta) {
+		StringBuilder sb = new StringBuilder(256);
+		appendFeature(sb, id, type, attributes, g, meta);
+		return sb.toString();
+	}
+	
+	/**
+	 * Writes the same as {@link #featureAsGeoJSON(String, String, Map, Geometry, JSONObject)},
+	 * but without building feature and geometry JSONObjects.
+	 * */
+	public static void appendFeature(StringBuilder sb, String id, String type, 
+			Map<String, String> attributes, Geometry g, JSONObject meta) {
+		appendFeature(sb, id, type, attributes, g, meta, getNowTimestampString());
+	}
+
+	public static void appendFeature(StringBuilder sb, String id, String type, 
+			Map<String, String> attributes, Geometry g, JSONObject meta, String timestamp) {
+		writeFeature(sb, id, type, attributes, g, meta, timestamp, FEATURE_KEYS, null, null);
+	}
+	
+	/**
+	 * Writes the same as {@link #createFeature(String, String, Map, Geometry, JSONObject)}
+	 * with one more key put into it.
+	 * */
+	public static void appendFeature(StringBuilder sb, String id, String type, 
+			Map<String, String> attributes, Geometry g, JSONObject meta, 
+			String extraKey, JSONArray extraValue) {
+		appendFeature(sb, id, type, attributes, g, meta, getNowTimestampString(), 
+				extraKey, extraValue);
+	}
+	
+	public static void appendFeature(StringBuilder sb, String id, String type, 
+			Map<String, String> attributes, Geometry g, JSONObject meta, String timestamp, 
+			String extraKey, JSONArray extraValue) {
+		
+		String[] keys = FEATURE_KEYS_WITH.get(extraKey);
+		if(keys == null) {
+			keys = keysOrder(new JSONFeature(), 
+					ID, FTYPE, GEOJSON_TYPE_KEY, GEOMETRY, PROPERTIES, META, TIMESTAMP, extraKey);
+			FEATURE_KEYS_WITH.putIfAbsent(extraKey, keys);
+		}
+		
+		writeFeature(sb, id, type, attributes, g, meta, timestamp, keys, extraKey, extraValue);
+	}
+	
+	private static void writeFeature(StringBuilder sb, String id, String type, 
+			Map<String, String> attributes, Geometry g, JSONObject meta, String timestamp, 
+			String[] keys, String extraKey, JSONArray extraValue) {
+		
+		String geometryType = geometryType(g);
+		
+		sb.append('{');
+		boolean first = true;
+		for(String key : keys) {
+			
+			if(ID.equals(key) && id == null 
+					|| FTYPE.equals(key) && type == null
+					|| GEOMETRY.equals(key) && geometryType == null
+					|| PROPERTIES.equals(key) && attributes == null
+					|| META.equals(key) && meta == null
+					|| key.equals(extraKey) && extraValue == null) {
+				continue;
+			}
+			
+			if(!first) {
+				sb.append(',');
+			}
+			first = false;
+			
+			sb.append(JSONObject.quote(key)).append(':');
+			
+			switch (key) {
+			case ID:
+				sb.append(JSONObject.quote(id));
+				break;
+			case FTYPE:
+				sb.append(JSONObject.quote(type));
+				break;
+			case TIMESTAMP:
+				sb.append(JSONObject.quote(timestamp));
+				break;
+			case GEOMETRY:
+				appendGeometry(sb, geometryType, g);
+				break;
+			case META:
+				sb.append(meta.toString());
+				break;
+			case PROPERTIES:
+				sb.append(new JSONObject(attributes).toString());
+				break;
+			case GEOJSON_TYPE_KEY:
+				sb.append(JSONObject.quote(GEOJSON_TYPE_VAL));
+				break;
+			default:
+				sb.append(extraValue.toString());
+				break;
+			}
+		}
+		sb.append('}');
+	}
+
+	private static void appendGeometry(StringBuilder sb, String type, Geometry g) {
+		sb.append('{');
+		for(int i = 0; i < GEOMETRY_KEYS.length; i++) {
+			if(i > 0) {
+				sb.append(',');
+			}
+			
+			if(GEOMETRY_TYPE.equals(GEOMETRY_KEYS[i])) {
+				sb.append(JSONObject.quote(GEOMETRY_TYPE)).append(':').append(JSONObject.quote(type));
+			}
+			else {
+				sb.append(JSONObject.quote(COORDINATES)).append(':');
+				appendCoordinates(sb, g);
+			}
+		}
+		sb.append('}');
+	}
+
+	private static String[] keysOrder(JSONObject sample, String... keys) {
+		for(String key : keys) {
+			sample.put(key, key);
+		}
+		
+		final String json = sample.toString();
 		
-		JSONObject feature = createFeature(id, type, attributes, g, meta);
-		addTimestamp(feature);
+		String[] result = keys.clone();
+		Arrays.sort(result, new Comparator<String>() {
+
+			@Override
+			public int compare(String k1, String k2) {
+				return Integer.compare(
+						json.indexOf(JSONObject.quote(k1) + ":"), 
+						json.indexOf(JSONObject.quote(k2) + ":"));
+			}
+			
+		});
 		
-		return feature.toString();
+		return result;
 	}
 
 	public static JSONObject createFeature(String id, String type,
@@ -133,86 +347,172 @@ public class GeoJsonWriter {
 		JSONObject feature = new JSONFeature();
 		
 		if(id != null) {
-			feature.put("id", id);
+			feature.put(ID, id);
 		}
 		
-		feature.put("ftype", type);
+		feature.put(FTYPE, type);
 		feature.put(GEOJSON_TYPE_KEY, GEOJSON_TYPE_VAL);
 		feature.put(GEOMETRY, geometryToJSON(g));
 		feature.put(PROPERTIES, attributes);
 		feature.put(META, meta);
 		
-		feature.put(TIMESTAMP, LocalDateTime.now().toDateTime(timeZone).toInstant().toString());
+		feature.put(TIMESTAMP, getNowTimestampString());
 		
 		return feature;
 	}
 	
-	
+	private static void appendCoordinates(StringBuilder sb, Geometry g) {
+		if(g instanceof MultiPolygon) {
+			sb.append('[');
+			for(int i = 0; i < g.getNumGeometries(); i++) {
+				if(i > 0) {
+					sb.append(',');
+				}
+				appendCoordinates(sb, (Polygon) g.getGeometryN(i));
+			}
+			sb.append(']');
+		}
+		else if(g instanceof Polygon) {
+			appendCoordinates(sb, (Polygon) g);
+		}
+		else if (g instanceof LineString) {
+			appendCoordinates(sb, (LineString) g);
+		}
+		else if(g instanceof Point) {
+			sb.append('[');
+			appendDouble(sb, ((Point)g).getX());
+			sb.append(',');
+			appendDouble(sb, ((Point)g).getY());
+			sb.append(']');
+		}
+	}
 
-	private static String asJsonString(Polygon polygon) {
-		StringBuilder rings = new StringBuilder();
-		
-		rings.append(",").append(asJsonString(polygon.getExteriorRing()));
+	private static void appendCoordinates(StringBuilder sb, Polygon polygon) {
+		sb.append('[');
+		appendCoordinates(sb, polygon.getExteriorRing());
 		
 		for(int i=0; i < polygon.getNumInteriorRing(); i++) {
-			rings.append(",").append(asJsonString(polygon.getInteriorRingN(i)));
+			sb.append(',');
+			appendCoordinates(sb, polygon.getInteriorRingN(i));
 		}
-		
-		return "[" + rings.substring(1) + "]";
+		sb.append(']');
 	}
 
-	private static String asJsonString(LineString ring) {
-		StringBuilder sb = new StringBuilder();
+	private static void appendCoordinates(StringBuilder sb, LineString ring) {
+		sb.append('[');
+		
+		CoordinateSequence coords = ring.getCoordinateSequence();
+		for(int i = 0; i < coords.size(); i++) {
+			if(i > 0) {
+				sb.append(',');
+			}
+			sb.append('[');
+			appendDouble(sb, coords.getX(i));
+			sb.append(',');
+			appendDouble(sb, coords.getY(i));
+			sb.append(']');
+		}
+		
+		sb.append(']');
+	}
+	
+	/**
+	 * Appends the same string as <code>String.format(Locale.US, "%.8f", d)</code>
+	 * 
+	 * Formatter rounds half up shortest decimal representation of a double,
+	 * so for the values which are too close to the half of the last digit
+	 * it falls back to the String.format. Values from 1e7 have more than
+	 * 15 significant digits with 8 digits of fraction, they are written
+	 * with String.format too.
+	 * */
+	public static void appendDouble(StringBuilder sb, double d) {
+		double abs = Math.abs(d);
+		
+		// NaN and infinity are here too
+		if(!(abs < 1e7)) {
+			sb.append(String.format(Locale.US, "%.8f", d));
+			return;
+		}
+		
+		double scaled = abs * 1e8;
+		long digits = (long) scaled;
+		double rest = scaled - digits;
+		
+		// both scaling and shortest representation may differ
+		// from the exact value for about an ulp
+		if(Math.abs(rest - 0.5) < Math.max(1e-4, 2 * Math.ulp(scaled))) {
+			sb.append(String.format(Locale.US, "%.8f", d));
+			return;
+		}
 		
-		for(Coordinate c : ring.getCoordinates()) {
-			sb.append(",[").append(String.format(Locale.US, "%.8f", c.x)).append(",").append(String.format(Locale.US, "%.8f", c.y)).append("]");
+		if(rest > 0.5) {
+			digits++;
 		}
 		
-		return "[" + sb.substring(1) + "]";
+		// -0.0 and small negative values are written as -0.00000000
+		if(Double.doubleToRawLongBits(d) < 0) {
+			sb.append('-');
+		}
+		
+		long fraction = digits % POW10[8];
+		sb.append(digits / POW10[8]).append('.');
+		for(int i = 7; i > 0 && fraction < POW10[i]; i--) {
+			sb.append('0');
+		}
+		sb.append(fraction);
 	}
 	
 	public static String getId(String type, Point point, JSONObject meta) {
 		long hash = HilbertCurveHasher.encode(point.getX(), point.getY());
-		String mainPart = type + "-" + String.format("%010d", hash) + "-" + 
-				meta.getString(GEOMETRY_TYPE).charAt(0) + meta.optLong("id");
+		
+		StringBuilder mainPart = new StringBuilder(48);
+		mainPart.append(type).append('-');
+		HilbertCurveHasher.appendHash(mainPart, hash).append('-');
+		mainPart.append(meta.getString(GEOMETRY_TYPE).charAt(0)).append(meta.optLong("id"));
 		
 		int counter = meta.optInt("counter", -1); 
 		if(counter >= 0) {
-			mainPart += "-" + counter;
+			mainPart.append('-').append(counter);
 		}
 		
-		return mainPart;
+		return mainPart.toString();
 	}
 
 	public static void addTimestamp(JSONObject json) {
 		json.put(TIMESTAMP, getNowTimestampString());
 	}
 
+	/**
+	 * Timestamp string is formatted once per second and reused
+	 * */
 	public static String getNowTimestampString() {
-		LocalDateTime date = LocalDateTime.now();
-		String timestampString = date.toDateTime(timeZone).toInstant().toString();
-		return timestampString;
+		long second = System.currentTimeMillis() / 1000;
+		
+		CachedTimestamp cached = timestamp;
+		if(cached == null || cached.second != second) {
+			LocalDateTime date = LocalDateTime.now();
+			cached = new CachedTimestamp(second, date.toDateTime(timeZone).toInstant().toString());
+			timestamp = cached;
+		}
+		
+		return cached.value;
 	}
 
 	public static String getMD5(String line) {
-		int indexOf = line.indexOf(MD5_PATTERN);
-		if(indexOf >= 0) {
-			int begin = indexOf + MD5_PATTERN.length();
-			int end = line.indexOf("\"", begin);
-			return line.substring(begin, end);
+		JSONLineScanner scanner = scanners.get().md5;
+		if(scanner.scan(line) && scanner.has(0)) {
+			return scanner.getString(0);
 		}
 		
-		log.error("Can't parse timestamp for line {}", line);
+		log.error("Can't parse md5 for line {}", line);
 		
 		return null;
 	}
 
 	public static Date getTimestamp(String line) {
-		int indexOf = line.indexOf(TIMESTAMP_PATTERN);
-		if(indexOf >= 0) {
-			int begin = indexOf + TIMESTAMP_PATTERN.length();
-			int end = line.indexOf("\"", begin);
-			String timestampString = line.substring(begin, end);
+		JSONLineScanner scanner = scanners.get().timestamp;
+		if(scanner.scan(line) && scanner.has(0)) {
+			String timestampString = scanner.getString(0);
 			try {
 				return (new DateTime(timestampString)).toDate();
 			} catch (Exception e) {
@@ -226,15 +526,15 @@ public class GeoJsonWriter {
 	}
 
 	public static String getId(String line) {
-		int begin = line.indexOf(ID_PATTERN) + ID_PATTERN.length();
-		int end = line.indexOf("\"", begin);
-		return line.substring(begin, end);
+		JSONLineScanner scanner = scanners.get().id;
+		scanner.scan(line);
+		return scanner.getString(0);
 	}
 	
 	public static String getFtype(String line) {
-		int begin = line.indexOf(FTYPE_PATTERN) + FTYPE_PATTERN.length();
-		int end = line.indexOf("\"", begin);
-		return line.substring(begin, end);
+		JSONLineScanner scanner = scanners.get().ftype;
+		scanner.scan(line);
+		return scanner.getString(0);
 	}
 	
 	public static Polygon getPolygonGeometry(JSONObject polygon) {
@@ -292,24 +592,19 @@ public class GeoJsonWriter {
 	}
 
 	public static String getAction(String line) {
-		if(line.contains(ACTION_PATTERN)) {
-			int begin = line.indexOf(ACTION_PATTERN) + ACTION_PATTERN.length();
-			if(begin >= 0) {
-				int end = line.indexOf("\"", begin);
-				return line.substring(begin, end);
-			}
-		}
-		
-		return null;
+		JSONLineScanner scanner = scanners.get().action;
+		scanner.scan(line);
+		return scanner.getString(0);
 	}
 
+	/**
+	 * @return admin_level from feature properties
+	 * */
 	public static String getAdmLevel(String line) {
-		if(line.contains(ADM_LVL_PATTERN)) {
-			int begin = line.indexOf(ADM_LVL_PATTERN) + ADM_LVL_PATTERN.length();
-			if(begin >= 0) {
-				int end = line.indexOf("\"", begin);
-				return line.substring(begin, end);
-			}
+		HeaderScanners s = scanners.get();
+		if(s.properties.scan(line) && s.properties.has(0)) {
+			s.admLevel.scan(line, s.properties.start(0), s.properties.end(0));
+			return s.admLevel.getString(0);
 		}
 		
 		return null;
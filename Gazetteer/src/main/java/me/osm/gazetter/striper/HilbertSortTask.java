@@ -0,0 +1,325 @@
+package me.osm.gazetter.striper;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import me.osm.gazetter.join.util.MemoryGovernor;
+import me.osm.gazetter.join.util.MemoryGovernor.Reservation;
+import me.osm.gazetter.utils.FileUtils;
+import me.osm.gazetter.utils.FileUtils.LineFilter;
+import me.osm.gazetter.utils.FileUtils.LineHandler;
+import me.osm.gazetter.utils.HilbertCurveHasher;
+import me.osm.gazetter.utils.JSONLineScanner;
+import me.osm.gazetter.utils.sort.ExternalSorter;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sorts stripe lines by Hilbert curve key of the first point
+ * of feature geometry, so spatially close features are written
+ * in adjacent lines.
+ * <p>
+ * Features without geometry are moved to the end of the stripe,
+ * features with equal keys keep their order.
+ * */
+public class HilbertSortTask implements Runnable {
+
+	private static final Logger log = LoggerFactory.getLogger(HilbertSortTask.class);
+
+	/**
+	 * Max size of stripe (uncompressed, approximately) sorted in memory
+	 * */
+	private static final long IN_MEMORY_LIMIT = 256L * 1024 * 1024;
+
+	/**
+	 * Approximate size of lines in one sorted run, in chars
+	 * */
+	private static final long RUN_CHARS = 64L * 1024 * 1024;
+
+	/**
+	 * Approximate compression ratio of gzipped stripes
+	 * */
+	private static final int GZ_RATIO = 4;
+
+	/**
+	 * Rough estimation of heap used per byte of sorted lines:
+	 * utf-16 strings plus keys and order arrays.
+	 * */
+	private static final int HEAP_PER_BYTE = 3;
+
+	private static final char KEY_SEPARATOR = '\t';
+
+	/**
+	 * Keyed lines are unique (line number is a part of key),
+	 * so they are sorted just as strings
+	 * */
+	private static final ExternalSorter<String> KEYED_LINES_SORTER =
+			ExternalSorter.byKey(ExternalSorter.LINES).setThreads(1);
+
+	private final File stripeF;
+
+	private final JSONLineScanner feature = new JSONLineScanner(GeoJsonWriter.GEOMETRY);
+	private final JSONLineScanner geometry = new JSONLineScanner(GeoJsonWriter.COORDINATES);
+
+	public HilbertSortTask(File stripeF) {
+		this.stripeF = stripeF;
+	}
+
+	/**
+	 * Sort all stripes in the folder in parallel,
+	 * every sort reserves heap via {@link MemoryGovernor}
+	 * */
+	public static void sortStripes(File dataDir, int threads) {
+		long start = System.currentTimeMillis();
+
+		File[] stripes = dataDir.listFiles(new FilenameFilter() {
+			@Override
+			public boolean accept(File dir, String name) {
+				return name.startsWith("stripe");
+			}
+		});
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for(File stripe : stripes) {
+				futures.add(executor.submit(new HilbertSortTask(stripe)));
+			}
+
+			for(Future<?> f : futures) {
+				f.get();
+			}
+		}
+		catch (Exception e) {
+			throw new RuntimeException("Failed to sort stripes", e);
+		}
+		finally {
+			executor.shutdown();
+		}
+
+		log.info("{} stripes sorted by Hilbert curve in {} ms", stripes.length,
+				System.currentTimeMillis() - start);
+	}
+
+	@Override
+	public void run() {
+		try {
+			long size = stripeF.length();
+			if(stripeF.getName().endsWith(".gz")) {
+				size *= GZ_RATIO;
+			}
+
+			boolean external = size > IN_MEMORY_LIMIT;
+
+			// stripes are sorted in parallel, so wait until
+			// there is enough heap for one more stripe
+			Reservation reservation = MemoryGovernor.get().admit(
+					(external ? RUN_CHARS : size) * HEAP_PER_BYTE);
+			try {
+				if(external) {
+					sortExternal();
+				}
+				else {
+					sortInMemory();
+				}
+			}
+			finally {
+				reservation.release();
+			}
+		}
+		catch (IOException e) {
+			throw new RuntimeException("Failed to sort " + this.stripeF, e);
+		}
+	}
+
+	private void sortInMemory() throws IOException {
+		List<String> lines = FileUtils.readLines(stripeF, new LineFilter() {
+			@Override
+			public boolean isSuitable(String s) {
+				return StringUtils.isNotEmpty(s);
+			}
+		});
+
+		int n = lines.size();
+		double[] xs = new double[n];
+		double[] ys = new double[n];
+		boolean[] empty = new boolean[n];
+		double[] point = new double[2];
+		Integer[] order = new Integer[n];
+
+		for(int i = 0; i < n; i++) {
+			empty[i] = !firstPoint(lines.get(i), point);
+			xs[i] = point[0];
+			ys[i] = point[1];
+			order[i] = i;
+		}
+
+		final long[] keys = new long[n];
+		HilbertCurveHasher.sortKeys(xs, ys, keys, n);
+		for(int i = 0; i < n; i++) {
+			if(empty[i]) {
+				keys[i] = Long.MAX_VALUE;
+			}
+		}
+
+		// Arrays.sort for objects is stable
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer i1, Integer i2) {
+				return Long.compare(keys[i1], keys[i2]);
+			}
+		});
+
+		PrintWriter writer = FileUtils.getPrintWriter(stripeF, false);
+		try {
+			for(Integer i : order) {
+				writer.println(lines.get(i));
+			}
+		}
+		finally {
+			writer.flush();
+			writer.close();
+		}
+	}
+
+	/**
+	 * Write sorted runs of lines with key and line number
+	 * in front of them, then merge them into stripe.
+	 * */
+	private void sortExternal() throws IOException {
+		final List<File> runs = new ArrayList<>();
+
+		try {
+			final List<String> chunk = new ArrayList<>();
+			final long[] chunkChars = new long[]{0};
+			final long[] lineNumber = new long[]{0};
+			final double[] point = new double[2];
+
+			FileUtils.handleLines(stripeF, new LineHandler() {
+
+				@Override
+				public void handle(String s) {
+					if(StringUtils.isEmpty(s)) {
+						return;
+					}
+
+					long key = firstPoint(s, point)
+							? HilbertCurveHasher.sortKey(point[0], point[1]) : Long.MAX_VALUE;
+
+					StringBuilder sb = new StringBuilder(s.length() + 40);
+					appendPadded(sb, key).append(KEY_SEPARATOR);
+					appendPadded(sb, lineNumber[0]++).append(KEY_SEPARATOR);
+					sb.append(s);
+
+					chunk.add(sb.toString());
+					chunkChars[0] += s.length();
+
+					if(chunkChars[0] >= RUN_CHARS) {
+						writeRun(chunk, runs);
+						chunkChars[0] = 0;
+					}
+				}
+
+			});
+
+			if(!chunk.isEmpty()) {
+				writeRun(chunk, runs);
+			}
+
+			log.info("Sort {} externally, {} runs", stripeF, runs.size());
+
+			// stripe is fully copied into runs, so it's safe to overwrite it
+			final PrintWriter writer = FileUtils.getPrintWriter(stripeF, false);
+			try {
+				KEYED_LINES_SORTER.merge(runs, new PrintWriter(writer) {
+					@Override
+					public void println(String keyed) {
+						int keyEnd = keyed.indexOf(KEY_SEPARATOR);
+						writer.println(keyed.substring(keyed.indexOf(KEY_SEPARATOR, keyEnd + 1) + 1));
+					}
+				}, stripeF.getParentFile());
+			}
+			finally {
+				writer.flush();
+				writer.close();
+			}
+		}
+		finally {
+			for(File run : runs) {
+				run.delete();
+			}
+		}
+	}
+
+	private void writeRun(List<String> chunk, List<File> runs) {
+		File run = new File(stripeF.getParentFile(),
+				stripeF.getName() + ".hsort-run" + runs.size() + ".gz");
+		runs.add(run);
+
+		KEYED_LINES_SORTER.writeRun(chunk, run);
+		chunk.clear();
+	}
+
+	private static StringBuilder appendPadded(StringBuilder sb, long value) {
+		String s = Long.toString(value);
+		for(int i = s.length(); i < 19; i++) {
+			sb.append('0');
+		}
+		return sb.append(s);
+	}
+
+	/**
+	 * Read the first point of feature geometry
+	 *
+	 * @return false if there is no geometry
+	 * */
+	private boolean firstPoint(String line, double[] point) {
+		if(!feature.scan(line) || !feature.has(0)) {
+			return false;
+		}
+
+		if(!geometry.scan(line, feature.start(0), feature.end(0)) || !geometry.has(0)) {
+			return false;
+		}
+
+		// skip nested arrays of polygons and rings
+		int i = geometry.start(0);
+		int end = geometry.end(0);
+		while(i < end && (line.charAt(i) == '[' || Character.isWhitespace(line.charAt(i)))) {
+			i++;
+		}
+
+		int comma = line.indexOf(',', i);
+		if(comma < 0 || comma >= end) {
+			return false;
+		}
+
+		int close = line.indexOf(']', comma);
+		int next = line.indexOf(',', comma + 1);
+		int yEnd = next >= 0 && next < close ? next : close;
+		if(yEnd < 0 || yEnd >= end) {
+			return false;
+		}
+
+		try {
+			point[0] = Double.parseDouble(line.substring(i, comma).trim());
+			point[1] = Double.parseDouble(line.substring(comma + 1, yEnd).trim());
+			return true;
+		}
+		catch (NumberFormatException e) {
+			return false;
+		}
+	}
+
+}
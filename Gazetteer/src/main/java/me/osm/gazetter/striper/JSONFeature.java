@@ -85,6 +85,40 @@ public final class JSONFeature extends JSONObject {
 		super();
 	}
 	
+	/**
+	 * Deep copy, made without serialization. Strings, numbers
+	 * and booleans are immutable, so they are shared.
+	 * */
+	@SuppressWarnings("unchecked")
+	public static JSONFeature deepCopy(JSONObject obj) {
+		JSONFeature copy = new JSONFeature();
+		for(String key : (Set<String>) obj.keySet()) {
+			copy.put(key, copyValue(obj.get(key)));
+		}
+		return copy;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Object copyValue(Object value) {
+		if(value instanceof JSONObject) {
+			JSONObject obj = (JSONObject) value;
+			JSONObject copy = new JSONObject();
+			for(String key : (Set<String>) obj.keySet()) {
+				copy.put(key, copyValue(obj.get(key)));
+			}
+			return copy;
+		}
+		if(value instanceof JSONArray) {
+			JSONArray arr = (JSONArray) value;
+			JSONArray copy = new JSONArray();
+			for(int i = 0; i < arr.length(); i++) {
+				copy.put(copyValue(arr.get(i)));
+			}
+			return copy;
+		}
+		return value;
+	}
+
 	/**
 	 * Copy id and tags
 	 * */
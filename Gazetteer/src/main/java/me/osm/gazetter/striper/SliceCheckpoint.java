@@ -0,0 +1,290 @@
+package me.osm.gazetter.striper;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import me.osm.gazetter.striper.builders.Builder;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Saves builders state after slice runs,
+ * so slice could be resumed after failure.
+ * <p>
+ * Checkpoint is made after each firstRunDone*
+ * and after secondRunDoneWays. Along with builders state,
+ * sizes of already written stripes are saved,
+ * and on resume stripes are truncated back to that sizes.
+ * */
+public class SliceCheckpoint {
+
+	private static final Logger log = LoggerFactory.getLogger(SliceCheckpoint.class);
+
+	public static final String FOLDER = "slice-checkpoint";
+	private static final String STATE = "state";
+
+	public static final int NOTHING_DONE = 0;
+	public static final int FIRST_RUN_RELATIONS = 1;
+	public static final int FIRST_RUN_WAYS = 2;
+	public static final int FIRST_RUN_NODES = 3;
+	public static final int SECOND_RUN_WAYS = 4;
+
+	private static final int BUFFER = 1024 * 1024;
+
+	private final File dataDir;
+	private final File folder;
+	private final File fallback;
+	private final Runnable syncOutput;
+
+	private int restored = NOTHING_DONE;
+	private String[] restoredBuilders;
+
+	/**
+	 * @param fallback boundaries fallback file, it could be null
+	 * @param syncOutput should wait for pending writes and flush
+	 * all stripes writers
+	 * */
+	public SliceCheckpoint(File dataDir, File fallback, Runnable syncOutput) {
+		this.dataDir = dataDir;
+		this.folder = new File(dataDir, FOLDER);
+		this.fallback = fallback;
+		this.syncOutput = syncOutput;
+	}
+
+	public void save(int phase, Builder[] builders) {
+		long start = System.currentTimeMillis();
+		try {
+			folder.mkdirs();
+
+			for(int i = 0; i < builders.length; i++) {
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+						new FileOutputStream(builderFile(phase, i)), BUFFER));
+				try {
+					builders[i].writeState(out);
+				}
+				finally {
+					out.close();
+				}
+			}
+
+			syncOutput.run();
+
+			File tmp = new File(folder, STATE + ".tmp");
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+			try {
+				out.writeInt(phase);
+
+				out.writeInt(builders.length);
+				for(Builder b : builders) {
+					out.writeUTF(b.getClass().getName());
+				}
+
+				Map<String, Long> sizes = outputSizes();
+				out.writeInt(sizes.size());
+				for(Entry<String, Long> entry : sizes.entrySet()) {
+					out.writeUTF(entry.getKey());
+					out.writeLong(entry.getValue());
+				}
+
+				out.writeLong(fallback != null && fallback.exists() ? fallback.length() : -1);
+			}
+			finally {
+				out.close();
+			}
+
+			Files.move(tmp.toPath(), new File(folder, STATE).toPath(),
+					StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+			// states from previous checkpoints
+			for(File f : folder.listFiles()) {
+				if(f.getName().endsWith(".bin") && !f.getName().startsWith(phase + "-")) {
+					f.delete();
+				}
+			}
+		}
+		catch (IOException e) {
+			throw new RuntimeException("Failed to save slice checkpoint", e);
+		}
+
+		log.info("Slice checkpoint {} saved in {} ms", phase, System.currentTimeMillis() - start);
+	}
+
+	/**
+	 * Truncate stripes and boundaries fallback to the sizes
+	 * they had at the last checkpoint.
+	 * Should be called before builders are created.
+	 *
+	 * @return last done phase
+	 * */
+	public int restoreOutput() {
+		File state = new File(folder, STATE);
+		if(!state.exists()) {
+			log.warn("There is no slice checkpoint in {}, slice from the beginning.", folder);
+			return NOTHING_DONE;
+		}
+
+		try {
+			Map<String, Long> sizes = new HashMap<>();
+			long fallbackSize;
+
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(state)));
+			try {
+				restored = in.readInt();
+
+				restoredBuilders = new String[in.readInt()];
+				for(int i = 0; i < restoredBuilders.length; i++) {
+					restoredBuilders[i] = in.readUTF();
+				}
+
+				int n = in.readInt();
+				for(int i = 0; i < n; i++) {
+					String name = in.readUTF();
+					sizes.put(name, in.readLong());
+				}
+
+				fallbackSize = in.readLong();
+			}
+			finally {
+				in.close();
+			}
+
+			for(File f : dataDir.listFiles()) {
+				if(isOutput(f)) {
+					Long size = sizes.get(f.getName());
+					if(size == null) {
+						f.delete();
+					}
+					else {
+						truncate(f, size);
+					}
+				}
+			}
+
+			if(fallback != null && fallback.exists()) {
+				truncate(fallback, Math.max(fallbackSize, 0));
+			}
+		}
+		catch (IOException e) {
+			throw new RuntimeException("Failed to read slice checkpoint", e);
+		}
+
+		log.info("Resume slice from checkpoint {}", restored);
+
+		return restored;
+	}
+
+	/**
+	 * Read builders state saved at the checkpoint
+	 * found by {@link #restoreOutput()}
+	 *
+	 * @return last done phase
+	 * */
+	public int restoreBuilders(Builder[] builders) {
+		if(restored == NOTHING_DONE) {
+			return NOTHING_DONE;
+		}
+
+		if(restoredBuilders.length != builders.length) {
+			throw new IllegalStateException("Slice checkpoint was made for other types of features");
+		}
+
+		try {
+			for(int i = 0; i < builders.length; i++) {
+				if(!restoredBuilders[i].equals(builders[i].getClass().getName())) {
+					throw new IllegalStateException("Slice checkpoint was made for other types of features");
+				}
+
+				DataInputStream in = new DataInputStream(new BufferedInputStream(
+						new FileInputStream(builderFile(restored, i)), BUFFER));
+				try {
+					builders[i].readState(in);
+				}
+				finally {
+					in.close();
+				}
+			}
+		}
+		catch (IOException e) {
+			throw new RuntimeException("Failed to read slice checkpoint", e);
+		}
+
+		return restored;
+	}
+
+	/**
+	 * Remove saved checkpoints
+	 * */
+	public void clear() {
+		try {
+			if(folder.exists()) {
+				FileUtils.deleteDirectory(folder);
+			}
+		}
+		catch (IOException e) {
+			log.warn("Failed to delete {}", folder, e);
+		}
+	}
+
+	/**
+	 * Wait until all submitted tasks are done, without executor shutdown.
+	 * Nobody should submit new tasks meanwhile.
+	 * */
+	public static void awaitTasks(ExecutorService executor) {
+		ThreadPoolExecutor tpe = (ThreadPoolExecutor) executor;
+		try {
+			while(tpe.getCompletedTaskCount() < tpe.getTaskCount()) {
+				Thread.sleep(100);
+			}
+		}
+		catch (InterruptedException e) {
+			throw new RuntimeException("Tasks awaiting was interrupted", e);
+		}
+	}
+
+	private Map<String, Long> outputSizes() {
+		Map<String, Long> sizes = new HashMap<>();
+		for(File f : dataDir.listFiles()) {
+			if(isOutput(f)) {
+				sizes.put(f.getName(), f.length());
+			}
+		}
+		return sizes;
+	}
+
+	private static boolean isOutput(File f) {
+		return f.isFile() && (f.getName().startsWith("stripe") || f.getName().startsWith("binx"));
+	}
+
+	private static void truncate(File f, long size) throws IOException {
+		if(f.length() > size) {
+			RandomAccessFile raf = new RandomAccessFile(f, "rw");
+			try {
+				raf.setLength(size);
+			}
+			finally {
+				raf.close();
+			}
+		}
+	}
+
+	private File builderFile(int phase, int i) {
+		return new File(folder, phase + "-" + i + ".bin");
+	}
+
+}
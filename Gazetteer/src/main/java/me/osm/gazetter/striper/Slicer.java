@@ -19,6 +19,7 @@ import java.util.concurrent.TimeUnit;
 import me.osm.gazetter.Options;
 import me.osm.gazetter.dao.FileWriteDao;
 import me.osm.gazetter.dao.WriteDao;
+import me.osm.gazetter.striper.GeoJsonWriter.FeatureTemplate;
 import me.osm.gazetter.striper.builders.AddrPointsBuilder;
 import me.osm.gazetter.striper.builders.BoundariesBuilder;
 import me.osm.gazetter.striper.builders.Builder;
@@ -37,6 +38,7 @@ import me.osm.gazetter.striper.readers.WaysReader.Way;
 import me.osm.gazetter.utils.GeometryUtils;
 import me.osm.gazetter.utils.HilbertCurveHasher;
 
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.apache.commons.lang3.time.DurationFormatUtils;
 import org.json.JSONArray;
@@ -72,8 +74,20 @@ public class Slicer implements BoundariesHandler,
 	private static String FILE_MASK = "%0" + chars + "d";
 	
 	private WriteDao writeDAO;
+	
+	private static final ThreadLocal<StringBuilder> buffers = new ThreadLocal<StringBuilder>() {
+		@Override
+		protected StringBuilder initialValue() {
+			return new StringBuilder(1024);
+		}
+	};
 	private String osmSlicesPath;
 	
+	private boolean checkpoints = false;
+	private boolean resume = false;
+	
+	private boolean hilbertSort = false;
+	
 	public static final List<String> sliceTypes = Arrays.asList(
 			"all", "boundaries", "places", "highways", "addresses", "pois"
 	);
@@ -98,10 +112,40 @@ public class Slicer implements BoundariesHandler,
 		FILE_MASK = "%0" + chars + "d";
 	}
 	
+	/**
+	 * Save builders state after each run, to be able to resume
+	 * failed slice.
+	 * 
+	 * @param resume start from the last saved checkpoint
+	 * */
+	public void setCheckpoints(boolean checkpoints, boolean resume) {
+		this.checkpoints = checkpoints || resume;
+		this.resume = resume;
+	}
+	
+	/**
+	 * Sort stripes along Hilbert curve after slice
+	 * */
+	public void setHilbertSort(boolean hilbertSort) {
+		this.hilbertSort = hilbertSort;
+	}
+	
 	public void run(String poiCatalogPath, List<String> types, List<String> exclude, 
 			List<String> named, List<String> dropList, String boundariesFallbackIndex, 
 			List<String> boundariesFallbackTypes, boolean x10) {
 		
+		run(poiCatalogPath, types, exclude, named, dropList, boundariesFallbackIndex, 
+				boundariesFallbackTypes, x10, false);
+	}
+	
+	/**
+	 * @param binary read elements from binary files written by split-slice
+	 * instead of osm files
+	 * */
+	public void run(String poiCatalogPath, List<String> types, List<String> exclude, 
+			List<String> named, List<String> dropList, String boundariesFallbackIndex, 
+			List<String> boundariesFallbackTypes, boolean x10, boolean binary) {
+		
 		long start = new Date().getTime(); 
 
 		try {
@@ -114,6 +158,17 @@ public class Slicer implements BoundariesHandler,
 			
 			HashSet<String> drop = new HashSet<String>(dropList);
 			
+			SliceCheckpoint checkpoint = null;
+			if(checkpoints) {
+				checkpoint = createCheckpoint(boundariesFallbackIndex, boundariesFallbackTypes);
+				if(resume) {
+					checkpoint.restoreOutput();
+				}
+				else {
+					checkpoint.clear();
+				}
+			}
+			
 			List<Builder> builders = new ArrayList<>();
 			
 			Set<String> typesSet = new HashSet<String>(types);
@@ -142,15 +197,45 @@ public class Slicer implements BoundariesHandler,
 			
 			
 			Builder[] buildersArray = builders.toArray(new Builder[builders.size()]);
-			new Engine().filter(drop, osmSlicesPath, buildersArray);
+			if(binary) {
+				new Engine(checkpoint).filterBinary(drop, osmSlicesPath, buildersArray);
+			}
+			else {
+				new Engine(checkpoint).filter(drop, osmSlicesPath, buildersArray);
+			}
+			
+			if(checkpoint != null) {
+				checkpoint.clear();
+			}
 		}
 		finally {
 			writeDAO.close();
 		}
 		
+		if(hilbertSort) {
+			HilbertSortTask.sortStripes(new File(osmSlicesPath), Options.get().getNumberOfThreads());
+		}
+		
 		log.info("Slice done in {}", DurationFormatUtils.formatDurationHMS(new Date().getTime() - start));
 	}
 
+	private SliceCheckpoint createCheckpoint(final String boundariesFallbackIndex,
+			final List<String> boundariesFallbackTypes) {
+		
+		File fallback = StringUtils.isBlank(boundariesFallbackIndex) ? null : new File(boundariesFallbackIndex);
+		
+		return new SliceCheckpoint(new File(osmSlicesPath), fallback, new Runnable() {
+			
+			@Override
+			public void run() {
+				SliceCheckpoint.awaitTasks(executorService);
+				writeDAO.close();
+				BoundariesFallbacker.getInstance(boundariesFallbackIndex, boundariesFallbackTypes).flush();
+			}
+			
+		});
+	}
+
 	private static class SliceTask implements Runnable {
 
 		private MultiPolygon multiPolygon;
@@ -222,11 +307,15 @@ public class Slicer implements BoundariesHandler,
 			}
 			
 			
-			for(Polygon p : polygons) {
-				String n = getFilePrefix(p.getEnvelope().getCentroid().getX());
-				featureWithoutGeometry.put(GeoJsonWriter.GEOMETRY, GeoJsonWriter.geometryToJSON(p));
-				String geoJSONString = featureWithoutGeometry.toString();
-				writeOut(geoJSONString, n);
+			if(!polygons.isEmpty()) {
+				// properties and meta are the same for all parts, serialize them once
+				FeatureTemplate template = new FeatureTemplate(featureWithoutGeometry);
+				for(Polygon p : polygons) {
+					String n = getFilePrefix(p.getEnvelope().getCentroid().getX());
+					StringBuilder sb = buffer();
+					template.append(sb, p);
+					writeOut(sb, n);
+				}
 			}
 		}
 	}
@@ -264,6 +353,25 @@ public class Slicer implements BoundariesHandler,
 		}
 	}
 
+	private void writeOut(StringBuilder line, String n) {
+		
+		String fileName = "stripe" + n + ".gjson";
+		try {
+			writeDAO.write(line, fileName);
+		} catch (IOException e) {
+			throw new RuntimeException("Couldn't write out " + fileName, e);
+		}
+	}
+	
+	/**
+	 * @return cleared buffer of the current thread
+	 * */
+	private static StringBuilder buffer() {
+		StringBuilder sb = buffers.get();
+		sb.setLength(0);
+		return sb;
+	}
+
 	private static void stripe(Polygon p, List<Polygon> result) {
 		Polygon bbox = (Polygon) p.getEnvelope();
 		
@@ -370,15 +478,16 @@ public class Slicer implements BoundariesHandler,
 		String id = GeoJsonWriter.getId(FeatureTypes.ADDR_POINT_FTYPE, point, meta);
 		String n = getFilePrefix(point.getX());
 		
-		String geoJSONString = GeoJsonWriter.featureAsGeoJSON(id, FeatureTypes.ADDR_POINT_FTYPE, attributes, point, meta);
+		StringBuilder geoJSON = buffer();
+		GeoJsonWriter.appendFeature(geoJSON, id, FeatureTypes.ADDR_POINT_FTYPE, attributes, point, meta);
 		
-		assert GeoJsonWriter.getId(geoJSONString).equals(id) 
-			: "Failed getId for " + geoJSONString;
+		assert GeoJsonWriter.getId(geoJSON.toString()).equals(id) 
+			: "Failed getId for " + geoJSON;
 		
-		assert GeoJsonWriter.getFtype(geoJSONString).equals(FeatureTypes.ADDR_POINT_FTYPE) 
-			: "Failed getFtype for " + geoJSONString;
+		assert GeoJsonWriter.getFtype(geoJSON.toString()).equals(FeatureTypes.ADDR_POINT_FTYPE) 
+			: "Failed getFtype for " + geoJSON;
 		
-		writeOut(geoJSONString, n);
+		writeOut(geoJSON, n);
 	}
 
 	public static String getFilePrefix(double x) {
@@ -390,15 +499,17 @@ public class Slicer implements BoundariesHandler,
 			JSONObject meta) {
 		String fid = GeoJsonWriter.getId(FeatureTypes.PLACE_POINT_FTYPE, pnt, meta);
 		String n = getFilePrefix(pnt.getX());
-		String geoJSONString = GeoJsonWriter.featureAsGeoJSON(fid, FeatureTypes.PLACE_POINT_FTYPE, tags, pnt, meta);
 		
-		assert GeoJsonWriter.getId(geoJSONString).equals(fid) 
-			: "Failed getId for " + geoJSONString;
+		StringBuilder geoJSON = buffer();
+		GeoJsonWriter.appendFeature(geoJSON, fid, FeatureTypes.PLACE_POINT_FTYPE, tags, pnt, meta);
+		
+		assert GeoJsonWriter.getId(geoJSON.toString()).equals(fid) 
+			: "Failed getId for " + geoJSON;
 
-		assert GeoJsonWriter.getFtype(geoJSONString).equals(FeatureTypes.PLACE_POINT_FTYPE) 
-			: "Failed getFtype for " + geoJSONString;
+		assert GeoJsonWriter.getFtype(geoJSON.toString()).equals(FeatureTypes.PLACE_POINT_FTYPE) 
+			: "Failed getFtype for " + geoJSON;
 		
-		writeOut(geoJSONString, n);
+		writeOut(geoJSON, n);
 	}
 
 	@Override
@@ -413,21 +524,17 @@ public class Slicer implements BoundariesHandler,
 			String fid = GeoJsonWriter.getId(FeatureTypes.JUNCTION_FTYPE, pnt, meta);
 			String n = getFilePrefix(pnt.getX());
 			
-			@SuppressWarnings("unchecked")
-			JSONObject r = GeoJsonWriter.createFeature(fid, FeatureTypes.JUNCTION_FTYPE, Collections.EMPTY_MAP, pnt, meta);
+			StringBuilder geoJSON = buffer();
+			GeoJsonWriter.appendFeature(geoJSON, fid, FeatureTypes.JUNCTION_FTYPE, 
+					Collections.<String, String>emptyMap(), pnt, meta, "ways", new JSONArray(highways));
 			
-			r.put("ways", new JSONArray(highways));
-			GeoJsonWriter.addTimestamp(r);
+			assert GeoJsonWriter.getId(geoJSON.toString()).equals(fid) 
+			: "Failed getId for " + geoJSON;
 			
-			String geoJSONString = r.toString();
-			
-			assert GeoJsonWriter.getId(geoJSONString).equals(fid) 
-			: "Failed getId for " + geoJSONString;
+			assert GeoJsonWriter.getFtype(geoJSON.toString()).equals(FeatureTypes.JUNCTION_FTYPE) 
+			: "Failed getFtype for " + geoJSON;
 			
-			assert GeoJsonWriter.getFtype(geoJSONString).equals(FeatureTypes.JUNCTION_FTYPE) 
-			: "Failed getFtype for " + geoJSONString;
-			
-			writeOut(geoJSONString, n);
+			writeOut(geoJSON, n);
 		}
 	}
 
@@ -449,23 +556,27 @@ public class Slicer implements BoundariesHandler,
 		
 		String fid = GeoJsonWriter.getId(FeatureTypes.HIGHWAY_FEATURE_TYPE, centroid, meta);
 		meta.put(GeoJsonWriter.FULL_GEOMETRY, GeoJsonWriter.geometryToJSON(geometry));
-		String geoJSONString = GeoJsonWriter.featureAsGeoJSON(fid, FeatureTypes.HIGHWAY_FEATURE_TYPE, way.tags, geometry, meta);
 		
-		assert GeoJsonWriter.getId(geoJSONString).equals(fid) 
-			: "Failed getId for " + geoJSONString;
-	
-		assert GeoJsonWriter.getFtype(geoJSONString).equals(FeatureTypes.HIGHWAY_FEATURE_TYPE) 
-			: "Failed getFtype for " + geoJSONString;
-		
-		if(min == max) {
-			String n = getFilePrefix(centroid.getX());
-			writeOut(geoJSONString, n);
-		}
-		else if(max - min == 1) {
-			//it's faster to write geometry as is in such case.
-			for(int i = min; i <= max; i++) {
-				String n = String.format(FILE_MASK, i); 
-				writeOut(geoJSONString, n);
+		if(max - min <= 1) {
+			StringBuilder geoJSON = buffer();
+			GeoJsonWriter.appendFeature(geoJSON, fid, FeatureTypes.HIGHWAY_FEATURE_TYPE, way.tags, geometry, meta);
+			
+			assert GeoJsonWriter.getId(geoJSON.toString()).equals(fid) 
+				: "Failed getId for " + geoJSON;
+			
+			assert GeoJsonWriter.getFtype(geoJSON.toString()).equals(FeatureTypes.HIGHWAY_FEATURE_TYPE) 
+				: "Failed getFtype for " + geoJSON;
+			
+			if(min == max) {
+				String n = getFilePrefix(centroid.getX());
+				writeOut(geoJSON, n);
+			}
+			else {
+				//it's faster to write geometry as is in such case.
+				for(int i = min; i <= max; i++) {
+					String n = String.format(FILE_MASK, i); 
+					writeOut(geoJSON, n);
+				}
 			}
 		}
 		else {
@@ -474,15 +585,16 @@ public class Slicer implements BoundariesHandler,
 
 				for(LineString stripe : segments) {
 					String n = getFilePrefix(stripe.getCentroid().getX());
-					String featureAsGeoJSON = GeoJsonWriter.featureAsGeoJSON(fid, FeatureTypes.HIGHWAY_FEATURE_TYPE, way.tags, stripe, meta);
+					StringBuilder geoJSON = buffer();
+					GeoJsonWriter.appendFeature(geoJSON, fid, FeatureTypes.HIGHWAY_FEATURE_TYPE, way.tags, stripe, meta);
 					
-					assert GeoJsonWriter.getId(featureAsGeoJSON).equals(fid) 
-					: "Failed getId for " + featureAsGeoJSON;
+					assert GeoJsonWriter.getId(geoJSON.toString()).equals(fid) 
+					: "Failed getId for " + geoJSON;
 					
-					assert GeoJsonWriter.getFtype(featureAsGeoJSON).equals(FeatureTypes.HIGHWAY_FEATURE_TYPE) 
-					: "Failed getFtype for " + featureAsGeoJSON;
+					assert GeoJsonWriter.getFtype(geoJSON.toString()).equals(FeatureTypes.HIGHWAY_FEATURE_TYPE) 
+					: "Failed getFtype for " + geoJSON;
 					
-					writeOut(featureAsGeoJSON, n);
+					writeOut(geoJSON, n);
 				}
 			}
 			catch (Throwable e) {
@@ -498,18 +610,17 @@ public class Slicer implements BoundariesHandler,
 		String id = GeoJsonWriter.getId(FeatureTypes.POI_FTYPE, point, meta);
 		String n = getFilePrefix(point.getX());
 		
-		JSONObject feature = GeoJsonWriter.createFeature(id, FeatureTypes.POI_FTYPE, attributes, point, meta);
-		feature.put("poiTypes", new JSONArray(types));
-		
-		String geoJSONString = feature.toString();
+		StringBuilder geoJSON = buffer();
+		GeoJsonWriter.appendFeature(geoJSON, id, FeatureTypes.POI_FTYPE, attributes, point, meta, 
+				"poiTypes", new JSONArray(types));
 		
-		assert GeoJsonWriter.getId(geoJSONString).equals(id) 
-			: "Failed getId for " + geoJSONString;
+		assert GeoJsonWriter.getId(geoJSON.toString()).equals(id) 
+			: "Failed getId for " + geoJSON;
 		
-		assert GeoJsonWriter.getFtype(geoJSONString).equals(FeatureTypes.POI_FTYPE) 
-			: "Failed getFtype for " + geoJSONString;
+		assert GeoJsonWriter.getFtype(geoJSON.toString()).equals(FeatureTypes.POI_FTYPE) 
+			: "Failed getFtype for " + geoJSON;
 		
-		writeOut(geoJSONString, n);
+		writeOut(geoJSON, n);
 	}
 
 	@Override
@@ -2,6 +2,11 @@ package me.osm.gazetter.striper.builders;
 
 import gnu.trove.list.TLongList;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
 
 public abstract class ABuilder implements Builder {
 	
@@ -86,6 +91,36 @@ public abstract class ABuilder implements Builder {
 //		return null;
 //	}
 	
+	protected static void writeLongs(DataOutput out, TLongList list) throws IOException {
+		out.writeInt(list.size());
+		for(int i = 0; i < list.size(); i++) {
+			out.writeLong(list.get(i));
+		}
+	}
+
+	protected static void readLongs(DataInput in, TLongList list) throws IOException {
+		int size = in.readInt();
+		for(int i = 0; i < size; i++) {
+			list.add(in.readLong());
+		}
+	}
+	
+	/**
+	 * Unlike {@link DataOutput#writeUTF(String)}, 
+	 * it isn't limited by 64Kb 
+	 * */
+	protected static void writeString(DataOutput out, String s) throws IOException {
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	protected static String readString(DataInput in) throws IOException {
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+	
 	public String getThreadPoolUser() {
 		return this.getClass().getName();
 	}
@@ -3,6 +3,9 @@ package me.osm.gazetter.striper.builders;
 import gnu.trove.list.TLongList;
 import gnu.trove.list.array.TLongArrayList;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -10,6 +13,7 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 
 import me.osm.gazetter.striper.GeoJsonWriter;
 import me.osm.gazetter.striper.builders.handlers.AddrPointHandler;
@@ -568,5 +572,46 @@ public class AddrPointsBuilder extends ABuilder {
 	public void secondRunDoneRelations() {
 		handler.freeThreadPool(getThreadPoolUser());
 	}
+
+	@Override
+	public void writeState(DataOutput out) throws IOException {
+		way2relation.write(out);
+		node2way.write(out);
+		nodeInterpolation.write(out);
+		
+		out.writeInt(interpolation2Street.size());
+		for(Entry<Long, String> entry : interpolation2Street.entrySet()) {
+			out.writeLong(entry.getKey());
+			out.writeUTF(entry.getValue());
+		}
+		
+		writeLongs(out, writedAddrNodes);
+		
+		out.writeBoolean(indexFilled);
+		out.writeBoolean(orderedByway);
+		out.writeBoolean(byRealtionOrdered);
+	}
+
+	@Override
+	public void readState(DataInput in) throws IOException {
+		way2relation.read(in);
+		node2way.read(in);
+		nodeInterpolation.read(in);
+		
+		int streets = in.readInt();
+		for(int i = 0; i < streets; i++) {
+			long way = in.readLong();
+			interpolation2Street.put(way, in.readUTF());
+		}
+		
+		readLongs(in, writedAddrNodes);
+		
+		indexFilled = in.readBoolean();
+		orderedByway = in.readBoolean();
+		byRealtionOrdered = in.readBoolean();
+		
+		// checkpoints are made after firstRunDoneRelations
+		handler.newThreadpoolUser(getThreadPoolUser());
+	}
 	
 }
@@ -1,5 +1,9 @@
 package me.osm.gazetter.striper.builders;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 public class BBOX {
 	double minX = Double.NaN;
 	double minY = Double.NaN;
@@ -26,4 +30,18 @@ public class BBOX {
 	public double getDX() {
 		return maxX - minX;
 	}
+	
+	public void write(DataOutput out) throws IOException {
+		out.writeDouble(minX);
+		out.writeDouble(minY);
+		out.writeDouble(maxX);
+		out.writeDouble(maxY);
+	}
+
+	public void read(DataInput in) throws IOException {
+		minX = in.readDouble();
+		minY = in.readDouble();
+		maxX = in.readDouble();
+		maxY = in.readDouble();
+	}
 }
\ No newline at end of file
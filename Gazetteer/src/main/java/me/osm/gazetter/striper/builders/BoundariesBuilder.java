@@ -1,5 +1,8 @@
 package me.osm.gazetter.striper.builders;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -385,6 +388,31 @@ public class BoundariesBuilder extends ABuilder {
 		}
 	}
 	
+	@Override
+	public void writeState(DataOutput out) throws IOException {
+		way2relation.write(out);
+		node2way.write(out);
+		
+		out.writeBoolean(byMemberOrdered);
+		out.writeBoolean(byNodeOrdered);
+		out.writeBoolean(byWayOrdered);
+		out.writeBoolean(indexFilled);
+	}
+
+	@Override
+	public void readState(DataInput in) throws IOException {
+		way2relation.read(in);
+		node2way.read(in);
+		
+		byMemberOrdered = in.readBoolean();
+		byNodeOrdered = in.readBoolean();
+		byWayOrdered = in.readBoolean();
+		indexFilled = in.readBoolean();
+		
+		// checkpoints are made after firstRunDoneRelations
+		handler.newThreadpoolUser(getThreadPoolUser());
+	}
+	
 	private void saveBoundary(JSONObject feature,
 			MultiPolygon geometry) {
 		if(fallback != null) {
@@ -1,5 +1,8 @@
 package me.osm.gazetter.striper.builders;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.Comparator;
 
@@ -48,4 +51,19 @@ public interface Builder extends RelationsHandler, WaysHandler, PointsHandler {
 	public void firstRunDoneWays();
 	public void firstRunDoneRelations();
 	
+	/**
+	 * Write indexes and flags, so slice could be resumed 
+	 * from this point. 
+	 * 
+	 * Called after firstRunDone* and secondRunDoneWays 
+	 * if slice checkpoints are enabled.
+	 * */
+	public void writeState(DataOutput out) throws IOException;
+
+	/**
+	 * Restore state written by {@link #writeState(DataOutput)}
+	 * instead of reading already passed data again.
+	 * */
+	public void readState(DataInput in) throws IOException;
+	
 }
\ No newline at end of file
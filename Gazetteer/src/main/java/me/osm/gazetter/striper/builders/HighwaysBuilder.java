@@ -1,8 +1,12 @@
 package me.osm.gazetter.striper.builders;
 
+import gnu.trove.iterator.TLongIntIterator;
 import gnu.trove.map.TLongIntMap;
 import gnu.trove.map.hash.TLongIntHashMap;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -14,6 +18,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 import me.osm.gazetter.Options;
+import me.osm.gazetter.striper.SliceCheckpoint;
 import me.osm.gazetter.striper.builders.handlers.HighwaysHandler;
 import me.osm.gazetter.striper.builders.handlers.JunctionsHandler;
 import me.osm.gazetter.striper.readers.PointsReader.Node;
@@ -288,6 +293,46 @@ public class HighwaysBuilder extends ABuilder implements HighwaysHandler {
 
 	}
 
+	@Override
+	public void writeState(DataOutput out) throws IOException {
+		// highways from the second ways run are built asynchronously
+		SliceCheckpoint.awaitTasks(executorService);
+		
+		node2way.write(out);
+		
+		out.writeInt(w2n.size());
+		for(TLongIntIterator i = w2n.iterator(); i.hasNext();) {
+			i.advance();
+			out.writeLong(i.key());
+			out.writeInt(i.value());
+		}
+		
+		out.writeBoolean(indexFilled);
+		out.writeBoolean(byWayOrdered);
+		out.writeBoolean(doneReadNodes);
+	}
+
+	@Override
+	public void readState(DataInput in) throws IOException {
+		node2way.read(in);
+		
+		int size = in.readInt();
+		for(int i = 0; i < size; i++) {
+			long way = in.readLong();
+			w2n.put(way, in.readInt());
+		}
+		
+		indexFilled = in.readBoolean();
+		byWayOrdered = in.readBoolean();
+		doneReadNodes = in.readBoolean();
+		
+		if(indexFilled) {
+			// same as in firstRunDoneWays
+			this.highwaysHandler.newThreadpoolUser(getThreadPoolUser());
+			this.junctionsHandler.newThreadpoolUser(getThreadPoolUser());
+		}
+	}
+
 	@Override
 	public void freeThreadPool(String user) {
 		//do nothing
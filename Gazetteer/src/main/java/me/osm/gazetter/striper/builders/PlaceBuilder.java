@@ -1,5 +1,8 @@
 package me.osm.gazetter.striper.builders;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -493,6 +496,62 @@ public class PlaceBuilder extends BoundariesBuilder {
 		this.handler.newThreadpoolUser(getThreadPoolUser());
 	}
 
+	@Override
+	public void writeState(DataOutput out) throws IOException {
+		super.writeState(out);
+		
+		writePlaces(out, cityes);
+		writePlaces(out, neighbours);
+		
+		originalBBOX.write(out);
+		translatedBBOX.write(out);
+		out.writeBoolean(weAreInRussia);
+		
+		out.writeInt(files.size());
+		for(String f : files) {
+			out.writeUTF(f);
+		}
+	}
+
+	@Override
+	public void readState(DataInput in) throws IOException {
+		super.readState(in);
+		
+		readPlaces(in, cityes);
+		for(Entry<Coordinate, JSONObject> entry : cityes.entrySet()) {
+			cityesIndex.insert(new Envelope(entry.getKey()), entry.getValue());
+		}
+		readPlaces(in, neighbours);
+		
+		originalBBOX.read(in);
+		translatedBBOX.read(in);
+		weAreInRussia = in.readBoolean();
+		
+		int n = in.readInt();
+		for(int i = 0; i < n; i++) {
+			files.add(in.readUTF());
+		}
+		
+		this.handler.newThreadpoolUser(getThreadPoolUser());
+	}
+
+	private static void writePlaces(DataOutput out, Map<Coordinate, JSONObject> places) throws IOException {
+		out.writeInt(places.size());
+		for(Entry<Coordinate, JSONObject> entry : places.entrySet()) {
+			out.writeDouble(entry.getKey().x);
+			out.writeDouble(entry.getKey().y);
+			writeString(out, entry.getValue().toString());
+		}
+	}
+
+	private static void readPlaces(DataInput in, Map<Coordinate, JSONObject> places) throws IOException {
+		int n = in.readInt();
+		for(int i = 0; i < n; i++) {
+			Coordinate c = new Coordinate(in.readDouble(), in.readDouble());
+			places.put(c, new JSONFeature(readString(in)));
+		}
+	}
+
 	@SuppressWarnings("unchecked")
 	private void mergeWithCenter(JSONObject featureWithoutGeometry,
 			MultiPolygon geometry) {
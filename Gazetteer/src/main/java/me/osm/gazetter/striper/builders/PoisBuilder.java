@@ -3,6 +3,9 @@ package me.osm.gazetter.striper.builders;
 import gnu.trove.list.TLongList;
 import gnu.trove.list.array.TLongArrayList;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -415,4 +418,29 @@ public class PoisBuilder extends ABuilder {
 		handler.freeThreadPool(getThreadPoolUser());
 	}
 
+	@Override
+	public void writeState(DataOutput out) throws IOException {
+		way2relation.write(out);
+		node2way.write(out);
+		writeLongs(out, writedAddrNodes);
+		
+		out.writeBoolean(indexFilled);
+		out.writeBoolean(orderedByway);
+		out.writeBoolean(byRealtionOrdered);
+	}
+
+	@Override
+	public void readState(DataInput in) throws IOException {
+		way2relation.read(in);
+		node2way.read(in);
+		readLongs(in, writedAddrNodes);
+		
+		indexFilled = in.readBoolean();
+		orderedByway = in.readBoolean();
+		byRealtionOrdered = in.readBoolean();
+		
+		// checkpoints are made after firstRunDoneRelations
+		handler.newThreadpoolUser(getThreadPoolUser());
+	}
+
 }
@@ -0,0 +1,261 @@
+package me.osm.gazetter.striper.readers;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.sql.Timestamp;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import me.osm.gazetter.metrics.Counter;
+import me.osm.gazetter.metrics.Metrics;
+import me.osm.gazetter.striper.readers.PointsReader.Node;
+import me.osm.gazetter.striper.readers.PointsReader.PointsHandler;
+import me.osm.gazetter.striper.readers.RelationsReader.Relation;
+import me.osm.gazetter.striper.readers.RelationsReader.Relation.RelationMember;
+import me.osm.gazetter.striper.readers.RelationsReader.Relation.RelationMember.ReferenceType;
+import me.osm.gazetter.striper.readers.RelationsReader.RelationsHandler;
+import me.osm.gazetter.striper.readers.WaysReader.Way;
+import me.osm.gazetter.striper.readers.WaysReader.WaysHandler;
+
+/**
+ * Binary format for splitted nodes, ways and relations.
+ * <p>
+ * It's an alternative for nodes.osm, ways.osm and rels.osm,
+ * which is written without XML formatting and read
+ * without XML parsing. Readers pass to handlers the same objects
+ * (with the same order of tags) as XML readers do.
+ * */
+public class BinaryElements {
+
+	public static final String NODES = "nodes.bin";
+	public static final String WAYS = "ways.bin";
+	public static final String RELATIONS = "rels.bin";
+
+	private static final byte RECORD = 1;
+	private static final byte END = 0;
+
+	private static final int BUFFER = 1024 * 64;
+
+	private static final Counter nodesCounter = Metrics.counter("reader.binary.nodes");
+	private static final Counter waysCounter = Metrics.counter("reader.binary.ways");
+	private static final Counter relationsCounter = Metrics.counter("reader.binary.relations");
+
+	/**
+	 * Writer for one type of elements.
+	 * */
+	public static final class Writer {
+
+		private final DataOutputStream out;
+
+		public Writer(File file) throws IOException {
+			OutputStream os = new FileOutputStream(file);
+			if(file.getName().endsWith(".gz")) {
+				os = new GZIPOutputStream(os, BUFFER);
+			}
+			this.out = new DataOutputStream(new BufferedOutputStream(os, BUFFER));
+		}
+
+		/**
+		 * @param timestamp node timestamp in millis, or {@link Long#MIN_VALUE}
+		 * if it is unknown
+		 * */
+		public void write(Node node, long timestamp) throws IOException {
+			out.writeByte(RECORD);
+			out.writeLong(node.id);
+			out.writeDouble(node.lon);
+			out.writeDouble(node.lat);
+			out.writeLong(timestamp);
+			writeTags(node.tags);
+		}
+
+		public void write(Way way) throws IOException {
+			out.writeByte(RECORD);
+			out.writeLong(way.id);
+			out.writeInt(way.nodes.size());
+			for(Long n : way.nodes) {
+				out.writeLong(n);
+			}
+			writeTags(way.tags);
+		}
+
+		public void write(Relation rel) throws IOException {
+			out.writeByte(RECORD);
+			out.writeLong(rel.id);
+			out.writeInt(rel.members.size());
+			for(RelationMember m : rel.members) {
+				out.writeByte(m.type.ordinal());
+				out.writeLong(m.ref);
+				out.writeBoolean(m.role != null);
+				if(m.role != null) {
+					out.writeUTF(m.role);
+				}
+			}
+			writeTags(rel.tags);
+		}
+
+		private void writeTags(Map<String, String> tags) throws IOException {
+			out.writeInt(tags.size());
+			for(Entry<String, String> tag : tags.entrySet()) {
+				out.writeUTF(tag.getKey());
+				out.writeUTF(tag.getValue());
+			}
+		}
+
+		public void close() throws IOException {
+			out.writeByte(END);
+			out.flush();
+			out.close();
+		}
+	}
+
+	/**
+	 * Read nodes and pass them to handlers
+	 *
+	 * @return the youngest node timestamp
+	 * */
+	public static Timestamp readNodes(File file, HashSet<String> drop,
+			PointsHandler... handlers) throws IOException {
+
+		Timestamp lastNodeTimestamp = null;
+
+		long count = 0;
+		DataInputStream in = open(file);
+		try {
+			while(in.readByte() == RECORD) {
+				count++;
+				Node node = new Node();
+				node.id = in.readLong();
+				node.lon = in.readDouble();
+				node.lat = in.readDouble();
+
+				long timestamp = in.readLong();
+				if(timestamp != Long.MIN_VALUE
+						&& (lastNodeTimestamp == null || timestamp > lastNodeTimestamp.getTime())) {
+					lastNodeTimestamp = new Timestamp(timestamp);
+				}
+
+				readTags(in, node.tags);
+
+				if(drop.isEmpty() || !drop.contains("n" + node.id)) {
+					for(PointsHandler handler : handlers) {
+						handler.handle(node);
+					}
+				}
+			}
+		}
+		catch (EOFException e) {
+			throw new IOException("Unexpected end of " + file, e);
+		}
+		finally {
+			nodesCounter.add(count);
+			in.close();
+		}
+
+		return lastNodeTimestamp;
+	}
+
+	public static void readWays(File file, HashSet<String> drop,
+			WaysHandler... handlers) throws IOException {
+
+		long count = 0;
+		DataInputStream in = open(file);
+		try {
+			while(in.readByte() == RECORD) {
+				count++;
+				Way way = new Way();
+				way.id = in.readLong();
+
+				int n = in.readInt();
+				for(int i = 0; i < n; i++) {
+					way.nodes.add(in.readLong());
+				}
+
+				readTags(in, way.tags);
+
+				if(drop.isEmpty() || !drop.contains("w" + way.id)) {
+					for(WaysHandler handler : handlers) {
+						handler.handle(way);
+					}
+				}
+			}
+		}
+		catch (EOFException e) {
+			throw new IOException("Unexpected end of " + file, e);
+		}
+		finally {
+			waysCounter.add(count);
+			in.close();
+		}
+	}
+
+	public static void readRelations(File file, HashSet<String> drop,
+			RelationsHandler... handlers) throws IOException {
+
+		ReferenceType[] types = ReferenceType.values();
+
+		long count = 0;
+		DataInputStream in = open(file);
+		try {
+			while(in.readByte() == RECORD) {
+				count++;
+				Relation rel = new Relation();
+				rel.id = in.readLong();
+
+				int n = in.readInt();
+				for(int i = 0; i < n; i++) {
+					RelationMember m = new RelationMember();
+					m.type = types[in.readByte()];
+					m.ref = in.readLong();
+					if(in.readBoolean()) {
+						m.role = in.readUTF();
+					}
+					rel.members.add(m);
+				}
+
+				readTags(in, rel.tags);
+
+				if(drop.isEmpty() || !drop.contains("r" + rel.id)) {
+					for(RelationsHandler handler : handlers) {
+						handler.handle(rel);
+					}
+				}
+			}
+		}
+		catch (EOFException e) {
+			throw new IOException("Unexpected end of " + file, e);
+		}
+		finally {
+			relationsCounter.add(count);
+			in.close();
+		}
+	}
+
+	private static void readTags(DataInputStream in, Map<String, String> tags) throws IOException {
+		int n = in.readInt();
+		for(int i = 0; i < n; i++) {
+			String k = in.readUTF();
+			tags.put(k, in.readUTF());
+		}
+	}
+
+	private static DataInputStream open(File file) throws IOException {
+		InputStream is = new FileInputStream(file);
+		if(file.getName().endsWith(".gz")) {
+			is = new GZIPInputStream(is, BUFFER);
+		}
+		return new DataInputStream(new BufferedInputStream(is, BUFFER));
+	}
+
+}
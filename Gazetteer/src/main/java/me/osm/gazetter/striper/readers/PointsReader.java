@@ -9,6 +9,10 @@ import java.util.Map;
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
 
+import me.osm.gazetter.metrics.Counter;
+import me.osm.gazetter.metrics.Metrics;
+import me.osm.gazetter.metrics.Timer;
+
 import org.apache.commons.lang3.StringUtils;
 import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
@@ -16,7 +20,11 @@ import org.xml.sax.helpers.DefaultHandler;
 
 public class PointsReader extends DefaultHandler {
 
+	private static final Counter elements = Metrics.counter("reader.xml.nodes");
+	private static final Timer readTimer = Metrics.timer("reader.xml.nodes");
+
 	private PointsHandler[] handlers;
+	private long count = 0;
 	private HashSet<String> drop;
 	
 	private Timestamp lastNodeTimestamp = null;
@@ -43,6 +51,8 @@ public class PointsReader extends DefaultHandler {
 	public void read(InputStream is, PointsHandler... handlers) {
 		
 		this.handlers = handlers;
+		this.count = 0;
+		long start = readTimer.start();
 		
 		try {
 			SAXParser saxParser = SAXParserFactory.newInstance().newSAXParser();
@@ -51,6 +61,10 @@ public class PointsReader extends DefaultHandler {
 		} catch (Exception e) {
 			throw new RuntimeException("Parsing failed for: " + is, e);
 		}
+		finally {
+			elements.add(count);
+			readTimer.stop(start);
+		}
 	}
 	
 	@Override
@@ -77,6 +91,7 @@ public class PointsReader extends DefaultHandler {
 	public void endElement(String uri, String localName, String qName)
 			throws SAXException {
 		if(qName.equals("node")) {
+			count++;
 			if(!drop(this.node)) {
 				for(PointsHandler handler : handlers) {
 					handler.handle(this.node);
@@ -10,6 +10,9 @@ import java.util.Map;
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
 
+import me.osm.gazetter.metrics.Counter;
+import me.osm.gazetter.metrics.Metrics;
+import me.osm.gazetter.metrics.Timer;
 import me.osm.gazetter.striper.readers.RelationsReader.Relation.RelationMember;
 import me.osm.gazetter.striper.readers.RelationsReader.Relation.RelationMember.ReferenceType;
 
@@ -20,7 +23,11 @@ import org.xml.sax.helpers.DefaultHandler;
 public class RelationsReader extends DefaultHandler {
 
 	private static final String TAG_NAME = "relation";
+	private static final Counter elements = Metrics.counter("reader.xml.relations");
+	private static final Timer readTimer = Metrics.timer("reader.xml.relations");
+
 	private RelationsHandler[] handlers;
+	private long count = 0;
 	private HashSet<String> drop;
 	
 	public static class Relation {
@@ -55,6 +62,8 @@ public class RelationsReader extends DefaultHandler {
 	public void read(InputStream is, RelationsHandler... handlers) {
 		
 		this.handlers = handlers;
+		this.count = 0;
+		long start = readTimer.start();
 		
 		try {
 			SAXParser saxParser = SAXParserFactory.newInstance().newSAXParser();
@@ -63,6 +72,10 @@ public class RelationsReader extends DefaultHandler {
 		} catch (Exception e) {
 			throw new RuntimeException("Parsing failed for: " + is, e);
 		}
+		finally {
+			elements.add(count);
+			readTimer.stop(start);
+		}
 	}
 	
 	@Override
@@ -94,6 +107,7 @@ public class RelationsReader extends DefaultHandler {
 	public void endElement(String uri, String localName, String qName)
 			throws SAXException {
 		if(qName.equals(TAG_NAME)) {
+			count++;
 			if(!drop(this.relation)) {
 				for(RelationsHandler handler : handlers) {
 						handler.handle(this.relation);
@@ -10,6 +10,10 @@ import java.util.Map;
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
 
+import me.osm.gazetter.metrics.Counter;
+import me.osm.gazetter.metrics.Metrics;
+import me.osm.gazetter.metrics.Timer;
+
 import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
 import org.xml.sax.helpers.DefaultHandler;
@@ -17,7 +21,11 @@ import org.xml.sax.helpers.DefaultHandler;
 public class WaysReader extends DefaultHandler {
 
 	private static final String TAG_NAME = "way";
+	private static final Counter elements = Metrics.counter("reader.xml.ways");
+	private static final Timer readTimer = Metrics.timer("reader.xml.ways");
+
 	private WaysHandler[] handlers;
+	private long count = 0;
 	
 	public static class Way {
 		public long id;
@@ -44,6 +52,8 @@ public class WaysReader extends DefaultHandler {
 	public void read(InputStream is, WaysHandler... handlers) {
 		
 		this.handlers = handlers;
+		this.count = 0;
+		long start = readTimer.start();
 		
 		try {
 			SAXParser saxParser = SAXParserFactory.newInstance().newSAXParser();
@@ -52,6 +62,10 @@ public class WaysReader extends DefaultHandler {
 		} catch (Exception e) {
 			throw new RuntimeException("Parsing failed for: " + is, e);
 		}
+		finally {
+			elements.add(count);
+			readTimer.stop(start);
+		}
 	}
 	
 	@Override
@@ -77,6 +91,7 @@ public class WaysReader extends DefaultHandler {
 	public void endElement(String uri, String localName, String qName)
 			throws SAXException {
 		if(qName.equals(TAG_NAME)) {
+			count++;
 			if(!drop(this.line)) {
 				for(WaysHandler handler : handlers) {
 					handler.handle(this.line);
@@ -0,0 +1,72 @@
+package me.osm.gazetter.utils;
+
+import groovy.lang.GroovyClassLoader;
+import groovy.transform.CompileStatic;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.codehaus.groovy.control.CompilationFailedException;
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.control.customizers.ASTTransformationCustomizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Loads user provided groovy scripts.
+ * */
+public class GroovyScripts {
+
+	private static final Logger log = LoggerFactory.getLogger(GroovyScripts.class);
+
+	/**
+	 * Compile script with static type checking and static dispatch
+	 * (as if all classes of script were annotated with @CompileStatic).
+	 * <p>
+	 * If script uses dynamic features and can't be compiled statically,
+	 * it will be compiled as usual.
+	 * */
+	public static Class<?> parseClassStatic(File script) {
+		try {
+			CompilerConfiguration config = new CompilerConfiguration();
+			config.addCompilationCustomizers(new ASTTransformationCustomizer(CompileStatic.class));
+
+			Class<?> clazz = parseClass(script, config);
+			log.info("{} compiled statically", script);
+
+			return clazz;
+		}
+		catch (CompilationFailedException e) {
+			log.warn("{} can't be compiled statically, use dynamic compilation. {}",
+					script, e.getMessage());
+		}
+
+		return parseClass(script, CompilerConfiguration.DEFAULT);
+	}
+
+	/**
+	 * Compile script as usual
+	 * */
+	public static Class<?> parseClass(File script) {
+		return parseClass(script, CompilerConfiguration.DEFAULT);
+	}
+
+	private static Class<?> parseClass(File script, CompilerConfiguration config) {
+		GroovyClassLoader gcl = new GroovyClassLoader(GroovyScripts.class.getClassLoader(), config);
+		try {
+			return gcl.parseClass(script);
+		}
+		catch (IOException e) {
+			throw new RuntimeException("Can't read " + script, e);
+		}
+		finally {
+			try {
+				gcl.close();
+			}
+			catch (IOException e) {
+				//ignore
+			}
+		}
+	}
+
+}
@@ -15,6 +15,17 @@ public class HilbertCurveHasher {
 	private static final int hilbert_map[][][][] = new int[4][2][2][2];
 	private static final int inverse_hilbert_map[][][] = new int[4][4][3];
 	
+	// Bits of x and y handled by one lookup into chunks table
+	private static final int CHUNK = 4;
+	private static final int CHUNK_MASK = (1 << CHUNK) - 1;
+	
+	/*
+	 * hilbert_map applied CHUNK times, indexed by 
+	 * (square << 2 * CHUNK) | (x bits << CHUNK) | y bits.
+	 * Values are (positions << 2) | next square
+	 */
+	private static final int chunks[] = new int[4 << 2 * CHUNK];
+	
 	
 	static {
 		//	'a': {(0, 0): (0, 'd'), (0, 1): (1, 'a'), (1, 0): (3, 'b'), (1, 1): (2, 'a')}, 
@@ -34,15 +45,78 @@ public class HilbertCurveHasher {
 		inverse_hilbert_map[B] = new int[][]{{1, 1, C}, {0, 1, B}, {0, 0, B}, {1, 0, A}};
 		inverse_hilbert_map[C] = new int[][]{{1, 1, B}, {1, 0, C}, {0, 0, C}, {0, 1, D}};
 		inverse_hilbert_map[D] = new int[][]{{0, 0, A}, {1, 0, D}, {1, 1, D}, {0, 1, C}};
+		
+		for(int square = A; square <= D; square++) {
+			for(int x = 0; x <= CHUNK_MASK; x++) {
+				for(int y = 0; y <= CHUNK_MASK; y++) {
+					int currentSquare = square;
+					int position = 0;
+					for(int i = CHUNK - 1; i >= 0; i--) {
+						int quadX = (x >> i) & 1;
+						int quadY = (y >> i) & 1;
+						position = (position << 2) | hilbert_map[currentSquare][quadX][quadY][0];
+						currentSquare = hilbert_map[currentSquare][quadX][quadY][1];
+					}
+					chunks[(square << 2 * CHUNK) | (x << CHUNK) | y] = (position << 2) | currentSquare;
+				}
+			}
+		}
 	}
 	
 	/**
 	 * Converts pair of coordinates into long HilbertCurve hash.
 	 * with depth 16 (32 bits of resulting hash)
+	 * <p>
+	 * Hash is made from the lower 16 bits of 32 bit coordinates,
+	 * it's used in features ids, so it should stay the same.
+	 * Use {@link #sortKey(double, double)} for spatial ordering.
 	 * */
 	public static long encode(double x, double y) {
-		int[] intCoordinates = intCoordinates(x, y);
-		return encode(intCoordinates[0], intCoordinates[1]);
+		return encode(intCoordinate(x, 180.0), intCoordinate(y, 90.0), 16);
+	}
+	
+	/**
+	 * Encodes first n pairs of coordinates, 
+	 * the same as {@link #encode(double, double)} for each pair.
+	 * */
+	public static void encode(double[] x, double[] y, long[] hashes, int n) {
+		for(int i = 0; i < n; i++) {
+			hashes[i] = encode(intCoordinate(x[i], 180.0), intCoordinate(y[i], 90.0), 16);
+		}
+	}
+	
+	/**
+	 * Locality preserving key of the point, with depth 31 
+	 * (62 bits of resulting key, so keys are positive).
+	 * Points with close keys are close to each other.
+	 * */
+	public static long sortKey(double x, double y) {
+		return encode(intCoordinate(x, 180.0) >>> 1, intCoordinate(y, 90.0) >>> 1, 31);
+	}
+	
+	/**
+	 * Calculates {@link #sortKey(double, double)} for the first n pairs
+	 * of coordinates.
+	 * */
+	public static void sortKeys(double[] x, double[] y, long[] keys, int n) {
+		for(int i = 0; i < n; i++) {
+			keys[i] = sortKey(x[i], y[i]);
+		}
+	}
+	
+	/**
+	 * Appends hash as 10 digits zero padded number,
+	 * the same as <code>String.format("%010d", hash)</code>
+	 * */
+	public static StringBuilder appendHash(StringBuilder sb, long hash) {
+		if(hash < 0 || hash > 9999999999L) {
+			return sb.append(String.format("%010d", hash));
+		}
+		
+		for(long p = 1000000000L; p > 1 && hash < p; p /= 10) {
+			sb.append('0');
+		}
+		return sb.append(hash);
 	}
 
 	/**
@@ -69,23 +143,37 @@ public class HilbertCurveHasher {
 	}
 	
 	/**
-	 * Encodes pair of long x,y with provided HilbertHash algorithm order.
+	 * Encodes pair of long x,y with provided HilbertHash algorithm order
+	 * (up to 32).
+	 * <p>
+	 * Leading order % 4 bits are encoded one by one, 
+	 * others by 4 bits per lookup.
 	 * */
 	public static long encode(long x, long y, int order) {
 		
 		int currentSquare = A;
 		long position = 0;
 		
-		for(int i = order - 1; i >= 0; i--) {
+		int i = order - 1;
+		for(; i >= 0 && (i + 1) % CHUNK != 0; i--) {
 			position <<= 2;
-			int quadX = (x & (1 << i)) == 0 ? 0 : 1;
-			int quadY = (y & (1 << i)) == 0 ? 0 : 1;
+			int quadX = (int) ((x >>> i) & 1);
+			int quadY = (int) ((y >>> i) & 1);
 			
 			int quadPosition = hilbert_map[currentSquare][quadX][quadY][0];
 			currentSquare = hilbert_map[currentSquare][quadX][quadY][1];
 			position |= quadPosition;
 		}
 		
+		for(int shift = i + 1 - CHUNK; shift >= 0; shift -= CHUNK) {
+			int chunkX = (int) ((x >>> shift) & CHUNK_MASK);
+			int chunkY = (int) ((y >>> shift) & CHUNK_MASK);
+			
+			int chunk = chunks[(currentSquare << 2 * CHUNK) | (chunkX << CHUNK) | chunkY];
+			position = (position << 2 * CHUNK) | (chunk >>> 2);
+			currentSquare = chunk & 3;
+		}
+		
 		return position;
 	}
 
@@ -115,13 +203,12 @@ public class HilbertCurveHasher {
 	}
 
 	/**
-	 * Convert double x, y into int [x, y]
+	 * Convert double coordinate into unsigned 32 bit integer
+	 * 
+	 * @param max 180 for longitude, 90 for latitude
 	 * */
-	private static int[] intCoordinates(double x, double y) {
-		return new int[]{
-			(int) (new Double((x + 180.0) * FFFFFFFF / 360.0).longValue() & FFFFFFFF), 
-			(int) (new Double((y + 90.0) * FFFFFFFF / 180.0).longValue() & FFFFFFFF)
-		};
+	private static long intCoordinate(double c, double max) {
+		return ((long) ((c + max) * FFFFFFFF / (2 * max))) & FFFFFFFF;
 	}
 
 	/**
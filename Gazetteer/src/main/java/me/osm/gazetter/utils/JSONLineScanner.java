@@ -0,0 +1,400 @@
+package me.osm.gazetter.utils;
+
+/**
+ * Reads values of a few top level keys from a JSON object line
+ * without parsing of the whole object.
+ * <p>
+ * Unlike <code>line.indexOf("\"id\":\"")</code> it doesn't match keys
+ * inside nested objects and strings, and it checks the structure
+ * of the object while reading it. Values are returned as views
+ * of the line, strings are unescaped only if they contain escapes.
+ * <p>
+ * Scan stops as soon as all keys are found, so the rest of the line
+ * isn't read (and validated). Features are written with
+ * id, ftype, timestamp, action and md5 at the beginning of the line,
+ * so for those keys only a short prefix of the line is read.
+ * <p>
+ * Scanner keeps the state of the last scan, it isn't thread safe.
+ * */
+public final class JSONLineScanner {
+
+	private final String[] keys;
+	private final Value[] values;
+
+	private CharSequence s;
+	private int end;
+	private int pos;
+	private int found;
+
+	public JSONLineScanner(String... keys) {
+		this.keys = keys;
+		this.values = new Value[keys.length];
+		for(int i = 0; i < keys.length; i++) {
+			values[i] = new Value();
+		}
+	}
+
+	/**
+	 * Scan the line
+	 *
+	 * @return false if line isn't a JSON object
+	 * */
+	public boolean scan(CharSequence line) {
+		return scan(line, 0, line.length());
+	}
+
+	/**
+	 * Scan the part of the line, for instance nested object,
+	 * found by other scanner
+	 *
+	 * @return false if this part of the line isn't a JSON object
+	 * */
+	public boolean scan(CharSequence line, int from, int to) {
+		this.s = line;
+		this.pos = from;
+		this.end = to;
+		this.found = 0;
+		for(Value v : values) {
+			v.reset();
+		}
+
+		try {
+			return object();
+		}
+		catch (IndexOutOfBoundsException e) {
+			// line ended unexpectedly
+			return false;
+		}
+		catch (NumberFormatException e) {
+			// wrong unicode escape
+			return false;
+		}
+	}
+
+	/**
+	 * @return true if key was found by the last scan
+	 * */
+	public boolean has(int key) {
+		return values[key].type != 0;
+	}
+
+	/**
+	 * @return value of the string or raw text of other values
+	 * (numbers, objects, arrays), null if there is no such key.
+	 * Returned view is valid until the next scan.
+	 * */
+	public CharSequence get(int key) {
+		Value v = values[key];
+		if(v.type == 0 || v.type == 'n') {
+			return null;
+		}
+		return v;
+	}
+
+	/**
+	 * @return the same as {@link #get(int)} but as String
+	 * */
+	public String getString(int key) {
+		CharSequence v = get(key);
+		return v == null ? null : v.toString();
+	}
+
+	/**
+	 * @return true if the key value is the string equals to s
+	 * */
+	public boolean equals(int key, String s) {
+		Value v = values[key];
+		if(v.type != '"' || v.length() != s.length()) {
+			return false;
+		}
+		for(int i = 0; i < s.length(); i++) {
+			if(v.charAt(i) != s.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return integer value of number or string,
+	 * or default value if there is no such key
+	 * @throws NumberFormatException if value isn't an integer
+	 * */
+	public long getLong(int key, long def) {
+		CharSequence v = get(key);
+		if(v == null) {
+			return def;
+		}
+
+		int length = v.length();
+		boolean negative = length > 0 && v.charAt(0) == '-';
+		int i = negative ? 1 : 0;
+		if(i == length || length - i > 18) {
+			return Long.parseLong(v.toString());
+		}
+
+		long result = 0;
+		for(; i < length; i++) {
+			char c = v.charAt(i);
+			if(c < '0' || c > '9') {
+				throw new NumberFormatException("For input string: \"" + v + "\"");
+			}
+			result = result * 10 + (c - '0');
+		}
+
+		return negative ? -result : result;
+	}
+
+	/**
+	 * @return position of the first char of the value in the line
+	 * (the opening quote or bracket), -1 if there is no such key
+	 * */
+	public int start(int key) {
+		return values[key].type == 0 ? -1 : values[key].start;
+	}
+
+	/**
+	 * @return position after the last char of the value in the line
+	 * (after the closing quote or bracket), -1 if there is no such key
+	 * */
+	public int end(int key) {
+		return values[key].type == 0 ? -1 : values[key].end;
+	}
+
+	private boolean object() {
+		skipSpaces();
+		if(at(pos++) != '{') {
+			return false;
+		}
+
+		skipSpaces();
+		if(at(pos) == '}') {
+			pos++;
+			return true;
+		}
+
+		while(true) {
+			skipSpaces();
+			if(at(pos) != '"') {
+				return false;
+			}
+
+			int keyStart = pos + 1;
+			boolean escaped = string();
+			int key = escaped ? -1 : key(keyStart, pos - 1);
+
+			skipSpaces();
+			if(at(pos++) != ':') {
+				return false;
+			}
+			skipSpaces();
+
+			int valueStart = pos;
+			char type = at(pos);
+			boolean valueEscaped = false;
+			if(type == '"') {
+				valueEscaped = string();
+			}
+			else if(type == '{' || type == '[') {
+				if(!skipNested()) {
+					return false;
+				}
+			}
+			else if(!literal()) {
+				return false;
+			}
+
+			if(key >= 0 && values[key].type == 0) {
+				values[key].set(type, valueStart, pos, valueEscaped);
+				if(++found == keys.length) {
+					return true;
+				}
+			}
+
+			skipSpaces();
+			char c = at(pos++);
+			if(c == '}') {
+				return true;
+			}
+			if(c != ',') {
+				return false;
+			}
+		}
+	}
+
+	private int key(int from, int to) {
+		int length = to - from;
+		for(int k = 0; k < keys.length; k++) {
+			String key = keys[k];
+			if(key.length() != length) {
+				continue;
+			}
+
+			int i = 0;
+			while(i < length && key.charAt(i) == s.charAt(from + i)) {
+				i++;
+			}
+			if(i == length) {
+				return k;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Skip string, pos should be at the opening quote
+	 *
+	 * @return true if there are escapes in the string
+	 * */
+	private boolean string() {
+		boolean escaped = false;
+		pos++;
+		while(true) {
+			char c = at(pos++);
+			if(c == '"') {
+				return escaped;
+			}
+			if(c == '\\') {
+				escaped = true;
+				pos++;
+			}
+		}
+	}
+
+	/**
+	 * Skip object or array with all nested values
+	 * */
+	private boolean skipNested() {
+		int depth = 0;
+		while(true) {
+			char c = at(pos);
+			if(c == '"') {
+				string();
+				continue;
+			}
+
+			pos++;
+			if(c == '{' || c == '[') {
+				depth++;
+			}
+			else if(c == '}' || c == ']') {
+				if(--depth == 0) {
+					return true;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Skip number, true, false or null
+	 * */
+	private boolean literal() {
+		int start = pos;
+		while(pos < end) {
+			char c = at(pos);
+			if(c == ',' || c == '}' || c == ']' || Character.isWhitespace(c)) {
+				break;
+			}
+			pos++;
+		}
+		return pos > start;
+	}
+
+	private void skipSpaces() {
+		while(Character.isWhitespace(at(pos))) {
+			pos++;
+		}
+	}
+
+	private char at(int i) {
+		if(i >= end) {
+			throw new IndexOutOfBoundsException();
+		}
+		return s.charAt(i);
+	}
+
+	/**
+	 * View of the value in the scanned line
+	 * */
+	private final class Value implements CharSequence {
+
+		// the first char of the value: '"' for strings,
+		// 'n' for null, 0 if not found
+		private char type;
+		private int start;
+		private int end;
+		private StringBuilder unescaped;
+
+		private void reset() {
+			type = 0;
+			unescaped = null;
+		}
+
+		private void set(char type, int start, int end, boolean escaped) {
+			this.type = type;
+			this.start = start;
+			this.end = end;
+
+			if(escaped) {
+				unescaped = unescape(start + 1, end - 1);
+			}
+		}
+
+		private int from() {
+			return type == '"' ? start + 1 : start;
+		}
+
+		private int to() {
+			return type == '"' ? end - 1 : end;
+		}
+
+		@Override
+		public int length() {
+			return unescaped != null ? unescaped.length() : to() - from();
+		}
+
+		@Override
+		public char charAt(int index) {
+			return unescaped != null ? unescaped.charAt(index) : s.charAt(from() + index);
+		}
+
+		@Override
+		public CharSequence subSequence(int start, int end) {
+			return unescaped != null ? unescaped.subSequence(start, end)
+					: s.subSequence(from() + start, from() + end);
+		}
+
+		@Override
+		public String toString() {
+			return unescaped != null ? unescaped.toString() : s.subSequence(from(), to()).toString();
+		}
+
+	}
+
+	private StringBuilder unescape(int from, int to) {
+		StringBuilder sb = new StringBuilder(to - from);
+		for(int i = from; i < to; i++) {
+			char c = s.charAt(i);
+			if(c != '\\') {
+				sb.append(c);
+				continue;
+			}
+
+			c = s.charAt(++i);
+			switch (c) {
+			case 'b': sb.append('\b'); break;
+			case 't': sb.append('\t'); break;
+			case 'n': sb.append('\n'); break;
+			case 'f': sb.append('\f'); break;
+			case 'r': sb.append('\r'); break;
+			case 'u':
+				sb.append((char) Integer.parseInt(s.subSequence(i + 1, i + 5).toString(), 16));
+				i += 4;
+				break;
+			default: sb.append(c);
+			}
+		}
+		return sb;
+	}
+
+}
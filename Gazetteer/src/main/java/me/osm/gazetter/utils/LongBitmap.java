@@ -0,0 +1,147 @@
+package me.osm.gazetter.utils;
+
+import java.util.Arrays;
+
+/**
+ * Set of non negative long values (osm ids).
+ * <p>
+ * Ids are split into pages of 2^16 values, pages are allocated
+ * on first write. Page with a few ids is sparse: sorted array
+ * of 2 bytes per id. When sparse page grows up to the size of
+ * dense one (8Kb, 4096 ids), it's converted into bitmap.
+ * <p>
+ * Ids of a country extract are spread over the whole ids range,
+ * so most of pages are touched, but sparse. Memory is about
+ * 2 bytes per id for sparse pages plus 8Kb per dense page,
+ * and never more than 1 bit per id of the whole range
+ * (~1.5Gb for planet nodes) plus pages index.
+ * */
+public class LongBitmap {
+
+	private static final int PAGE_BITS = 16;
+	private static final int PAGE_SIZE = 1 << PAGE_BITS;
+	private static final int WORDS_PER_PAGE = PAGE_SIZE / 64;
+
+	/**
+	 * Sparse page of this size takes the same memory as dense one
+	 * */
+	private static final int MAX_SPARSE = PAGE_SIZE / 16;
+
+	private long[][] dense = new long[1024][];
+	private char[][] sparse = new char[1024][];
+	private int[] sparseSize = new int[1024];
+
+	private long size = 0;
+
+	public void set(long id) {
+		int page = page(id);
+		if(page >= dense.length) {
+			int length = Math.max(dense.length * 2, page + 1);
+			dense = Arrays.copyOf(dense, length);
+			sparse = Arrays.copyOf(sparse, length);
+			sparseSize = Arrays.copyOf(sparseSize, length);
+		}
+
+		int offset = offset(id);
+
+		long[] words = dense[page];
+		if(words != null) {
+			if(setBit(words, offset)) {
+				size++;
+			}
+			return;
+		}
+
+		char[] values = sparse[page];
+		int n = sparseSize[page];
+		if(values == null) {
+			values = new char[4];
+			sparse[page] = values;
+		}
+
+		int i = Arrays.binarySearch(values, 0, n, (char) offset);
+		if(i >= 0) {
+			return;
+		}
+
+		if(n == MAX_SPARSE) {
+			words = new long[WORDS_PER_PAGE];
+			for(int k = 0; k < n; k++) {
+				setBit(words, values[k]);
+			}
+			setBit(words, offset);
+
+			dense[page] = words;
+			sparse[page] = null;
+			sparseSize[page] = 0;
+			size++;
+			return;
+		}
+
+		if(n == values.length) {
+			values = Arrays.copyOf(values, Math.min(n * 2, MAX_SPARSE));
+			sparse[page] = values;
+		}
+
+		// ids are mostly written in ascending order, so it's an append
+		int insert = -(i + 1);
+		System.arraycopy(values, insert, values, insert + 1, n - insert);
+		values[insert] = (char) offset;
+
+		sparseSize[page] = n + 1;
+		size++;
+	}
+
+	public boolean get(long id) {
+		if(id < 0 || (id >>> PAGE_BITS) >= dense.length) {
+			return false;
+		}
+
+		int page = page(id);
+		int offset = offset(id);
+
+		long[] words = dense[page];
+		if(words != null) {
+			return (words[offset >>> 6] & (1L << offset)) != 0;
+		}
+
+		char[] values = sparse[page];
+		if(values == null) {
+			return false;
+		}
+
+		return Arrays.binarySearch(values, 0, sparseSize[page], (char) offset) >= 0;
+	}
+
+	/**
+	 * @return number of set bits
+	 * */
+	public long size() {
+		return size;
+	}
+
+	/**
+	 * @return true if bit wasn't set before
+	 * */
+	private static boolean setBit(long[] words, int offset) {
+		int word = offset >>> 6;
+		long mask = 1L << offset;
+		if((words[word] & mask) == 0) {
+			words[word] |= mask;
+			return true;
+		}
+		return false;
+	}
+
+	private static int page(long id) {
+		if(id < 0) {
+			throw new IllegalArgumentException("Negative id " + id);
+		}
+		return (int) (id >>> PAGE_BITS);
+	}
+
+	private static int offset(long id) {
+		return (int) (id & (PAGE_SIZE - 1));
+	}
+
+}
@@ -0,0 +1,62 @@
+package me.osm.gazetter.utils;
+
+/**
+ * Disjoint sets of int elements [0, size).
+ * */
+public class UnionFind {
+
+	private final int[] parent;
+	private final byte[] rank;
+
+	public UnionFind(int size) {
+		parent = new int[size];
+		rank = new byte[size];
+		for(int i = 0; i < size; i++) {
+			parent[i] = i;
+		}
+	}
+
+	/**
+	 * Returns representative element of the set which contains i.
+	 * */
+	public int find(int i) {
+		while(parent[i] != i) {
+			// path halving
+			parent[i] = parent[parent[i]];
+			i = parent[i];
+		}
+		return i;
+	}
+
+	/**
+	 * Merge sets which contains a and b.
+	 *
+	 * @return false if a and b are already in the same set
+	 * */
+	public boolean union(int a, int b) {
+		int ra = find(a);
+		int rb = find(b);
+
+		if(ra == rb) {
+			return false;
+		}
+
+		if(rank[ra] < rank[rb]) {
+			parent[ra] = rb;
+		}
+		else if(rank[ra] > rank[rb]) {
+			parent[rb] = ra;
+		}
+		else {
+			parent[rb] = ra;
+			rank[ra]++;
+		}
+
+		return true;
+	}
+
+	public int size() {
+		return parent.length;
+	}
+
+}
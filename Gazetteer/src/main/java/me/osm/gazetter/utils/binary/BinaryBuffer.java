@@ -1,5 +1,8 @@
 package me.osm.gazetter.utils.binary;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.Comparator;
 import java.util.List;
@@ -29,4 +32,15 @@ public interface BinaryBuffer extends Iterable<ByteBuffer>{
 	public ByteBuffer get(int i);
 	
 	public int size();
+	
+	/**
+	 * Write all rows.
+	 * */
+	public void write(DataOutput out) throws IOException;
+	
+	/**
+	 * Read rows, written by {@link #write(DataOutput)} 
+	 * and add them to this buffer.
+	 * */
+	public void read(DataInput in) throws IOException;
 }
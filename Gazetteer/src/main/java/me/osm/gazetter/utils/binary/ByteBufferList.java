@@ -1,5 +1,8 @@
 package me.osm.gazetter.utils.binary;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -7,8 +10,15 @@ import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 
+import me.osm.gazetter.metrics.Histogram;
+import me.osm.gazetter.metrics.Metrics;
+import me.osm.gazetter.metrics.Timer;
+
 public class ByteBufferList implements BinaryBuffer {
 	
+	private static final Histogram rows = Metrics.histogram("binary_buffer.rows");
+	private static final Timer sortTimer = Metrics.timer("binary_buffer.sort");
+	
 	private final List<ByteBuffer> storage = new ArrayList<>();
 	
 	private int rowLength = 0;
@@ -31,7 +41,11 @@ public class ByteBufferList implements BinaryBuffer {
 
 	@Override
 	public synchronized void sort(Comparator<ByteBuffer> comparator) {
+		long start = sortTimer.start();
 		Collections.sort(storage, comparator);
+		sortTimer.stop(start);
+		
+		rows.update(storage.size());
 	}
 
 	@Override
@@ -102,5 +116,29 @@ public class ByteBufferList implements BinaryBuffer {
 	public int size() {
 		return storage.size();
 	}
+
+	@Override
+	public void write(DataOutput out) throws IOException {
+		out.writeInt(rowLength);
+		out.writeInt(storage.size());
+		for(ByteBuffer bb : storage) {
+			out.write(bb.array(), bb.arrayOffset(), rowLength);
+		}
+	}
+
+	@Override
+	public void read(DataInput in) throws IOException {
+		int length = in.readInt();
+		if(length != rowLength) {
+			throw new IOException("Row length mismatch. Expected " + rowLength + " but was " + length);
+		}
+		
+		int size = in.readInt();
+		for(int i = 0; i < size; i++) {
+			byte[] row = new byte[rowLength];
+			in.readFully(row);
+			storage.add(ByteBuffer.wrap(row));
+		}
+	}
 	
 }
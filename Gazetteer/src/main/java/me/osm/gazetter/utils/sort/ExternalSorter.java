@@ -0,0 +1,477 @@
+package me.osm.gazetter.utils.sort;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import me.osm.gazetter.join.util.MemoryGovernor;
+import me.osm.gazetter.join.util.MemoryGovernor.Reservation;
+import me.osm.gazetter.utils.FileUtils;
+
+import com.google.code.externalsorting.Reducer;
+
+/**
+ * External sort of text lines.
+ * <p>
+ * {@link #sort(File, File, File)} reads input in the calling thread and
+ * splits it into chunks, chunks are sorted and written into gzipped runs
+ * by a pool of threads, so reading, sorting and compression go in parallel.
+ * Runs are merged with k-way merge, if there are more than
+ * {@link #MERGE_FAN_IN} runs, they are merged in groups in parallel first.
+ * <p>
+ * Callers which produce lines themselves (join handlers, stripes sorting)
+ * use {@link #writeRun(List, File)} and {@link #merge(List, PrintWriter, File)}.
+ * <p>
+ * Sort key is extracted once per line, when line is read from input,
+ * added to run or read from run, so comparisons don't parse lines.
+ * Lines with equal keys keep their input order. If reducer is set they
+ * are merged with it, if sorter is distinct, equal lines are written once.
+ * */
+public class ExternalSorter<K> {
+
+	public static interface KeyExtractor<K> {
+		public K key(String line);
+	}
+
+	/**
+	 * Max number of runs merged at once.
+	 * */
+	public static final int MERGE_FAN_IN = 64;
+
+	/**
+	 * Line is a key for itself
+	 * */
+	public static final KeyExtractor<String> LINES = new KeyExtractor<String>() {
+		@Override
+		public String key(String line) {
+			return line;
+		}
+	};
+
+	/**
+	 * Keeps only the first of lines with equal keys
+	 * */
+	public static final Reducer KEEP_FIRST = new Reducer() {
+		@Override
+		public String merge(String s1, String s2) {
+			return s1;
+		}
+	};
+
+	/**
+	 * Rough estimation of heap used by one line in chunk
+	 * besides chars: string, key and entry.
+	 * */
+	private static final int LINE_OVERHEAD = 96;
+
+	private static final long MIN_CHUNK = 1024 * 1024;
+
+	private final KeyExtractor<K> keys;
+	private final Comparator<? super K> keysComparator;
+
+	private Reducer reducer = null;
+	private boolean distinct = false;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private long memoryBudget = -1;
+
+	private static final class Line<K> {
+		private final K key;
+		private final String line;
+
+		private Line(K key, String line) {
+			this.key = key;
+			this.line = line;
+		}
+	}
+
+	private final Comparator<Line<K>> comparator = new Comparator<Line<K>>() {
+		@Override
+		public int compare(Line<K> l1, Line<K> l2) {
+			int c = keysComparator.compare(l1.key, l2.key);
+			if(c == 0 && distinct && reducer == null) {
+				return l1.line.compareTo(l2.line);
+			}
+			return c;
+		}
+	};
+
+	public ExternalSorter(KeyExtractor<K> keys, Comparator<? super K> keysComparator) {
+		this.keys = keys;
+		this.keysComparator = keysComparator;
+	}
+
+	/**
+	 * Sort by naturally ordered keys
+	 * */
+	public static <K extends Comparable<? super K>> ExternalSorter<K> byKey(KeyExtractor<K> keys) {
+		return new ExternalSorter<K>(keys, new Comparator<K>() {
+			@Override
+			public int compare(K k1, K k2) {
+				return k1.compareTo(k2);
+			}
+		});
+	}
+
+	/**
+	 * Sort lines with comparator
+	 * */
+	public static ExternalSorter<String> lines(Comparator<String> comparator) {
+		return new ExternalSorter<String>(LINES, comparator);
+	}
+
+	/**
+	 * Merge lines with equal keys, result should have the same key.
+	 * */
+	public ExternalSorter<K> setReducer(Reducer reducer) {
+		this.reducer = reducer;
+		return this;
+	}
+
+	/**
+	 * Write equal lines only once. Lines with equal keys are ordered
+	 * by whole line, so equal lines meet each other, even if they
+	 * weren't adjacent in input. Ignored if reducer is set.
+	 * */
+	public ExternalSorter<K> setDistinct(boolean distinct) {
+		this.distinct = distinct;
+		return this;
+	}
+
+	/**
+	 * Threads for chunks sorting and intermediate merges
+	 * */
+	public ExternalSorter<K> setThreads(int threads) {
+		this.threads = Math.max(threads, 1);
+		return this;
+	}
+
+	/**
+	 * Memory for all chunks, which are read or sorted simultaneously.
+	 * By default it's a quarter of {@link MemoryGovernor} budget.
+	 * */
+	public ExternalSorter<K> setMemoryBudget(long bytes) {
+		this.memoryBudget = bytes;
+		return this;
+	}
+
+	/**
+	 * Sort in file into out. Files may be the same.
+	 * <p>
+	 * Memory for chunks is admitted by {@link MemoryGovernor}.
+	 *
+	 * @param tmpFolder folder for runs, system temp folder if null
+	 * */
+	public void sort(File in, File out, File tmpFolder) {
+		long budget = memoryBudget > 0 ? memoryBudget : MemoryGovernor.get().getBudget() / 4;
+		long chunkBudget = Math.max(budget / (threads + 1), MIN_CHUNK);
+		Reservation reservation = MemoryGovernor.get().admit(chunkBudget * (threads + 1));
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<File> runs = new ArrayList<>();
+
+		try {
+			List<Future<File>> futures = new ArrayList<>();
+
+			// chunks which are sorted at the moment
+			Semaphore sorting = new Semaphore(threads);
+
+			List<Line<K>> chunk = new ArrayList<>();
+			BufferedReader reader = new BufferedReader(
+					new InputStreamReader(FileUtils.getFileIS(in), "UTF8"));
+			try {
+				long size = 0;
+				String s;
+				while((s = reader.readLine()) != null) {
+					chunk.add(new Line<K>(keys.key(s), s));
+					size += s.length() * 2 + LINE_OVERHEAD;
+
+					if(size >= chunkBudget) {
+						File run = File.createTempFile("sort", ".run.gz", tmpFolder);
+						runs.add(run);
+
+						sorting.acquire();
+						futures.add(executor.submit(writeRun(chunk, run, sorting)));
+
+						chunk = new ArrayList<>();
+						size = 0;
+					}
+				}
+			}
+			finally {
+				reader.close();
+			}
+
+			// everything fits into one chunk
+			if(runs.isEmpty()) {
+				writeSorted(chunk, out);
+				return;
+			}
+
+			if(!chunk.isEmpty()) {
+				File run = File.createTempFile("sort", ".run.gz", tmpFolder);
+				runs.add(run);
+				sorting.acquire();
+				futures.add(executor.submit(writeRun(chunk, run, sorting)));
+			}
+			chunk = null;
+
+			for(Future<File> f : futures) {
+				f.get();
+			}
+
+			PrintWriter writer = FileUtils.getPrintWriter(out, false);
+			try {
+				merge(runs, writer, executor, tmpFolder);
+			}
+			finally {
+				writer.flush();
+				writer.close();
+			}
+		}
+		catch (Exception e) {
+			throw new RuntimeException("Failed to sort " + in, e);
+		}
+		finally {
+			executor.shutdown();
+			reservation.release();
+
+			for(File run : runs) {
+				run.delete();
+			}
+		}
+	}
+
+	/**
+	 * Sort lines in memory and write them into run.
+	 * Lines list is left untouched.
+	 * */
+	public void writeRun(List<String> lines, File run) {
+		List<Line<K>> chunk = new ArrayList<>(lines.size());
+		for(String s : lines) {
+			chunk.add(new Line<K>(keys.key(s), s));
+		}
+
+		try {
+			writeSorted(chunk, run);
+		}
+		catch (IOException e) {
+			throw new RuntimeException("Failed to write sorted run " + run, e);
+		}
+	}
+
+	/**
+	 * Merge sorted runs into out. Runs are left untouched.
+	 *
+	 * @param tmpFolder folder for intermediate runs
+	 * */
+	public void merge(List<File> runs, PrintWriter out, File tmpFolder) {
+		ExecutorService executor = runs.size() > MERGE_FAN_IN
+				? Executors.newFixedThreadPool(threads) : null;
+		try {
+			merge(runs, out, executor, tmpFolder);
+			out.flush();
+		}
+		catch (Exception e) {
+			throw new RuntimeException("Failed to merge sorted runs", e);
+		}
+		finally {
+			if(executor != null) {
+				executor.shutdown();
+			}
+		}
+	}
+
+	private Callable<File> writeRun(final List<Line<K>> chunk, final File run,
+			final Semaphore sorting) {
+
+		return new Callable<File>() {
+			@Override
+			public File call() throws Exception {
+				try {
+					writeSorted(chunk, run);
+					return run;
+				}
+				finally {
+					chunk.clear();
+					sorting.release();
+				}
+			}
+		};
+	}
+
+	@SuppressWarnings("unchecked")
+	private void writeSorted(List<Line<K>> chunk, File f) throws IOException {
+		// Arrays.sort for objects is stable
+		Line<K>[] sorted = chunk.toArray(new Line[chunk.size()]);
+		Arrays.sort(sorted, comparator);
+
+		PrintWriter writer = FileUtils.getPrintWriter(f, false);
+		try {
+			Line<K> last = null;
+			for(Line<K> line : sorted) {
+				last = reduce(writer, last, line);
+			}
+			if(last != null) {
+				writer.println(last.line);
+			}
+		}
+		finally {
+			writer.flush();
+			writer.close();
+		}
+	}
+
+	private void merge(List<File> runs, PrintWriter out, ExecutorService executor,
+			File tmpFolder) throws Exception {
+
+		List<File> level = runs;
+		List<File> tmp = new ArrayList<>();
+
+		try {
+			while(level.size() > MERGE_FAN_IN) {
+				List<Future<File>> futures = new ArrayList<>();
+				List<File> next = new ArrayList<>();
+
+				for(int i = 0; i < level.size(); i += MERGE_FAN_IN) {
+					final List<File> group = level.subList(i, Math.min(i + MERGE_FAN_IN, level.size()));
+					final File merged = File.createTempFile("merge", ".run.gz", tmpFolder);
+					next.add(merged);
+					tmp.add(merged);
+
+					futures.add(executor.submit(new Callable<File>() {
+						@Override
+						public File call() throws Exception {
+							PrintWriter writer = FileUtils.getPrintWriter(merged, false);
+							try {
+								mergeGroup(group, writer);
+							}
+							finally {
+								writer.flush();
+								writer.close();
+							}
+							return merged;
+						}
+					}));
+				}
+
+				for(Future<File> f : futures) {
+					f.get();
+				}
+
+				level = next;
+			}
+
+			mergeGroup(level, out);
+		}
+		finally {
+			for(File f : tmp) {
+				f.delete();
+			}
+		}
+	}
+
+	private final class RunReader {
+		private final BufferedReader reader;
+		private final int index;
+		private Line<K> line;
+
+		private RunReader(File f, int index) throws IOException {
+			this.reader = new BufferedReader(new InputStreamReader(FileUtils.getFileIS(f), "UTF8"));
+			this.index = index;
+			next();
+		}
+
+		private boolean next() throws IOException {
+			String s = reader.readLine();
+			line = s == null ? null : new Line<K>(keys.key(s), s);
+			return line != null;
+		}
+
+		private void close() {
+			try {
+				reader.close();
+			}
+			catch (IOException e) {
+				//ignore
+			}
+		}
+	}
+
+	private void mergeGroup(List<File> runs, PrintWriter out) throws IOException {
+
+		PriorityQueue<RunReader> queue = new PriorityQueue<>(Math.max(runs.size(), 1),
+				new Comparator<RunReader>() {
+					@Override
+					public int compare(RunReader r1, RunReader r2) {
+						int c = comparator.compare(r1.line, r2.line);
+						return c != 0 ? c : Integer.compare(r1.index, r2.index);
+					}
+				});
+
+		List<RunReader> readers = new ArrayList<>(runs.size());
+		try {
+			for(File run : runs) {
+				RunReader reader = new RunReader(run, readers.size());
+				readers.add(reader);
+				if(reader.line != null) {
+					queue.add(reader);
+				}
+			}
+
+			Line<K> last = null;
+			while(!queue.isEmpty()) {
+				RunReader reader = queue.poll();
+				last = reduce(out, last, reader.line);
+
+				if(reader.next()) {
+					queue.add(reader);
+				}
+			}
+
+			if(last != null) {
+				out.println(last.line);
+			}
+		}
+		finally {
+			for(RunReader reader : readers) {
+				reader.close();
+			}
+		}
+	}
+
+	/**
+	 * Write out last if line differs from it, or merge them.
+	 *
+	 * @return new last line
+	 * */
+	private Line<K> reduce(PrintWriter out, Line<K> last, Line<K> line) {
+		if(last == null) {
+			return line;
+		}
+
+		if(keysComparator.compare(last.key, line.key) == 0) {
+			if(reducer != null) {
+				return new Line<K>(last.key, reducer.merge(last.line, line.line));
+			}
+			if(distinct && last.line.equals(line.line)) {
+				return last;
+			}
+		}
+
+		out.println(last.line);
+		return line;
+	}
+
+}
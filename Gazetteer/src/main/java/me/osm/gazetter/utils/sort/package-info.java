@@ -0,0 +1,4 @@
+/**
+ * Sorting of big text files: parallel sorted runs and k-way merge.
+ * */
+package me.osm.gazetter.utils.sort;
@@ -0,0 +1,81 @@
+package me.osm.gazetter.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import me.osm.gazetter.out.Diff;
+import me.osm.gazetter.utils.FileUtils;
+
+import org.junit.Test;
+
+public class DiffTest {
+
+	private static String line(String id, String md5, String timestamp) {
+		return "{\"id\":\"" + id + "\",\"md5\":\"" + md5 + "\",\"timestamp\":\"" + timestamp + "\"}";
+	}
+
+	private static final List<String> OLD = Arrays.asList(
+			line("a", "1", "2015-01-01T00:00:00Z"),
+			line("b", "1", "2015-01-01T00:00:00Z"),
+			line("c", "1", "2015-01-01T00:00:00Z"),
+			line("d", "1", "2015-03-01T00:00:00Z"));
+
+	private static final List<String> NEW = Arrays.asList(
+			line("b", "1", "2015-02-01T00:00:00Z"),
+			line("c", "2", "2015-02-01T00:00:00Z"),
+			line("d", "2", "2015-02-01T00:00:00Z"),
+			line("e", "1", "2015-02-01T00:00:00Z"));
+
+	private static final List<String> EXPECTED = Arrays.asList(
+			"- " + OLD.get(0),
+			"N " + NEW.get(1),
+			"O " + OLD.get(3),
+			"+ " + NEW.get(3));
+
+	@Test
+	public void testSorted() throws IOException {
+		assertEquals(EXPECTED, diff(OLD, NEW));
+	}
+
+	@Test
+	public void testNotSorted() throws IOException {
+		List<String> olds = new ArrayList<>(OLD);
+		List<String> news = new ArrayList<>(NEW);
+
+		Collections.reverse(olds);
+		Collections.reverse(news);
+
+		List<String> result = diff(olds, news);
+
+		assertEquals(EXPECTED.size(), result.size());
+		assertEquals(new HashSet<>(EXPECTED), new HashSet<>(result));
+	}
+
+	private static List<String> diff(List<String> olds, List<String> news) throws IOException {
+		File oldFile = File.createTempFile("old", ".json");
+		File newFile = File.createTempFile("new", ".json");
+		File outFile = File.createTempFile("diff", ".json");
+
+		try {
+			FileUtils.writeLines(oldFile, olds);
+			FileUtils.writeLines(newFile, news);
+
+			new Diff(oldFile.getPath(), newFile.getPath(), outFile.getPath()).run();
+
+			return FileUtils.readLines(outFile);
+		}
+		finally {
+			oldFile.delete();
+			newFile.delete();
+			outFile.delete();
+		}
+	}
+
+}
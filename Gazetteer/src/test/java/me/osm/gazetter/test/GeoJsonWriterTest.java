@@ -0,0 +1,245 @@
+package me.osm.gazetter.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import me.osm.gazetter.striper.GeoJsonWriter;
+import me.osm.gazetter.striper.GeoJsonWriter.FeatureTemplate;
+import me.osm.gazetter.striper.JSONFeature;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.json.JSONString;
+import org.junit.Test;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.LinearRing;
+import com.vividsolutions.jts.geom.MultiPolygon;
+import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.geom.Polygon;
+
+public class GeoJsonWriterTest {
+
+	private static final GeometryFactory factory = new GeometryFactory();
+
+	private static final String TIMESTAMP = "2014-03-11T11:47:54.582Z";
+
+	@Test
+	public void testDoubles() {
+		List<Double> values = new ArrayList<>();
+		values.add(0.0);
+		values.add(-0.0);
+		values.add(180.0);
+		values.add(-180.0);
+		values.add(1e-9);
+		values.add(-1e-9);
+		values.add(5e-9);
+		values.add(-5e-9);
+		values.add(0.000000015);
+		values.add(99.999999995);
+		values.add(1e12);
+		values.add(Double.NaN);
+
+		Random random = new Random(1);
+		for(int i = 0; i < 100000; i++) {
+			double x = random.nextDouble() * 360 - 180;
+			values.add(x);
+
+			// osm coordinates have 7 digits
+			values.add(Math.round(x * 1e7) / 1e7);
+
+			// the half of the last written digit
+			values.add((Math.round(x * 1e8) + 0.5) / 1e8);
+		}
+
+		// large values around the fast path limit
+		values.add(4.61837214623537E8);
+		values.add(9999999.999999995);
+		values.add(1e7);
+		for(int i = 0; i < 100000; i++) {
+			double x = random.nextDouble() * Math.pow(10, 3 + random.nextInt(7));
+			values.add(x);
+			values.add(Math.round(x * 1e9) / 1e9);
+		}
+
+		for(double d : values) {
+			StringBuilder sb = new StringBuilder();
+			GeoJsonWriter.appendDouble(sb, d);
+			assertEquals(String.format(Locale.US, "%.8f", d), sb.toString());
+		}
+	}
+
+	@Test
+	public void testFeatures() {
+		Random random = new Random(2);
+
+		Map<String, String> tags = new HashMap<>();
+		tags.put("name", "улица \"Ленина\" </b>");
+		tags.put("highway", "residential");
+		tags.put("addr:housenumber", "81");
+
+		List<Geometry> geometries = new ArrayList<>();
+		geometries.add(factory.createPoint(new Coordinate(52.0404454, 53.2727444)));
+		geometries.add(line(random, 10));
+
+		Polygon polygon = factory.createPolygon(ring(random, 0.0, 20), new LinearRing[]{ring(random, 0.5, 10)});
+		geometries.add(polygon);
+		geometries.add(factory.createMultiPolygon(new Polygon[]{polygon,
+				factory.createPolygon(ring(random, 5.0, 30), null)}));
+
+		for(Geometry g : geometries) {
+			JSONObject meta = new JSONObject();
+			meta.put("id", 90213286L);
+			meta.put("type", "way");
+			meta.put(GeoJsonWriter.FULL_GEOMETRY, GeoJsonWriter.geometryToJSON(g));
+
+			assertFeature("adrpnt-0425079167-w90213286", "adrpnt", tags, g, meta);
+			assertFeature(null, "hghway", null, g, null);
+
+			JSONArray types = new JSONArray(Arrays.asList("cafe", "restaurant"));
+			StringBuilder sb = new StringBuilder();
+			GeoJsonWriter.appendFeature(sb, "poipnt-0425079167-n1", "poipnt", tags, g, meta,
+					TIMESTAMP, "poiTypes", types);
+
+			JSONObject poi = legacyFeatureJSON("poipnt-0425079167-n1", "poipnt", tags, g, meta);
+			poi.put("poiTypes", types);
+			assertEquals(poi.toString(), sb.toString());
+
+			// boundaries are written with the same properties for every stripe
+			if(g instanceof Polygon) {
+				JSONObject boundary = legacyFeatureJSON("admbnd-1", "admbnd", tags, g, meta);
+				boundary.remove(GeoJsonWriter.GEOMETRY);
+
+				sb = new StringBuilder();
+				new FeatureTemplate(boundary).append(sb, g);
+
+				assertEquals(legacyFeature("admbnd-1", "admbnd", tags, g, meta), sb.toString());
+			}
+		}
+	}
+
+	private static void assertFeature(String id, String ftype, Map<String, String> tags,
+			Geometry g, JSONObject meta) {
+
+		StringBuilder sb = new StringBuilder();
+		GeoJsonWriter.appendFeature(sb, id, ftype, tags, g, meta, TIMESTAMP);
+
+		assertEquals(legacyFeature(id, ftype, tags, g, meta), sb.toString());
+	}
+
+	/**
+	 * Feature as it was written with JSONObjects and String.format
+	 * */
+	private static String legacyFeature(String id, String type,
+			Map<String, String> attributes, Geometry g, JSONObject meta) {
+		return legacyFeatureJSON(id, type, attributes, g, meta).toString();
+	}
+
+	private static JSONObject legacyFeatureJSON(String id, String type,
+			Map<String, String> attributes, Geometry g, JSONObject meta) {
+
+		if(meta != null) {
+			meta = new JSONObject(meta.toString());
+			meta.put(GeoJsonWriter.FULL_GEOMETRY, legacyGeometry(g));
+		}
+
+		JSONObject feature = new JSONFeature();
+		if(id != null) {
+			feature.put("id", id);
+		}
+		feature.put("ftype", type);
+		feature.put("type", "Feature");
+		feature.put(GeoJsonWriter.GEOMETRY, legacyGeometry(g));
+		feature.put(GeoJsonWriter.PROPERTIES, attributes);
+		feature.put(GeoJsonWriter.META, meta);
+		feature.put(GeoJsonWriter.TIMESTAMP, TIMESTAMP);
+
+		return feature;
+	}
+
+	private static JSONObject legacyGeometry(Geometry g) {
+		String type;
+		String coordinates;
+		if(g instanceof MultiPolygon) {
+			type = "MultiPolygon";
+			StringBuilder sb = new StringBuilder();
+			for(int i = 0; i < g.getNumGeometries(); i++) {
+				sb.append(",").append(legacyCoordinates((Polygon) g.getGeometryN(i)));
+			}
+			coordinates = "[" + sb.substring(1) + "]";
+		}
+		else if(g instanceof Polygon) {
+			type = "Polygon";
+			coordinates = legacyCoordinates((Polygon) g);
+		}
+		else if(g instanceof LineString) {
+			type = "LineString";
+			coordinates = legacyCoordinates((LineString) g);
+		}
+		else {
+			type = "Point";
+			coordinates = "[" + String.format(Locale.US, "%.8f", ((Point)g).getX()) + ","
+					+ String.format(Locale.US, "%.8f", ((Point)g).getY()) + "]";
+		}
+
+		final String coordinatesJSON = coordinates;
+
+		JSONObject geomJSON = new JSONObject();
+		geomJSON.put("type", type);
+		geomJSON.put(GeoJsonWriter.COORDINATES, new JSONString() {
+			@Override
+			public String toJSONString() {
+				return coordinatesJSON;
+			}
+		});
+		return geomJSON;
+	}
+
+	private static String legacyCoordinates(Polygon polygon) {
+		StringBuilder rings = new StringBuilder();
+		rings.append(",").append(legacyCoordinates(polygon.getExteriorRing()));
+		for(int i = 0; i < polygon.getNumInteriorRing(); i++) {
+			rings.append(",").append(legacyCoordinates(polygon.getInteriorRingN(i)));
+		}
+		return "[" + rings.substring(1) + "]";
+	}
+
+	private static String legacyCoordinates(LineString ring) {
+		StringBuilder sb = new StringBuilder();
+		for(Coordinate c : ring.getCoordinates()) {
+			sb.append(",[").append(String.format(Locale.US, "%.8f", c.x)).append(",")
+				.append(String.format(Locale.US, "%.8f", c.y)).append("]");
+		}
+		return "[" + sb.substring(1) + "]";
+	}
+
+	private static LineString line(Random random, int n) {
+		Coordinate[] coords = new Coordinate[n];
+		for(int i = 0; i < n; i++) {
+			coords[i] = new Coordinate(37.0 + random.nextDouble(), 55.0 + random.nextDouble());
+		}
+		return factory.createLineString(coords);
+	}
+
+	private static LinearRing ring(Random random, double offset, int n) {
+		Coordinate[] coords = new Coordinate[n + 1];
+		for(int i = 0; i < n; i++) {
+			double a = 2 * Math.PI * i / n;
+			double r = 0.1 + random.nextDouble() * 0.01;
+			coords[i] = new Coordinate(37.0 + offset + r * Math.cos(a), 55.0 + r * Math.sin(a));
+		}
+		coords[n] = coords[0];
+		return factory.createLinearRing(coords);
+	}
+
+}
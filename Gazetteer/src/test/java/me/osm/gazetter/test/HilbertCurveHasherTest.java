@@ -0,0 +1,84 @@
+package me.osm.gazetter.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import me.osm.gazetter.utils.HilbertCurveHasher;
+
+import org.junit.Test;
+
+public class HilbertCurveHasherTest {
+
+	@Test
+	public void testEncode() {
+		Random random = new Random(3);
+		for(int i = 0; i < 100000; i++) {
+			long x = random.nextInt() & 0x7fffffffL;
+			long y = random.nextInt() & 0x7fffffffL;
+			int order = 1 + random.nextInt(31);
+
+			long hash = HilbertCurveHasher.encode(x, y, order);
+			assertEquals(bitByBit(x, y, order), hash);
+
+			long mask = (1L << order) - 1;
+			assertArrayEquals(new long[]{x & mask, y & mask}, HilbertCurveHasher.decode(hash, order));
+		}
+	}
+
+	@Test
+	public void testBatch() {
+		Random random = new Random(4);
+		int n = 1000;
+		double[] xs = new double[n];
+		double[] ys = new double[n];
+		for(int i = 0; i < n; i++) {
+			xs[i] = random.nextDouble() * 360 - 180;
+			ys[i] = random.nextDouble() * 180 - 90;
+		}
+
+		long[] hashes = new long[n];
+		long[] keys = new long[n];
+		HilbertCurveHasher.encode(xs, ys, hashes, n);
+		HilbertCurveHasher.sortKeys(xs, ys, keys, n);
+
+		for(int i = 0; i < n; i++) {
+			assertEquals(HilbertCurveHasher.encode(xs[i], ys[i]), hashes[i]);
+			assertEquals(HilbertCurveHasher.sortKey(xs[i], ys[i]), keys[i]);
+		}
+	}
+
+	@Test
+	public void testAppendHash() {
+		Random random = new Random(5);
+		for(int i = 0; i < 10000; i++) {
+			long hash = random.nextBoolean() ? random.nextInt(1000) : random.nextInt() & 0xffffffffL;
+			assertEquals(String.format("%010d", hash),
+					HilbertCurveHasher.appendHash(new StringBuilder(), hash).toString());
+		}
+	}
+
+	/**
+	 * Encoding one bit per step, as it was made before lookup table
+	 * */
+	private static long bitByBit(long x, long y, int order) {
+		int[][][][] map = new int[][][][]{
+			{{{0, 3}, {1, 0}}, {{3, 1}, {2, 0}}},
+			{{{2, 1}, {1, 1}}, {{3, 0}, {0, 2}}},
+			{{{2, 2}, {3, 3}}, {{1, 2}, {0, 1}}},
+			{{{0, 0}, {3, 2}}, {{1, 3}, {2, 3}}}
+		};
+
+		int square = 0;
+		long position = 0;
+		for(int i = order - 1; i >= 0; i--) {
+			int qx = (x & (1 << i)) == 0 ? 0 : 1;
+			int qy = (y & (1 << i)) == 0 ? 0 : 1;
+			position = (position << 2) | map[square][qx][qy][0];
+			square = map[square][qx][qy][1];
+		}
+		return position;
+	}
+
+}
@@ -0,0 +1,51 @@
+package me.osm.gazetter.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import me.osm.gazetter.metrics.Histogram;
+import me.osm.gazetter.metrics.Metrics;
+
+import org.junit.Test;
+
+public class HistogramTest {
+
+	@Test
+	public void testPercentiles() {
+		Histogram h = new Histogram();
+		for(int i = 1; i <= 1000; i++) {
+			h.update(i);
+		}
+
+		assertEquals(1000, h.getCount());
+		assertEquals(500500, h.getSum());
+		assertEquals(1, h.getMin());
+		assertEquals(1000, h.getMax());
+
+		// power of two buckets, at most two times bigger
+		long p50 = h.getPercentile(0.5);
+		assertTrue(p50 >= 500 && p50 < 1000);
+		assertEquals(1000, h.getPercentile(0.99));
+	}
+
+	@Test
+	public void testEmpty() {
+		Histogram h = new Histogram();
+		assertEquals(0, h.getMin());
+		assertEquals(0, h.getMax());
+		assertEquals(0, h.getPercentile(0.5));
+
+		h.update(0);
+		assertEquals(0, h.getPercentile(0.5));
+	}
+
+	@Test
+	public void testRegistry() {
+		assertTrue(Metrics.counter("test.counter") == Metrics.counter("test.counter"));
+		assertTrue(Metrics.timer("test.timer") == Metrics.timer("test.timer"));
+
+		Metrics.counter("test.counter").add(3);
+		assertEquals(3, Metrics.toJSON().getJSONObject("counters").getLong("test.counter"));
+	}
+
+}
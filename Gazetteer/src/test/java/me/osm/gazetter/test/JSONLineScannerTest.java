@@ -0,0 +1,73 @@
+package me.osm.gazetter.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import me.osm.gazetter.utils.JSONLineScanner;
+
+import org.junit.Test;
+
+public class JSONLineScannerTest {
+
+	private static final String LINE = "{\"id\":\"hghway-1\",\"ftype\":\"highway\","
+			+ "\"metainfo\":{\"id\":42,\"type\":\"way\",\"action\":\"nested\"},"
+			+ "\"properties\":{\"name\":\"\\\"A\\\" \\u0444 street\",\"admin_level\":\"8\"},"
+			+ "\"geometry\":{\"type\":\"Point\",\"coordinates\":[37.1,55.2]},"
+			+ "\"empty\":null,\"n\":-15,\"b\":true}";
+
+	@Test
+	public void testTopLevelOnly() {
+		JSONLineScanner scanner = new JSONLineScanner("action", "type");
+		assertTrue(scanner.scan(LINE));
+		assertFalse(scanner.has(0));
+		assertFalse(scanner.has(1));
+		assertNull(scanner.get(0));
+	}
+
+	@Test
+	public void testValues() {
+		JSONLineScanner scanner = new JSONLineScanner("id", "n", "empty", "b", "ftype");
+		assertTrue(scanner.scan(LINE));
+
+		assertEquals("hghway-1", scanner.getString(0));
+		assertEquals(-15L, scanner.getLong(1, 0));
+		assertTrue(scanner.has(2));
+		assertNull(scanner.get(2));
+		assertEquals("true", scanner.getString(3));
+		assertTrue(scanner.equals(4, "highway"));
+		assertFalse(scanner.equals(4, "highwa"));
+		assertEquals(7L, new JSONLineScanner("none").getLong(0, 7));
+	}
+
+	@Test
+	public void testNested() {
+		JSONLineScanner feature = new JSONLineScanner("properties", "metainfo");
+		assertTrue(feature.scan(LINE));
+
+		JSONLineScanner nested = new JSONLineScanner("name", "admin_level", "id");
+		assertTrue(nested.scan(LINE, feature.start(0), feature.end(0)));
+		assertEquals("\"A\" ф street", nested.getString(0));
+		assertEquals("8", nested.getString(1));
+		assertFalse(nested.has(2));
+
+		assertTrue(nested.scan(LINE, feature.start(1), feature.end(1)));
+		assertEquals(42L, nested.getLong(2, 0));
+	}
+
+	@Test
+	public void testMalformed() {
+		JSONLineScanner scanner = new JSONLineScanner("id");
+		assertFalse(scanner.scan(""));
+		assertFalse(scanner.scan("[1,2]"));
+		assertFalse(scanner.scan("{\"a\":{\"b\":1}"));
+		assertFalse(scanner.scan("{\"a\" 1}"));
+		assertFalse(scanner.scan("{\"a\":\"unterminated}"));
+		assertFalse(scanner.has(0));
+
+		assertTrue(scanner.scan(" { } "));
+		assertFalse(scanner.has(0));
+	}
+
+}
@@ -0,0 +1,49 @@
+package me.osm.gazetter.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import me.osm.gazetter.utils.LongBitmap;
+
+import org.junit.Test;
+
+public class LongBitmapTest {
+
+	@Test
+	public void testSparseAndDensePages() {
+		LongBitmap bitmap = new LongBitmap();
+		Set<Long> expected = new HashSet<>();
+
+		// ids spread over planet range, sparse pages
+		Random random = new Random(42);
+		for(int i = 0; i < 10000; i++) {
+			long id = (long) (random.nextDouble() * 12000000000L);
+			bitmap.set(id);
+			expected.add(id);
+		}
+
+		// dense page, written in descending order
+		for(long id = 70000; id >= 65536; id--) {
+			bitmap.set(id);
+			expected.add(id);
+		}
+
+		// already set
+		bitmap.set(70000);
+
+		assertEquals(expected.size(), bitmap.size());
+		for(Long id : expected) {
+			assertTrue(bitmap.get(id));
+		}
+
+		assertFalse(bitmap.get(70001));
+		assertFalse(bitmap.get(-1));
+		assertFalse(bitmap.get(Long.MAX_VALUE / 2));
+	}
+
+}
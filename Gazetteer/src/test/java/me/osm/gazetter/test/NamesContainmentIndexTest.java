@@ -0,0 +1,69 @@
+package me.osm.gazetter.test;
+
+import static org.junit.Assert.assertEquals;
+import gnu.trove.list.array.TIntArrayList;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import me.osm.gazetter.addresses.impl.NamesContainmentIndex;
+import me.osm.gazetter.addresses.impl.NamesMatcherImpl;
+
+import org.junit.Test;
+
+public class NamesContainmentIndexTest {
+
+	@Test
+	public void testMatches() {
+		NamesContainmentIndex index = new NamesContainmentIndex();
+
+		index.add("main street");
+		index.add("main");
+		index.add("oak avenue");
+		index.add("");
+		index.add("ma");
+
+		TIntArrayList matches = index.matches("main street");
+		matches.sort();
+
+		assertEquals(new TIntArrayList(new int[]{0, 1, 3, 4}), matches);
+	}
+
+	@Test
+	public void testSameAsBruteForce() {
+		Random rnd = new Random(42);
+		String[] words = new String[]{"main", "street", "oak", "avenue", "lenina", "ulitsa", "pr", "a"};
+
+		NamesContainmentIndex index = new NamesContainmentIndex();
+		List<String> names = new ArrayList<>();
+
+		for(int i = 0; i < 2000; i++) {
+			StringBuilder sb = new StringBuilder();
+			int n = rnd.nextInt(3);
+			for(int w = 0; w <= n; w++) {
+				if(w > 0) {
+					sb.append(' ');
+				}
+				sb.append(words[rnd.nextInt(words.length)]);
+			}
+			names.add(sb.toString());
+			index.add(sb.toString());
+		}
+
+		for(int i = 0; i < names.size(); i += 7) {
+			TIntArrayList expected = new TIntArrayList();
+			for(int j = 0; j < names.size(); j++) {
+				if(NamesMatcherImpl.doesNormalizedStreetsMatch(names.get(i), names.get(j))) {
+					expected.add(j);
+				}
+			}
+
+			TIntArrayList actual = index.matches(names.get(i));
+			actual.sort();
+
+			assertEquals(expected, actual);
+		}
+	}
+
+}
@@ -0,0 +1,165 @@
+package me.osm.gazetter.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import me.osm.gazetter.join.JoinExecutor;
+import me.osm.gazetter.osc.OscApplier;
+import me.osm.gazetter.osc.OscIndex;
+import me.osm.gazetter.osc.OscReader;
+import me.osm.gazetter.osc.OscReader.Changes;
+import me.osm.gazetter.striper.Slicer;
+import me.osm.gazetter.utils.FileUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class OscApplierTest {
+
+	private static final String HEADER = "<?xml version='1.0' encoding='UTF-8'?>";
+
+	private File dir;
+
+	@Before
+	public void prepare() throws IOException {
+		dir = Files.createTempDirectory("osc").toFile();
+
+		write("nodes.osm", "<osm>",
+				"<node id=\"1\" lon=\"37.60\" lat=\"55.70\"/>",
+				"<node id=\"2\" lon=\"37.61\" lat=\"55.70\"/>",
+				"<node id=\"3\" lon=\"37.62\" lat=\"55.70\"/>",
+				"</osm>");
+
+		write("ways.osm", "<osm>",
+				"<way id=\"10\">",
+				"<nd ref=\"1\"/>", "<nd ref=\"2\"/>", "<nd ref=\"3\"/>",
+				"<tag k=\"highway\" v=\"residential\"/>",
+				"<tag k=\"name\" v=\"Test street\"/>",
+				"</way>",
+				"</osm>");
+
+		write("rels.osm", "<osm>", "</osm>");
+
+		new Slicer(dir.getPath()).run("jar", Arrays.asList("all"),
+				Collections.<String>emptyList(), Collections.<String>emptyList(),
+				Collections.<String>emptyList(), null, Collections.<String>emptyList(), false);
+	}
+
+	@After
+	public void clean() throws IOException {
+		org.apache.commons.io.FileUtils.deleteDirectory(dir);
+	}
+
+	@Test
+	public void testReader() throws IOException {
+		File osc = write("1.osc", "<osmChange>",
+				"<create><node id=\"4\" lon=\"37.63\" lat=\"55.70\"><tag k=\"amenity\" v=\"cafe\"/></node></create>",
+				"<modify><way id=\"10\"><nd ref=\"1\"/><nd ref=\"2\"/></way></modify>",
+				"<modify><way id=\"11\"><nd ref=\"1\"/></way></modify>",
+				"<delete><node id=\"3\"/></delete>",
+				"</osmChange>");
+
+		File next = write("2.osc", "<osmChange>",
+				"<delete><node id=\"4\"/></delete>",
+				"<modify><node id=\"3\" lon=\"37.62\" lat=\"55.71\"/></modify>",
+				"</osmChange>");
+
+		OscReader reader = new OscReader();
+		reader.read(osc);
+		reader.read(next);
+
+		Changes changes = reader.getChanges();
+
+		assertEquals(Arrays.asList(1L, 2L), changes.ways.get(10L).nodes);
+
+		// way with less than 2 nodes is deleted
+		assertTrue(changes.deletedWays.contains(11));
+
+		// later versions override previous
+		assertTrue(changes.deletedNodes.contains(4));
+		assertTrue(!changes.nodes.containsKey(4L));
+		assertTrue(!changes.deletedNodes.contains(3));
+		assertEquals(55.71, changes.nodes.get(3L).lat, 0.0);
+	}
+
+	@Test
+	public void testIndexUpdate() throws IOException {
+		OscIndex.build(dir);
+
+		OscIndex index = OscIndex.open(dir);
+		assertEquals(1, index.getNodeWays(3).size());
+		assertTrue(!index.getFeatures(OscIndex.key('w', 10)).isEmpty());
+
+		apply(write("1.osc", "<osmChange>",
+				"<modify><way id=\"10\">",
+				"<nd ref=\"1\"/><nd ref=\"2\"/>",
+				"<tag k=\"highway\" v=\"residential\"/>",
+				"<tag k=\"name\" v=\"Test street\"/>",
+				"</way></modify>",
+				"</osmChange>"));
+
+		index = OscIndex.open(dir);
+		assertEquals(0, index.getNodeWays(3).size());
+		assertEquals(1, index.getNodeWays(2).size());
+
+		apply(write("2.osc", "<osmChange>",
+				"<delete><way id=\"10\"/></delete>",
+				"</osmChange>"));
+
+		index = OscIndex.open(dir);
+		assertEquals(0, index.getNodeWays(1).size());
+		assertTrue(index.getFeatures(OscIndex.key('w', 10)).isEmpty());
+
+		int removed = countRemoved();
+		assertTrue(removed > 0);
+
+		// features of deleted way are not removed again
+		apply(write("3.osc", "<osmChange>",
+				"<modify><node id=\"1\" lon=\"37.60\" lat=\"55.71\"/></modify>",
+				"</osmChange>"));
+
+		assertEquals(removed, countRemoved());
+	}
+
+	private void apply(File osc) {
+		new OscApplier(dir.getPath(), Arrays.asList(osc.getPath()), "jar",
+				Collections.<String>emptyList(), Collections.<String>emptyList(),
+				null, Collections.<String>emptyList(), false).run();
+	}
+
+	private int countRemoved() throws IOException {
+		int removed = 0;
+		for(File stripe : dir.listFiles(JoinExecutor.STRIPE_FILE_FN_FILTER)) {
+			for(String line : FileUtils.readLines(stripe)) {
+				if(line.contains("\"action\":\"remove\"")) {
+					removed++;
+				}
+			}
+		}
+		return removed;
+	}
+
+	private File write(String name, String... lines) throws IOException {
+		File f = new File(dir, name);
+		PrintWriter writer = FileUtils.getPrintWriter(f, false);
+		try {
+			writer.println(HEADER);
+			for(String line : lines) {
+				writer.println(line);
+			}
+		}
+		finally {
+			writer.close();
+		}
+		return f;
+	}
+
+}
@@ -38,6 +38,11 @@ public class SlicerTest {
 			results.get(key).add(line);
 		}
 
+		@Override
+		public void write(StringBuilder line, String key) throws IOException {
+			write(line.toString(), key);
+		}
+
 		@Override
 		public void close() {
 			//do nothing
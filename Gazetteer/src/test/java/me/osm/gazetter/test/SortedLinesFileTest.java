@@ -0,0 +1,60 @@
+package me.osm.gazetter.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import me.osm.gazetter.osc.SortedLinesFile;
+import me.osm.gazetter.utils.FileUtils;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Test;
+
+public class SortedLinesFileTest {
+
+	@Test
+	public void testFind() throws IOException {
+		Random random = new Random(1);
+
+		List<String> lines = new ArrayList<>();
+		for(int i = 0; i < 2000; i++) {
+			// long lines to cross read buffer boundaries
+			lines.add(String.format("k%05d\t%s", random.nextInt(500),
+					StringUtils.repeat('x', random.nextInt(6000))));
+		}
+		Collections.sort(lines);
+
+		File f = File.createTempFile("sorted", ".idx");
+		try {
+			FileUtils.writeLines(f, lines);
+
+			SortedLinesFile file = new SortedLinesFile(f);
+			try {
+				for(int k = 0; k <= 500; k++) {
+					String key = String.format("k%05d", k);
+
+					List<String> expected = new ArrayList<>();
+					for(String line : lines) {
+						if(SortedLinesFile.key(line).equals(key)) {
+							expected.add(line);
+						}
+					}
+
+					assertEquals(expected, file.find(key));
+				}
+			}
+			finally {
+				file.close();
+			}
+		}
+		finally {
+			f.delete();
+		}
+	}
+
+}
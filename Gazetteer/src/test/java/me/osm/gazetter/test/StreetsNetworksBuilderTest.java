@@ -0,0 +1,94 @@
+package me.osm.gazetter.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import me.osm.gazetter.addresses.impl.NamesMatcherImpl;
+import me.osm.gazetter.join.StreetsNetworksBuilder;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import com.vividsolutions.jts.geom.Envelope;
+
+public class StreetsNetworksBuilderTest {
+
+	private static JSONObject segment(String name) {
+		JSONObject properties = new JSONObject();
+		properties.put("name", name);
+
+		JSONObject segment = new JSONObject();
+		segment.put("properties", properties);
+
+		return segment;
+	}
+
+	@Test
+	public void testConnected() {
+		StreetsNetworksBuilder builder = new StreetsNetworksBuilder();
+
+		// touching segments, names matches by contains
+		builder.addSegment(segment("Main street"), 1, 10, new Envelope(0.0, 0.01, 0.0, 0.001));
+		builder.addSegment(segment("main street"), 2, 10, new Envelope(0.01, 0.02, 0.0, 0.001));
+		builder.addSegment(segment("Main"), 3, 10, new Envelope(0.02, 0.03, 0.0, 0.001));
+
+		// same names, but other boundaries
+		builder.addSegment(segment("Main street"), 4, 20, new Envelope(0.03, 0.04, 0.0, 0.001));
+
+		// touches, but other name
+		builder.addSegment(segment("Oak avenue"), 5, 10, new Envelope(0.0, 0.01, 0.0, 0.001));
+
+		List<List<JSONObject>> networks = builder.build();
+
+		assertEquals(3, networks.size());
+		assertEquals(3, networks.get(0).size());
+		assertEquals(1, networks.get(1).size());
+		assertEquals(1, networks.get(2).size());
+	}
+
+	@Test
+	public void testJunctions() {
+		StreetsNetworksBuilder builder = new StreetsNetworksBuilder();
+
+		// far away, same name
+		builder.addSegment(segment("Main street"), 1, 10, new Envelope(0.0, 0.01, 0.0, 0.001));
+		builder.addSegment(segment("Main street"), 2, 10, new Envelope(0.5, 0.51, 0.0, 0.001));
+		builder.addSegment(segment("Main street"), 3, 10, new Envelope(0.9, 0.91, 0.0, 0.001));
+
+		builder.addJunction(Arrays.asList(1L, 2L));
+
+		List<List<JSONObject>> networks = builder.build();
+
+		assertEquals(2, networks.size());
+		assertEquals(2, networks.get(0).size());
+		assertEquals(1, networks.get(1).size());
+	}
+
+	@Test
+	public void testConfiguredMatcher() {
+		// exact names matching
+		NamesMatcherImpl exact = new NamesMatcherImpl() {
+			@Override
+			public boolean doesStreetsMatch(Map<String, String> o1names,
+					Map<String, String> o2names) {
+				return o1names.get("name").equals(o2names.get("name"));
+			}
+		};
+
+		StreetsNetworksBuilder builder = new StreetsNetworksBuilder(exact);
+
+		builder.addSegment(segment("Main street"), 1, 10, new Envelope(0.0, 0.01, 0.0, 0.001));
+		builder.addSegment(segment("Main street"), 2, 10, new Envelope(0.01, 0.02, 0.0, 0.001));
+		builder.addSegment(segment("Main"), 3, 10, new Envelope(0.02, 0.03, 0.0, 0.001));
+
+		List<List<JSONObject>> networks = builder.build();
+
+		assertEquals(2, networks.size());
+		assertEquals(2, networks.get(0).size());
+		assertEquals(1, networks.get(1).size());
+	}
+
+}
@@ -0,0 +1,79 @@
+package me.osm.gazetter.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import me.osm.gazetter.addresses.AddressesParser;
+import me.osm.gazetter.addresses.impl.AddressesParserImpl;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Address rows building for an address point with
+ * boundaries, streets and place around it.
+ * */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class AddressesParserBenchmark {
+
+	private static final int POINTS = 1000;
+
+	private AddressesParser parser;
+
+	private JSONObject[] points;
+	private List<JSONObject> boundaries;
+	private List<JSONObject> streets;
+	private JSONObject place;
+
+	@Setup
+	public void setup() {
+		SyntheticData data = new SyntheticData();
+		double x = SyntheticData.LON;
+		double y = SyntheticData.LAT;
+
+		parser = new AddressesParserImpl();
+
+		boundaries = Arrays.asList(
+				data.boundary(1, 2, data.polygon(x, y, 10.0, 50)),
+				data.boundary(2, 4, data.polygon(x, y, 3.0, 50)),
+				data.boundary(3, 6, data.polygon(x, y, 1.0, 50)),
+				data.boundary(4, 8, data.polygon(x, y, 0.3, 50)));
+
+		streets = new ArrayList<>();
+		for(int i = 0; i < 3; i++) {
+			streets.add(data.street(100 + i, data.lineString(x + data.jitter(0.01), y, 0.001, 20)));
+		}
+
+		place = data.place(200, "city", data.point(0.01));
+
+		points = new JSONObject[POINTS];
+		for(int i = 0; i < POINTS; i++) {
+			points[i] = data.addrPoint(1000 + i, data.point(0.1));
+		}
+	}
+
+	@Benchmark
+	public void parse(Blackhole bh) {
+		for(JSONObject p : points) {
+			bh.consume(parser.parse(p, boundaries, streets, place, null, null));
+		}
+	}
+
+}
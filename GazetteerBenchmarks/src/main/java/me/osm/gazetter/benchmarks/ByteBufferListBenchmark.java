@@ -0,0 +1,131 @@
+package me.osm.gazetter.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import me.osm.gazetter.utils.binary.Accessor;
+import me.osm.gazetter.utils.binary.Accessors;
+import me.osm.gazetter.utils.binary.ByteBufferList;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Sort and lookups in ByteBufferList, rows are the same
+ * as way-node rows written by slicer: (way id, node id).
+ * <p>
+ * Every way has 1..8 rows.
+ * */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ByteBufferListBenchmark {
+
+	private static final int ROW_LENGTH = 16;
+
+	private static final Accessor WAY_ID = Accessors.longAccessor(0);
+
+	private static final Comparator<ByteBuffer> BY_WAY_ID = new Comparator<ByteBuffer>() {
+		@Override
+		public int compare(ByteBuffer r1, ByteBuffer r2) {
+			return Long.compare(WAY_ID.get(r1), WAY_ID.get(r2));
+		}
+	};
+
+	@Param({"1000000"})
+	public int size;
+
+	private ByteBuffer[] rows;
+	private long[] queries;
+
+	private ByteBufferList sorted;
+	private ByteBufferList unsorted;
+
+	@Setup
+	public void setup() {
+		SyntheticData data = new SyntheticData();
+
+		rows = new ByteBuffer[size];
+		long wayId = 1;
+		for(int i = 0; i < size; wayId++) {
+			int nodes = 1 + data.nextInt(8);
+			for(int n = 0; n < nodes && i < size; n++, i++) {
+				ByteBuffer bb = ByteBuffer.allocate(ROW_LENGTH);
+				bb.putLong(0, wayId);
+				bb.putLong(8, data.nextInt(size * 10));
+				rows[i] = bb;
+			}
+		}
+
+		// shuffle with the same seeded generator
+		for(int i = size - 1; i > 0; i--) {
+			int j = data.nextInt(i + 1);
+			ByteBuffer t = rows[i];
+			rows[i] = rows[j];
+			rows[j] = t;
+		}
+
+		queries = new long[1024];
+		for(int i = 0; i < queries.length; i++) {
+			queries[i] = 1 + data.nextInt((int)wayId);
+		}
+
+		sorted = fill();
+		sorted.sort(BY_WAY_ID);
+	}
+
+	@Setup(Level.Invocation)
+	public void unsorted() {
+		unsorted = fill();
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public ByteBufferList sort() {
+		unsorted.sort(BY_WAY_ID);
+		return unsorted;
+	}
+
+	@Benchmark
+	public long find() {
+		long s = 0;
+		for(long q : queries) {
+			s += sorted.find(q, WAY_ID);
+		}
+		return s;
+	}
+
+	@Benchmark
+	public long findAll() {
+		long s = 0;
+		for(long q : queries) {
+			List<ByteBuffer> all = sorted.findAll(sorted.find(q, WAY_ID), q, WAY_ID);
+			s += all.size();
+		}
+		return s;
+	}
+
+	private ByteBufferList fill() {
+		ByteBufferList list = new ByteBufferList(ROW_LENGTH);
+		for(ByteBuffer bb : rows) {
+			list.add(bb);
+		}
+		return list;
+	}
+
+}
@@ -0,0 +1,108 @@
+package me.osm.gazetter.benchmarks;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import me.osm.gazetter.striper.FeatureTypes;
+import me.osm.gazetter.striper.GeoJsonWriter;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.vividsolutions.jts.geom.Geometry;
+
+/**
+ * Features serialization and header fields reading
+ * */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class GeoJsonWriterBenchmark {
+
+	private static final String TIMESTAMP = "2015-05-01T12:00:00.000Z";
+
+	/**
+	 * Number of points in geometry
+	 * */
+	@Param({"1", "50", "1000"})
+	public int points;
+
+	private Geometry geometry;
+	private Map<String, String> tags;
+	private JSONObject meta;
+	private String line;
+
+	private final StringBuilder sb = new StringBuilder();
+
+	@Setup
+	public void setup() {
+		SyntheticData data = new SyntheticData();
+
+		if(points == 1) {
+			geometry = data.point(0.1);
+		}
+		else {
+			geometry = data.polygon(SyntheticData.LON, SyntheticData.LAT, 0.01, points);
+		}
+
+		tags = new HashMap<>();
+		tags.put("building", "yes");
+		tags.put("addr:street", data.street());
+		tags.put("addr:housenumber", "12");
+		tags.put("name", "\"Quoted\" name");
+
+		meta = new JSONObject();
+		meta.put("id", 42L);
+		meta.put("type", "way");
+
+		line = GeoJsonWriter.featureAsGeoJSON("adrpnt-0000000000-w42",
+				FeatureTypes.ADDR_POINT_FTYPE, tags, geometry, meta);
+	}
+
+	@Benchmark
+	public String featureAsGeoJSON() {
+		return GeoJsonWriter.featureAsGeoJSON("adrpnt-0000000000-w42",
+				FeatureTypes.ADDR_POINT_FTYPE, tags, geometry, meta);
+	}
+
+	@Benchmark
+	public int appendFeature() {
+		sb.setLength(0);
+		GeoJsonWriter.appendFeature(sb, "adrpnt-0000000000-w42",
+				FeatureTypes.ADDR_POINT_FTYPE, tags, geometry, meta, TIMESTAMP);
+		return sb.length();
+	}
+
+	@Benchmark
+	public String getId() {
+		return GeoJsonWriter.getId(FeatureTypes.ADDR_POINT_FTYPE, geometry.getCentroid(), meta);
+	}
+
+	@Benchmark
+	public void readHeader(Blackhole bh) {
+		bh.consume(GeoJsonWriter.getId(line));
+		bh.consume(GeoJsonWriter.getFtype(line));
+		bh.consume(GeoJsonWriter.getTimestamp(line));
+	}
+
+	@Benchmark
+	public JSONObject parse() {
+		return new JSONObject(line);
+	}
+
+}
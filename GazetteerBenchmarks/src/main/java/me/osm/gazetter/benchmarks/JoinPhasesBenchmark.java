@@ -0,0 +1,169 @@
+package me.osm.gazetter.benchmarks;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import me.osm.gazetter.Options;
+import me.osm.gazetter.join.JoinSliceRunable;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.geom.Polygon;
+import com.vividsolutions.jts.geom.prep.PreparedGeometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometryFactory;
+import com.vividsolutions.jts.index.SpatialIndex;
+import com.vividsolutions.jts.index.strtree.STRtree;
+
+/**
+ * JoinSliceRunable phases on generated stripe 0.1 degree wide.
+ * <p>
+ * Phases are private, so they are called via reflection
+ * on JoinSliceRunable created without JoinExecutor.
+ * */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class JoinPhasesBenchmark {
+
+	private static final double STRIPE_WIDTH = 0.1;
+
+	@Param({"50000"})
+	public int addrPoints;
+
+	@Param({"2000"})
+	public int streets;
+
+	private JoinSliceRunable joiner;
+
+	private Method many2ManyJoin;
+	private Method highwaysJoin;
+	private Method one2OneJoin;
+
+	private List<JSONObject> boundaries = new ArrayList<>();
+	private List<PreparedGeometry> prepared = new ArrayList<>();
+	private List<JSONObject> placesVoronoi = new ArrayList<>();
+
+	private SpatialIndex addrPointsIndex = new STRtree();
+	private SpatialIndex streetsIndex = new STRtree();
+
+	@Setup
+	public void setup() throws Exception {
+		SyntheticData data = new SyntheticData();
+
+		// Nested boundaries from country to districts,
+		// every level is unique so highways join doesn't split rows
+		int[] levels = new int[]{2, 4, 6, 8, 9, 10};
+		double[] radius = new double[]{5.0, 2.0, 0.6, 0.2, 0.08, 0.03};
+		for(int l = 0; l < levels.length; l++) {
+			int count = l < 3 ? 1 : 4 << (l - 3);
+			for(int i = 0; i < count; i++) {
+				Polygon p = data.polygon(x(data), y(data), radius[l], 100);
+				boundaries.add(data.boundary(l * 1000 + i, levels[l], p));
+				prepared.add(PreparedGeometryFactory.prepare(p));
+			}
+		}
+
+		for(int i = 0; i < addrPoints; i++) {
+			Point p = data.point(x(data), y(data));
+			JSONObject addr = data.addrPoint(i, p);
+			addrPointsIndex.insert(p.getEnvelopeInternal(), addr);
+		}
+
+		for(int i = 0; i < streets; i++) {
+			LineString ls = data.lineString(x(data), y(data), 0.0005, 10);
+			JSONObject street = data.street(100000 + i, ls);
+			for(Coordinate c : ls.getCoordinates()) {
+				streetsIndex.insert(new Envelope(c), new Object[]{c, street});
+			}
+		}
+
+		for(int i = 0; i < 200; i++) {
+			Polygon p = data.polygon(x(data), y(data), 0.02, 12);
+			placesVoronoi.add(data.placeVoronoi(200000 + i, "village", p));
+		}
+
+		((STRtree)addrPointsIndex).build();
+		((STRtree)streetsIndex).build();
+
+		joiner = new JoinSliceRunable(null, new File("stripe37.6.gjson"),
+				new ArrayList<JSONObject>(), null, null, null);
+
+		Field index = JoinSliceRunable.class.getDeclaredField("addrPointsIndex");
+		index.setAccessible(true);
+		index.set(joiner, addrPointsIndex);
+
+		Field parser = JoinSliceRunable.class.getDeclaredField("addressesParser");
+		parser.setAccessible(true);
+		parser.set(joiner, Options.get().getAddressesParser());
+
+		many2ManyJoin = method("many2ManyJoin", JSONObject.class, PreparedGeometry.class,
+				Map.class, SpatialIndex.class);
+		highwaysJoin = method("highwaysJoin", JSONObject.class, PreparedGeometry.class,
+				Map.class, SpatialIndex.class);
+		one2OneJoin = method("one2OneJoin", List.class, Map.class);
+	}
+
+	@Benchmark
+	public int many2ManyJoin() throws Exception {
+		Map<JSONObject, List<JSONObject>> result = new HashMap<>();
+		for(int i = 0; i < boundaries.size(); i++) {
+			many2ManyJoin.invoke(joiner, boundaries.get(i), prepared.get(i), result, addrPointsIndex);
+		}
+		return result.size();
+	}
+
+	@Benchmark
+	public int highwaysJoin() throws Exception {
+		Map<JSONObject, List<List<JSONObject>>> result = new HashMap<>();
+		for(int i = 0; i < boundaries.size(); i++) {
+			highwaysJoin.invoke(joiner, boundaries.get(i), prepared.get(i), result, streetsIndex);
+		}
+		return result.size();
+	}
+
+	@Benchmark
+	public int one2OneJoin() throws Exception {
+		Map<JSONObject, JSONObject> result = new HashMap<>();
+		one2OneJoin.invoke(joiner, placesVoronoi, result);
+		return result.size();
+	}
+
+	private static double x(SyntheticData data) {
+		return SyntheticData.LON + STRIPE_WIDTH / 2 + data.jitter(STRIPE_WIDTH / 2);
+	}
+
+	private static double y(SyntheticData data) {
+		return SyntheticData.LAT + data.jitter(1.0);
+	}
+
+	private static Method method(String name, Class<?>... args) throws NoSuchMethodException {
+		Method m = JoinSliceRunable.class.getDeclaredMethod(name, args);
+		m.setAccessible(true);
+		return m;
+	}
+
+}
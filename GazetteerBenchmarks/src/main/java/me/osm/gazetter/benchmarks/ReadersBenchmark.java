@@ -0,0 +1,89 @@
+package me.osm.gazetter.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+import me.osm.gazetter.striper.readers.PointsReader;
+import me.osm.gazetter.striper.readers.PointsReader.Node;
+import me.osm.gazetter.striper.readers.PointsReader.PointsHandler;
+import me.osm.gazetter.striper.readers.RelationsReader;
+import me.osm.gazetter.striper.readers.RelationsReader.Relation;
+import me.osm.gazetter.striper.readers.RelationsReader.RelationsHandler;
+import me.osm.gazetter.striper.readers.WaysReader;
+import me.osm.gazetter.striper.readers.WaysReader.Way;
+import me.osm.gazetter.striper.readers.WaysReader.WaysHandler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * SAX readers on synthetic osm xml
+ * */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ReadersBenchmark {
+
+	@Param({"100000"})
+	public int size;
+
+	private byte[] nodes;
+	private byte[] ways;
+	private byte[] relations;
+
+	@Setup
+	public void setup() {
+		SyntheticData data = new SyntheticData();
+		nodes = data.osmNodes(size);
+		ways = data.osmWays(size / 10, 10, size);
+		relations = data.osmRelations(size / 100, 20, size / 10);
+	}
+
+	@Benchmark
+	public void points(final Blackhole bh) {
+		new PointsReader(new HashSet<String>()).read(new ByteArrayInputStream(nodes),
+				new PointsHandler() {
+			@Override
+			public void handle(Node node) {
+				bh.consume(node);
+			}
+		});
+	}
+
+	@Benchmark
+	public void ways(final Blackhole bh) {
+		new WaysReader(new HashSet<String>()).read(new ByteArrayInputStream(ways),
+				new WaysHandler() {
+			@Override
+			public void handle(Way line) {
+				bh.consume(line);
+			}
+		});
+	}
+
+	@Benchmark
+	public void relations(final Blackhole bh) {
+		new RelationsReader(new HashSet<String>()).read(new ByteArrayInputStream(relations),
+				new RelationsHandler() {
+			@Override
+			public void handle(Relation rel) {
+				bh.consume(rel);
+			}
+		});
+	}
+
+}
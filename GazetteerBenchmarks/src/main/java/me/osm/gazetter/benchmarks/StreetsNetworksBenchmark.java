@@ -0,0 +1,88 @@
+package me.osm.gazetter.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import me.osm.gazetter.addresses.impl.NamesMatcherImpl;
+import me.osm.gazetter.join.StreetsNetworksBuilder;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.vividsolutions.jts.geom.Envelope;
+
+/**
+ * Streets networks building for dense city stripe:
+ * grid of streets, every street is splitted into many segments.
+ * */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class StreetsNetworksBenchmark {
+
+	private static final double STEP = 0.001;
+
+	@Param({"500"})
+	public int streets;
+
+	@Param({"40"})
+	public int segments;
+
+	private JSONObject[] features;
+	private Envelope[] envelopes;
+	private long[] boundaries;
+
+	@Setup
+	public void setup() {
+		SyntheticData data = new SyntheticData();
+
+		int n = streets * segments;
+		features = new JSONObject[n];
+		envelopes = new Envelope[n];
+		boundaries = new long[n];
+
+		int k = 0;
+		for(int s = 0; s < streets; s++) {
+			String name = "Street " + s;
+			double y = SyntheticData.LAT + s * STEP;
+			long bhash = data.nextInt(4);
+
+			for(int i = 0; i < segments; i++) {
+				double x = SyntheticData.LON + i * STEP;
+
+				JSONObject properties = new JSONObject();
+				properties.put("name", name);
+
+				JSONObject segment = new JSONObject();
+				segment.put("properties", properties);
+
+				features[k] = segment;
+				envelopes[k] = new Envelope(x, x + STEP, y, y);
+				boundaries[k] = bhash;
+				k++;
+			}
+		}
+	}
+
+	@Benchmark
+	public int build() {
+		StreetsNetworksBuilder builder = new StreetsNetworksBuilder(new NamesMatcherImpl());
+		for(int i = 0; i < features.length; i++) {
+			builder.addSegment(features[i], i, boundaries[i], envelopes[i]);
+		}
+		return builder.build().size();
+	}
+
+}
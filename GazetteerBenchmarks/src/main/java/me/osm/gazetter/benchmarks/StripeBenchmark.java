@@ -0,0 +1,90 @@
+package me.osm.gazetter.benchmarks;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import me.osm.gazetter.striper.Slicer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.Polygon;
+
+/**
+ * Cutting geometries into stripes.
+ * <p>
+ * Polygons variant is private in Slicer, so it's called via reflection,
+ * the same way as in SlicerTest.
+ * */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class StripeBenchmark {
+
+	/**
+	 * Polygon size in degrees, stripes are 0.1 degree wide
+	 * */
+	@Param({"0.05", "1.0"})
+	public double radius;
+
+	@Param({"200"})
+	public int points;
+
+	private Polygon[] polygons;
+	private LineString[] lines;
+
+	private Method stripePolygon;
+
+	@Setup
+	public void setup() throws Exception {
+		SyntheticData data = new SyntheticData();
+
+		polygons = new Polygon[16];
+		lines = new LineString[16];
+		for(int i = 0; i < polygons.length; i++) {
+			polygons[i] = data.polygon(SyntheticData.LON + data.jitter(1.0),
+					SyntheticData.LAT + data.jitter(1.0), radius, points);
+			lines[i] = data.lineString(SyntheticData.LON + data.jitter(1.0),
+					SyntheticData.LAT + data.jitter(1.0), 2 * radius / points, points);
+		}
+
+		stripePolygon = Slicer.class.getDeclaredMethod("stripe", Polygon.class, List.class);
+		stripePolygon.setAccessible(true);
+	}
+
+	@Benchmark
+	public int polygons() throws Exception {
+		int s = 0;
+		for(Polygon p : polygons) {
+			List<Polygon> result = new ArrayList<>();
+			stripePolygon.invoke(null, p, result);
+			s += result.size();
+		}
+		return s;
+	}
+
+	@Benchmark
+	public int lines() {
+		int s = 0;
+		for(LineString l : lines) {
+			s += Slicer.stripe(l).size();
+		}
+		return s;
+	}
+
+}
@@ -0,0 +1,255 @@
+package me.osm.gazetter.benchmarks;
+
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import me.osm.gazetter.striper.FeatureTypes;
+import me.osm.gazetter.striper.GeoJsonWriter;
+
+import org.json.JSONObject;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.geom.Polygon;
+
+/**
+ * Generates osm xml and stripes features with fixed seed,
+ * so benchmarks results are comparable across commits.
+ * <p>
+ * All the data is placed around (LON, LAT) point.
+ * */
+public class SyntheticData {
+
+	public static final long SEED = 20150501L;
+
+	public static final double LON = 37.6;
+	public static final double LAT = 55.7;
+
+	private static final Charset UTF8 = Charset.forName("UTF8");
+
+	private static final String[] STREETS = new String[]{
+		"Tverskaya", "Arbat", "Lenina", "Mira", "Sadovaya", "Pushkina",
+		"Gagarina", "Sovetskaya", "Lesnaya", "Shkolnaya", "Tsentralnaya", "Molodezhnaya"};
+
+	private static final GeometryFactory factory = new GeometryFactory();
+
+	private final Random random;
+
+	public SyntheticData() {
+		this(SEED);
+	}
+
+	public SyntheticData(long seed) {
+		this.random = new Random(seed);
+	}
+
+	/**
+	 * @return random value in [-d, d)
+	 * */
+	public double jitter(double d) {
+		return (random.nextDouble() * 2 - 1) * d;
+	}
+
+	public int nextInt(int n) {
+		return random.nextInt(n);
+	}
+
+	/**
+	 * Nodes with ids from 1 to n, every fourth one is an address
+	 * */
+	public byte[] osmNodes(int n) {
+		StringBuilder sb = osmHeader();
+		for(long id = 1; id <= n; id++) {
+			sb.append(String.format(Locale.US,
+					"  <node id=\"%d\" lat=\"%.7f\" lon=\"%.7f\" version=\"1\" timestamp=\"2015-05-01T12:00:00Z\"",
+					id, LAT + jitter(0.5), LON + jitter(0.5)));
+
+			if(id % 4 == 0) {
+				sb.append(">\n");
+				tag(sb, "addr:street", street());
+				tag(sb, "addr:housenumber", String.valueOf(1 + random.nextInt(200)));
+				sb.append("  </node>\n");
+			}
+			else {
+				sb.append("/>\n");
+			}
+		}
+		return osmFooter(sb);
+	}
+
+	/**
+	 * Ways with ids from 1 to n, with nodes from [1, maxNode].
+	 * Half of them are highways and half are buildings.
+	 * */
+	public byte[] osmWays(int n, int nodesPerWay, int maxNode) {
+		StringBuilder sb = osmHeader();
+		for(long id = 1; id <= n; id++) {
+			sb.append("  <way id=\"").append(id).append("\" version=\"1\">\n");
+
+			long first = 1 + random.nextInt(maxNode);
+			for(int i = 0; i < nodesPerWay; i++) {
+				sb.append("    <nd ref=\"").append(1 + random.nextInt(maxNode)).append("\"/>\n");
+			}
+
+			if(id % 2 == 0) {
+				sb.append("    <nd ref=\"").append(first).append("\"/>\n");
+				tag(sb, "building", "yes");
+			}
+			else {
+				tag(sb, "highway", "residential");
+				tag(sb, "name", street());
+			}
+			sb.append("  </way>\n");
+		}
+		return osmFooter(sb);
+	}
+
+	/**
+	 * Relations with ids from 1 to n, boundaries with ways members
+	 * from [1, maxWay]
+	 * */
+	public byte[] osmRelations(int n, int members, int maxWay) {
+		StringBuilder sb = osmHeader();
+		for(long id = 1; id <= n; id++) {
+			sb.append("  <relation id=\"").append(id).append("\" version=\"1\">\n");
+			for(int i = 0; i < members; i++) {
+				sb.append("    <member type=\"way\" ref=\"").append(1 + random.nextInt(maxWay))
+					.append("\" role=\"outer\"/>\n");
+			}
+			tag(sb, "type", "boundary");
+			tag(sb, "boundary", "administrative");
+			tag(sb, "admin_level", String.valueOf(4 + id % 6));
+			tag(sb, "name", "Boundary " + id);
+			sb.append("  </relation>\n");
+		}
+		return osmFooter(sb);
+	}
+
+	/**
+	 * Star shaped polygon around the point
+	 * */
+	public Polygon polygon(double x, double y, double radius, int points) {
+		Coordinate[] coords = new Coordinate[points + 1];
+		for(int i = 0; i < points; i++) {
+			double a = 2 * Math.PI * i / points;
+			double r = radius * (0.5 + random.nextDouble() * 0.5);
+			coords[i] = new Coordinate(x + r * Math.cos(a), y + r * Math.sin(a));
+		}
+		coords[points] = coords[0];
+		return factory.createPolygon(coords);
+	}
+
+	/**
+	 * Random walk from the point
+	 * */
+	public LineString lineString(double x, double y, double step, int points) {
+		Coordinate[] coords = new Coordinate[points];
+		for(int i = 0; i < points; i++) {
+			coords[i] = new Coordinate(x, y);
+			x += step * (0.5 + random.nextDouble());
+			y += jitter(step);
+		}
+		return factory.createLineString(coords);
+	}
+
+	/**
+	 * Random point not further than d from (LON, LAT)
+	 * */
+	public Point point(double d) {
+		return point(LON + jitter(d), LAT + jitter(d));
+	}
+
+	public Point point(double x, double y) {
+		return factory.createPoint(new Coordinate(x, y));
+	}
+
+	public String street() {
+		return STREETS[random.nextInt(STREETS.length)];
+	}
+
+	/**
+	 * Address point feature as it's written by slice
+	 * */
+	public JSONObject addrPoint(long id, Point p) {
+		Map<String, String> tags = new HashMap<>();
+		tags.put("addr:street", street());
+		tags.put("addr:housenumber", String.valueOf(1 + random.nextInt(200)));
+
+		return feature(FeatureTypes.ADDR_POINT_FTYPE, "node", id, tags, p);
+	}
+
+	/**
+	 * Street feature, with name from the same list as addresses streets
+	 * */
+	public JSONObject street(long id, LineString ls) {
+		Map<String, String> tags = new HashMap<>();
+		tags.put("highway", "residential");
+		tags.put("name", street());
+
+		return feature(FeatureTypes.HIGHWAY_FEATURE_TYPE, "way", id, tags, ls);
+	}
+
+	/**
+	 * Administrative boundary feature
+	 * */
+	public JSONObject boundary(long id, int adminLevel, Polygon p) {
+		Map<String, String> tags = new HashMap<>();
+		tags.put("boundary", "administrative");
+		tags.put("admin_level", String.valueOf(adminLevel));
+		tags.put("name", "Boundary " + id);
+
+		return feature(FeatureTypes.ADMIN_BOUNDARY_FTYPE, "relation", id, tags, p);
+	}
+
+	/**
+	 * Place point feature
+	 * */
+	public JSONObject place(long id, String place, Point p) {
+		Map<String, String> tags = new HashMap<>();
+		tags.put("place", place);
+		tags.put("name", "Place " + id);
+
+		return feature(FeatureTypes.PLACE_POINT_FTYPE, "node", id, tags, p);
+	}
+
+	/**
+	 * Voronoi polygon of the place
+	 * */
+	public JSONObject placeVoronoi(long id, String place, Polygon p) {
+		Map<String, String> tags = new HashMap<>();
+		tags.put("place", place);
+		tags.put("name", "Place " + id);
+
+		return feature(FeatureTypes.PLACE_DELONEY_FTYPE, "node", id, tags, p);
+	}
+
+	private static JSONObject feature(String ftype, String type, long id,
+			Map<String, String> tags, com.vividsolutions.jts.geom.Geometry g) {
+
+		JSONObject meta = new JSONObject();
+		meta.put("id", id);
+		meta.put("type", type);
+
+		String fid = GeoJsonWriter.getId(ftype, g.getCentroid(), meta);
+		return new JSONObject(GeoJsonWriter.featureAsGeoJSON(fid, ftype, tags, g, meta));
+	}
+
+	private static StringBuilder osmHeader() {
+		return new StringBuilder("<?xml version='1.0' encoding='UTF-8'?>\n<osm version=\"0.6\">\n");
+	}
+
+	private static byte[] osmFooter(StringBuilder sb) {
+		sb.append("</osm>\n");
+		return sb.toString().getBytes(UTF8);
+	}
+
+	private static void tag(StringBuilder sb, String k, String v) {
+		sb.append("    <tag k=\"").append(k).append("\" v=\"").append(v).append("\"/>\n");
+	}
+
+}